@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.javashader.ClassFilePackageShaderBenchmark.ClassFileSize;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ASM and JDK class file API engines shading the same class files with every referenced package mapped.
+ * The jdk engine requires Java 24 or later, running on an earlier JDK fails its setup.
+ * <br>
+ * {@link #shade()} measures the throughput of a warmed engine, {@link #coldShade()} a single shade in a fresh JVM
+ * including the class loading and initialization of each engine, which matters to short lived tools and agents.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassFileEngineBenchmark {
+
+    @Param({ClassFileEngines.ASM, ClassFileEngines.JDK})
+    public String engine;
+
+    @Param
+    public ClassFileSize size;
+
+    private byte[] classFile;
+
+    private PackageShaderRules rules;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.classFile = ClassFilePackageShaderBenchmark.classFile(this.size.typeName);
+        final Set<PackageName> packages = ClassFilePackageShaderBenchmark.referencedPackages(this.classFile);
+        this.rules = PackageShaderRules.with(
+            ClassFilePackageShaderBenchmark.mappings(
+                packages,
+                packages.size()
+            )
+        );
+    }
+
+    @Benchmark
+    public byte[] shade() {
+        return this.shade0();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public byte[] coldShade() {
+        return this.shade0();
+    }
+
+    private byte[] shade0() {
+        return ClassFileEngines.engine(this.engine)
+            .shade(
+                this.classFile,
+                this.rules::shade,
+                ClassFileDebugInfo.ALL
+            );
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ClassFilePackageShader#shadeClassFile(byte[], Map)} for real class files taken from the class path,
+ * ranging from a tiny ASM class to the huge JDT parser, against mappings of 1 to 1000 rules.
+ * <br>
+ * A HIT workload maps every package referenced by the class, with unused rules placed first so each lookup walks them.
+ * A MISS workload only has rules for packages that are never referenced. Run with <code>-prof gc</code> to report
+ * allocations per operation.
+ * <br>
+ * The debug info parameter compares keeping all debug info, keeping only line numbers and stripping it all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassFilePackageShaderBenchmark {
+
+    /**
+     * Real class files of increasing size, all present on the benchmark class path.
+     */
+    public enum ClassFileSize {
+        TINY("org.objectweb.asm.Edge"),
+        SMALL("org.eclipse.jdt.internal.compiler.ast.ThrowStatement"),
+        MEDIUM("org.eclipse.jdt.internal.compiler.ast.MethodDeclaration"),
+        LARGE("org.eclipse.jdt.internal.codeassist.complete.CompletionParser"),
+        HUGE("org.eclipse.jdt.internal.compiler.parser.Parser");
+
+        ClassFileSize(final String typeName) {
+            this.typeName = typeName;
+        }
+
+        final String typeName;
+    }
+
+    public enum Workload {
+        HIT,
+        MISS
+    }
+
+    public enum DebugInfo {
+        KEEP(ClassFileDebugInfo.ALL),
+        LINE_NUMBERS(EnumSet.of(ClassFileDebugInfo.LINE_NUMBERS)),
+        STRIP(EnumSet.noneOf(ClassFileDebugInfo.class));
+
+        DebugInfo(final Set<ClassFileDebugInfo> kept) {
+            this.kept = kept;
+        }
+
+        final Set<ClassFileDebugInfo> kept;
+    }
+
+    @Param
+    public ClassFileSize size;
+
+    @Param({"1", "10", "100", "1000"})
+    public int rules;
+
+    @Param
+    public Workload workload;
+
+    @Param
+    public DebugInfo debugInfo;
+
+    private byte[] classFile;
+
+    private Map<PackageName, PackageName> mappings;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.classFile = classFile(this.size.typeName);
+        this.mappings = mappings(
+            Workload.HIT == this.workload ?
+                referencedPackages(this.classFile) :
+                Sets.empty(),
+            this.rules
+        );
+    }
+
+    @Benchmark
+    public byte[] shadeClassFile() {
+        return ClassFilePackageShader.shadeClassFile(
+            this.classFile,
+            this.mappings,
+            this.debugInfo.kept
+        );
+    }
+
+    /**
+     * Reads the class file as a resource, the class itself is never loaded.
+     */
+    static byte[] classFile(final String typeName) throws IOException {
+        final String resourceName = typeName.replace('.', '/') + ".class";
+
+        try (final InputStream file = ClassFilePackageShaderBenchmark.class.getClassLoader().getResourceAsStream(resourceName)) {
+            if (null == file) {
+                throw new IllegalArgumentException("Class file for " + typeName + " not found");
+            }
+            return file.readAllBytes();
+        }
+    }
+
+    /**
+     * Collects the packages of every type referenced by the class file.
+     */
+    static Set<PackageName> referencedPackages(final byte[] classFile) {
+        final Set<PackageName> packages = Sets.ordered();
+
+        new ClassReader(classFile)
+            .accept(
+                new ClassRemapper(
+                    new ClassWriter(0),
+                    new Remapper() {
+                        @Override
+                        public String map(final String internalName) {
+                            final int slash = internalName.lastIndexOf('/');
+                            if (-1 != slash) {
+                                packages.add(
+                                    PackageName.with(
+                                        internalName.substring(0, slash)
+                                            .replace('/', '.')
+                                    )
+                                );
+                            }
+                            return internalName;
+                        }
+                    }),
+                0
+            );
+
+        return packages;
+    }
+
+    /**
+     * Builds a mapping of exactly the given number of rules, unused rules come first followed by as many of the hit
+     * packages as fit.
+     */
+    static Map<PackageName, PackageName> mappings(final Set<PackageName> hits,
+                                                  final int rules) {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+
+        final int hitCount = Math.min(hits.size(), rules);
+        for (int i = 0; i < rules - hitCount; i++) {
+            mappings.put(
+                PackageName.with("benchmark.unused.package" + i),
+                PackageName.with("shaded.benchmark.unused.package" + i)
+            );
+        }
+
+        for (final PackageName hit : hits) {
+            if (mappings.size() == rules) {
+                break;
+            }
+            mappings.put(
+                hit,
+                PackageName.with("shaded." + hit.value())
+            );
+        }
+
+        return mappings;
+    }
+}
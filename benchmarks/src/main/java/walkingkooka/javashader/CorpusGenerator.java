@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates a deterministic corpus of classes spread over a number of packages, where each class references a fixed
+ * number of other classes. The same corpus may be written as a jar of class files or a tree of java sources, and
+ * repeated runs produce identical bytes.
+ * <pre>
+ * java -cp target/benchmarks.jar walkingkooka.javashader.CorpusGenerator 10000 100 8 corpus.jar corpus-src
+ * </pre>
+ */
+public final class CorpusGenerator {
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 5) {
+            throw new IllegalArgumentException("Expected classes packages referencesPerClass jar sourceDirectory");
+        }
+
+        final CorpusGenerator generator = with(
+            Integer.parseInt(args[0]),
+            Integer.parseInt(args[1]),
+            Integer.parseInt(args[2])
+        );
+        generator.writeJar(Paths.get(args[3]));
+        generator.writeSources(Paths.get(args[4]));
+    }
+
+    static CorpusGenerator with(final int classes,
+                                final int packages,
+                                final int referencesPerClass) {
+        if (classes <= 0) {
+            throw new IllegalArgumentException("Invalid classes " + classes + " <= 0");
+        }
+        if (packages <= 0 || packages > classes) {
+            throw new IllegalArgumentException("Invalid packages " + packages + " must be between 1 and " + classes);
+        }
+        if (referencesPerClass < 0) {
+            throw new IllegalArgumentException("Invalid references per class " + referencesPerClass + " < 0");
+        }
+        return new CorpusGenerator(classes, packages, referencesPerClass);
+    }
+
+    private CorpusGenerator(final int classes,
+                            final int packages,
+                            final int referencesPerClass) {
+        super();
+        this.classes = classes;
+        this.packages = packages;
+        this.referencesPerClass = referencesPerClass;
+    }
+
+    /**
+     * Mappings that shade every generated package.
+     */
+    Map<PackageName, PackageName> mappings() {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+        for (int i = 0; i < this.packages; i++) {
+            mappings.put(
+                PackageName.with(packageName(i)),
+                PackageName.with("shaded." + packageName(i))
+            );
+        }
+        return mappings;
+    }
+
+    /**
+     * Writes all classes to a jar, entry times are fixed so the jar bytes never change.
+     */
+    void writeJar(final Path jar) throws IOException {
+        createParentDirectories(jar);
+
+        try (final JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < this.classes; i++) {
+                final JarEntry entry = new JarEntry(this.internalName(i) + ".class");
+                entry.setTime(0);
+                output.putNextEntry(entry);
+                output.write(this.classFile(i));
+                output.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes all classes as java sources below the given directory.
+     */
+    void writeSources(final Path directory) throws IOException {
+        for (int i = 0; i < this.classes; i++) {
+            final Path file = directory.resolve(this.internalName(i) + ".java");
+            createParentDirectories(file);
+
+            try (final OutputStream output = Files.newOutputStream(file)) {
+                output.write(this.source(i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void createParentDirectories(final Path file) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * A class with a field and a method for each reference, each method creates an instance of the referenced class.
+     */
+    byte[] classFile(final int index) {
+        final String internalName = this.internalName(index);
+
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(
+            Opcodes.V11,
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+            internalName,
+            null,
+            "java/lang/Object",
+            null
+        );
+
+        final MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        for (int r = 0; r < this.referencesPerClass; r++) {
+            final String reference = this.internalName(this.reference(index, r));
+            final String descriptor = "L" + reference + ";";
+
+            writer.visitField(Opcodes.ACC_PUBLIC, "field" + r, descriptor, null, null)
+                .visitEnd();
+
+            final MethodVisitor method = writer.visitMethod(
+                Opcodes.ACC_PUBLIC,
+                "method" + r,
+                "(" + descriptor + ")" + descriptor,
+                null,
+                null
+            );
+            method.visitCode();
+            method.visitTypeInsn(Opcodes.NEW, reference);
+            method.visitInsn(Opcodes.DUP);
+            method.visitMethodInsn(Opcodes.INVOKESPECIAL, reference, "<init>", "()V", false);
+            method.visitInsn(Opcodes.ARETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * The java source equivalent of {@link #classFile(int)}, references are fully qualified.
+     */
+    String source(final int index) {
+        final StringBuilder b = new StringBuilder();
+
+        b.append("package ")
+            .append(packageName(index % this.packages))
+            .append(";\n\npublic class ")
+            .append(className(index))
+            .append(" {\n");
+
+        for (int r = 0; r < this.referencesPerClass; r++) {
+            final String reference = this.typeName(this.reference(index, r));
+
+            b.append("\n    public ")
+                .append(reference)
+                .append(" field")
+                .append(r)
+                .append(";\n\n    public ")
+                .append(reference)
+                .append(" method")
+                .append(r)
+                .append("(final ")
+                .append(reference)
+                .append(" parameter) {\n        return new ")
+                .append(reference)
+                .append("();\n    }\n");
+        }
+
+        return b.append("}\n")
+            .toString();
+    }
+
+    /**
+     * Picks the class referenced by the given class, consecutive classes live in different packages so most
+     * references cross packages.
+     */
+    private int reference(final int index,
+                          final int reference) {
+        return (int) ((index * 31L + (reference + 1) * 17L) % this.classes);
+    }
+
+    private String typeName(final int index) {
+        return packageName(index % this.packages) + "." + className(index);
+    }
+
+    private String internalName(final int index) {
+        return this.typeName(index).replace('.', '/');
+    }
+
+    private static String packageName(final int index) {
+        return "corpus.package" + index;
+    }
+
+    private static String className(final int index) {
+        return "Class" + index;
+    }
+
+    private final int classes;
+    private final int packages;
+    private final int referencesPerClass;
+
+    @Override
+    public String toString() {
+        return this.classes + " classes " + this.packages + " packages " + this.referencesPerClass + " references per class";
+    }
+}
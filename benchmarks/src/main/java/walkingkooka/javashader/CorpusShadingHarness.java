@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates a corpus with {@link CorpusGenerator}, then shades the jar and source tree through {@link JavaShaders}
+ * with an increasing number of threads, printing files/sec, MB/sec and peak heap for each run. Files are read into
+ * memory first so only shading is timed.
+ * <pre>
+ * java -cp target/benchmarks.jar walkingkooka.javashader.CorpusShadingHarness 100000 1000 8 1,2,4,8
+ * </pre>
+ */
+public final class CorpusShadingHarness {
+
+    public static void main(final String[] args) throws Exception {
+        final CorpusGenerator generator = CorpusGenerator.with(
+            argument(args, 0, 10000),
+            argument(args, 1, 100),
+            argument(args, 2, 8)
+        );
+        final List<Integer> threads = args.length > 3 ?
+            Arrays.stream(args[3].split(","))
+                .map(Integer::parseInt)
+                .collect(Collectors.toList()) :
+            threads();
+
+        final Path directory = Files.createTempDirectory(CorpusShadingHarness.class.getSimpleName());
+        try {
+            final Path jar = directory.resolve("corpus.jar");
+            final Path sources = directory.resolve("src");
+            generator.writeJar(jar);
+            generator.writeSources(sources);
+
+            System.out.println(generator);
+            System.out.printf("%-6s %8s %8s %12s %10s %14s%n", "kind", "threads", "files", "files/sec", "MB/sec", "peak heap MB");
+
+            final Map<PackageName, PackageName> mappings = generator.mappings();
+            run("class", readJar(jar), JavaShaders.classFilePackageShader(), mappings, threads);
+            run("java", readSources(sources), JavaShaders.javaFilePackageShader(StandardCharsets.UTF_8), mappings, threads);
+        } finally {
+            try (final Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder())
+                    .forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    private static int argument(final String[] args,
+                                final int index,
+                                final int defaultValue) {
+        return args.length > index ?
+            Integer.parseInt(args[index]) :
+            defaultValue;
+    }
+
+    /**
+     * Powers of two up to the number of available processors, always including the processor count.
+     */
+    private static List<Integer> threads() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final List<Integer> threads = Lists.array();
+        for (int i = 1; i < processors; i = i * 2) {
+            threads.add(i);
+        }
+        threads.add(processors);
+        return threads;
+    }
+
+    private static List<byte[]> readJar(final Path jar) throws IOException {
+        final List<byte[]> files = Lists.array();
+
+        try (final JarFile jarFile = new JarFile(jar.toFile())) {
+            for (final JarEntry entry : jarFile.stream().collect(Collectors.toList())) {
+                files.add(jarFile.getInputStream(entry).readAllBytes());
+            }
+        }
+
+        return files;
+    }
+
+    private static List<byte[]> readSources(final Path directory) throws IOException {
+        final List<byte[]> files = Lists.array();
+
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            for (final Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                files.add(Files.readAllBytes(path));
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Shades every file once to warm up, then once more timing the run and recording the peak heap.
+     */
+    private static void run(final String kind,
+                            final List<byte[]> files,
+                            final BiFunction<byte[], Map<PackageName, PackageName>, byte[]> shader,
+                            final Map<PackageName, PackageName> mappings,
+                            final List<Integer> threads) throws ExecutionException, InterruptedException {
+        final long bytes = files.stream()
+            .mapToLong(f -> f.length)
+            .sum();
+
+        for (final int threadCount : threads) {
+            final ForkJoinPool pool = new ForkJoinPool(threadCount);
+            try {
+                shade(files, shader, mappings, pool);
+
+                System.gc();
+                resetPeakHeap();
+
+                final long start = System.nanoTime();
+                shade(files, shader, mappings, pool);
+                final double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf(
+                    "%-6s %8d %8d %12.1f %10.2f %14.1f%n",
+                    kind,
+                    threadCount,
+                    files.size(),
+                    files.size() / seconds,
+                    bytes / MB / seconds,
+                    peakHeap() / MB
+                );
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void shade(final List<byte[]> files,
+                              final BiFunction<byte[], Map<PackageName, PackageName>, byte[]> shader,
+                              final Map<PackageName, PackageName> mappings,
+                              final ForkJoinPool pool) throws ExecutionException, InterruptedException {
+        pool.submit(
+            () -> files.parallelStream()
+                .forEach(f -> shader.apply(f, mappings))
+        ).get();
+    }
+
+    private static void resetPeakHeap() {
+        heapPools()
+            .forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * The sum of the peak usage of all heap pools, which may be above the true peak as pools peak at different times.
+     */
+    private static long peakHeap() {
+        return heapPools()
+            .mapToLong(p -> p.getPeakUsage().getUsed())
+            .sum();
+    }
+
+    private static Stream<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans()
+            .stream()
+            .filter(p -> MemoryType.HEAP == p.getType());
+    }
+
+    private final static double MB = 1024 * 1024;
+
+    /**
+     * Stop creation
+     */
+    private CorpusShadingHarness() {
+        throw new UnsupportedOperationException();
+    }
+}
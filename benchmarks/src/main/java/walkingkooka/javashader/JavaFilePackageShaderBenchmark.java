@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Name;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each phase of {@link JavaFilePackageShader#shade(String, Map)} separately and end to end. Each phase benchmark
+ * starts from the output of the previous phase prepared during setup. Subclasses provide the source and the packages
+ * it references, run with <code>-prof gc</code> to report allocations per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class JavaFilePackageShaderBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int rules;
+
+    private String source;
+
+    private Map<PackageName, PackageName> mappings;
+
+    private CompilationUnit unit;
+
+    private List<Name> names;
+
+    private List<Name> sorted;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.source = this.source();
+        this.mappings = ClassFilePackageShaderBenchmark.mappings(
+            this.referencedPackages(),
+            this.rules
+        );
+        this.unit = JavaFilePackageShader.parse(this.source);
+        this.names = JavaFilePackageShader.collectNames(this.unit);
+        this.sorted = JavaFilePackageShader.reverseSort(this.names);
+    }
+
+    abstract String source() throws IOException;
+
+    /**
+     * Packages referenced by {@link #source()}, mapped after any unused rules.
+     */
+    abstract Set<PackageName> referencedPackages();
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return JavaFilePackageShader.parse(this.source);
+    }
+
+    @Benchmark
+    public List<Name> collectNames() {
+        return JavaFilePackageShader.collectNames(this.unit);
+    }
+
+    @Benchmark
+    public List<Name> reverseSort() {
+        return JavaFilePackageShader.reverseSort(this.names);
+    }
+
+    @Benchmark
+    public String collectText() {
+        return JavaFilePackageShader.collectText(
+            this.sorted,
+            this.source,
+            this.mappings
+        );
+    }
+
+    @Benchmark
+    public String shade() {
+        return JavaFilePackageShader.shade(
+            this.source,
+            this.mappings
+        );
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.PackageName;
+
+import java.util.Set;
+
+/**
+ * Generates deterministic java source files, the length grows with the number of methods and each method holds a fixed
+ * number of fully qualified type references spread across a number of packages.
+ */
+final class JavaSourceGenerator {
+
+    static JavaSourceGenerator with(final int methods,
+                                    final int referencesPerMethod,
+                                    final int packages) {
+        if (methods < 0) {
+            throw new IllegalArgumentException("Invalid methods " + methods + " < 0");
+        }
+        if (referencesPerMethod < 0) {
+            throw new IllegalArgumentException("Invalid references per method " + referencesPerMethod + " < 0");
+        }
+        if (packages <= 0) {
+            throw new IllegalArgumentException("Invalid packages " + packages + " <= 0");
+        }
+        return new JavaSourceGenerator(methods, referencesPerMethod, packages);
+    }
+
+    private JavaSourceGenerator(final int methods,
+                                final int referencesPerMethod,
+                                final int packages) {
+        super();
+        this.methods = methods;
+        this.referencesPerMethod = referencesPerMethod;
+        this.packages = packages;
+    }
+
+    /**
+     * Generates a class with the given name in the given package. Imports and references to other packages are
+     * picked using the seed so different classes reference different packages.
+     */
+    String generate(final String packageName,
+                    final String className,
+                    final int seed) {
+        final StringBuilder b = new StringBuilder();
+
+        b.append("package ").append(packageName).append(";\n\n");
+
+        for (int i = 0; i < this.packages; i++) {
+            b.append("import ").append(this.referenceType(seed + i)).append(";\n");
+        }
+        b.append('\n');
+
+        b.append("/**\n * Generated.\n */\n");
+        b.append("public class ").append(className).append(" {\n");
+
+        for (int m = 0; m < this.methods; m++) {
+            final int methodSeed = seed + m * this.referencesPerMethod;
+
+            b.append("\n    public ")
+                .append(this.referenceType(methodSeed))
+                .append(" method")
+                .append(m)
+                .append("(final ")
+                .append(this.referenceType(methodSeed + 1))
+                .append(" parameter) {\n");
+
+            for (int r = 0; r < this.referencesPerMethod; r++) {
+                final String type = this.referenceType(methodSeed + r);
+                b.append("        final ")
+                    .append(type)
+                    .append(" local")
+                    .append(r)
+                    .append(" = new ")
+                    .append(type)
+                    .append("(); // ")
+                    .append(type)
+                    .append('\n');
+            }
+
+            b.append("        return null;\n    }\n");
+        }
+
+        b.append("}\n");
+
+        return b.toString();
+    }
+
+    /**
+     * The fully qualified name of a referenced type.
+     */
+    private String referenceType(final int index) {
+        final int packageIndex = Math.floorMod(index, this.packages);
+        return referencePackage(packageIndex) + ".Type" + Math.floorMod(index, 7);
+    }
+
+    /**
+     * The packages referenced by generated classes.
+     */
+    Set<PackageName> referencePackages() {
+        final Set<PackageName> packages = Sets.ordered();
+        for (int i = 0; i < this.packages; i++) {
+            packages.add(PackageName.with(referencePackage(i)));
+        }
+        return packages;
+    }
+
+    private static String referencePackage(final int index) {
+        return "generated.reference" + index;
+    }
+
+    private final int methods;
+    private final int referencesPerMethod;
+    private final int packages;
+
+    @Override
+    public String toString() {
+        return this.methods + " methods " + this.referencesPerMethod + " references per method " + this.packages + " packages";
+    }
+}
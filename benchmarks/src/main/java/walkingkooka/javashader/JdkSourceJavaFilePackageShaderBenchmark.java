@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.openjdk.jmh.annotations.Param;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link JavaFilePackageShaderBenchmark} over a few large real sources read from the <code>lib/src.zip</code> of the
+ * running JDK.
+ */
+public class JdkSourceJavaFilePackageShaderBenchmark extends JavaFilePackageShaderBenchmark {
+
+    @Param({
+        "java.base/java/util/HashMap.java",
+        "java.base/java/util/concurrent/ConcurrentHashMap.java",
+        "java.base/java/lang/Character.java"
+    })
+    public String path;
+
+    @Override
+    String source() throws IOException {
+        final Path srcZip = Paths.get(System.getProperty("java.home"), "lib", "src.zip");
+
+        try (final ZipFile zip = new ZipFile(srcZip.toFile())) {
+            final ZipEntry entry = zip.getEntry(this.path);
+            if (null == entry) {
+                throw new IllegalArgumentException("Source " + this.path + " not found in " + srcZip);
+            }
+            return new String(
+                zip.getInputStream(entry).readAllBytes(),
+                StandardCharsets.UTF_8
+            );
+        }
+    }
+
+    /**
+     * The package of the source and every single type import.
+     */
+    @Override
+    Set<PackageName> referencedPackages() {
+        final Set<PackageName> packages = Sets.ordered();
+
+        try {
+            final CompilationUnit unit = JavaFilePackageShader.parse(this.source());
+            packages.add(PackageName.with(unit.getPackage().getName().getFullyQualifiedName()));
+
+            for (final Object importDeclaration : unit.imports()) {
+                final Name name = ((ImportDeclaration) importDeclaration).getName();
+                if (name instanceof QualifiedName) {
+                    packages.add(PackageName.with(((QualifiedName) name).getQualifier().getFullyQualifiedName()));
+                }
+            }
+        } catch (final IOException cause) {
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+
+        return packages;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.openjdk.jmh.annotations.Param;
+import walkingkooka.reflect.PackageName;
+
+import java.util.Set;
+
+/**
+ * {@link JavaFilePackageShaderBenchmark} over a generated source, scaling file length and reference density.
+ */
+public class SyntheticJavaFilePackageShaderBenchmark extends JavaFilePackageShaderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int methods;
+
+    @Param({"1", "10"})
+    public int referencesPerMethod;
+
+    @Override
+    String source() {
+        return this.generator()
+            .generate(
+                "generated.source",
+                "Generated",
+                0
+            );
+    }
+
+    @Override
+    Set<PackageName> referencedPackages() {
+        return this.generator()
+            .referencePackages();
+    }
+
+    private JavaSourceGenerator generator() {
+        return JavaSourceGenerator.with(
+            this.methods,
+            this.referencesPerMethod,
+            PACKAGES
+        );
+    }
+
+    private final static int PACKAGES = 10;
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+/**
+ * Tracks the bytes held in memory by archive entries being shaded, work is only admitted while the budget allows.
+ */
+final class ArchiveBudget {
+
+    static ArchiveBudget with(final long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid budget " + limit + " must be greater than 0");
+        }
+
+        return new ArchiveBudget(limit);
+    }
+
+    private ArchiveBudget(final long limit) {
+        super();
+        this.limit = limit;
+        this.available = limit;
+    }
+
+    /**
+     * Reserves the bytes if available, requests larger than the limit are never admitted.
+     */
+    synchronized boolean tryAcquire(final long bytes) {
+        final boolean acquired = bytes <= this.available;
+        if (acquired) {
+            this.available -= bytes;
+            this.peak = Math.max(
+                this.peak,
+                this.limit - this.available
+            );
+        }
+        return acquired;
+    }
+
+    synchronized void release(final long bytes) {
+        final long available = this.available + bytes;
+        if (bytes < 0 || available > this.limit) {
+            throw new IllegalStateException("Released " + bytes + " more than acquired " + this);
+        }
+        this.available = available;
+    }
+
+    long limit() {
+        return this.limit;
+    }
+
+    private final long limit;
+
+    synchronized long available() {
+        return this.available;
+    }
+
+    private long available;
+
+    /**
+     * The most bytes that were ever reserved at once.
+     */
+    synchronized long peak() {
+        return this.peak;
+    }
+
+    private long peak;
+
+    @Override
+    public synchronized String toString() {
+        return this.available + "/" + this.limit;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.set.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class references of the class files of an archive, gathered while they are shaded and then walked from root
+ * classes to find the classes that are reachable. Names are internal names after shading. Classes may be added
+ * concurrently, but the walk must happen after all have been added.
+ */
+final class ArchiveClassGraph {
+
+    static ArchiveClassGraph with(final Collection<String> roots) {
+        Objects.requireNonNull(roots, "roots");
+
+        final ArchiveClassGraph graph = new ArchiveClassGraph();
+        roots.forEach(graph::root);
+        return graph;
+    }
+
+    private ArchiveClassGraph() {
+        super();
+    }
+
+    /**
+     * Returns the internal class name of a class file path, or null for any other entry. Class files within
+     * <code>META-INF/versions/N/</code> are versions of the same class, while module and package descriptors are never
+     * classes that can be referenced and are always kept.
+     */
+    static String className(final String path) {
+        String className = null;
+
+        if (path.endsWith(CLASS_SUFFIX)) {
+            String name = path.substring(0, path.length() - CLASS_SUFFIX.length());
+
+            if (name.startsWith(VERSIONS)) {
+                final int slash = name.indexOf('/', VERSIONS.length());
+                name = -1 != slash ?
+                    name.substring(slash + 1) :
+                    name;
+            }
+
+            final String simpleName = name.substring(name.lastIndexOf('/') + 1);
+            if (false == "module-info".equals(simpleName) && false == "package-info".equals(simpleName)) {
+                className = name;
+            }
+        }
+
+        return className;
+    }
+
+    private final static String CLASS_SUFFIX = ".class";
+
+    private final static String VERSIONS = "META-INF/versions/";
+
+    /**
+     * Adds a class whose reachability will be walked from.
+     */
+    void root(final String internalName) {
+        this.roots.add(internalName);
+    }
+
+    private final Set<String> roots = Sets.concurrent();
+
+    /**
+     * Records the types referenced by a class, multi release versions of a class merge their references.
+     */
+    void add(final String internalName,
+             final Set<String> references) {
+        this.references.merge(
+            internalName,
+            references,
+            (a, b) -> {
+                final Set<String> merged = Sets.hash();
+                merged.addAll(a);
+                merged.addAll(b);
+                return merged;
+            }
+        );
+    }
+
+    private final Map<String, Set<String>> references = new ConcurrentHashMap<>();
+
+    /**
+     * Walks the references from the roots returning the names of the added classes that are not reachable. References
+     * to classes outside the archive such as the JRE are ignored.
+     */
+    Set<String> unreachable() {
+        final Map<String, Set<String>> references = this.references;
+        final Set<String> reachable = Sets.hash();
+        final Deque<String> pending = new ArrayDeque<>(this.roots);
+
+        while (false == pending.isEmpty()) {
+            final String name = pending.removeFirst();
+            final Set<String> referenced = references.get(name);
+            if (null != referenced && reachable.add(name)) {
+                pending.addAll(referenced);
+            }
+        }
+
+        final Set<String> unreachable = Sets.hash();
+        unreachable.addAll(references.keySet());
+        unreachable.removeAll(reachable);
+        return unreachable;
+    }
+
+    @Override
+    public String toString() {
+        return this.roots.size() + " roots " + this.references.size() + " classes";
+    }
+}
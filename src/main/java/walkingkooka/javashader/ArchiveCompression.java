@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+
+/**
+ * Selects how rewritten archive entries are compressed. Entries that are unchanged are always copied with their
+ * original compressed bytes.
+ */
+public final class ArchiveCompression {
+
+    /**
+     * Rewritten entries keep their original method, deflated entries use the default level.
+     */
+    public static ArchiveCompression original() {
+        return ORIGINAL;
+    }
+
+    private final static ArchiveCompression ORIGINAL = new ArchiveCompression(-1, Deflater.DEFAULT_COMPRESSION);
+
+    private final static ArchiveCompression STORED = new ArchiveCompression(ArchiveEntry.STORED, Deflater.NO_COMPRESSION);
+
+    /**
+     * Rewritten entries are stored without compression, the fastest option for local builds.
+     */
+    public static ArchiveCompression stored() {
+        return STORED;
+    }
+
+    /**
+     * Rewritten entries are deflated with the given level, which is either {@link Deflater#DEFAULT_COMPRESSION} or
+     * between {@link Deflater#NO_COMPRESSION} and {@link Deflater#BEST_COMPRESSION}.
+     */
+    public static ArchiveCompression deflated(final int level) {
+        if (Deflater.DEFAULT_COMPRESSION != level && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid level " + level + " expected -1 or between 0 and 9");
+        }
+
+        return new ArchiveCompression(ArchiveEntry.DEFLATED, level);
+    }
+
+    private ArchiveCompression(final int method,
+                               final int level) {
+        super();
+        this.method = method;
+        this.level = level;
+    }
+
+    /**
+     * The compression method for the rewritten entry.
+     */
+    int method(final ArchiveEntry entry) {
+        return -1 == this.method ?
+            entry.method :
+            this.method;
+    }
+
+    /**
+     * Compresses the content of a single entry into its own raw deflate stream, which may happen on any thread.
+     */
+    byte[] compress(final int method,
+                    final byte[] content) {
+        final byte[] compressed;
+
+        if (ArchiveEntry.STORED == method) {
+            compressed = content;
+        } else {
+            final Deflater deflater = new Deflater(this.level, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(content.length);
+                final byte[] buffer = new byte[8192];
+                while (false == deflater.finished()) {
+                    output.write(
+                        buffer,
+                        0,
+                        deflater.deflate(buffer)
+                    );
+                }
+                compressed = output.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Compresses the content of a single entry a buffer at a time into the file, so the compressed bytes are never held
+     * in memory, returning the compressed length.
+     */
+    long compress(final int method,
+                  final byte[] content,
+                  final FileChannel output) throws IOException {
+        final long compressed;
+
+        if (ArchiveEntry.STORED == method) {
+            write(ByteBuffer.wrap(content), output);
+            compressed = content.length;
+        } else {
+            final Deflater deflater = new Deflater(this.level, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+
+                final byte[] buffer = new byte[8192];
+                while (false == deflater.finished()) {
+                    write(
+                        ByteBuffer.wrap(
+                            buffer,
+                            0,
+                            deflater.deflate(buffer)
+                        ),
+                        output
+                    );
+                }
+                compressed = deflater.getBytesWritten();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        return compressed;
+    }
+
+    private static void write(final ByteBuffer buffer,
+                              final FileChannel output) throws IOException {
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+    }
+
+    private final int method;
+
+    private final int level;
+
+    @Override
+    public int hashCode() {
+        return 31 * this.method + this.level;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof ArchiveCompression && this.equals0((ArchiveCompression) other);
+    }
+
+    private boolean equals0(final ArchiveCompression other) {
+        return this.method == other.method &&
+            this.level == other.level;
+    }
+
+    @Override
+    public String toString() {
+        final String toString;
+
+        switch (this.method) {
+            case ArchiveEntry.STORED:
+                toString = "STORED";
+                break;
+            case ArchiveEntry.DEFLATED:
+                toString = "DEFLATED " + this.level;
+                break;
+            default:
+                toString = "ORIGINAL";
+                break;
+        }
+
+        return toString;
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An entry of a zip archive read from its central directory, holding everything needed to copy its compressed bytes
+ * verbatim into another archive with {@link ArchiveWriter}. Zip64 archives are not supported.
+ */
+final class ArchiveEntry {
+
+    final static int STORED = 0;
+    final static int DEFLATED = 8;
+
+    /**
+     * The minimum version needed to extract a deflated entry, 2.0.
+     */
+    final static int VERSION_NEEDED_DEFLATED = 20;
+
+    final static int LOCAL_HEADER = 0x04034b50;
+    final static int CENTRAL_HEADER = 0x02014b50;
+    final static int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    final static int FLAG_ENCRYPTED = 1;
+    final static int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    final static int FLAG_UTF8 = 1 << 11;
+
+    private final static int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+
+    /**
+     * Reads all entries in central directory order.
+     */
+    static List<ArchiveEntry> read(final byte[] archive) {
+        try {
+            return read(source(archive));
+        } catch (final IOException cause) {
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Reads all entries in central directory order, only the central directory and local headers are read.
+     */
+    static List<ArchiveEntry> read(final FileChannel archive) throws IOException {
+        return read(source(archive));
+    }
+
+    private static List<ArchiveEntry> read(final Source archive) throws IOException {
+        final byte[] end = endOfCentralDirectory(archive);
+        final int count = u16(end, 10);
+        final long size = u32(end, 12);
+        final long offset = u32(end, 16);
+
+        if (0xffff == count || 0xffffffffL == offset) {
+            throw new IllegalArgumentException("Zip64 archives are not supported");
+        }
+
+        final List<ArchiveEntry> entries = Lists.array();
+        final byte[] directory = archive.read(offset, (int) size);
+        int central = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (CENTRAL_HEADER != s32(directory, central)) {
+                throw new IllegalArgumentException("Invalid central directory header at " + (offset + central));
+            }
+            final int nameLength = u16(directory, central + 28);
+            final int extraLength = u16(directory, central + 30);
+            final int commentLength = u16(directory, central + 32);
+            final long local = u32(directory, central + 42);
+
+            final byte[] localHeader = archive.read(local, 30);
+            if (LOCAL_HEADER != s32(localHeader, 0)) {
+                throw new IllegalArgumentException("Invalid local header at " + local);
+            }
+            final long localExtra = local + 30 + u16(localHeader, 26);
+            final int localExtraLength = u16(localHeader, 28);
+
+            final int name = central + 46;
+            final int extra = name + nameLength;
+            final int comment = extra + extraLength;
+
+            entries.add(
+                new ArchiveEntry(
+                    new String(directory, name, nameLength, StandardCharsets.UTF_8),
+                    u16(directory, central + 4),
+                    u16(directory, central + 6),
+                    u16(directory, central + 8),
+                    u16(directory, central + 10),
+                    s32(directory, central + 12),
+                    s32(directory, central + 16),
+                    u32(directory, central + 20),
+                    u32(directory, central + 24),
+                    archive.read(localExtra, localExtraLength),
+                    Arrays.copyOfRange(directory, extra, extra + extraLength),
+                    Arrays.copyOfRange(directory, comment, comment + commentLength),
+                    u16(directory, central + 36),
+                    s32(directory, central + 38),
+                    localExtra + localExtraLength
+                )
+            );
+
+            central = comment + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Returns the archive comment, which follows the end of central directory record.
+     */
+    static byte[] comment(final byte[] archive) {
+        try {
+            return comment(source(archive));
+        } catch (final IOException cause) {
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    static byte[] comment(final FileChannel archive) throws IOException {
+        return comment(source(archive));
+    }
+
+    private static byte[] comment(final Source archive) throws IOException {
+        final byte[] end = endOfCentralDirectory(archive);
+        return Arrays.copyOfRange(
+            end,
+            END_OF_CENTRAL_DIRECTORY_LENGTH,
+            end.length
+        );
+    }
+
+    /**
+     * Scans backwards for the end of central directory record, returning the record and the archive comment.
+     */
+    private static byte[] endOfCentralDirectory(final Source archive) throws IOException {
+        final long size = archive.size();
+        final int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_LENGTH + 0xffff);
+        final byte[] tail = archive.read(size - tailLength, tailLength);
+
+        for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--) {
+            if (END_OF_CENTRAL_DIRECTORY == s32(tail, i) && i + END_OF_CENTRAL_DIRECTORY_LENGTH + u16(tail, i + 20) == tailLength) {
+                return Arrays.copyOfRange(tail, i, tailLength);
+            }
+        }
+
+        throw new IllegalArgumentException("Not a zip archive, end of central directory missing");
+    }
+
+    /**
+     * The bytes of an archive, either in memory or within a file.
+     */
+    private interface Source {
+
+        long size() throws IOException;
+
+        byte[] read(final long offset,
+                    final int length) throws IOException;
+    }
+
+    private static Source source(final byte[] archive) {
+        return new Source() {
+            @Override
+            public long size() {
+                return archive.length;
+            }
+
+            @Override
+            public byte[] read(final long offset,
+                               final int length) {
+                if (offset < 0 || offset + length > archive.length) {
+                    throw new IllegalArgumentException("Invalid offset " + offset + " beyond end of archive");
+                }
+                return Arrays.copyOfRange(archive, (int) offset, (int) offset + length);
+            }
+        };
+    }
+
+    private static Source source(final FileChannel archive) {
+        return new Source() {
+            @Override
+            public long size() throws IOException {
+                return archive.size();
+            }
+
+            @Override
+            public byte[] read(final long offset,
+                               final int length) throws IOException {
+                return ArchiveEntry.read(archive, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Reads exactly length bytes starting at offset.
+     */
+    static byte[] read(final FileChannel archive,
+                       final long offset,
+                       final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (-1 == archive.read(buffer, offset + buffer.position())) {
+                throw new IllegalArgumentException("Invalid offset " + offset + " beyond end of archive");
+            }
+        }
+        return buffer.array();
+    }
+
+    static int u16(final byte[] bytes,
+                   final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    static int s32(final byte[] bytes,
+                   final int offset) {
+        return u16(bytes, offset) | u16(bytes, offset + 2) << 16;
+    }
+
+    static long u32(final byte[] bytes,
+                    final int offset) {
+        return s32(bytes, offset) & 0xffffffffL;
+    }
+
+    private ArchiveEntry(final String name,
+                         final int versionMadeBy,
+                         final int versionNeeded,
+                         final int flags,
+                         final int method,
+                         final int modified,
+                         final int crc,
+                         final long compressedSize,
+                         final long size,
+                         final byte[] localExtra,
+                         final byte[] extra,
+                         final byte[] comment,
+                         final int internalAttributes,
+                         final int externalAttributes,
+                         final long dataOffset) {
+        super();
+        this.name = name;
+        this.versionMadeBy = versionMadeBy;
+        this.versionNeeded = versionNeeded;
+        this.flags = flags;
+        this.method = method;
+        this.modified = modified;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.localExtra = localExtra;
+        this.extra = extra;
+        this.comment = comment;
+        this.internalAttributes = internalAttributes;
+        this.externalAttributes = externalAttributes;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Returns an entry with a different name, non ascii names are flagged as UTF-8.
+     */
+    ArchiveEntry setName(final String name) {
+        return this.name.equals(name) ?
+            this :
+            new ArchiveEntry(
+                name,
+                this.versionMadeBy,
+                this.versionNeeded,
+                name.chars().allMatch(c -> c < 0x80) ?
+                    this.flags :
+                    this.flags | FLAG_UTF8,
+                this.method,
+                this.modified,
+                this.crc,
+                this.compressedSize,
+                this.size,
+                this.localExtra,
+                this.extra,
+                this.comment,
+                this.internalAttributes,
+                this.externalAttributes,
+                this.dataOffset
+            );
+    }
+
+    /**
+     * Returns an entry for new compressed data, the data offset no longer refers to the source archive. A stored entry
+     * that is now deflated needs at least version 2.0 to be extracted.
+     */
+    ArchiveEntry setData(final int method,
+                         final int crc,
+                         final long compressedSize,
+                         final long size) {
+        return new ArchiveEntry(
+            this.name,
+            this.versionMadeBy,
+            DEFLATED == method ?
+                Math.max(this.versionNeeded, VERSION_NEEDED_DEFLATED) :
+                this.versionNeeded,
+            this.flags,
+            method,
+            this.modified,
+            crc,
+            compressedSize,
+            size,
+            this.localExtra,
+            this.extra,
+            this.comment,
+            this.internalAttributes,
+            this.externalAttributes,
+            -1
+        );
+    }
+
+    /**
+     * Returns true if the content of this entry can be read, ie it is neither encrypted nor uses an unsupported
+     * compression method.
+     */
+    boolean isReadable() {
+        return 0 == (this.flags & FLAG_ENCRYPTED) &&
+            (STORED == this.method || DEFLATED == this.method);
+    }
+
+    boolean isDirectory() {
+        return this.name.endsWith("/");
+    }
+
+    /**
+     * Decompresses the content of this entry from an archive in memory.
+     */
+    byte[] content(final byte[] archive) {
+        return this.content(archive, (int) this.dataOffset);
+    }
+
+    /**
+     * Reads and decompresses the content of this entry from an archive file. Deflated entries are inflated a buffer at
+     * a time, so only the decompressed content is held in memory.
+     */
+    byte[] content(final FileChannel archive) throws IOException {
+        if (this.compressedSize > Integer.MAX_VALUE || this.size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Entry " + this.name + " too large");
+        }
+
+        final byte[] content;
+
+        if (STORED == this.method) {
+            content = read(archive, this.dataOffset, (int) this.compressedSize);
+        } else {
+            content = new byte[(int) this.size];
+
+            final Inflater inflater = new Inflater(true);
+            try {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER, Math.max(1, this.compressedSize)));
+                long offset = this.dataOffset;
+                long remaining = this.compressedSize;
+
+                int inflated = 0;
+                while (inflated < content.length) {
+                    if (inflater.needsInput()) {
+                        if (0 == remaining) {
+                            break;
+                        }
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                        while (buffer.hasRemaining()) {
+                            if (-1 == archive.read(buffer, offset + buffer.position())) {
+                                throw new IllegalArgumentException("Invalid offset " + offset + " beyond end of archive");
+                            }
+                        }
+                        inflater.setInput(buffer.array(), 0, buffer.position());
+                        offset += buffer.position();
+                        remaining -= buffer.position();
+                    }
+
+                    final int count = inflater.inflate(content, inflated, content.length - inflated);
+                    if (0 == count && (inflater.finished() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != content.length) {
+                    throw new IllegalArgumentException("Invalid compressed data for " + this.name);
+                }
+            } catch (final DataFormatException cause) {
+                throw new IllegalArgumentException("Invalid compressed data for " + this.name, cause);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * The size of the buffer used to read compressed bytes from an archive file.
+     */
+    private final static int BUFFER = 64 * 1024;
+
+    private byte[] content(final byte[] compressed,
+                           final int offset) {
+        final int compressedSize = (int) this.compressedSize;
+        final byte[] content;
+
+        if (STORED == this.method) {
+            content = Arrays.copyOfRange(compressed, offset, offset + compressedSize);
+        } else {
+            content = new byte[(int) this.size];
+
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed, offset, compressedSize);
+
+                int inflated = 0;
+                while (inflated < content.length) {
+                    final int count = inflater.inflate(content, inflated, content.length - inflated);
+                    if (0 == count && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != content.length) {
+                    throw new IllegalArgumentException("Invalid compressed data for " + this.name);
+                }
+            } catch (final DataFormatException cause) {
+                throw new IllegalArgumentException("Invalid compressed data for " + this.name, cause);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        return content;
+    }
+
+    final String name;
+    final int versionMadeBy;
+    final int versionNeeded;
+    final int flags;
+    final int method;
+
+    /**
+     * The MS-DOS time in the low and date in the high 16 bits.
+     */
+    final int modified;
+    final int crc;
+    final long compressedSize;
+    final long size;
+    final byte[] localExtra;
+    final byte[] extra;
+    final byte[] comment;
+    final int internalAttributes;
+    final int externalAttributes;
+
+    /**
+     * The offset of the compressed data within the source archive.
+     */
+    final long dataOffset;
+
+    @Override
+    public String toString() {
+        return this.name + " " + this.method + " " + this.compressedSize + "/" + this.size;
+    }
+}
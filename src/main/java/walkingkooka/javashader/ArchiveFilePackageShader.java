@@ -0,0 +1,445 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.ArchivePackageShader.Compressed;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Shades an archive file into another file holding at most a fixed number of bytes of entries in memory. Entries are
+ * only admitted for shading while the budget allows, unchanged entries are copied from file to file without passing
+ * through the heap, and entries too large for the budget are shaded alone, inflated from the archive and deflated into
+ * a temporary file next to the output a buffer at a time. An entry whose content and shaded result alone exceed the
+ * budget fails, as class and java files must be parsed whole.
+ */
+public final class ArchiveFilePackageShader {
+
+    /**
+     * Creates a {@link ArchiveFilePackageShader} that shades entries on the {@link Executor} holding at most budget
+     * bytes of entries in memory.
+     */
+    public static ArchiveFilePackageShader with(final Charset charset,
+                                                final ArchiveCompression compression,
+                                                final Executor executor,
+                                                final long budget) {
+        return with(
+            charset,
+            compression,
+            executor,
+            budget,
+            ClassLoadOrder.EMPTY
+        );
+    }
+
+    /**
+     * Creates a {@link ArchiveFilePackageShader} that writes the classes of the {@link ClassLoadOrder} first.
+     */
+    public static ArchiveFilePackageShader with(final Charset charset,
+                                                final ArchiveCompression compression,
+                                                final Executor executor,
+                                                final long budget,
+                                                final ClassLoadOrder order) {
+        Objects.requireNonNull(executor, "executor");
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Invalid budget " + budget + " must be greater than 0");
+        }
+
+        return new ArchiveFilePackageShader(
+            ArchivePackageShader.with(
+                charset,
+                compression,
+                executor,
+                PackageReferenceIndex.EMPTY,
+                Sets.empty(),
+                order
+            ),
+            executor,
+            budget
+        );
+    }
+
+    private ArchiveFilePackageShader(final ArchivePackageShader shader,
+                                     final Executor executor,
+                                     final long budget) {
+        super();
+        this.shader = shader;
+        this.executor = executor;
+        this.budget = budget;
+    }
+
+    /**
+     * Shades the archive writing the result to the output file.
+     */
+    public void shade(final Path archive,
+                      final Map<PackageName, PackageName> mappings,
+                      final Path output) throws IOException {
+        this.shade(
+            archive,
+            mappings,
+            output,
+            PackageShaderJob.NONE
+        );
+    }
+
+    /**
+     * Shades the archive reporting progress to the {@link PackageShaderJob}, a cancelled job throws a
+     * {@link java.util.concurrent.CancellationException} and leaves any previous output file untouched.
+     */
+    public void shade(final Path archive,
+                      final Map<PackageName, PackageName> mappings,
+                      final Path output,
+                      final PackageShaderJob job) throws IOException {
+        this.shade(
+            archive,
+            mappings,
+            output,
+            ArchiveBudget.with(this.budget),
+            job
+        );
+    }
+
+    // @VisibleForTesting
+    void shade(final Path archive,
+               final Map<PackageName, PackageName> mappings,
+               final Path output,
+               final ArchiveBudget budget) throws IOException {
+        this.shade(
+            archive,
+            mappings,
+            output,
+            budget,
+            PackageShaderJob.NONE
+        );
+    }
+
+    private void shade(final Path archive,
+                       final Map<PackageName, PackageName> mappings,
+                       final Path output,
+                       final ArchiveBudget budget,
+                       final PackageShaderJob job) throws IOException {
+        Objects.requireNonNull(archive, "archive");
+        Objects.requireNonNull(mappings, "mappings");
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(job, "job");
+
+        final Path directory = output.toAbsolutePath()
+            .getParent();
+        final Deque<CompletableFuture<Entry>> pending = new ArrayDeque<>();
+
+        try (final FileChannel input = FileChannel.open(archive, StandardOpenOption.READ)) {
+            final List<ArchiveEntry> entries = this.shader.order(
+                ArchiveEntry.read(input),
+                mappings
+            );
+            final PackageShaderJob.Tracker tracker = job.start(
+                entries.size(),
+                ArchivePackageShader.size(entries)
+            );
+
+            ArchiveWriter.replace(
+                output,
+                (file) -> this.write(
+                    entries,
+                    input,
+                    mappings,
+                    directory,
+                    budget,
+                    pending,
+                    tracker,
+                    ArchiveWriter.with(file)
+                )
+            );
+        } catch (final ClosedByInterruptException cause) {
+            throw PackageShaderJob.interrupted(cause);
+        } finally {
+            // entries still waiting for a worker are never shaded, and any spilled by a running worker are deleted
+            for (final CompletableFuture<Entry> future : pending) {
+                if (false == future.cancel(false)) {
+                    future.thenAccept(Entry::delete);
+                }
+            }
+        }
+    }
+
+    /**
+     * Admits entries for shading within the budget, writing each in order once it is shaded.
+     */
+    private void write(final List<ArchiveEntry> entries,
+                       final FileChannel input,
+                       final Map<PackageName, PackageName> mappings,
+                       final Path directory,
+                       final ArchiveBudget budget,
+                       final Deque<CompletableFuture<Entry>> pending,
+                       final PackageShaderJob.Tracker tracker,
+                       final ArchiveWriter writer) throws IOException {
+        final Set<String> paths = Sets.hash();
+
+        for (final ArchiveEntry entry : entries) {
+            tracker.check();
+
+            final String path = entry.name;
+            final String shadedPath = BatchPackageShader.path(path, mappings);
+            if (false == paths.add(shadedPath)) {
+                throw new IllegalArgumentException("Duplicate path " + shadedPath + " for " + path);
+            }
+            final ArchiveEntry shadedEntry = entry.setName(shadedPath);
+
+            if (this.shader.isShaded(entry, mappings)) {
+                final long required = required(entry);
+                final boolean spill = required > budget.limit();
+                final long reserved = spill ?
+                    spilled(entry) :
+                    required;
+                if (reserved > budget.limit()) {
+                    throw new IllegalArgumentException("Entry " + path + " needs " + reserved + " bytes to shade, more than the budget " + budget.limit());
+                }
+
+                while (false == budget.tryAcquire(reserved)) {
+                    write(pending.removeFirst(), input, writer, budget, tracker);
+                }
+
+                pending.addLast(
+                    ArchivePackageShader.submit(
+                        () -> this.shade(
+                            shadedEntry,
+                            input,
+                            mappings,
+                            reserved,
+                            spill,
+                            directory,
+                            budget,
+                            tracker
+                        ),
+                        Entry::delete,
+                        this.executor
+                    )
+                );
+            } else {
+                pending.addLast(
+                    CompletableFuture.completedFuture(
+                        new Entry(shadedEntry, shadedEntry.size, null, null)
+                    )
+                );
+            }
+
+            while (false == pending.isEmpty() && pending.peekFirst().isDone()) {
+                write(pending.removeFirst(), input, writer, budget, tracker);
+            }
+        }
+
+        while (false == pending.isEmpty()) {
+            write(pending.removeFirst(), input, writer, budget, tracker);
+        }
+
+        writer.finish(ArchiveEntry.comment(input));
+    }
+
+    /**
+     * The bytes held while shading an entry, its compressed and decompressed content and the shaded result.
+     */
+    private static long required(final ArchiveEntry entry) {
+        return entry.compressedSize + 2 * entry.size;
+    }
+
+    /**
+     * The bytes held while shading an entry that is spilled, its decompressed content and the shaded result, as its
+     * compressed bytes are streamed from the archive and into a temporary file.
+     */
+    private static long spilled(final ArchiveEntry entry) {
+        return 2 * entry.size;
+    }
+
+    /**
+     * Reads, shades and compresses a single entry, releasing all the reserved bytes except those of the compressed
+     * result that is waiting to be written. Spilled entries are compressed directly into a temporary file.
+     */
+    private Entry shade(final ArchiveEntry entry,
+                        final FileChannel input,
+                        final Map<PackageName, PackageName> mappings,
+                        final long reserved,
+                        final boolean spill,
+                        final Path directory,
+                        final ArchiveBudget budget,
+                        final PackageShaderJob.Tracker tracker) {
+        long released = reserved;
+        try {
+            tracker.check();
+
+            final byte[] content = entry.content(input);
+            final long size = entry.size;
+            final Entry shaded;
+
+            if (spill) {
+                final byte[] shadedContent = this.shader.shadeContent(
+                    entry,
+                    content,
+                    mappings,
+                    tracker
+                );
+                shaded = null == shadedContent ?
+                    new Entry(entry, size, null, null) :
+                    this.spill(entry, shadedContent, directory);
+            } else {
+                final Compressed compressed = this.shader.shade(
+                    entry,
+                    content,
+                    mappings,
+                    tracker
+                );
+
+                if (null == compressed) {
+                    shaded = new Entry(entry, size, null, null);
+                } else if (compressed.length > reserved) {
+                    final Path file = Files.createTempFile(directory, "shade", ".tmp");
+                    Files.write(file, compressed.bytes);
+                    shaded = new Entry(compressed.entry, size, null, file);
+                } else {
+                    shaded = new Entry(compressed.entry, size, compressed, null);
+                    released = reserved - compressed.length;
+                }
+            }
+            return shaded;
+        } catch (final IOException cause) {
+            throw new IllegalStateException("Unable to shade " + entry.name, cause);
+        } finally {
+            budget.release(released);
+        }
+    }
+
+    /**
+     * Compresses the shaded content into a new temporary file, which is deleted if compressing fails.
+     */
+    private Entry spill(final ArchiveEntry entry,
+                        final byte[] shaded,
+                        final Path directory) throws IOException {
+        final Path file = Files.createTempFile(directory, "shade", ".tmp");
+        try {
+            try (final FileChannel output = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                return new Entry(
+                    this.shader.compress(entry, shaded, output),
+                    entry.size,
+                    null,
+                    file
+                );
+            }
+        } catch (final IOException | RuntimeException cause) {
+            Files.deleteIfExists(file);
+            throw cause;
+        }
+    }
+
+    /**
+     * Writes the next entry in order, waiting for it to be shaded.
+     */
+    private static void write(final CompletableFuture<Entry> future,
+                              final FileChannel input,
+                              final ArchiveWriter writer,
+                              final ArchiveBudget budget,
+                              final PackageShaderJob.Tracker tracker) throws IOException {
+        final Entry entry = tracker.join(future);
+
+        try {
+            final Compressed compressed = entry.compressed;
+            if (null != compressed) {
+                writer.write(
+                    entry.entry,
+                    compressed.bytes,
+                    compressed.offset,
+                    compressed.length
+                );
+                budget.release(compressed.length);
+            } else {
+                final Path spilled = entry.spilled;
+                if (null != spilled) {
+                    try (final FileChannel spill = FileChannel.open(spilled, StandardOpenOption.READ)) {
+                        writer.write(entry.entry, spill, 0);
+                    }
+                } else {
+                    writer.write(entry.entry, input, entry.entry.dataOffset);
+                }
+            }
+        } finally {
+            entry.delete();
+        }
+        tracker.done(entry.size);
+    }
+
+    /**
+     * A shaded entry waiting to be written, either unchanged, compressed in memory or spilled to a file.
+     */
+    private static final class Entry {
+
+        Entry(final ArchiveEntry entry,
+              final long size,
+              final Compressed compressed,
+              final Path spilled) {
+            this.entry = entry;
+            this.size = size;
+            this.compressed = compressed;
+            this.spilled = spilled;
+        }
+
+        void delete() {
+            final Path spilled = this.spilled;
+            if (null != spilled) {
+                try {
+                    Files.deleteIfExists(spilled);
+                } catch (final IOException ignore) {
+                    // a left over temporary file is harmless
+                }
+            }
+        }
+
+        final ArchiveEntry entry;
+
+        /**
+         * The uncompressed size of the original entry, used to report progress.
+         */
+        final long size;
+        final Compressed compressed;
+        final Path spilled;
+    }
+
+    private final ArchivePackageShader shader;
+
+    private final Executor executor;
+
+    private final long budget;
+
+    @Override
+    public String toString() {
+        return this.shader + " " + this.budget;
+    }
+}
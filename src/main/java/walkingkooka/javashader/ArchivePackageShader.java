@@ -0,0 +1,730 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.BatchPackageShader.Kind;
+import walkingkooka.reflect.PackageName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Shades the class and java files of a zip archive such as a jar, relocating entries within shaded packages. Entries
+ * that are unchanged have their compressed bytes and crc copied verbatim, only class and java files that contain the
+ * text of a from package are decompressed and shaded, and only entries that were rewritten are compressed again.
+ * <br>
+ * Entries are shaded and compressed as independent tasks on the given {@link Executor} and written in their original
+ * order, so the archive is the same no matter how many threads are used.
+ */
+final class ArchivePackageShader implements BiFunction<byte[], Map<PackageName, PackageName>, byte[]> {
+
+    static ArchivePackageShader with(final Charset charset) {
+        return with(
+            charset,
+            ArchiveCompression.original(),
+            Runnable::run
+        );
+    }
+
+    static ArchivePackageShader with(final Charset charset,
+                                     final ArchiveCompression compression,
+                                     final Executor executor) {
+        return with(
+            charset,
+            compression,
+            executor,
+            PackageReferenceIndex.EMPTY
+        );
+    }
+
+    /**
+     * Creates a {@link ArchivePackageShader} that skips reading entries the {@link PackageReferenceIndex} knows
+     * reference no from package.
+     */
+    static ArchivePackageShader with(final Charset charset,
+                                     final ArchiveCompression compression,
+                                     final Executor executor,
+                                     final PackageReferenceIndex index) {
+        return with(
+            charset,
+            compression,
+            executor,
+            index,
+            Sets.empty()
+        );
+    }
+
+    /**
+     * Creates a {@link ArchivePackageShader} that drops class files unreachable from the root classes, unless the
+     * roots are empty. Roots are binary class names before shading.
+     */
+    static ArchivePackageShader with(final Charset charset,
+                                     final ArchiveCompression compression,
+                                     final Executor executor,
+                                     final PackageReferenceIndex index,
+                                     final Set<String> roots) {
+        return with(
+            charset,
+            compression,
+            executor,
+            index,
+            roots,
+            ClassLoadOrder.EMPTY
+        );
+    }
+
+    /**
+     * Creates a {@link ArchivePackageShader} that writes entries in the {@link ClassLoadOrder}.
+     */
+    static ArchivePackageShader with(final Charset charset,
+                                     final ArchiveCompression compression,
+                                     final Executor executor,
+                                     final PackageReferenceIndex index,
+                                     final Set<String> roots,
+                                     final ClassLoadOrder order) {
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(compression, "compression");
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(index, "index");
+        Objects.requireNonNull(roots, "roots");
+        Objects.requireNonNull(order, "order");
+
+        final Set<String> copy = Sets.ordered();
+        copy.addAll(roots);
+
+        return new ArchivePackageShader(
+            charset,
+            compression,
+            executor,
+            index,
+            copy,
+            order
+        );
+    }
+
+    private ArchivePackageShader(final Charset charset,
+                                 final ArchiveCompression compression,
+                                 final Executor executor,
+                                 final PackageReferenceIndex index,
+                                 final Set<String> roots,
+                                 final ClassLoadOrder order) {
+        super();
+        this.charset = charset;
+        this.compression = compression;
+        this.executor = executor;
+        this.index = index;
+        this.roots = roots;
+        this.order = order;
+    }
+
+    @Override
+    public byte[] apply(final byte[] archive,
+                        final Map<PackageName, PackageName> mappings) {
+        return this.apply(
+            archive,
+            mappings,
+            PackageShaderJob.NONE
+        );
+    }
+
+    /**
+     * Shades the archive reporting progress as entries complete, stopping with a
+     * {@link java.util.concurrent.CancellationException} if the job is interrupted or its deadline passes.
+     */
+    byte[] apply(final byte[] archive,
+                 final Map<PackageName, PackageName> mappings,
+                 final PackageShaderJob job) {
+        Objects.requireNonNull(archive, "archive");
+        Objects.requireNonNull(mappings, "mappings");
+        Objects.requireNonNull(job, "job");
+
+        final List<ArchiveEntry> ordered = this.order(ArchiveEntry.read(archive), mappings);
+        final PackageShaderJob.Tracker tracker = job.start(
+            ordered.size(),
+            size(ordered)
+        );
+
+        final List<CompletableFuture<Compressed>> compressed = Lists.array();
+        try {
+            return this.apply(
+                archive,
+                ordered,
+                mappings,
+                compressed,
+                tracker
+            );
+        } catch (final RuntimeException | Error cause) {
+            // entries still waiting for a worker are never shaded once the run has failed or been cancelled
+            cancel(compressed);
+            throw cause;
+        }
+    }
+
+    private byte[] apply(final byte[] archive,
+                         final List<ArchiveEntry> ordered,
+                         final Map<PackageName, PackageName> mappings,
+                         final List<CompletableFuture<Compressed>> compressed,
+                         final PackageShaderJob.Tracker tracker) {
+        final Set<String> paths = Sets.hash();
+        final ArchiveClassGraph graph = this.roots.isEmpty() ?
+            null :
+            ArchiveClassGraph.with(
+                this.roots.stream()
+                    .map(r -> internalName(r, mappings))
+                    .collect(Collectors.toList())
+            );
+
+        for (final ArchiveEntry entry : ordered) {
+            tracker.check();
+
+            final String path = entry.name;
+            final String shadedPath = BatchPackageShader.path(path, mappings);
+            if (false == paths.add(shadedPath)) {
+                throw new IllegalArgumentException("Duplicate path " + shadedPath + " for " + path);
+            }
+
+            final ArchiveEntry shadedEntry = entry.setName(shadedPath);
+            final boolean minimize = null != graph && entry.isReadable();
+            if (minimize && path.startsWith(SERVICES)) {
+                services(entry.content(archive), mappings, graph);
+            }
+            final ArchiveClassGraph classGraph = minimize && null != ArchiveClassGraph.className(shadedPath) ?
+                graph :
+                null;
+
+            compressed.add(
+                null != classGraph || this.isShaded(entry, mappings) ?
+                    submit(
+                        () -> this.compressed(
+                            shadedEntry,
+                            archive,
+                            mappings,
+                            classGraph,
+                            tracker
+                        ),
+                        (c) -> {
+                        },
+                        this.executor
+                    ) :
+                    CompletableFuture.completedFuture(
+                        unchanged(shadedEntry, archive)
+                    )
+            );
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(archive.length);
+        final ArchiveWriter writer = ArchiveWriter.with(output);
+
+        try {
+            // all class files must be shaded before the walk, which decides the entries that are written
+            final List<Compressed> entries = Lists.array();
+            for (int i = 0; i < compressed.size(); i++) {
+                entries.add(tracker.join(compressed.get(i)));
+                tracker.done(ordered.get(i).size);
+            }
+            final Set<String> unreachable = null != graph ?
+                graph.unreachable() :
+                Sets.empty();
+
+            for (final Compressed entry : entries) {
+                final String className = ArchiveClassGraph.className(entry.entry.name);
+                if (null != className && unreachable.contains(className)) {
+                    continue;
+                }
+                writer.write(
+                    entry.entry,
+                    entry.bytes,
+                    entry.offset,
+                    entry.length
+                );
+            }
+
+            writer.finish(ArchiveEntry.comment(archive));
+        } catch (final IOException cause) {
+            throw new IllegalStateException("Unable to write archive", cause);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * The total uncompressed size of the entries, used to report progress.
+     */
+    static long size(final List<ArchiveEntry> entries) {
+        return entries.stream()
+            .mapToLong(e -> e.size)
+            .sum();
+    }
+
+    /**
+     * Sorts the original entries into the {@link ClassLoadOrder} of their shaded paths.
+     */
+    List<ArchiveEntry> order(final List<ArchiveEntry> entries,
+                             final Map<PackageName, PackageName> mappings) {
+        return this.order.sort(
+            entries,
+            e -> BatchPackageShader.path(e.name, mappings),
+            mappings
+        );
+    }
+
+    /**
+     * Sorts entries that were already relocated into the {@link ClassLoadOrder}.
+     */
+    List<ArchiveEntry> orderRelocated(final List<ArchiveEntry> entries,
+                                      final Map<PackageName, PackageName> mappings) {
+        return this.order.sort(
+            entries,
+            e -> e.name,
+            mappings
+        );
+    }
+
+    /**
+     * Runs the task on the executor unless the returned future was cancelled before the task started. A result that
+     * completes after the future was cancelled is given to discard, so any resources it holds may be freed.
+     */
+    static <T> CompletableFuture<T> submit(final Supplier<T> task,
+                                           final Consumer<T> discard,
+                                           final Executor executor) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(
+            () -> {
+                if (false == future.isDone()) {
+                    try {
+                        final T result = task.get();
+                        if (false == future.complete(result)) {
+                            discard.accept(result);
+                        }
+                    } catch (final RuntimeException | Error cause) {
+                        future.completeExceptionally(cause);
+                    }
+                }
+            }
+        );
+        return future;
+    }
+
+    /**
+     * Cancels every future, tasks that have not started are skipped and running tasks are left to finish.
+     */
+    static void cancel(final Collection<? extends CompletableFuture<?>> futures) {
+        for (final CompletableFuture<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Waits for the entry, rethrowing any failure as it was thrown by the task.
+     */
+    static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException cause) {
+            final Throwable wrapped = cause.getCause();
+            if (wrapped instanceof RuntimeException) {
+                throw (RuntimeException) wrapped;
+            }
+            if (wrapped instanceof Error) {
+                throw (Error) wrapped;
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Shades and compresses an entry, unchanged entries refer to their compressed bytes within the original archive.
+     * When minimizing, the constant pool scan of each class file replaces the cheap text scan, its types decide if the
+     * class file needs shading and are added to the graph when it does not, so every class file is parsed only once.
+     * Class files that are shaded add the names visited while shading.
+     */
+    private Compressed compressed(final ArchiveEntry entry,
+                                  final byte[] archive,
+                                  final Map<PackageName, PackageName> mappings,
+                                  final ArchiveClassGraph graph,
+                                  final PackageShaderJob.Tracker tracker) {
+        tracker.check();
+
+        final byte[] content = entry.content(archive);
+        final Compressed compressed;
+
+        if (null != graph) {
+            final Set<String> referenced = PackageReferenceIndex.classFileTypes(content);
+            final Set<String> types = Sets.hash();
+            final byte[] shaded = references(referenced, mappings) ?
+                this.shadeContent(Kind.CLASS_FILE, content, mappings, types::add, tracker) :
+                null;
+            graph.add(
+                ArchiveClassGraph.className(entry.name),
+                types.isEmpty() ?
+                    referenced :
+                    types
+            );
+            compressed = null != shaded ?
+                this.compress(entry, shaded) :
+                null;
+        } else {
+            compressed = this.shade(
+                entry,
+                content,
+                mappings,
+                tracker
+            );
+        }
+
+        return null != compressed ?
+            compressed :
+            unchanged(entry, archive);
+    }
+
+    /**
+     * Service providers are only named in text, so every provider listed in a service file is a root.
+     */
+    private void services(final byte[] content,
+                          final Map<PackageName, PackageName> mappings,
+                          final ArchiveClassGraph graph) {
+        for (final String line : new String(content, StandardCharsets.UTF_8).split("\\n")) {
+            final int comment = line.indexOf('#');
+            final String provider = (-1 != comment ? line.substring(0, comment) : line).trim();
+            if (false == provider.isEmpty()) {
+                graph.root(internalName(provider, mappings));
+            }
+        }
+    }
+
+    /**
+     * Converts a binary class name before shading into its shaded internal name.
+     */
+    private static String internalName(final String binaryName,
+                                       final Map<PackageName, PackageName> mappings) {
+        return BatchPackageShader.path(
+            binaryName.replace('.', '/'),
+            mappings
+        );
+    }
+
+    private final static String SERVICES = "META-INF/services/";
+
+    private static Compressed unchanged(final ArchiveEntry entry,
+                                        final byte[] archive) {
+        return new Compressed(
+            entry,
+            archive,
+            (int) entry.dataOffset,
+            (int) entry.compressedSize
+        );
+    }
+
+    /**
+     * Returns true if the entry is a class or java file whose content must be read to decide if it needs shading.
+     * All other entries are always copied verbatim.
+     */
+    static boolean needsContent(final ArchiveEntry entry,
+                                final Map<PackageName, PackageName> mappings) {
+        return Kind.OTHER != Kind.of(entry.name) &&
+            entry.isReadable() &&
+            false == mappings.isEmpty();
+    }
+
+    /**
+     * Returns true if the original entry needs its content read and the index does not rule out any reference to a
+     * from package.
+     */
+    boolean isShaded(final ArchiveEntry entry,
+                     final Map<PackageName, PackageName> mappings) {
+        return needsContent(entry, mappings) &&
+            this.index.mayReference(entry.name, mappings);
+    }
+
+    /**
+     * Shades and compresses the content of an entry, returning null when the content is unchanged.
+     */
+    Compressed shade(final ArchiveEntry entry,
+                     final byte[] content,
+                     final Map<PackageName, PackageName> mappings,
+                     final PackageShaderJob.Tracker tracker) {
+        final byte[] shaded = this.shadeContent(entry, content, mappings, tracker);
+        return null != shaded ?
+            this.compress(entry, shaded) :
+            null;
+    }
+
+    /**
+     * Shades the content of an entry, returning null when the content is unchanged.
+     */
+    byte[] shadeContent(final ArchiveEntry entry,
+                        final byte[] content,
+                        final Map<PackageName, PackageName> mappings,
+                        final PackageShaderJob.Tracker tracker) {
+        return this.shadeContent(
+            entry,
+            content,
+            mappings,
+            (t) -> {
+            },
+            tracker
+        );
+    }
+
+    /**
+     * Shades the content of an entry, class files that are parsed report every type they reference to types.
+     */
+    private byte[] shadeContent(final ArchiveEntry entry,
+                                final byte[] content,
+                                final Map<PackageName, PackageName> mappings,
+                                final Consumer<String> types,
+                                final PackageShaderJob.Tracker tracker) {
+        final Kind kind = Kind.of(entry.name);
+        return this.mayReference(kind, content, mappings) ?
+            this.shadeContent(kind, content, mappings, types, tracker) :
+            null;
+    }
+
+    /**
+     * Shades content that may reference a from package, returning null when the content is unchanged.
+     */
+    private byte[] shadeContent(final Kind kind,
+                                final byte[] content,
+                                final Map<PackageName, PackageName> mappings,
+                                final Consumer<String> types,
+                                final PackageShaderJob.Tracker tracker) {
+        final byte[] shaded = BatchPackageShader.shade(
+            kind,
+            content,
+            this.charset,
+            mappings,
+            types,
+            tracker
+        );
+        return content != shaded ?
+            shaded :
+            null;
+    }
+
+    /**
+     * Compresses the shaded content of an entry, updating its crc and sizes.
+     */
+    Compressed compress(final ArchiveEntry entry,
+                        final byte[] shaded) {
+        final CRC32 crc = new CRC32();
+        crc.update(shaded);
+
+        final ArchiveCompression compression = this.compression;
+        final int method = compression.method(entry);
+        final byte[] bytes = compression.compress(method, shaded);
+
+        return new Compressed(
+            entry.setData(
+                method,
+                (int) crc.getValue(),
+                bytes.length,
+                shaded.length
+            ),
+            bytes,
+            0,
+            bytes.length
+        );
+    }
+
+    /**
+     * Compresses the shaded content of an entry into the file, updating its crc and sizes.
+     */
+    ArchiveEntry compress(final ArchiveEntry entry,
+                          final byte[] shaded,
+                          final FileChannel output) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(shaded);
+
+        final ArchiveCompression compression = this.compression;
+        final int method = compression.method(entry);
+        final long length = compression.compress(method, shaded, output);
+
+        return entry.setData(
+            method,
+            (int) crc.getValue(),
+            length,
+            shaded.length
+        );
+    }
+
+    /**
+     * An entry and its compressed bytes ready to be written.
+     */
+    static final class Compressed {
+
+        Compressed(final ArchiveEntry entry,
+                   final byte[] bytes,
+                   final int offset,
+                   final int length) {
+            this.entry = entry;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        final ArchiveEntry entry;
+        final byte[] bytes;
+        final int offset;
+        final int length;
+    }
+
+    /**
+     * Returns true if any of the internal type names is within a from package, matching the prefix test of the shaders.
+     */
+    // @VisibleForTesting
+    static boolean references(final Set<String> types,
+                              final Map<PackageName, PackageName> mappings) {
+        boolean reference = false;
+
+        for (final PackageName from : mappings.keySet()) {
+            final String prefix = from.value().replace('.', '/');
+            for (final String type : types) {
+                if (type.startsWith(prefix)) {
+                    reference = true;
+                    break;
+                }
+            }
+            if (reference) {
+                break;
+            }
+        }
+
+        return reference;
+    }
+
+    /**
+     * A cheap scan that returns true if the content contains the text of any from package. Class files hold internal
+     * names with slashes, java files dotted names.
+     */
+    private boolean mayReference(final Kind kind,
+                                 final byte[] content,
+                                 final Map<PackageName, PackageName> mappings) {
+        boolean reference = false;
+
+        if (Kind.CLASS_FILE == kind) {
+            for (final PackageName from : mappings.keySet()) {
+                if (contains(content, from.value().replace('.', '/'))) {
+                    reference = true;
+                    break;
+                }
+            }
+        } else {
+            final String text = new String(content, this.charset);
+            for (final PackageName from : mappings.keySet()) {
+                if (text.contains(from.value())) {
+                    reference = true;
+                    break;
+                }
+            }
+        }
+
+        return reference;
+    }
+
+    /**
+     * Package names in class files are modified UTF-8, the text is encoded the same way before searching.
+     */
+    // @VisibleForTesting
+    static boolean contains(final byte[] content,
+                            final String text) {
+        final byte[] bytes = modifiedUtf8(text);
+        final int length = bytes.length;
+        final int last = content.length - length;
+
+        boolean contains = false;
+
+        for (int i = 0; false == contains && i <= last; i++) {
+            contains = true;
+            for (int j = 0; j < length; j++) {
+                if (content[i + j] != bytes[j]) {
+                    contains = false;
+                    break;
+                }
+            }
+        }
+
+        return contains;
+    }
+
+    /**
+     * Encodes the text as modified UTF-8 like {@link java.io.DataOutputStream#writeUTF(String)} without the length.
+     */
+    // @VisibleForTesting
+    static byte[] modifiedUtf8(final String text) {
+        final int length = text.length();
+        final byte[] bytes = new byte[3 * length];
+        int i = 0;
+
+        for (int j = 0; j < length; j++) {
+            final char c = text.charAt(j);
+            if (c >= 0x1 && c < 0x80) {
+                bytes[i++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[i++] = (byte) (0xc0 | (c >> 6));
+                bytes[i++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                bytes[i++] = (byte) (0xe0 | (c >> 12));
+                bytes[i++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[i++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        return Arrays.copyOf(bytes, i);
+    }
+
+    private final Charset charset;
+
+    private final ArchiveCompression compression;
+
+    private final Executor executor;
+
+    private final PackageReferenceIndex index;
+
+    /**
+     * When not empty, class files unreachable from these binary class names are dropped.
+     */
+    private final Set<String> roots;
+
+    private final ClassLoadOrder order;
+
+    @Override
+    public String toString() {
+        return this.charset + " " + this.compression +
+            (this.roots.isEmpty() ? "" : " roots " + this.roots) +
+            (this.order.classNames().isEmpty() ? "" : " order " + this.order);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.set.Sets;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * The immutable options of an {@link ArchivePackageShader}, each setter returns a copy when the value is different.
+ * By default rewritten entries keep their original compression, entries are shaded on the calling thread, every entry
+ * is read, no class files are dropped, entries keep their original order and the job has no deadline or listener.
+ */
+public final class ArchivePackageShaderOptions {
+
+    public static ArchivePackageShaderOptions with(final Charset charset) {
+        Objects.requireNonNull(charset, "charset");
+
+        return new ArchivePackageShaderOptions(
+            charset,
+            ArchiveCompression.original(),
+            Runnable::run,
+            PackageReferenceIndex.EMPTY,
+            Sets.empty(),
+            ClassLoadOrder.EMPTY,
+            PackageShaderJob.NONE
+        );
+    }
+
+    private ArchivePackageShaderOptions(final Charset charset,
+                                        final ArchiveCompression compression,
+                                        final Executor executor,
+                                        final PackageReferenceIndex index,
+                                        final Set<String> roots,
+                                        final ClassLoadOrder order,
+                                        final PackageShaderJob job) {
+        super();
+        this.charset = charset;
+        this.compression = compression;
+        this.executor = executor;
+        this.index = index;
+        this.roots = roots;
+        this.order = order;
+        this.job = job;
+    }
+
+    public Charset charset() {
+        return this.charset;
+    }
+
+    private final Charset charset;
+
+    /**
+     * How rewritten entries are compressed.
+     */
+    public ArchiveCompression compression() {
+        return this.compression;
+    }
+
+    public ArchivePackageShaderOptions setCompression(final ArchiveCompression compression) {
+        Objects.requireNonNull(compression, "compression");
+
+        return this.compression.equals(compression) ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                compression,
+                this.executor,
+                this.index,
+                this.roots,
+                this.order,
+                this.job
+            );
+    }
+
+    private final ArchiveCompression compression;
+
+    /**
+     * Entries are shaded and compressed in parallel using this {@link Executor}.
+     */
+    public Executor executor() {
+        return this.executor;
+    }
+
+    public ArchivePackageShaderOptions setExecutor(final Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+
+        return this.executor == executor ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                this.compression,
+                executor,
+                this.index,
+                this.roots,
+                this.order,
+                this.job
+            );
+    }
+
+    private final Executor executor;
+
+    /**
+     * Entries the index knows to be free of references to a from package are never read, the index should be scanned
+     * from the same archive.
+     */
+    public PackageReferenceIndex index() {
+        return this.index;
+    }
+
+    public ArchivePackageShaderOptions setIndex(final PackageReferenceIndex index) {
+        Objects.requireNonNull(index, "index");
+
+        return this.index == index ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                this.compression,
+                this.executor,
+                index,
+                this.roots,
+                this.order,
+                this.job
+            );
+    }
+
+    private final PackageReferenceIndex index;
+
+    /**
+     * Class files that are not reachable from these roots or any service provider are dropped, unless the roots are
+     * empty. Roots are binary class names before shading, and reflection only references must be added as roots.
+     */
+    public Set<String> roots() {
+        return this.roots;
+    }
+
+    public ArchivePackageShaderOptions setRoots(final Set<String> roots) {
+        Objects.requireNonNull(roots, "roots");
+
+        final Set<String> copy = Sets.ordered();
+        copy.addAll(roots);
+
+        return this.roots.equals(copy) ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                this.compression,
+                this.executor,
+                this.index,
+                Collections.unmodifiableSet(copy),
+                this.order,
+                this.job
+            );
+    }
+
+    private final Set<String> roots;
+
+    /**
+     * The classes of the {@link ClassLoadOrder} are written first, so classes loaded at startup sit together at the
+     * front of the archive.
+     */
+    public ClassLoadOrder order() {
+        return this.order;
+    }
+
+    public ArchivePackageShaderOptions setOrder(final ClassLoadOrder order) {
+        Objects.requireNonNull(order, "order");
+
+        return this.order == order ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                this.compression,
+                this.executor,
+                this.index,
+                this.roots,
+                order,
+                this.job
+            );
+    }
+
+    private final ClassLoadOrder order;
+
+    /**
+     * Progress is reported to the {@link PackageShaderJob}, which stops shading with a
+     * {@link java.util.concurrent.CancellationException} when the calling thread is interrupted or the deadline passes.
+     */
+    public PackageShaderJob job() {
+        return this.job;
+    }
+
+    public ArchivePackageShaderOptions setJob(final PackageShaderJob job) {
+        Objects.requireNonNull(job, "job");
+
+        return this.job == job ?
+            this :
+            new ArchivePackageShaderOptions(
+                this.charset,
+                this.compression,
+                this.executor,
+                this.index,
+                this.roots,
+                this.order,
+                job
+            );
+    }
+
+    private final PackageShaderJob job;
+
+    @Override
+    public String toString() {
+        return this.charset + " " + this.compression +
+            (this.roots.isEmpty() ? "" : " roots " + this.roots) +
+            (this.order.classNames().isEmpty() ? "" : " order " + this.order) +
+            (PackageShaderJob.NONE == this.job ? "" : " " + this.job);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Writes {@link ArchiveEntry entries} and their already compressed bytes to a zip archive. Local headers always hold
+ * the crc and sizes, so data descriptors are never written.
+ */
+final class ArchiveWriter {
+
+    static ArchiveWriter with(final OutputStream output) {
+        Objects.requireNonNull(output, "output");
+
+        return new ArchiveWriter(output);
+    }
+
+    private ArchiveWriter(final OutputStream output) {
+        super();
+        this.output = output;
+    }
+
+    /**
+     * Writes to a temporary file next to the output, which only replaces the output once the contents are complete.
+     * The temporary file is deleted if writing fails or is cancelled, leaving any previous output untouched.
+     */
+    static void replace(final Path output,
+                        final Contents contents) throws IOException {
+        final Path temporary = Files.createTempFile(
+            output.toAbsolutePath()
+                .getParent(),
+            "shade",
+            ".tmp"
+        );
+
+        boolean replaced = false;
+        try {
+            try (final OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                contents.write(file);
+            }
+
+            try {
+                Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException notAtomic) {
+                Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            replaced = true;
+        } finally {
+            if (false == replaced) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of a file given to {@link #replace(Path, Contents)}.
+     */
+    interface Contents {
+        void write(final OutputStream output) throws IOException;
+    }
+
+    /**
+     * Writes the local header followed by the compressed bytes, recording the central directory header.
+     */
+    void write(final ArchiveEntry entry,
+               final byte[] compressed,
+               final int offset,
+               final int length) throws IOException {
+        this.header(entry, length);
+        this.output.write(compressed, offset, length);
+        this.written(length);
+    }
+
+    /**
+     * Writes the local header followed by the compressed bytes copied from a file without passing through the heap.
+     */
+    void write(final ArchiveEntry entry,
+               final FileChannel compressed,
+               final long offset) throws IOException {
+        final long length = entry.compressedSize;
+        this.header(entry, length);
+
+        final WritableByteChannel output = Channels.newChannel(this.output);
+        long copied = 0;
+        while (copied < length) {
+            final long count = compressed.transferTo(offset + copied, length - copied, output);
+            if (count <= 0) {
+                throw new IllegalArgumentException("Compressed data of " + entry.name + " truncated");
+            }
+            copied += count;
+        }
+
+        this.written(length);
+    }
+
+    private void header(final ArchiveEntry entry,
+                        final long length) throws IOException {
+        if (length != entry.compressedSize) {
+            throw new IllegalArgumentException("Compressed size " + entry.compressedSize + " of " + entry.name + " differs from " + length);
+        }
+
+        final byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        final int flags = entry.flags & ~ArchiveEntry.FLAG_DATA_DESCRIPTOR;
+
+        final ByteArrayOutputStream local = this.header;
+        local.reset();
+        s32(local, ArchiveEntry.LOCAL_HEADER);
+        u16(local, entry.versionNeeded);
+        u16(local, flags);
+        u16(local, entry.method);
+        s32(local, entry.modified);
+        s32(local, entry.crc);
+        s32(local, (int) entry.compressedSize);
+        s32(local, (int) entry.size);
+        u16(local, name.length);
+        u16(local, entry.localExtra.length);
+        local.write(name);
+        local.write(entry.localExtra);
+
+        final ByteArrayOutputStream central = this.central;
+        s32(central, ArchiveEntry.CENTRAL_HEADER);
+        u16(central, entry.versionMadeBy);
+        u16(central, entry.versionNeeded);
+        u16(central, flags);
+        u16(central, entry.method);
+        s32(central, entry.modified);
+        s32(central, entry.crc);
+        s32(central, (int) entry.compressedSize);
+        s32(central, (int) entry.size);
+        u16(central, name.length);
+        u16(central, entry.extra.length);
+        u16(central, entry.comment.length);
+        u16(central, 0);
+        u16(central, entry.internalAttributes);
+        s32(central, entry.externalAttributes);
+        s32(central, (int) this.offset);
+        central.write(name);
+        central.write(entry.extra);
+        central.write(entry.comment);
+
+        local.writeTo(this.output);
+        this.offset += local.size();
+    }
+
+    private void written(final long length) {
+        this.offset += length;
+        this.count++;
+
+        if (this.offset > 0xffffffffL || this.count > 0xffff) {
+            throw new IllegalStateException("Zip64 archives are not supported");
+        }
+    }
+
+    /**
+     * Writes the central directory and end of central directory record.
+     */
+    void finish(final byte[] comment) throws IOException {
+        final ByteArrayOutputStream central = this.central;
+        final int centralSize = central.size();
+
+        s32(central, ArchiveEntry.END_OF_CENTRAL_DIRECTORY);
+        u16(central, 0);
+        u16(central, 0);
+        u16(central, this.count);
+        u16(central, this.count);
+        s32(central, centralSize);
+        s32(central, (int) this.offset);
+        u16(central, comment.length);
+        central.write(comment);
+
+        central.writeTo(this.output);
+        this.output.flush();
+    }
+
+    private static void u16(final ByteArrayOutputStream output,
+                            final int value) {
+        output.write(value);
+        output.write(value >> 8);
+    }
+
+    private static void s32(final ByteArrayOutputStream output,
+                            final int value) {
+        u16(output, value);
+        u16(output, value >> 16);
+    }
+
+    private final OutputStream output;
+
+    /**
+     * The local header of the entry being written.
+     */
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+    /**
+     * The central directory headers of all written entries.
+     */
+    private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+
+    private long offset;
+
+    private int count;
+
+    @Override
+    public String toString() {
+        return this.count + " entries " + this.offset + " bytes";
+    }
+}
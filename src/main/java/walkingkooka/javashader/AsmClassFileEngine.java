@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link ClassFileEngine} that uses an ASM {@link ClassRemapper}, expanding and remapping the original frames so no
+ * class hierarchy is needed.
+ */
+final class AsmClassFileEngine implements ClassFileEngine {
+
+    final static AsmClassFileEngine INSTANCE = new AsmClassFileEngine();
+
+    private AsmClassFileEngine() {
+        super();
+    }
+
+    @Override
+    public Shading parse(final byte[] content,
+                         final Set<ClassFileDebugInfo> debugInfo) {
+        final ClassReader reader = new ClassReader(content);
+        final ClassWriter writer = new ClassWriter(0);
+
+        return new Shading() {
+            @Override
+            public void visit(final UnaryOperator<String> map) {
+                final ClassRemapper adapter = new ClassRemapper(
+                    ClassFileDebugInfo.filter(writer, debugInfo),
+                    new Remapper() {
+                        @Override
+                        public String map(final String typeName) {
+                            return map.apply(typeName);
+                        }
+                    }
+                );
+                reader.accept(
+                    adapter,
+                    ClassReader.EXPAND_FRAMES | ClassFileDebugInfo.parsingOptions(debugInfo)
+                );
+                writer.visitEnd();
+            }
+
+            @Override
+            public byte[] emit() {
+                return writer.toByteArray();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return ClassFileEngines.ASM;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.PackageName;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Shades many files at once, such as the entries of a jar or a source tree, keyed by their slash separated path.
+ * Class and java files are shaded and relocated, all other files are only relocated when they are within a shaded
+ * package. Byte identical files are shaded once for the given mappings, and files that need no rewriting are returned
+ * as the same array instance.
+ */
+final class BatchPackageShader implements BiFunction<Map<String, byte[]>, Map<PackageName, PackageName>, Map<String, byte[]>> {
+
+    static BatchPackageShader with(final Charset charset) {
+        Objects.requireNonNull(charset, "charset");
+
+        return new BatchPackageShader(charset);
+    }
+
+    private BatchPackageShader(final Charset charset) {
+        super();
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the shaded files in the same order as the given files using their relocated paths.
+     */
+    @Override
+    public Map<String, byte[]> apply(final Map<String, byte[]> files,
+                                     final Map<PackageName, PackageName> mappings) {
+        return this.apply(
+            files,
+            mappings,
+            PackageShaderJob.NONE
+        );
+    }
+
+    /**
+     * Shades the files reporting progress after each file, stopping with a
+     * {@link java.util.concurrent.CancellationException} if the job is interrupted or its deadline passes.
+     */
+    Map<String, byte[]> apply(final Map<String, byte[]> files,
+                              final Map<PackageName, PackageName> mappings,
+                              final PackageShaderJob job) {
+        Objects.requireNonNull(files, "files");
+        Objects.requireNonNull(mappings, "mappings");
+        Objects.requireNonNull(job, "job");
+
+        final PackageShaderJob.Tracker tracker = job.start(
+            files.size(),
+            files.values()
+                .stream()
+                .mapToLong(c -> c.length)
+                .sum()
+        );
+        final Map<Content, byte[]> shaded = Maps.hash();
+        final Map<String, byte[]> output = Maps.ordered();
+
+        for (final Entry<String, byte[]> pathAndContent : files.entrySet()) {
+            tracker.check();
+
+            final String path = pathAndContent.getKey();
+            final byte[] content = pathAndContent.getValue();
+
+            final Kind kind = Kind.of(path);
+            final byte[] shadedContent = Kind.OTHER == kind ?
+                content :
+                shaded.computeIfAbsent(
+                    new Content(kind, content),
+                    c -> this.shade(c, mappings, tracker)
+                );
+
+            final String shadedPath = path(path, mappings);
+            if (null != output.put(shadedPath, shadedContent)) {
+                throw new IllegalArgumentException("Duplicate path " + shadedPath + " for " + path);
+            }
+            tracker.done(content.length);
+        }
+
+        return output;
+    }
+
+    /**
+     * Shades the content, returning the original array when nothing was rewritten.
+     */
+    private byte[] shade(final Content content,
+                         final Map<PackageName, PackageName> mappings,
+                         final PackageShaderJob.Tracker tracker) {
+        return shade(
+            content.kind,
+            content.bytes,
+            this.charset,
+            mappings,
+            (t) -> {
+            },
+            tracker
+        );
+    }
+
+    /**
+     * Shades a class or java file, returning the original array when nothing was rewritten.
+     */
+    static byte[] shade(final Kind kind,
+                        final byte[] bytes,
+                        final Charset charset,
+                        final Map<PackageName, PackageName> mappings) {
+        return shade(
+            kind,
+            bytes,
+            charset,
+            mappings,
+            (t) -> {
+            }
+        );
+    }
+
+    /**
+     * Shades the file, class files also report the shaded internal name of every type they reference to types.
+     */
+    static byte[] shade(final Kind kind,
+                        final byte[] bytes,
+                        final Charset charset,
+                        final Map<PackageName, PackageName> mappings,
+                        final Consumer<String> types) {
+        return shade(
+            kind,
+            bytes,
+            charset,
+            mappings,
+            types,
+            null
+        );
+    }
+
+    /**
+     * Shades the file, when the tracker is not null large files are checked for cancellation while they are parsed.
+     */
+    static byte[] shade(final Kind kind,
+                        final byte[] bytes,
+                        final Charset charset,
+                        final Map<PackageName, PackageName> mappings,
+                        final Consumer<String> types,
+                        final PackageShaderJob.Tracker tracker) {
+        final int[] rewritten = new int[1];
+        final PackageShaderListener counter = (m) -> rewritten[0] = m.namesRewritten();
+
+        final byte[] shaded = PackageShaderEvent.record(
+            mappings,
+            counter,
+            (listener) -> Kind.CLASS_FILE == kind ?
+                ClassFilePackageShader.shadeClassFile(
+                    bytes,
+                    mappings,
+                    listener,
+                    null != tracker ?
+                        tracker.types(types) :
+                        types
+                ) :
+                JavaFilePackageShader.shade(
+                    bytes,
+                    charset,
+                    mappings,
+                    listener,
+                    null != tracker ?
+                        tracker::check :
+                        null
+                )
+        );
+
+        return 0 == rewritten[0] ?
+            bytes :
+            shaded;
+    }
+
+    private final Charset charset;
+
+    /**
+     * Relocates the path using the first mapping whose from package directory holds the path, directly or within a sub
+     * package. Paths in a sibling directory that only shares a prefix with the from package, such as
+     * <code>com/foobar</code> for <code>com.foo</code>, are never moved.
+     */
+    static String path(final String path,
+                       final Map<PackageName, PackageName> mappings) {
+        String result = path;
+
+        for (final Entry<PackageName, PackageName> mapping : mappings.entrySet()) {
+            final String from = directory(mapping.getKey());
+            if (path.startsWith(from)) {
+                result = directory(mapping.getValue()) + path.substring(from.length());
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The directory of the package including a trailing slash.
+     */
+    static String directory(final PackageName packageName) {
+        return packageName.value()
+            .replace('.', '/') + '/';
+    }
+
+    /**
+     * The kind of file, which selects the shader.
+     */
+    enum Kind {
+        CLASS_FILE,
+        JAVA_FILE,
+        OTHER;
+
+        static Kind of(final String path) {
+            final Kind kind;
+
+            if (path.endsWith(".class")) {
+                kind = CLASS_FILE;
+            } else if (path.endsWith(".java")) {
+                kind = JAVA_FILE;
+            } else {
+                kind = OTHER;
+            }
+
+            return kind;
+        }
+    }
+
+    /**
+     * The content of a file, byte identical files of the same kind are equal.
+     */
+    private static final class Content {
+
+        Content(final Kind kind,
+                final byte[] bytes) {
+            this.kind = kind;
+            this.bytes = bytes;
+            this.hashCode = 31 * kind.ordinal() + Arrays.hashCode(bytes);
+        }
+
+        final Kind kind;
+        final byte[] bytes;
+        private final int hashCode;
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return this == other ||
+                other instanceof Content && this.equals0((Content) other);
+        }
+
+        private boolean equals0(final Content other) {
+            return this.kind == other.kind &&
+                this.hashCode == other.hashCode &&
+                Arrays.equals(this.bytes, other.bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.charset.toString();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The parts of the debug info of a class file that may be kept when shading. Class files shaded with none of these
+ * are read using {@link ClassReader#SKIP_DEBUG}, so the debug info is never visited or written.
+ */
+public enum ClassFileDebugInfo {
+
+    /**
+     * The SourceFile and SourceDebugExtension attributes, needed for stack traces to include file names.
+     */
+    SOURCE_FILE,
+
+    /**
+     * The LineNumberTable of every method.
+     */
+    LINE_NUMBERS,
+
+    /**
+     * The LocalVariableTable, LocalVariableTypeTable and MethodParameters of every method.
+     */
+    LOCAL_VARIABLES;
+
+    /**
+     * Keeps all debug info, the default.
+     */
+    final static Set<ClassFileDebugInfo> ALL = EnumSet.allOf(ClassFileDebugInfo.class);
+
+    /**
+     * Returns the {@link ClassReader} parsing options that skip all debug info when none is kept.
+     */
+    static int parsingOptions(final Set<ClassFileDebugInfo> kept) {
+        return kept.isEmpty() ?
+            ClassReader.SKIP_DEBUG :
+            0;
+    }
+
+    /**
+     * Wraps the {@link ClassVisitor} dropping the parts of the debug info that are not kept. When all or none is kept
+     * no filtering is needed and the visitor is returned.
+     */
+    static ClassVisitor filter(final ClassVisitor visitor,
+                               final Set<ClassFileDebugInfo> kept) {
+        return kept.isEmpty() || kept.containsAll(ALL) ?
+            visitor :
+            new Filter(
+                visitor,
+                kept.contains(SOURCE_FILE),
+                kept.contains(LINE_NUMBERS),
+                kept.contains(LOCAL_VARIABLES)
+            );
+    }
+
+    /**
+     * {@link ClassVisitor} that drops some of the debug info.
+     */
+    private static class Filter extends ClassVisitor {
+
+        Filter(final ClassVisitor visitor,
+               final boolean sourceFile,
+               final boolean lineNumbers,
+               final boolean localVariables) {
+            super(Opcodes.ASM9, visitor);
+            this.sourceFile = sourceFile;
+            this.lineNumbers = lineNumbers;
+            this.localVariables = localVariables;
+        }
+
+        @Override
+        public void visitSource(final String source,
+                                final String debug) {
+            if (this.sourceFile) {
+                super.visitSource(source, debug);
+            }
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access,
+                                         final String name,
+                                         final String descriptor,
+                                         final String signature,
+                                         final String[] exceptions) {
+            final MethodVisitor visitor = super.visitMethod(
+                access,
+                name,
+                descriptor,
+                signature,
+                exceptions
+            );
+            return null == visitor ?
+                null :
+                new MethodVisitor(Opcodes.ASM9, visitor) {
+
+                    @Override
+                    public void visitParameter(final String name,
+                                               final int access) {
+                        if (Filter.this.localVariables) {
+                            super.visitParameter(name, access);
+                        }
+                    }
+
+                    @Override
+                    public void visitLocalVariable(final String name,
+                                                   final String descriptor,
+                                                   final String signature,
+                                                   final Label start,
+                                                   final Label end,
+                                                   final int index) {
+                        if (Filter.this.localVariables) {
+                            super.visitLocalVariable(name, descriptor, signature, start, end, index);
+                        }
+                    }
+
+                    @Override
+                    public void visitLineNumber(final int line,
+                                                final Label start) {
+                        if (Filter.this.lineNumbers) {
+                            super.visitLineNumber(line, start);
+                        }
+                    }
+                };
+        }
+
+        private final boolean sourceFile;
+        private final boolean lineNumbers;
+        private final boolean localVariables;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites the type names of a class file. {@link ClassFileEngines} selects the engine at runtime, ASM by default on
+ * every JDK or when requested the JDK class file API on Java 24 and later.
+ */
+interface ClassFileEngine {
+
+    /**
+     * Shades the class file in one go, without timing each phase.
+     */
+    default byte[] shade(final byte[] content,
+                         final UnaryOperator<String> map,
+                         final Set<ClassFileDebugInfo> debugInfo) {
+        final Shading shading = this.parse(content, debugInfo);
+        shading.visit(map);
+        return shading.emit();
+    }
+
+    /**
+     * Parses the class file keeping only the given parts of its debug info.
+     */
+    Shading parse(final byte[] content,
+                  final Set<ClassFileDebugInfo> debugInfo);
+
+    /**
+     * A parsed class file that is shaded once, the phases are separate so they may be timed.
+     */
+    interface Shading {
+
+        /**
+         * Visits every internal type name replacing it with the result of map.
+         */
+        void visit(final UnaryOperator<String> map);
+
+        /**
+         * Returns the shaded class file.
+         */
+        byte[] emit();
+    }
+}
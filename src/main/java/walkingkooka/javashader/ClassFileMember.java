@@ -0,0 +1,346 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A constructor, method or field read from a class file, without loading the declaring {@link Class}.
+ * {@link #toString()} produces the same text as the matching {@link java.lang.reflect.Member} except that generic
+ * signatures are ignored.
+ */
+public final class ClassFileMember {
+
+    final static String CONSTRUCTOR = "<init>";
+
+    static ClassFileMember method(final String owner,
+                                  final boolean ownerInterface,
+                                  final int access,
+                                  final String name,
+                                  final String descriptor,
+                                  final List<String> exceptions) {
+        return new ClassFileMember(
+            owner,
+            ownerInterface,
+            access,
+            name,
+            descriptor,
+            exceptions,
+            null
+        );
+    }
+
+    static ClassFileMember field(final String owner,
+                                 final int access,
+                                 final String name,
+                                 final String descriptor,
+                                 final Object value) {
+        return new ClassFileMember(
+            owner,
+            false,
+            access,
+            name,
+            descriptor,
+            List.of(),
+            fieldValue(descriptor, value)
+        );
+    }
+
+    /**
+     * The class file stores boolean, byte, char and short constants as int, convert to the boxed type returned by
+     * {@link java.lang.reflect.Field#get(Object)}.
+     */
+    private static Object fieldValue(final String descriptor,
+                                     final Object value) {
+        Object fieldValue = value;
+
+        if (value instanceof Integer) {
+            final int intValue = (Integer) value;
+
+            switch (descriptor) {
+                case "Z":
+                    fieldValue = 0 != intValue;
+                    break;
+                case "B":
+                    fieldValue = (byte) intValue;
+                    break;
+                case "C":
+                    fieldValue = (char) intValue;
+                    break;
+                case "S":
+                    fieldValue = (short) intValue;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return fieldValue;
+    }
+
+    private ClassFileMember(final String owner,
+                            final boolean ownerInterface,
+                            final int access,
+                            final String name,
+                            final String descriptor,
+                            final List<String> exceptions,
+                            final Object value) {
+        super();
+        this.owner = owner;
+        this.ownerInterface = ownerInterface;
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.exceptions = exceptions;
+        this.value = value;
+    }
+
+    /**
+     * The binary name of the declaring class.
+     */
+    public String owner() {
+        return this.owner;
+    }
+
+    private final String owner;
+
+    private final boolean ownerInterface;
+
+    /**
+     * The member name, constructors are named <code>&lt;init&gt;</code>.
+     */
+    public String name() {
+        return this.name;
+    }
+
+    private final String name;
+
+    /**
+     * The JVM descriptor of this member.
+     */
+    public String descriptor() {
+        return this.descriptor;
+    }
+
+    private final String descriptor;
+
+    /**
+     * The modifiers as they would be returned by {@link java.lang.reflect.Member#getModifiers()}.
+     */
+    public int modifiers() {
+        return this.access & (this.isField() ? Modifier.fieldModifiers() : Modifier.methodModifiers());
+    }
+
+    /**
+     * The raw access flags from the class file.
+     */
+    int access() {
+        return this.access;
+    }
+
+    private final int access;
+
+    public JavaVisibility visibility() {
+        return visibility(this.access);
+    }
+
+    static JavaVisibility visibility(final int access) {
+        final JavaVisibility visibility;
+
+        if (0 != (access & Opcodes.ACC_PUBLIC)) {
+            visibility = JavaVisibility.PUBLIC;
+        } else if (0 != (access & Opcodes.ACC_PROTECTED)) {
+            visibility = JavaVisibility.PROTECTED;
+        } else if (0 != (access & Opcodes.ACC_PRIVATE)) {
+            visibility = JavaVisibility.PRIVATE;
+        } else {
+            visibility = JavaVisibility.PACKAGE_PRIVATE;
+        }
+
+        return visibility;
+    }
+
+    /**
+     * The binary names of the declared exceptions, always empty for fields.
+     */
+    public List<String> exceptions() {
+        return this.exceptions;
+    }
+
+    private final List<String> exceptions;
+
+    /**
+     * The constant value of a field or null if the field has no ConstantValue attribute.
+     */
+    public Object value() {
+        return this.value;
+    }
+
+    private final Object value;
+
+    public boolean isConstructor() {
+        return CONSTRUCTOR.equals(this.name);
+    }
+
+    public boolean isField() {
+        return '(' != this.descriptor.charAt(0);
+    }
+
+    public boolean isSynthetic() {
+        return 0 != (this.access & Opcodes.ACC_SYNTHETIC);
+    }
+
+    public boolean isBridge() {
+        return false == this.isField() && 0 != (this.access & Opcodes.ACC_BRIDGE);
+    }
+
+    boolean isVarArgs() {
+        return false == this.isField() && 0 != (this.access & Opcodes.ACC_VARARGS);
+    }
+
+    /**
+     * Default methods are public non abstract instance methods of an interface.
+     */
+    boolean isDefault() {
+        return this.ownerInterface &&
+            (this.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC)) == Opcodes.ACC_PUBLIC;
+    }
+
+    /**
+     * The parameter portion of a method descriptor, used to match overloads.
+     */
+    String parameterDescriptor() {
+        final String descriptor = this.descriptor;
+        return descriptor.substring(0, descriptor.indexOf(')') + 1);
+    }
+
+    /**
+     * The descriptor of the field type or method return type.
+     */
+    String typeDescriptor() {
+        final String descriptor = this.descriptor;
+        return this.isField() ?
+            descriptor :
+            descriptor.substring(descriptor.indexOf(')') + 1);
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.owner, this.name, this.descriptor);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof ClassFileMember && this.equals0((ClassFileMember) other);
+    }
+
+    private boolean equals0(final ClassFileMember other) {
+        return this.owner.equals(other.owner) &&
+            this.ownerInterface == other.ownerInterface &&
+            this.access == other.access &&
+            this.name.equals(other.name) &&
+            this.descriptor.equals(other.descriptor) &&
+            this.exceptions.equals(other.exceptions) &&
+            Objects.equals(this.value, other.value);
+    }
+
+    /**
+     * Produces the same text as {@link java.lang.reflect.Member#toString()} with varargs rendered like toGenericString.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+
+        final int modifiers = this.modifiers();
+        if (0 != modifiers) {
+            b.append(Modifier.toString(modifiers))
+                .append(' ');
+        }
+        if (this.isDefault()) {
+            b.append("default ");
+        }
+
+        if (this.isField()) {
+            b.append(typeName(Type.getType(this.descriptor)))
+                .append(' ')
+                .append(this.owner)
+                .append('.')
+                .append(this.name);
+        } else {
+            if (this.isConstructor()) {
+                b.append(this.owner);
+            } else {
+                b.append(typeName(Type.getReturnType(this.descriptor)))
+                    .append(' ')
+                    .append(this.owner)
+                    .append('.')
+                    .append(this.name);
+            }
+
+            final Type[] parameters = Type.getArgumentTypes(this.descriptor);
+            final int last = parameters.length - 1;
+            b.append('(');
+            for (int i = 0; i <= last; i++) {
+                if (i > 0) {
+                    b.append(',');
+                }
+                final Type parameter = parameters[i];
+                if (i == last && this.isVarArgs()) {
+                    b.append(typeName(parameter.getElementType()))
+                        .append("[]".repeat(parameter.getDimensions() - 1))
+                        .append("...");
+                } else {
+                    b.append(typeName(parameter));
+                }
+            }
+            b.append(')');
+
+            if (false == this.exceptions.isEmpty()) {
+                b.append(" throws ")
+                    .append(String.join(",", this.exceptions));
+            }
+        }
+
+        return b.toString();
+    }
+
+    /**
+     * Returns the type name in the same form as {@link Class#getTypeName()}, ie arrays have trailing brackets.
+     */
+    static String typeName(final Type type) {
+        return type.getClassName();
+    }
+
+    /**
+     * Returns the type name in the same form as {@link Class#getName()}, ie arrays use the JVM descriptor form.
+     */
+    static String className(final Type type) {
+        return Type.ARRAY == type.getSort() ?
+            type.getDescriptor().replace('/', '.') :
+            type.getClassName();
+    }
+}
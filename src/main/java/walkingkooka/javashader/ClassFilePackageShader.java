@@ -17,64 +17,258 @@
 
 package walkingkooka.javashader;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.commons.ClassRemapper;
-import org.objectweb.asm.commons.Remapper;
+import walkingkooka.collect.map.Maps;
 import walkingkooka.reflect.PackageName;
 
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Shades a references for packages within a java class file
  */
 final class ClassFilePackageShader implements BiFunction<byte[], Map<PackageName, PackageName>, byte[]> {
 
-    final static ClassFilePackageShader INSTANCE = new ClassFilePackageShader();
+    final static ClassFilePackageShader INSTANCE = new ClassFilePackageShader(
+        null,
+        ClassFileDebugInfo.ALL
+    );
 
-    private ClassFilePackageShader() {
+    /**
+     * Creates a shader that reports {@link PackageShaderMetrics} for every class file.
+     */
+    static ClassFilePackageShader with(final PackageShaderListener listener) {
+        Objects.requireNonNull(listener, "listener");
+
+        return new ClassFilePackageShader(
+            listener,
+            ClassFileDebugInfo.ALL
+        );
+    }
+
+    private ClassFilePackageShader(final PackageShaderListener listener,
+                                   final Set<ClassFileDebugInfo> debugInfo) {
         super();
+        this.listener = listener;
+        this.debugInfo = debugInfo;
+    }
+
+    /**
+     * Returns a shader that only keeps the given parts of the debug info of every class file.
+     */
+    ClassFilePackageShader setDebugInfo(final Set<ClassFileDebugInfo> debugInfo) {
+        Objects.requireNonNull(debugInfo, "debugInfo");
+
+        final Set<ClassFileDebugInfo> copy = EnumSet.noneOf(ClassFileDebugInfo.class);
+        copy.addAll(debugInfo);
+
+        return this.debugInfo.equals(copy) ?
+            this :
+            new ClassFilePackageShader(
+                this.listener,
+                copy
+            );
     }
 
+    /**
+     * Metrics are only gathered when there is a listener or the {@link PackageShaderEvent} is enabled.
+     */
     @Override
     public byte[] apply(final byte[] content,
                         final Map<PackageName, PackageName> mappings) {
-        return shadeClassFile(content, mappings);
+        return PackageShaderEvent.record(
+            mappings,
+            this.listener,
+            (listener) -> null == listener ?
+                shadeClassFile(content, mappings, this.debugInfo) :
+                shadeClassFile(content, mappings, listener, NO_TYPES, this.debugInfo)
+        );
     }
 
+    /**
+     * When null no metrics are gathered.
+     */
+    private final PackageShaderListener listener;
+
+    /**
+     * The parts of the debug info that are kept.
+     */
+    private final Set<ClassFileDebugInfo> debugInfo;
+
     // @VisibleForTesting
     static byte[] shadeClassFile(final byte[] content,
                                  final Map<PackageName, PackageName> mappings) {
-        final ClassReader reader = new ClassReader(content);
-        final ClassWriter writer = new ClassWriter(0);
-        final ClassRemapper adapter = new ClassRemapper(writer, new Remapper() {
-            @Override
-            public String map(final String typeName) {
-                String result = null;
-
-                for (final Entry<PackageName, PackageName> possible : mappings.entrySet()) {
-                    final String from = possible.getKey().value();
-                    if (typeName.startsWith(binaryTypeName(from))) {
-                        result = typeName.replace(
-                            binaryTypeName(from),
-                            binaryTypeName(possible.getValue().value())
-                        );
-                        break;
-                    }
+        return shadeClassFile(
+            content,
+            mappings,
+            ClassFileDebugInfo.ALL
+        );
+    }
+
+    /**
+     * Shades the class file keeping only the given parts of its debug info.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final Map<PackageName, PackageName> mappings,
+                                 final Set<ClassFileDebugInfo> debugInfo) {
+        return ClassFileEngines.engine()
+            .shade(
+                content,
+                (typeName) -> {
+                    final Entry<PackageName, PackageName> mapping = mapping(typeName, mappings);
+
+                    return null != mapping ?
+                        shade(typeName, mapping) :
+                        typeName;
+                },
+                debugInfo
+            );
+    }
+
+    /**
+     * Shades the class file using {@link PackageShaderRules} that were compiled once.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final PackageShaderRules rules) {
+        return shadeClassFile(
+            content,
+            rules::shade
+        );
+    }
+
+    /**
+     * Shades the class file replacing every internal type name with the result of map.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final UnaryOperator<String> map) {
+        return ClassFileEngines.engine()
+            .shade(
+                content,
+                map,
+                ClassFileDebugInfo.ALL
+            );
+    }
+
+    /**
+     * Shades the class file timing each phase and counting names, reporting the metrics to the listener.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final Map<PackageName, PackageName> mappings,
+                                 final PackageShaderListener listener) {
+        return shadeClassFile(
+            content,
+            mappings,
+            listener,
+            NO_TYPES
+        );
+    }
+
+    private final static Consumer<String> NO_TYPES = (t) -> {
+    };
+
+    /**
+     * Shades the class file reporting metrics to the listener and every shaded internal type name visited to types,
+     * giving the references of the class without another parse.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final Map<PackageName, PackageName> mappings,
+                                 final PackageShaderListener listener,
+                                 final Consumer<String> types) {
+        return shadeClassFile(
+            content,
+            mappings,
+            listener,
+            types,
+            ClassFileDebugInfo.ALL
+        );
+    }
+
+    /**
+     * Shades the class file keeping only the given parts of its debug info, reporting metrics and types.
+     */
+    static byte[] shadeClassFile(final byte[] content,
+                                 final Map<PackageName, PackageName> mappings,
+                                 final PackageShaderListener listener,
+                                 final Consumer<String> types,
+                                 final Set<ClassFileDebugInfo> debugInfo) {
+        final long start = System.nanoTime();
+        final ClassFileEngine.Shading shading = ClassFileEngines.engine()
+            .parse(content, debugInfo);
+        final long parsed = System.nanoTime();
+
+        final Map<PackageName, Integer> rewrites = Maps.ordered();
+        final int[] namesVisited = new int[1];
+
+        shading.visit(
+            (typeName) -> {
+                namesVisited[0]++;
+
+                final Entry<PackageName, PackageName> mapping = mapping(typeName, mappings);
+                final String result;
+                if (null != mapping) {
+                    rewrites.merge(mapping.getKey(), 1, Integer::sum);
+                    result = shade(typeName, mapping);
+                } else {
+                    result = typeName;
                 }
+                types.accept(result);
+                return result;
+            }
+        );
+        final long visited = System.nanoTime();
+
+        final byte[] shaded = shading.emit();
+        final long emitted = System.nanoTime();
+
+        listener.shaded(
+            PackageShaderMetrics.with(
+                PackageShaderMetrics.Kind.CLASS_FILE,
+                content.length,
+                shaded.length,
+                namesVisited[0],
+                rewrites.values()
+                    .stream()
+                    .mapToInt(Integer::intValue)
+                    .sum(),
+                rewrites,
+                parsed - start,
+                visited - parsed,
+                emitted - visited
+            )
+        );
 
-                return null != result ?
-                    result :
-                    super.map(typeName);
+        return shaded;
+    }
+
+    /**
+     * Returns the first mapping whose from package is a prefix of the internal type name or null.
+     */
+    private static Entry<PackageName, PackageName> mapping(final String typeName,
+                                                           final Map<PackageName, PackageName> mappings) {
+        Entry<PackageName, PackageName> mapping = null;
+
+        for (final Entry<PackageName, PackageName> possible : mappings.entrySet()) {
+            final String from = possible.getKey().value();
+            if (typeName.startsWith(binaryTypeName(from))) {
+                mapping = possible;
+                break;
             }
-        });
-        reader.accept(adapter, ClassReader.EXPAND_FRAMES);
+        }
 
-        writer.visitEnd();
+        return mapping;
+    }
 
-        return writer.toByteArray();
+    private static String shade(final String typeName,
+                                final Entry<PackageName, PackageName> mapping) {
+        return typeName.replace(
+            binaryTypeName(mapping.getKey().value()),
+            binaryTypeName(mapping.getValue().value())
+        );
     }
 
     private static String binaryTypeName(final String typeName) {
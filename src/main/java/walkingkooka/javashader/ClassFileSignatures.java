@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps the class names within a descriptor or generic signature, for engines that only see these as text. Only the
+ * outermost class name of a nested class type is mapped, the simple names that follow keep their text.
+ */
+final class ClassFileSignatures {
+
+    /**
+     * Maps every class name in a field or method descriptor, or a class, field or method signature.
+     */
+    static String map(final String signature,
+                      final UnaryOperator<String> map) {
+        final ClassFileSignatures mapper = new ClassFileSignatures(signature, map);
+        mapper.signature();
+        return mapper.toString();
+    }
+
+    /**
+     * Maps the name of a class entry, which is an internal name or an array descriptor.
+     */
+    static String internalName(final String internalName,
+                               final UnaryOperator<String> map) {
+        return internalName.startsWith("[") ?
+            map(internalName, map) :
+            map.apply(internalName);
+    }
+
+    private ClassFileSignatures(final String text,
+                                final UnaryOperator<String> map) {
+        super();
+        this.text = text;
+        this.map = map;
+        this.mapped = new StringBuilder(text.length());
+    }
+
+    private void signature() {
+        if (this.is('<')) {
+            this.typeParameters();
+        }
+
+        if (this.is('(')) {
+            this.copy();
+            while (false == this.is(')')) {
+                this.type();
+            }
+            this.copy();
+            this.type();
+
+            while (this.is('^')) {
+                this.copy();
+                this.type();
+            }
+        } else {
+            while (this.position < this.text.length()) {
+                this.type();
+            }
+        }
+    }
+
+    private void typeParameters() {
+        this.copy();
+
+        while (false == this.is('>')) {
+            this.copyUntil(':');
+            while (this.is(':')) {
+                this.copy();
+                if (false == this.is(':') && false == this.is('>') && this.isReference()) {
+                    this.type();
+                }
+            }
+        }
+
+        this.copy();
+    }
+
+    private boolean isReference() {
+        return this.is('L') || this.is('T') || this.is('[');
+    }
+
+    private void type() {
+        final char c = this.copy();
+        switch (c) {
+            case 'L':
+                this.classType();
+                break;
+            case 'T':
+                this.copyUntil(';');
+                this.copy();
+                break;
+            case '[':
+                this.type();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Maps the class name after the L, copying any type arguments and nested simple names.
+     */
+    private void classType() {
+        final int start = this.position;
+        this.skipName();
+        this.mapped.append(
+            this.map.apply(
+                this.text.substring(start, this.position)
+            )
+        );
+
+        for (; ; ) {
+            if (this.is('<')) {
+                this.typeArguments();
+            } else if (this.is('.')) {
+                this.copy();
+                final int simpleStart = this.position;
+                this.skipName();
+                this.mapped.append(this.text, simpleStart, this.position);
+            } else {
+                this.copy();
+                break;
+            }
+        }
+    }
+
+    private void skipName() {
+        final String text = this.text;
+        int position = this.position;
+
+        for (; ; ) {
+            final char c = text.charAt(position);
+            if ('<' == c || '.' == c || ';' == c) {
+                break;
+            }
+            position++;
+        }
+
+        this.position = position;
+    }
+
+    private void typeArguments() {
+        this.copy();
+
+        while (false == this.is('>')) {
+            if (this.is('*')) {
+                this.copy();
+            } else {
+                if (this.is('+') || this.is('-')) {
+                    this.copy();
+                }
+                this.type();
+            }
+        }
+
+        this.copy();
+    }
+
+    private boolean is(final char c) {
+        return this.position < this.text.length() &&
+            c == this.text.charAt(this.position);
+    }
+
+    private char copy() {
+        final char c = this.text.charAt(this.position++);
+        this.mapped.append(c);
+        return c;
+    }
+
+    private void copyUntil(final char end) {
+        while (false == this.is(end)) {
+            this.copy();
+        }
+    }
+
+    private final String text;
+
+    private int position;
+
+    private final UnaryOperator<String> map;
+
+    private final StringBuilder mapped;
+
+    @Override
+    public String toString() {
+        return this.mapped.toString();
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A compact binary snapshot of the api of selected packages, usually from the running JRE. Verifying emulated
+ * classes against a snapshot avoids reading hundreds of JDK class files on every run and gives the same results on
+ * every JDK version.
+ * <br>
+ * All classes, constructors, methods and fields that are not private are saved with their access flags, so an emulated
+ * member whose JRE counterpart is package private reports a different visibility rather than missing, just like
+ * verifying against the class path. The file is memory mapped and each class is decoded the first time it is
+ * requested.
+ * <pre>
+ * java -cp ... walkingkooka.javashader.ClassFileSnapshot jre.snapshot java.io java.util java.util.function
+ * </pre>
+ */
+public final class ClassFileSnapshot {
+
+    /**
+     * Writes a snapshot of the given packages of the running JRE, the first argument is the snapshot file.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Expected snapshot file followed by one or more package names");
+        }
+
+        write(
+            Paths.get(args[0]),
+            Arrays.stream(args)
+                .skip(1)
+                .map(PackageName::with)
+                .collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Writes a snapshot of the api of the given packages of the running JRE. Sub packages are not included.
+     */
+    public static void write(final Path file,
+                             final Collection<PackageName> packages) throws IOException {
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(packages, "packages");
+
+        writeTypes(file, jre(packages));
+    }
+
+    /**
+     * Reads all classes in the given packages from the modules of the running JRE.
+     */
+    static List<ClassFileType> jre(final Collection<PackageName> packages) throws IOException {
+        final FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        final List<ClassFileType> types = Lists.array();
+
+        try (final Stream<Path> modules = Files.list(jrt.getPath("/modules"))) {
+            for (final Path module : modules.collect(Collectors.toList())) {
+                for (final PackageName packageName : packages) {
+                    final Path directory = module.resolve(ClassFileType.internalName(packageName.value()));
+                    if (Files.isDirectory(directory)) {
+                        try (final Stream<Path> files = Files.list(directory)) {
+                            for (final Path classFile : files.collect(Collectors.toList())) {
+                                final String fileName = classFile.getFileName().toString();
+                                if (fileName.endsWith(".class") && false == fileName.endsWith("-info.class")) {
+                                    types.add(ClassFileType.read(Files.readAllBytes(classFile)));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return types;
+    }
+
+    /**
+     * Writes the api of the given types, ignoring private classes and members.
+     */
+    static void writeTypes(final Path file,
+                           final Collection<ClassFileType> types) throws IOException {
+        final Map<String, Integer> strings = Maps.ordered();
+        final List<ClassFileType> apiTypes = types.stream()
+            .filter(ClassFileSnapshot::isApi)
+            .sorted((l, r) -> l.name().compareTo(r.name()))
+            .collect(Collectors.toList());
+
+        final ByteArrayOutputStream typeBytes = new ByteArrayOutputStream();
+        final int[] typeOffsets = new int[apiTypes.size()];
+        try (final DataOutputStream data = new DataOutputStream(typeBytes)) {
+            int i = 0;
+            for (final ClassFileType type : apiTypes) {
+                typeOffsets[i] = data.size();
+                string(type.name(), strings);
+                writeType(type, strings, data);
+                i++;
+            }
+        }
+
+        final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        final int[] stringOffsets = new int[strings.size()];
+        try (final DataOutputStream data = new DataOutputStream(stringBytes)) {
+            int i = 0;
+            for (final String string : strings.keySet()) {
+                stringOffsets[i] = data.size();
+                final byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(utf8.length);
+                data.write(utf8);
+                i++;
+            }
+        }
+
+        final int stringsStart = HEADER_SIZE + stringOffsets.length * 4 + typeOffsets.length * 8;
+        final int typesStart = stringsStart + stringBytes.size();
+
+        final Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+
+        try (final OutputStream output = Files.newOutputStream(file);
+             final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(stringOffsets.length);
+            data.writeInt(typeOffsets.length);
+
+            for (final int offset : stringOffsets) {
+                data.writeInt(stringsStart + offset);
+            }
+
+            int i = 0;
+            for (final ClassFileType type : apiTypes) {
+                data.writeInt(strings.get(type.name()));
+                data.writeInt(typesStart + typeOffsets[i]);
+                i++;
+            }
+
+            stringBytes.writeTo(data);
+            typeBytes.writeTo(data);
+        }
+    }
+
+    private static boolean isApi(final ClassFileType type) {
+        return JavaVisibility.PRIVATE != type.visibility();
+    }
+
+    private static boolean isApi(final ClassFileMember member) {
+        return JavaVisibility.PRIVATE != member.visibility();
+    }
+
+    private static void writeType(final ClassFileType type,
+                                  final Map<String, Integer> strings,
+                                  final DataOutputStream data) throws IOException {
+        data.writeInt(type.access());
+        data.writeInt(string(type.superName(), strings));
+
+        final List<String> interfaces = type.interfaces();
+        data.writeShort(interfaces.size());
+        for (final String interfaceName : interfaces) {
+            data.writeInt(string(interfaceName, strings));
+        }
+
+        final List<ClassFileMember> fields = type.fields()
+            .stream()
+            .filter(ClassFileSnapshot::isApi)
+            .collect(Collectors.toList());
+        data.writeShort(fields.size());
+        for (final ClassFileMember field : fields) {
+            data.writeInt(field.access());
+            data.writeInt(string(field.name(), strings));
+            data.writeInt(string(field.descriptor(), strings));
+            writeValue(field.value(), strings, data);
+        }
+
+        final List<ClassFileMember> methods = type.methods()
+            .stream()
+            .filter(ClassFileSnapshot::isApi)
+            .collect(Collectors.toList());
+        data.writeShort(methods.size());
+        for (final ClassFileMember method : methods) {
+            data.writeInt(method.access());
+            data.writeInt(string(method.name(), strings));
+            data.writeInt(string(method.descriptor(), strings));
+
+            final List<String> exceptions = method.exceptions();
+            data.writeShort(exceptions.size());
+            for (final String exception : exceptions) {
+                data.writeInt(string(exception, strings));
+            }
+        }
+    }
+
+    /**
+     * Boolean, byte, char and short constants are written as int just like the class file.
+     */
+    private static void writeValue(final Object value,
+                                   final Map<String, Integer> strings,
+                                   final DataOutputStream data) throws IOException {
+        if (null == value) {
+            data.writeByte(NO_VALUE);
+        } else if (value instanceof Boolean) {
+            data.writeByte(INT_VALUE);
+            data.writeInt((Boolean) value ? 1 : 0);
+        } else if (value instanceof Character) {
+            data.writeByte(INT_VALUE);
+            data.writeInt((Character) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            data.writeByte(INT_VALUE);
+            data.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            data.writeByte(LONG_VALUE);
+            data.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            data.writeByte(FLOAT_VALUE);
+            data.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            data.writeByte(DOUBLE_VALUE);
+            data.writeDouble((Double) value);
+        } else {
+            data.writeByte(STRING_VALUE);
+            data.writeInt(string((String) value, strings));
+        }
+    }
+
+    private static int string(final String string,
+                              final Map<String, Integer> strings) {
+        return null == string ?
+            -1 :
+            strings.computeIfAbsent(string, s -> strings.size());
+    }
+
+    // read.............................................................................................................
+
+    /**
+     * Returns a shared snapshot for the given file, so many tests using the same snapshot only map it once.
+     */
+    static ClassFileSnapshot shared(final Path file) {
+        return SHARED.computeIfAbsent(
+            file.toAbsolutePath(),
+            f -> {
+                try {
+                    return read(f);
+                } catch (final IOException cause) {
+                    throw new IllegalArgumentException("Unable to read snapshot " + f, cause);
+                }
+            }
+        );
+    }
+
+    private final static Map<Path, ClassFileSnapshot> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * Memory maps the given snapshot file, only the index of class names is read.
+     */
+    public static ClassFileSnapshot read(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file");
+
+        final ByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < HEADER_SIZE || MAGIC != buffer.getInt(0)) {
+            throw new IllegalArgumentException("Invalid snapshot " + file);
+        }
+        final int version = buffer.getInt(4);
+        if (VERSION != version) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version + " in " + file);
+        }
+
+        return new ClassFileSnapshot(buffer);
+    }
+
+    private ClassFileSnapshot(final ByteBuffer buffer) {
+        super();
+        this.buffer = buffer;
+        this.stringCount = buffer.getInt(8);
+
+        final int typeCount = buffer.getInt(12);
+        final Map<String, Integer> typeOffsets = Maps.hash();
+
+        final int typeIndex = HEADER_SIZE + this.stringCount * 4;
+        for (int i = 0; i < typeCount; i++) {
+            typeOffsets.put(
+                this.string(buffer.getInt(typeIndex + i * 8)),
+                buffer.getInt(typeIndex + i * 8 + 4)
+            );
+        }
+        this.typeOffsets = typeOffsets;
+    }
+
+    /**
+     * The binary names of all classes in this snapshot.
+     */
+    public Set<String> typeNames() {
+        return Collections.unmodifiableSet(this.typeOffsets.keySet());
+    }
+
+    /**
+     * Returns the class with the given binary name decoding it the first time it is requested.
+     */
+    Optional<ClassFileType> type(final String typeName) {
+        ClassFileType type = this.types.get(typeName);
+        if (null == type) {
+            final Integer offset = this.typeOffsets.get(typeName);
+            if (null != offset) {
+                type = this.readType(typeName, offset);
+                this.types.putIfAbsent(typeName, type);
+            }
+        }
+        return Optional.ofNullable(type);
+    }
+
+    private final Map<String, ClassFileType> types = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> typeOffsets;
+
+    /**
+     * Decodes a single class, absolute gets are used so concurrent reads never share a position.
+     */
+    private ClassFileType readType(final String name,
+                                   final int offset) {
+        final ByteBuffer buffer = this.buffer;
+        int i = offset;
+
+        final int access = buffer.getInt(i);
+        final String superName = this.string(buffer.getInt(i + 4));
+        i += 8;
+
+        final int interfaceCount = buffer.getShort(i);
+        i += 2;
+        final List<String> interfaces = Lists.array();
+        for (int j = 0; j < interfaceCount; j++) {
+            interfaces.add(this.string(buffer.getInt(i)));
+            i += 4;
+        }
+
+        final int fieldCount = buffer.getShort(i);
+        i += 2;
+        final List<ClassFileMember> fields = Lists.array();
+        for (int j = 0; j < fieldCount; j++) {
+            final int fieldAccess = buffer.getInt(i);
+            final String fieldName = this.string(buffer.getInt(i + 4));
+            final String descriptor = this.string(buffer.getInt(i + 8));
+            final byte tag = buffer.get(i + 12);
+            i += 13;
+
+            final Object value;
+            switch (tag) {
+                case NO_VALUE:
+                    value = null;
+                    break;
+                case INT_VALUE:
+                    value = buffer.getInt(i);
+                    i += 4;
+                    break;
+                case LONG_VALUE:
+                    value = buffer.getLong(i);
+                    i += 8;
+                    break;
+                case FLOAT_VALUE:
+                    value = buffer.getFloat(i);
+                    i += 4;
+                    break;
+                case DOUBLE_VALUE:
+                    value = buffer.getDouble(i);
+                    i += 8;
+                    break;
+                case STRING_VALUE:
+                    value = this.string(buffer.getInt(i));
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid constant tag " + tag + " for field " + name + "." + fieldName);
+            }
+
+            fields.add(
+                ClassFileMember.field(
+                    name,
+                    fieldAccess,
+                    fieldName,
+                    descriptor,
+                    value
+                )
+            );
+        }
+
+        final boolean isInterface = 0 != (access & Modifier.INTERFACE);
+        final int methodCount = buffer.getShort(i);
+        i += 2;
+        final List<ClassFileMember> methods = Lists.array();
+        for (int j = 0; j < methodCount; j++) {
+            final int methodAccess = buffer.getInt(i);
+            final String methodName = this.string(buffer.getInt(i + 4));
+            final String descriptor = this.string(buffer.getInt(i + 8));
+            final int exceptionCount = buffer.getShort(i + 12);
+            i += 14;
+
+            final List<String> exceptions = Lists.array();
+            for (int k = 0; k < exceptionCount; k++) {
+                exceptions.add(this.string(buffer.getInt(i)));
+                i += 4;
+            }
+
+            methods.add(
+                ClassFileMember.method(
+                    name,
+                    isInterface,
+                    methodAccess,
+                    methodName,
+                    descriptor,
+                    exceptions
+                )
+            );
+        }
+
+        return ClassFileType.with(
+            name,
+            access,
+            superName,
+            interfaces,
+            fields,
+            methods
+        );
+    }
+
+    private String string(final int index) {
+        final String string;
+
+        if (-1 == index) {
+            string = null;
+        } else {
+            if (index < 0 || index >= this.stringCount) {
+                throw new IllegalStateException("Invalid string index " + index);
+            }
+            final ByteBuffer buffer = this.buffer;
+            final int offset = buffer.getInt(HEADER_SIZE + index * 4);
+            final int length = buffer.getInt(offset);
+
+            final byte[] utf8 = new byte[length];
+            buffer.duplicate()
+                .position(offset + 4)
+                .get(utf8);
+            string = new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        return string;
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int stringCount;
+
+    private final static int MAGIC = 0x4a534e50; // JSNP
+    private final static int VERSION = 2;
+    private final static int HEADER_SIZE = 16;
+
+    private final static byte NO_VALUE = 0;
+    private final static byte INT_VALUE = 1;
+    private final static byte LONG_VALUE = 2;
+    private final static byte FLOAT_VALUE = 3;
+    private final static byte DOUBLE_VALUE = 4;
+    private final static byte STRING_VALUE = 5;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.typeOffsets.size() + " classes";
+    }
+}
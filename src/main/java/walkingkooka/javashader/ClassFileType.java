@@ -0,0 +1,318 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * The api of a class read from its class file using {@link ClassReader#SKIP_CODE}, the class is never loaded or
+ * initialized.
+ */
+final class ClassFileType {
+
+    /**
+     * Reads the class file, skipping all code, debug info and frames.
+     */
+    static ClassFileType read(final byte[] classFile) {
+        final Reader reader = new Reader();
+        new ClassReader(classFile)
+            .accept(
+                reader,
+                ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES
+            );
+        return reader.type();
+    }
+
+    static ClassFileType with(final String name,
+                              final int access,
+                              final String superName,
+                              final List<String> interfaces,
+                              final List<ClassFileMember> fields,
+                              final List<ClassFileMember> methods) {
+        return new ClassFileType(
+            name,
+            access,
+            superName,
+            interfaces,
+            fields,
+            methods
+        );
+    }
+
+    private ClassFileType(final String name,
+                          final int access,
+                          final String superName,
+                          final List<String> interfaces,
+                          final List<ClassFileMember> fields,
+                          final List<ClassFileMember> methods) {
+        super();
+        this.name = name;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    /**
+     * The binary name of this class, eg <code>java.util.Map$Entry</code>.
+     */
+    String name() {
+        return this.name;
+    }
+
+    private final String name;
+
+    /**
+     * The access flags, for nested classes these come from the InnerClasses attribute, just like
+     * {@link Class#getModifiers()}.
+     */
+    int access() {
+        return this.access;
+    }
+
+    private final int access;
+
+    int modifiers() {
+        return this.access & (Modifier.classModifiers() | Modifier.INTERFACE);
+    }
+
+    JavaVisibility visibility() {
+        return ClassFileMember.visibility(this.access);
+    }
+
+    boolean isInterface() {
+        return 0 != (this.access & Opcodes.ACC_INTERFACE);
+    }
+
+    /**
+     * The binary name of the super class or null for {@link Object}.
+     */
+    String superName() {
+        return this.superName;
+    }
+
+    private final String superName;
+
+    List<String> interfaces() {
+        return this.interfaces;
+    }
+
+    private final List<String> interfaces;
+
+    List<ClassFileMember> fields() {
+        return this.fields;
+    }
+
+    private final List<ClassFileMember> fields;
+
+    /**
+     * All constructors and methods, the static initializer is never included.
+     */
+    List<ClassFileMember> methods() {
+        return this.methods;
+    }
+
+    private final List<ClassFileMember> methods;
+
+    List<ClassFileMember> constructors() {
+        return this.methods.stream()
+            .filter(ClassFileMember::isConstructor)
+            .collect(Collectors.toList());
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return this.name.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof ClassFileType && this.equals0((ClassFileType) other);
+    }
+
+    private boolean equals0(final ClassFileType other) {
+        return this.name.equals(other.name) &&
+            this.access == other.access &&
+            Objects.equals(this.superName, other.superName) &&
+            this.interfaces.equals(other.interfaces) &&
+            this.fields.equals(other.fields) &&
+            this.methods.equals(other.methods);
+    }
+
+    /**
+     * Produces the same text as {@link Class#toGenericString()} ignoring any type parameters.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+
+        final int modifiers = this.modifiers() & ~Modifier.INTERFACE;
+        final String kind;
+        if (this.isInterface()) {
+            kind = 0 != (this.access & Opcodes.ACC_ANNOTATION) ?
+                "@interface" :
+                "interface";
+        } else {
+            kind = 0 != (this.access & Opcodes.ACC_ENUM) ?
+                "enum" :
+                "class";
+        }
+
+        if (0 != modifiers) {
+            b.append(Modifier.toString(modifiers))
+                .append(' ');
+        }
+
+        return b.append(kind)
+            .append(' ')
+            .append(this.name)
+            .toString();
+    }
+
+    /**
+     * Binary type names use dots, class files use slashes.
+     */
+    static String binaryName(final String internalName) {
+        return null != internalName ?
+            internalName.replace('/', '.') :
+            null;
+    }
+
+    static String internalName(final String binaryName) {
+        return binaryName.replace('.', '/');
+    }
+
+    /**
+     * {@link ClassVisitor} that collects the class, field and method declarations.
+     */
+    private static class Reader extends ClassVisitor {
+
+        Reader() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(final int version,
+                          final int access,
+                          final String name,
+                          final String signature,
+                          final String superName,
+                          final String[] interfaces) {
+            this.internalName = name;
+            this.name = binaryName(name);
+            this.access = access & ~Opcodes.ACC_SUPER;
+            this.superName = binaryName(superName);
+            this.interfaces = null != interfaces ?
+                Arrays.stream(interfaces)
+                    .map(ClassFileType::binaryName)
+                    .collect(Collectors.toList()) :
+                Lists.empty();
+        }
+
+        /**
+         * Nested classes get their true modifiers such as static and private from their own InnerClasses entry.
+         */
+        @Override
+        public void visitInnerClass(final String name,
+                                    final String outerName,
+                                    final String innerName,
+                                    final int access) {
+            if (name.equals(this.internalName)) {
+                this.access = access | (this.access & Opcodes.ACC_DEPRECATED);
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access,
+                                       final String name,
+                                       final String descriptor,
+                                       final String signature,
+                                       final Object value) {
+            this.fields.add(
+                ClassFileMember.field(
+                    this.name,
+                    access,
+                    name,
+                    descriptor,
+                    value
+                )
+            );
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access,
+                                         final String name,
+                                         final String descriptor,
+                                         final String signature,
+                                         final String[] exceptions) {
+            if (false == "<clinit>".equals(name)) {
+                this.methods.add(
+                    ClassFileMember.method(
+                        this.name,
+                        0 != (this.access & Opcodes.ACC_INTERFACE),
+                        access,
+                        name,
+                        descriptor,
+                        null != exceptions ?
+                            Arrays.stream(exceptions)
+                                .map(ClassFileType::binaryName)
+                                .collect(Collectors.toList()) :
+                            Lists.empty()
+                    )
+                );
+            }
+            return null;
+        }
+
+        ClassFileType type() {
+            return ClassFileType.with(
+                this.name,
+                this.access,
+                this.superName,
+                this.interfaces,
+                this.fields,
+                this.methods
+            );
+        }
+
+        private String internalName;
+        private String name;
+        private int access;
+        private String superName;
+        private List<String> interfaces;
+        private final List<ClassFileMember> fields = Lists.array();
+        private final List<ClassFileMember> methods = Lists.array();
+    }
+}
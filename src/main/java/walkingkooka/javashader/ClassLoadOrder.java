@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The order classes were loaded during a training run, used to write the classes loaded at startup together at the
+ * front of a shaded archive. Class names may be before or after shading, names before shading are relocated using
+ * the mappings.
+ */
+public final class ClassLoadOrder {
+
+    /**
+     * Keeps the original order.
+     */
+    final static ClassLoadOrder EMPTY = new ClassLoadOrder(Lists.empty());
+
+    /**
+     * Creates a {@link ClassLoadOrder} from binary class names, duplicates after the first are ignored.
+     */
+    public static ClassLoadOrder with(final List<String> classNames) {
+        Objects.requireNonNull(classNames, "classNames");
+
+        final Set<String> unique = Sets.ordered();
+        for (final String className : classNames) {
+            if (null == className || className.isEmpty()) {
+                throw new IllegalArgumentException("Invalid class name " + className);
+            }
+            unique.add(className);
+        }
+
+        return unique.isEmpty() ?
+            EMPTY :
+            new ClassLoadOrder(Lists.of(unique.toArray(new String[0])));
+    }
+
+    /**
+     * Reads a list of class names, one per line, or the output of <code>-Xlog:class+load</code> or
+     * <code>-verbose:class</code>. Blank lines and lines starting with <code>#</code> are ignored.
+     */
+    public static ClassLoadOrder parse(final String text) {
+        Objects.requireNonNull(text, "text");
+
+        final List<String> classNames = Lists.array();
+
+        for (final String line : text.split("\\r?\\n")) {
+            String className = line.trim();
+
+            // -Xlog decorations such as [0.012s][info][class,load]
+            while (className.startsWith("[") && className.indexOf(']') > 0 && false == className.startsWith("[Loaded ")) {
+                className = className.substring(className.indexOf(']') + 1)
+                    .trim();
+            }
+            // java 8 -verbose:class [Loaded java.lang.Object from ...]
+            if (className.startsWith("[Loaded ")) {
+                className = className.substring("[Loaded ".length());
+            }
+
+            final int space = className.indexOf(' ');
+            if (-1 != space) {
+                className = className.substring(0, space);
+            }
+
+            if (false == className.isEmpty() && false == className.startsWith("#")) {
+                classNames.add(className);
+            }
+        }
+
+        return with(classNames);
+    }
+
+    /**
+     * Reads and parses a file written by a training run.
+     */
+    public static ClassLoadOrder read(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file");
+
+        return parse(
+            new String(
+                Files.readAllBytes(file),
+                StandardCharsets.UTF_8
+            )
+        );
+    }
+
+    private ClassLoadOrder(final List<String> classNames) {
+        super();
+        this.classNames = classNames;
+    }
+
+    /**
+     * The binary class names in the order they were loaded.
+     */
+    public List<String> classNames() {
+        return this.classNames;
+    }
+
+    private final List<String> classNames;
+
+    /**
+     * Returns the items in the order they should be written. The manifest and its directory always come first so
+     * <code>JarInputStream</code> can find it, followed by classes in load order, then all others in their original
+     * order.
+     */
+    <T> List<T> sort(final List<T> items,
+                     final Function<T, String> shadedPath,
+                     final Map<PackageName, PackageName> mappings) {
+        List<T> sorted = items;
+
+        if (false == this.classNames.isEmpty()) {
+            final Map<String, Integer> ranks = Maps.hash();
+            int rank = 0;
+            for (final String className : this.classNames) {
+                final String internalName = className.replace('.', '/');
+                ranks.putIfAbsent(BatchPackageShader.path(internalName, mappings), rank);
+                ranks.putIfAbsent(internalName, rank);
+                rank++;
+            }
+
+            final int count = items.size();
+            final long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                final String path = shadedPath.apply(items.get(i));
+
+                final long group;
+                if (MANIFEST_DIRECTORY.equals(path) || MANIFEST.equals(path)) {
+                    group = 0;
+                } else {
+                    final String className = ArchiveClassGraph.className(path);
+                    final Integer classRank = null != className ?
+                        ranks.get(className) :
+                        null;
+                    group = null != classRank ?
+                        1 + classRank :
+                        Integer.MAX_VALUE;
+                }
+
+                // the original index in the low bits keeps the sort stable within a group
+                keys[i] = group << 32 | i;
+            }
+            Arrays.sort(keys);
+
+            sorted = Lists.array();
+            for (final long key : keys) {
+                sorted.add(items.get((int) key));
+            }
+        }
+
+        return sorted;
+    }
+
+    private final static String MANIFEST_DIRECTORY = "META-INF/";
+
+    private final static String MANIFEST = "META-INF/MANIFEST.MF";
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return this.classNames.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof ClassLoadOrder && this.classNames.equals(((ClassLoadOrder) other).classNames);
+    }
+
+    @Override
+    public String toString() {
+        return this.classNames.size() + " classes";
+    }
+}
@@ -17,6 +17,8 @@
 
 package walkingkooka.javashader;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
@@ -35,6 +37,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
@@ -44,35 +47,160 @@ import java.util.stream.Collectors;
 final class JavaFilePackageShader implements BiFunction<byte[], Map<PackageName, PackageName>, byte[]> {
 
     static JavaFilePackageShader with(final Charset charset) {
-        return new JavaFilePackageShader(charset);
+        return new JavaFilePackageShader(charset, null);
     }
 
-    private JavaFilePackageShader(final Charset charset) {
+    /**
+     * Creates a shader that reports {@link PackageShaderMetrics} for every java file.
+     */
+    static JavaFilePackageShader with(final Charset charset,
+                                      final PackageShaderListener listener) {
+        Objects.requireNonNull(listener, "listener");
+
+        return new JavaFilePackageShader(charset, listener);
+    }
+
+    private JavaFilePackageShader(final Charset charset,
+                                  final PackageShaderListener listener) {
         super();
         this.charset = charset;
+        this.listener = listener;
     }
 
+    /**
+     * Metrics are only gathered when there is a listener or the {@link PackageShaderEvent} is enabled.
+     */
     @Override
     public byte[] apply(final byte[] content,
                         final Map<PackageName, PackageName> shadings) {
         final Charset charset = this.charset;
-        return shade(new String(content, charset), shadings).getBytes(charset);
+
+        return PackageShaderEvent.record(
+            shadings,
+            this.listener,
+            (listener) -> null == listener ?
+                shade(new String(content, charset), shadings).getBytes(charset) :
+                shade(content, charset, shadings, listener)
+        );
     }
 
     private final Charset charset;
 
+    /**
+     * When null no metrics are gathered.
+     */
+    private final PackageShaderListener listener;
+
+    /**
+     * Shades the java file timing each phase and counting names, reporting the metrics to the listener. Decoding the
+     * content is included in the parse phase and encoding in the emit phase.
+     */
+    static byte[] shade(final byte[] content,
+                        final Charset charset,
+                        final Map<PackageName, PackageName> shadings,
+                        final PackageShaderListener listener) {
+        return shade(
+            content,
+            charset,
+            shadings,
+            listener,
+            null
+        );
+    }
+
+    /**
+     * Shades the java file reporting metrics, the parser polls cancel which should throw to stop a large parse.
+     */
+    static byte[] shade(final byte[] content,
+                        final Charset charset,
+                        final Map<PackageName, PackageName> shadings,
+                        final PackageShaderListener listener,
+                        final Runnable cancel) {
+        final long start = System.nanoTime();
+        final String text = new String(content, charset);
+        final CompilationUnit unit = parse(text, cancel);
+        final long parsed = System.nanoTime();
+
+        final List<Name> names = reverseSort(collectNames(unit));
+        final long visited = System.nanoTime();
+
+        final Map<PackageName, Integer> rewrites = Maps.ordered();
+        final byte[] shaded = collectText(names, text, shadings, rewrites)
+            .getBytes(charset);
+        final long emitted = System.nanoTime();
+
+        listener.shaded(
+            PackageShaderMetrics.with(
+                PackageShaderMetrics.Kind.JAVA_FILE,
+                content.length,
+                shaded.length,
+                names.size(),
+                rewrites.values()
+                    .stream()
+                    .mapToInt(Integer::intValue)
+                    .sum(),
+                rewrites,
+                parsed - start,
+                visited - parsed,
+                emitted - visited
+            )
+        );
+
+        return shaded;
+    }
+
     static String shade(final String content,
                         final Map<PackageName, PackageName> shadings) {
+        final CompilationUnit unit = parse(content);
+        final List<Name> qualifieds = collectNames(unit);
+        return collectText(reverseSort(qualifieds), content, shadings);
+    }
+
+    // @VisibleForTesting
+    static CompilationUnit parse(final String content) {
+        return parse(content, null);
+    }
+
+    /**
+     * Parses the content, when not null cancel is run whenever the parser checks if it was cancelled, any exception
+     * it throws stops the parse and is rethrown.
+     */
+    private static CompilationUnit parse(final String content,
+                                         final Runnable cancel) {
         ASTParser parser = ASTParser.newParser(AST.JLS3);
         parser.setSource(content.toCharArray());
         parser.setKind(ASTParser.K_COMPILATION_UNIT);
 
-        final CompilationUnit unit = (CompilationUnit) parser.createAST(null);
-        final List<Name> qualifieds = collectNames(unit);
-        return collectText(reverseSort(qualifieds), content, shadings);
+        if (null == cancel) {
+            return (CompilationUnit) parser.createAST(null);
+        }
+
+        final RuntimeException[] cancelled = new RuntimeException[1];
+        try {
+            return (CompilationUnit) parser.createAST(
+                new NullProgressMonitor() {
+                    @Override
+                    public boolean isCanceled() {
+                        try {
+                            cancel.run();
+                            return false;
+                        } catch (final RuntimeException cause) {
+                            cancelled[0] = cause;
+                            return true;
+                        }
+                    }
+                }
+            );
+        } catch (final OperationCanceledException stopped) {
+            if (null != cancelled[0]) {
+                throw cancelled[0];
+            }
+            throw stopped;
+        }
     }
 
-    private static List<Name> collectNames(final ASTNode root) {
+    // @VisibleForTesting
+    static List<Name> collectNames(final ASTNode root) {
         final List<Name> names = Lists.array();
 
         root.accept(new ASTVisitor() {
@@ -102,7 +230,8 @@ final class JavaFilePackageShader implements BiFunction<byte[], Map<PackageName,
         return names;
     }
 
-    private static List<Name> reverseSort(final List<Name> nodes) {
+    // @VisibleForTesting
+    static List<Name> reverseSort(final List<Name> nodes) {
         final Map<Integer, Name> offsetToQualified = Maps.sorted(Comparator.reverseOrder());
 
         nodes.forEach(q -> offsetToQualified.put(q.getStartPosition(), q));
@@ -110,9 +239,20 @@ final class JavaFilePackageShader implements BiFunction<byte[], Map<PackageName,
         return offsetToQualified.values().stream().collect(Collectors.toList());
     }
 
+    // @VisibleForTesting
+    static String collectText(final List<Name> names,
+                              final String file,
+                              final Map<PackageName, PackageName> shadings) {
+        return collectText(names, file, shadings, null);
+    }
+
+    /**
+     * Rewrites names, counting the rewrites of each from package when rewrites is not null.
+     */
     private static String collectText(final List<Name> names,
                                       final String file,
-                                      final Map<PackageName, PackageName> shadings) {
+                                      final Map<PackageName, PackageName> shadings,
+                                      final Map<PackageName, Integer> rewrites) {
         final StringBuilder text = new StringBuilder();
         text.append(file);
 
@@ -131,6 +271,10 @@ final class JavaFilePackageShader implements BiFunction<byte[], Map<PackageName,
                 if (typeName.equals(from) || typeName.startsWith(from)) {
                     text.delete(start, start + from.length());
                     text.insert(start, to);
+
+                    if (null != rewrites) {
+                        rewrites.merge(oldAndNew.getKey(), 1, Integer::sum);
+                    }
                     break;
                 }
             }
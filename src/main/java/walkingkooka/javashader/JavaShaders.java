@@ -22,6 +22,11 @@ import walkingkooka.reflect.PublicStaticHelper;
 
 import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.function.BiFunction;
 
 public final class JavaShaders implements PublicStaticHelper {
@@ -34,6 +39,31 @@ public final class JavaShaders implements PublicStaticHelper {
         return ClassFilePackageShader.INSTANCE;
     }
 
+    /**
+     * {@see ClassFilePackageShader} that reports {@link PackageShaderMetrics} for every class file to the listener.
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> classFilePackageShader(final PackageShaderListener listener) {
+        return ClassFilePackageShader.with(listener);
+    }
+
+    /**
+     * {@see ClassFilePackageShader} that only keeps the given parts of the debug info of every class file, an empty
+     * set strips all debug info.
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> classFilePackageShader(final Set<ClassFileDebugInfo> debugInfo) {
+        return ClassFilePackageShader.INSTANCE.setDebugInfo(debugInfo);
+    }
+
+    /**
+     * {@see ClassFilePackageShader} that only keeps the given parts of the debug info and reports
+     * {@link PackageShaderMetrics} for every class file to the listener.
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> classFilePackageShader(final Set<ClassFileDebugInfo> debugInfo,
+                                                                                                 final PackageShaderListener listener) {
+        return ClassFilePackageShader.with(listener)
+            .setDebugInfo(debugInfo);
+    }
+
     /**
      * {@see JavaFilePackageShader}
      */
@@ -42,6 +72,80 @@ public final class JavaShaders implements PublicStaticHelper {
         return JavaFilePackageShader.with(charset);
     }
 
+    /**
+     * {@see JavaFilePackageShader} that reports {@link PackageShaderMetrics} for every java file to the listener.
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> javaFilePackageShader(final Charset charset,
+                                                                                                final PackageShaderListener listener) {
+        return JavaFilePackageShader.with(charset, listener);
+    }
+
+    /**
+     * {@see BatchPackageShader}
+     */
+    public static BiFunction<Map<String, byte[]>, Map<PackageName, PackageName>, Map<String, byte[]>> batchPackageShader(final Charset charset) {
+        return BatchPackageShader.with(charset);
+    }
+
+    /**
+     * {@see BatchPackageShader} that reports progress to the {@link PackageShaderJob} and stops with a
+     * {@link java.util.concurrent.CancellationException} when the calling thread is interrupted or the deadline passes.
+     */
+    public static BiFunction<Map<String, byte[]>, Map<PackageName, PackageName>, Map<String, byte[]>> batchPackageShader(final Charset charset,
+                                                                                                                     final PackageShaderJob job) {
+        Objects.requireNonNull(job, "job");
+
+        final BatchPackageShader shader = BatchPackageShader.with(charset);
+        return (files, mappings) -> shader.apply(files, mappings, job);
+    }
+
+    /**
+     * {@see ArchivePackageShader}
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> archivePackageShader(final Charset charset) {
+        return ArchivePackageShader.with(charset);
+    }
+
+    /**
+     * {@see ArchivePackageShader} with the given {@link ArchivePackageShaderOptions}, which select the compression,
+     * executor, {@link PackageReferenceIndex}, roots, {@link ClassLoadOrder} and {@link PackageShaderJob}.
+     */
+    public static BiFunction<byte[], Map<PackageName, PackageName>, byte[]> archivePackageShader(final ArchivePackageShaderOptions options) {
+        Objects.requireNonNull(options, "options");
+
+        final ArchivePackageShader shader = ArchivePackageShader.with(
+            options.charset(),
+            options.compression(),
+            options.executor(),
+            options.index(),
+            options.roots(),
+            options.order()
+        );
+        final PackageShaderJob job = options.job();
+        return (archive, mappings) -> shader.apply(archive, mappings, job);
+    }
+
+    /**
+     * {@see PackageShaderProcessor} that shades files on the executor with at most parallelism at once, holding at most
+     * window files and requesting no more while their content exceeds the budget. The budget is a soft limit, once half
+     * of it is held files are requested one at a time.
+     */
+    public static Flow.Processor<Entry<String, byte[]>, Entry<String, byte[]>> packageShaderProcessor(final Charset charset,
+                                                                                                    final Map<PackageName, PackageName> mappings,
+                                                                                                    final Executor executor,
+                                                                                                    final int parallelism,
+                                                                                                    final int window,
+                                                                                                    final long budget) {
+        return PackageShaderProcessor.with(
+            charset,
+            mappings,
+            executor,
+            parallelism,
+            window,
+            budget
+        );
+    }
+
     /**
      * Stop creation
      */
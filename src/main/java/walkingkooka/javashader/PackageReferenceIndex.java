@@ -0,0 +1,763 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.BatchPackageShader.Kind;
+import walkingkooka.reflect.PackageName;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An index of the packages referenced by every class file and optionally every java file of an archive or directory,
+ * built from a single parallel scan without shading anything. Class files contribute every type in their constant
+ * pool, java files are lexed and contribute package declarations, imports and qualified names whose leading lower
+ * case segments name a package.
+ * <br>
+ * The index may be saved and read back, and answers which entries reference a package and which entries a set of
+ * mappings would change. Batch shading may use an index to skip entries that reference no from package.
+ */
+public final class PackageReferenceIndex {
+
+    /**
+     * An index without entries, every entry is unknown and therefore may reference any package.
+     */
+    final static PackageReferenceIndex EMPTY = new PackageReferenceIndex(
+        new String[0],
+        new PackageName[0],
+        new int[0][],
+        new BitSet()
+    );
+
+    /**
+     * Scans every entry of an archive file or every file below a directory. Java files are only lexed when sources is
+     * true, otherwise they are recorded as unscanned.
+     */
+    public static PackageReferenceIndex scan(final Path path,
+                                             final Charset charset,
+                                             final boolean sources,
+                                             final Executor executor) throws IOException {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(executor, "executor");
+
+        return Files.isDirectory(path) ?
+            scanDirectory(path, charset, sources, executor) :
+            scanArchive(path, charset, sources, executor);
+    }
+
+    private static PackageReferenceIndex scanArchive(final Path path,
+                                                     final Charset charset,
+                                                     final boolean sources,
+                                                     final Executor executor) throws IOException {
+        try (final FileChannel archive = FileChannel.open(path, StandardOpenOption.READ)) {
+            final List<ArchiveEntry> entries = ArchiveEntry.read(archive);
+
+            final List<String> paths = Lists.array();
+            final List<CompletableFuture<Set<String>>> packages = Lists.array();
+
+            for (final ArchiveEntry entry : entries) {
+                final String entryPath = entry.name;
+                paths.add(entryPath);
+
+                packages.add(
+                    isScanned(entryPath, sources) && entry.isReadable() ?
+                        CompletableFuture.supplyAsync(
+                            () -> {
+                                try {
+                                    return packages(entryPath, entry.content(archive), charset);
+                                } catch (final IOException cause) {
+                                    throw new IllegalStateException("Unable to read " + entryPath, cause);
+                                }
+                            },
+                            executor
+                        ) :
+                        CompletableFuture.completedFuture(null)
+                );
+            }
+
+            return with(paths, packages);
+        }
+    }
+
+    private static PackageReferenceIndex scanDirectory(final Path directory,
+                                                       final Charset charset,
+                                                       final boolean sources,
+                                                       final Executor executor) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        final List<String> paths = Lists.array();
+        final List<CompletableFuture<Set<String>>> packages = Lists.array();
+
+        for (final Path file : files) {
+            final String path = directory.relativize(file)
+                .toString()
+                .replace(file.getFileSystem().getSeparator(), "/");
+            paths.add(path);
+
+            packages.add(
+                isScanned(path, sources) ?
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return packages(path, Files.readAllBytes(file), charset);
+                            } catch (final IOException cause) {
+                                throw new IllegalStateException("Unable to read " + file, cause);
+                            }
+                        },
+                        executor
+                    ) :
+                    CompletableFuture.completedFuture(null)
+            );
+        }
+
+        return with(paths, packages);
+    }
+
+    private static boolean isScanned(final String path,
+                                     final boolean sources) {
+        final Kind kind = Kind.of(path);
+        return Kind.CLASS_FILE == kind || sources && Kind.JAVA_FILE == kind;
+    }
+
+    /**
+     * Builds the index from the paths and the packages of each path, null packages mark an unscanned entry.
+     */
+    private static PackageReferenceIndex with(final List<String> paths,
+                                              final List<CompletableFuture<Set<String>>> entryPackages) {
+        final SortedSet<String> all = new TreeSet<>();
+        final List<Set<String>> joined = Lists.array();
+        for (final CompletableFuture<Set<String>> future : entryPackages) {
+            final Set<String> packages = ArchivePackageShader.join(future);
+            joined.add(packages);
+            if (null != packages) {
+                all.addAll(packages);
+            }
+        }
+
+        final PackageName[] packages = all.stream()
+            .map(PackageName::with)
+            .toArray(PackageName[]::new);
+        final List<String> packageNames = Lists.of(all.toArray(new String[0]));
+
+        final int count = paths.size();
+        final int[][] references = new int[count][];
+        final BitSet scanned = new BitSet(count);
+
+        for (int i = 0; i < count; i++) {
+            final Set<String> entry = joined.get(i);
+            if (null != entry) {
+                scanned.set(i);
+                references[i] = entry.stream()
+                    .mapToInt(p -> Collections.binarySearch(packageNames, p))
+                    .sorted()
+                    .toArray();
+            } else {
+                references[i] = new int[0];
+            }
+        }
+
+        return new PackageReferenceIndex(
+            paths.toArray(new String[0]),
+            packages,
+            references,
+            scanned
+        );
+    }
+
+    /**
+     * Returns the dotted names of the packages referenced by a class or java file.
+     */
+    // @VisibleForTesting
+    static Set<String> packages(final String path,
+                                final byte[] content,
+                                final Charset charset) {
+        return Kind.CLASS_FILE == Kind.of(path) ?
+            classFilePackages(content) :
+            sourcePackages(new String(content, charset));
+    }
+
+    // class file.......................................................................................................
+
+    /**
+     * Returns the packages of every type referenced by the class file.
+     */
+    static Set<String> classFilePackages(final byte[] classFile) {
+        final Set<String> packages = Sets.hash();
+
+        for (final String internalName : classFileTypes(classFile)) {
+            final int slash = internalName.lastIndexOf('/');
+            if (-1 != slash) {
+                packages.add(
+                    internalName.substring(0, slash)
+                        .replace('/', '.')
+                );
+            }
+        }
+
+        return packages;
+    }
+
+    /**
+     * Reads the constant pool, collecting the internal name of every class constant and every type within a
+     * descriptor or signature. Strings that only look like descriptors are also included, which only makes the results
+     * cautious.
+     */
+    static Set<String> classFileTypes(final byte[] classFile) {
+        if (classFile.length < 10 || 0xcafe != u2(classFile, 0) || 0xbabe != u2(classFile, 2)) {
+            throw new IllegalArgumentException("Invalid class file");
+        }
+
+        final Set<String> types = Sets.hash();
+        final int count = u2(classFile, 8);
+        final int[] utf8Offsets = new int[count];
+        final BitSet classNames = new BitSet(count);
+
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            final int tag = classFile[offset] & 0xff;
+            switch (tag) {
+                case 1: // Utf8
+                    utf8Offsets[i] = offset;
+                    offset += 3 + u2(classFile, offset + 1);
+                    break;
+                case 7: // Class
+                    classNames.set(u2(classFile, offset + 1));
+                    offset += 3;
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    offset += 3;
+                    break;
+                case 15: // MethodHandle
+                    offset += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    offset += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    offset += 9;
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid constant pool tag " + tag + " at " + offset);
+            }
+        }
+
+        for (int i = 1; i < count; i++) {
+            final int utf8 = utf8Offsets[i];
+            if (0 != utf8) {
+                final String text = new String(classFile, utf8 + 3, u2(classFile, utf8 + 1), StandardCharsets.UTF_8);
+                if (classNames.get(i) && '[' != text.charAt(0)) {
+                    types.add(text);
+                } else {
+                    addDescriptorTypes(text, types);
+                }
+            }
+        }
+
+        return types;
+    }
+
+    private static int u2(final byte[] bytes,
+                          final int offset) {
+        return (bytes[offset] & 0xff) << 8 | (bytes[offset + 1] & 0xff);
+    }
+
+    /**
+     * Adds every <code>Lname;</code> or <code>Lname&lt;</code> within a descriptor or signature.
+     */
+    private static void addDescriptorTypes(final String text,
+                                           final Set<String> types) {
+        int start = text.indexOf('L');
+        while (-1 != start) {
+            int end = start + 1;
+            final int length = text.length();
+            while (end < length && isInternalNameChar(text.charAt(end))) {
+                end++;
+            }
+            if (end < length && end > start + 1 && (';' == text.charAt(end) || '<' == text.charAt(end))) {
+                types.add(text.substring(start + 1, end));
+            }
+            start = text.indexOf('L', end);
+        }
+    }
+
+    private static boolean isInternalNameChar(final char c) {
+        return '/' == c || Character.isJavaIdentifierPart(c);
+    }
+
+    // source...........................................................................................................
+
+    /**
+     * Lexes java source skipping comments and literals. Package declarations and wildcard imports name a package,
+     * other qualified names contribute their leading lower case segments when followed by an upper case segment.
+     */
+    static Set<String> sourcePackages(final String text) {
+        final Set<String> packages = Sets.hash();
+        final int length = text.length();
+        final List<String> segments = Lists.array();
+        String keyword = null;
+
+        int i = 0;
+        while (i < length) {
+            final char c = text.charAt(i);
+
+            if ('/' == c && i + 1 < length && '/' == text.charAt(i + 1)) {
+                i = skipTo(text, i + 2, "\n");
+            } else if ('/' == c && i + 1 < length && '*' == text.charAt(i + 1)) {
+                i = skipTo(text, i + 2, "*/");
+            } else if ('"' == c && text.startsWith("\"\"\"", i)) {
+                i = skipTo(text, i + 3, "\"\"\"");
+            } else if ('"' == c || '\'' == c) {
+                i = skipLiteral(text, i + 1, c);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                segments.clear();
+                boolean wildcard = false;
+
+                for (; ; ) {
+                    final int start = i;
+                    while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                        i++;
+                    }
+                    segments.add(text.substring(start, i));
+
+                    final int dot = skipWhitespace(text, i);
+                    if (dot < length && '.' == text.charAt(dot)) {
+                        final int next = skipWhitespace(text, dot + 1);
+                        if (next < length && Character.isJavaIdentifierStart(text.charAt(next))) {
+                            i = next;
+                            continue;
+                        }
+                        if (next < length && '*' == text.charAt(next)) {
+                            wildcard = true;
+                            i = next + 1;
+                        }
+                    }
+                    break;
+                }
+
+                if (1 == segments.size() && ("package".equals(segments.get(0)) || "import".equals(segments.get(0)))) {
+                    keyword = segments.get(0);
+                } else if (1 == segments.size() && "static".equals(segments.get(0)) && "import".equals(keyword)) {
+                    // import static
+                } else {
+                    if ("package".equals(keyword) || wildcard && "import".equals(keyword)) {
+                        packages.add(String.join(".", segments));
+                    } else {
+                        addQualifiedName(segments, packages);
+                    }
+                    keyword = null;
+                }
+            } else {
+                if (';' == c) {
+                    keyword = null;
+                }
+                i++;
+            }
+        }
+
+        return packages;
+    }
+
+    private static void addQualifiedName(final List<String> segments,
+                                         final Set<String> packages) {
+        final int count = segments.size();
+        int lower = 0;
+        while (lower < count && Character.isLowerCase(segments.get(lower).charAt(0))) {
+            lower++;
+        }
+        if (lower > 0 && lower < count) {
+            packages.add(String.join(".", segments.subList(0, lower)));
+        }
+    }
+
+    private static int skipTo(final String text,
+                              final int start,
+                              final String end) {
+        final int found = text.indexOf(end, start);
+        return -1 == found ?
+            text.length() :
+            found + end.length();
+    }
+
+    private static int skipLiteral(final String text,
+                                   final int start,
+                                   final char quote) {
+        final int length = text.length();
+        int i = start;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if ('\\' == c) {
+                i += 2;
+            } else {
+                i++;
+                if (quote == c || '\n' == c) {
+                    break;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(final String text,
+                                      final int start) {
+        int i = start;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // ctor.............................................................................................................
+
+    private PackageReferenceIndex(final String[] entries,
+                                  final PackageName[] packages,
+                                  final int[][] references,
+                                  final BitSet scanned) {
+        super();
+        this.entries = entries;
+        this.packages = packages;
+        this.references = references;
+        this.scanned = scanned;
+
+        final Map<String, Integer> entryIndices = Maps.hash();
+        for (int i = 0; i < entries.length; i++) {
+            entryIndices.put(entries[i], i);
+        }
+        this.entryIndices = entryIndices;
+
+        final BitSet[] packageEntries = new BitSet[packages.length];
+        for (int i = 0; i < packages.length; i++) {
+            packageEntries[i] = new BitSet();
+        }
+        for (int i = 0; i < references.length; i++) {
+            for (final int p : references[i]) {
+                packageEntries[p].set(i);
+            }
+        }
+        this.packageEntries = packageEntries;
+    }
+
+    // queries..........................................................................................................
+
+    /**
+     * All entry paths in their original order.
+     */
+    public List<String> entries() {
+        return Lists.of(this.entries);
+    }
+
+    /**
+     * All referenced packages in sorted order.
+     */
+    public List<PackageName> packages() {
+        return Lists.of(this.packages);
+    }
+
+    /**
+     * The packages referenced by the entry, unknown and unscanned entries have none.
+     */
+    public Set<PackageName> references(final String path) {
+        Objects.requireNonNull(path, "path");
+
+        final Integer index = this.entryIndices.get(path);
+        return null == index ?
+            Sets.empty() :
+            Arrays.stream(this.references[index])
+                .mapToObj(p -> this.packages[p])
+                .collect(Collectors.toCollection(Sets::ordered));
+    }
+
+    /**
+     * The paths of the entries that reference the given package.
+     */
+    public Set<String> referencing(final PackageName packageName) {
+        Objects.requireNonNull(packageName, "packageName");
+
+        final int index = Arrays.binarySearch(
+            this.packages,
+            packageName,
+            (l, r) -> l.value().compareTo(r.value())
+        );
+        return index < 0 ?
+            Sets.empty() :
+            this.paths(this.packageEntries[index]);
+    }
+
+    /**
+     * Answers what shading with the mappings would change without shading anything. Returns the original and shaded
+     * path of every entry that references a from package or is relocated. Unscanned java files are only reported when
+     * relocated.
+     */
+    public Map<String, String> dryRun(final Map<PackageName, PackageName> mappings) {
+        Objects.requireNonNull(mappings, "mappings");
+
+        final BitSet changed = this.referencingAny(mappings);
+        final Map<String, String> changes = Maps.ordered();
+
+        final String[] entries = this.entries;
+        for (int i = 0; i < entries.length; i++) {
+            final String path = entries[i];
+            final String shadedPath = BatchPackageShader.path(path, mappings);
+            if (changed.get(i) || false == path.equals(shadedPath)) {
+                changes.put(path, shadedPath);
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Returns false only if the entry was scanned and references no from package, unknown and unscanned entries may
+     * reference anything.
+     */
+    boolean mayReference(final String path,
+                         final Map<PackageName, PackageName> mappings) {
+        final Integer index = this.entryIndices.get(path);
+        return null == index ||
+            false == this.scanned.get(index) ||
+            this.referencingAny(mappings).get(index);
+    }
+
+    /**
+     * The entries referencing a package that starts with any from package, matching the prefix test of the shaders.
+     */
+    private BitSet referencingAny(final Map<PackageName, PackageName> mappings) {
+        final BitSet entries = new BitSet();
+        final PackageName[] packages = this.packages;
+
+        for (final PackageName from : mappings.keySet()) {
+            final String prefix = from.value();
+            for (int i = 0; i < packages.length; i++) {
+                if (packages[i].value().startsWith(prefix)) {
+                    entries.or(this.packageEntries[i]);
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private Set<String> paths(final BitSet entries) {
+        final Set<String> paths = Sets.ordered();
+        for (int i = entries.nextSetBit(0); i >= 0; i = entries.nextSetBit(i + 1)) {
+            paths.add(this.entries[i]);
+        }
+        return paths;
+    }
+
+    private final String[] entries;
+
+    private final Map<String, Integer> entryIndices;
+
+    /**
+     * All referenced packages sorted by name.
+     */
+    private final PackageName[] packages;
+
+    /**
+     * The sorted indices of the packages referenced by each entry.
+     */
+    private final int[][] references;
+
+    /**
+     * The entries referencing each package.
+     */
+    private final BitSet[] packageEntries;
+
+    /**
+     * Entries whose content was scanned, all others may reference anything.
+     */
+    private final BitSet scanned;
+
+    // persistence......................................................................................................
+
+    /**
+     * Reads an index saved by {@link #write(Path)}.
+     */
+    public static PackageReferenceIndex read(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file");
+
+        try (final DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (MAGIC != data.readInt()) {
+                throw new IllegalArgumentException("Invalid package reference index " + file);
+            }
+            final int version = data.readInt();
+            if (VERSION != version) {
+                throw new IllegalArgumentException("Unsupported package reference index version " + version + " in " + file);
+            }
+
+            final PackageName[] packages = new PackageName[readVarInt(data)];
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] = PackageName.with(data.readUTF());
+            }
+
+            final int count = readVarInt(data);
+            final String[] entries = new String[count];
+            final int[][] references = new int[count][];
+            final BitSet scanned = new BitSet(count);
+
+            for (int i = 0; i < count; i++) {
+                entries[i] = data.readUTF();
+                if (data.readBoolean()) {
+                    scanned.set(i);
+                }
+
+                final int[] entryReferences = new int[readVarInt(data)];
+                int previous = 0;
+                for (int j = 0; j < entryReferences.length; j++) {
+                    previous += readVarInt(data);
+                    entryReferences[j] = previous;
+                }
+                references[i] = entryReferences;
+            }
+
+            return new PackageReferenceIndex(
+                entries,
+                packages,
+                references,
+                scanned
+            );
+        }
+    }
+
+    /**
+     * Saves this index, package indices are delta encoded variable length integers.
+     */
+    public void write(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file");
+
+        try (final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+
+            writeVarInt(this.packages.length, data);
+            for (final PackageName packageName : this.packages) {
+                data.writeUTF(packageName.value());
+            }
+
+            writeVarInt(this.entries.length, data);
+            for (int i = 0; i < this.entries.length; i++) {
+                data.writeUTF(this.entries[i]);
+                data.writeBoolean(this.scanned.get(i));
+
+                final int[] references = this.references[i];
+                writeVarInt(references.length, data);
+                int previous = 0;
+                for (final int reference : references) {
+                    writeVarInt(reference - previous, data);
+                    previous = reference;
+                }
+            }
+        }
+    }
+
+    private static void writeVarInt(final int value,
+                                    final DataOutputStream data) throws IOException {
+        int remaining = value;
+        while (remaining >= 0x80) {
+            data.writeByte(remaining & 0x7f | 0x80);
+            remaining >>>= 7;
+        }
+        data.writeByte(remaining);
+    }
+
+    private static int readVarInt(final DataInputStream data) throws IOException {
+        int value = 0;
+        int shift = 0;
+        for (; ; ) {
+            final int b = data.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                break;
+            }
+            shift += 7;
+        }
+        return value;
+    }
+
+    private final static int MAGIC = 0x4a535249; // JSRI
+    private final static int VERSION = 1;
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.entries);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof PackageReferenceIndex && this.equals0((PackageReferenceIndex) other);
+    }
+
+    private boolean equals0(final PackageReferenceIndex other) {
+        return Arrays.equals(this.entries, other.entries) &&
+            Arrays.equals(this.packages, other.packages) &&
+            Arrays.deepEquals(this.references, other.references) &&
+            this.scanned.equals(other.scanned);
+    }
+
+    @Override
+    public String toString() {
+        return this.entries.length + " entries " + this.packages.length + " packages";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import walkingkooka.reflect.PackageName;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+/**
+ * A Java Flight Recorder event recorded for every file shaded by {@link ClassFilePackageShader} or
+ * {@link JavaFilePackageShader}. The event is disabled by default, enable it with a recording setting such as
+ * <code>walkingkooka.javashader.Shade#enabled=true</code>. When disabled no event is created and no metrics are
+ * gathered.
+ */
+@Name("walkingkooka.javashader.Shade")
+@Label("Shade")
+@Description("Shading of a single class or java file")
+@Category({"walkingkooka", "Java Shader"})
+@Enabled(false)
+@StackTrace(false)
+final class PackageShaderEvent extends Event {
+
+    /**
+     * Shades a single file within a new event. When the event is enabled the shade function receives a listener that
+     * fills the event before forwarding to the given listener, otherwise no event is created and it receives the given
+     * listener which may be null.
+     */
+    static <T> T record(final Map<PackageName, PackageName> mappings,
+                        final PackageShaderListener listener,
+                        final Function<PackageShaderListener, T> shade) {
+        return Type.TYPE.isEnabled() ?
+            recordEvent(mappings, listener, shade) :
+            shade.apply(listener);
+    }
+
+    /**
+     * Holds the {@link EventType}, which is only registered after this class is initialized, the first time a file is
+     * shaded.
+     */
+    private static final class Type {
+        final static EventType TYPE = EventType.getEventType(PackageShaderEvent.class);
+    }
+
+    /**
+     * Shades within a new event, a recording may stop before the event begins so it is checked again.
+     */
+    private static <T> T recordEvent(final Map<PackageName, PackageName> mappings,
+                                     final PackageShaderListener listener,
+                                     final Function<PackageShaderListener, T> shade) {
+        final PackageShaderEvent event = new PackageShaderEvent();
+
+        event.begin();
+        final T shaded = shade.apply(
+            event.isEnabled() ?
+                event.listener(mappings, listener) :
+                listener
+        );
+        event.commit();
+
+        return shaded;
+    }
+
+    PackageShaderEvent() {
+        super();
+    }
+
+    /**
+     * Returns a {@link PackageShaderListener} that fills this event and then forwards to the given listener which may
+     * be null.
+     */
+    private PackageShaderListener listener(final Map<PackageName, PackageName> mappings,
+                                   final PackageShaderListener next) {
+        return (m) -> {
+            this.kind = PackageShaderMetrics.Kind.CLASS_FILE == m.kind() ?
+                "class" :
+                "source";
+            this.inputSize = m.bytesIn();
+            this.outputSize = m.bytesOut();
+            this.rewriteCount = m.namesRewritten();
+            this.ruleSetFingerprint = fingerprint(mappings);
+
+            if (null != next) {
+                next.shaded(m);
+            }
+        };
+    }
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Input Size")
+    @DataAmount
+    int inputSize;
+
+    @Label("Output Size")
+    @DataAmount
+    int outputSize;
+
+    @Label("Rewrite Count")
+    int rewriteCount;
+
+    @Label("Rule Set Fingerprint")
+    String ruleSetFingerprint;
+
+    /**
+     * The first 16 hex digits of a SHA-256 of the mappings in order. The fingerprint is computed for every event, which
+     * only happens when the event is enabled, so a mapping modified between files is never reported stale.
+     */
+    static String fingerprint(final Map<PackageName, PackageName> mappings) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException cause) {
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+
+        for (final Entry<PackageName, PackageName> mapping : mappings.entrySet()) {
+            digest.update(
+                (mapping.getKey().value() + '=' + mapping.getValue().value() + '\n')
+                    .getBytes(StandardCharsets.UTF_8)
+            );
+        }
+
+        final StringBuilder b = new StringBuilder();
+        final byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            b.append(Character.forDigit((hash[i] >> 4) & 0xf, 16))
+                .append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.nio.channels.ClosedByInterruptException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * The options of a long running shading job, an optional deadline and a {@link PackageShaderProgressListener}. A job
+ * stops with a {@link CancellationException} when the thread that started it is interrupted or the deadline passes,
+ * checking between files and while parsing each file. Output files are only replaced once complete.
+ */
+public final class PackageShaderJob {
+
+    /**
+     * A job without a deadline or listener, that still stops when its thread is interrupted.
+     */
+    final static PackageShaderJob NONE = new PackageShaderJob(
+        Optional.empty(),
+        (p) -> {
+        }
+    );
+
+    public static PackageShaderJob with(final Optional<Instant> deadline,
+                                        final PackageShaderProgressListener listener) {
+        Objects.requireNonNull(deadline, "deadline");
+        Objects.requireNonNull(listener, "listener");
+
+        return new PackageShaderJob(deadline, listener);
+    }
+
+    private PackageShaderJob(final Optional<Instant> deadline,
+                             final PackageShaderProgressListener listener) {
+        super();
+        this.deadline = deadline;
+        this.listener = listener;
+    }
+
+    public Optional<Instant> deadline() {
+        return this.deadline;
+    }
+
+    private final Optional<Instant> deadline;
+
+    public PackageShaderProgressListener listener() {
+        return this.listener;
+    }
+
+    private final PackageShaderProgressListener listener;
+
+    /**
+     * Starts tracking a single run of this job on the current thread, reporting that no files are done.
+     */
+    Tracker start(final long files,
+                  final long bytes) {
+        return new Tracker(this, files, bytes);
+    }
+
+    /**
+     * Interrupting a thread doing file channel io closes the channel, which is reported as the job being interrupted.
+     */
+    static CancellationException interrupted(final ClosedByInterruptException cause) {
+        final CancellationException interrupted = new CancellationException(INTERRUPTED);
+        interrupted.initCause(cause);
+        return interrupted;
+    }
+
+    private final static String INTERRUPTED = "Interrupted";
+
+    /**
+     * The state of a single run, shared by the calling thread and any worker threads.
+     */
+    static final class Tracker {
+
+        private Tracker(final PackageShaderJob job,
+                        final long files,
+                        final long bytes) {
+            this.job = job;
+            this.owner = Thread.currentThread();
+            this.start = System.nanoTime();
+            this.remaining = job.deadline.map(d -> nanos(Duration.between(Instant.now(), d)))
+                .orElse(Long.MAX_VALUE);
+            this.files = files;
+            this.bytes = bytes;
+
+            this.report();
+        }
+
+        private static long nanos(final Duration duration) {
+            try {
+                return duration.toNanos();
+            } catch (final ArithmeticException overflow) {
+                return duration.isNegative() ?
+                    -1 :
+                    Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * Throws a {@link CancellationException} if the job was interrupted or its deadline passed. Once cancelled
+         * every thread of the run fails with the same message.
+         */
+        void check() {
+            String cancelled = this.cancelled;
+            if (null == cancelled) {
+                if (this.owner.isInterrupted() || Thread.currentThread().isInterrupted()) {
+                    cancelled = INTERRUPTED;
+                } else {
+                    if (System.nanoTime() - this.start >= this.remaining) {
+                        cancelled = "Deadline " + this.job.deadline.get() + " exceeded";
+                    }
+                }
+            }
+
+            if (null != cancelled) {
+                this.cancelled = cancelled;
+                throw new CancellationException(cancelled);
+            }
+        }
+
+        private volatile String cancelled;
+
+        /**
+         * Wraps the types of a class file being shaded, checking every few type names so large class files may be
+         * cancelled part way.
+         */
+        Consumer<String> types(final Consumer<String> types) {
+            final int[] count = new int[1];
+            return (t) -> {
+                if (0 == (++count[0] & CHECK_TYPES)) {
+                    this.check();
+                }
+                types.accept(t);
+            };
+        }
+
+        private final static int CHECK_TYPES = 63;
+
+        /**
+         * Waits for the future, checking for cancellation while it is not done. Failures are rethrown as they were
+         * thrown by the task.
+         */
+        <T> T join(final CompletableFuture<T> future) {
+            while (false == future.isDone()) {
+                this.check();
+                try {
+                    future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException | ExecutionException wait) {
+                    // failures are rethrown by the join below
+                } catch (final InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    this.check();
+                }
+            }
+
+            return ArchivePackageShader.join(future);
+        }
+
+        private final static long POLL_MILLIS = 10;
+
+        /**
+         * Records another file of the given uncompressed size as done.
+         */
+        synchronized void done(final long bytes) {
+            this.filesDone++;
+            this.bytesDone += bytes;
+            this.report();
+        }
+
+        private void report() {
+            this.job.listener.progress(
+                PackageShaderProgress.with(
+                    this.filesDone,
+                    this.files,
+                    this.bytesDone,
+                    this.bytes
+                )
+            );
+        }
+
+        private final PackageShaderJob job;
+        private final Thread owner;
+        private final long start;
+
+        /**
+         * The nanos after start when the deadline passes.
+         */
+        private final long remaining;
+
+        private final long files;
+        private final long bytes;
+        private long filesDone;
+        private long bytesDone;
+    }
+
+    @Override
+    public String toString() {
+        return this.deadline.map(d -> "deadline " + d)
+            .orElse("no deadline");
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+/**
+ * An optional listener that receives the {@link PackageShaderMetrics} of every file shaded by a shader created with
+ * {@link JavaShaders}. Listeners may be called concurrently when files are shaded in parallel.
+ */
+public interface PackageShaderListener {
+
+    /**
+     * Called after a file is shaded, on the thread that shaded the file.
+     */
+    void shaded(final PackageShaderMetrics metrics);
+}
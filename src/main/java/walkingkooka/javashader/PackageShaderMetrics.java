@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.reflect.PackageName;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The metrics of shading a single class or java file, reported to a {@link PackageShaderListener}.
+ * <br>
+ * For class files parse is reading the class header and constant pool, visit is remapping every reference into a new
+ * class and emit is producing the bytes. For java files parse is building the AST, visit is collecting and sorting
+ * names and emit is rewriting and encoding the text.
+ */
+public final class PackageShaderMetrics {
+
+    /**
+     * The kind of file that was shaded.
+     */
+    public enum Kind {
+        CLASS_FILE,
+        JAVA_FILE
+    }
+
+    static PackageShaderMetrics with(final Kind kind,
+                                     final int bytesIn,
+                                     final int bytesOut,
+                                     final int namesVisited,
+                                     final int namesRewritten,
+                                     final Map<PackageName, Integer> rewrites,
+                                     final long parseNanos,
+                                     final long visitNanos,
+                                     final long emitNanos) {
+        return new PackageShaderMetrics(
+            kind,
+            bytesIn,
+            bytesOut,
+            namesVisited,
+            namesRewritten,
+            rewrites,
+            parseNanos,
+            visitNanos,
+            emitNanos
+        );
+    }
+
+    private PackageShaderMetrics(final Kind kind,
+                                 final int bytesIn,
+                                 final int bytesOut,
+                                 final int namesVisited,
+                                 final int namesRewritten,
+                                 final Map<PackageName, Integer> rewrites,
+                                 final long parseNanos,
+                                 final long visitNanos,
+                                 final long emitNanos) {
+        super();
+        this.kind = kind;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.namesVisited = namesVisited;
+        this.namesRewritten = namesRewritten;
+        this.rewrites = rewrites;
+        this.parseNanos = parseNanos;
+        this.visitNanos = visitNanos;
+        this.emitNanos = emitNanos;
+    }
+
+    public Kind kind() {
+        return this.kind;
+    }
+
+    private final Kind kind;
+
+    public int bytesIn() {
+        return this.bytesIn;
+    }
+
+    private final int bytesIn;
+
+    public int bytesOut() {
+        return this.bytesOut;
+    }
+
+    private final int bytesOut;
+
+    /**
+     * The number of type names for class files or AST names for java files that were tested against the mappings.
+     */
+    public int namesVisited() {
+        return this.namesVisited;
+    }
+
+    private final int namesVisited;
+
+    public int namesRewritten() {
+        return this.namesRewritten;
+    }
+
+    private final int namesRewritten;
+
+    /**
+     * The number of names rewritten by each from package, packages that were never used are absent.
+     */
+    public Map<PackageName, Integer> rewrites() {
+        return this.rewrites;
+    }
+
+    private final Map<PackageName, Integer> rewrites;
+
+    /**
+     * When no name was rewritten the file is unchanged, although a class file may still be re-encoded.
+     */
+    public boolean isUnchanged() {
+        return 0 == this.namesRewritten;
+    }
+
+    public long parseNanos() {
+        return this.parseNanos;
+    }
+
+    private final long parseNanos;
+
+    public long visitNanos() {
+        return this.visitNanos;
+    }
+
+    private final long visitNanos;
+
+    public long emitNanos() {
+        return this.emitNanos;
+    }
+
+    private final long emitNanos;
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.kind,
+            this.bytesIn,
+            this.bytesOut,
+            this.namesVisited,
+            this.namesRewritten,
+            this.rewrites
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof PackageShaderMetrics && this.equals0((PackageShaderMetrics) other);
+    }
+
+    private boolean equals0(final PackageShaderMetrics other) {
+        return this.kind == other.kind &&
+            this.bytesIn == other.bytesIn &&
+            this.bytesOut == other.bytesOut &&
+            this.namesVisited == other.namesVisited &&
+            this.namesRewritten == other.namesRewritten &&
+            this.rewrites.equals(other.rewrites) &&
+            this.parseNanos == other.parseNanos &&
+            this.visitNanos == other.visitNanos &&
+            this.emitNanos == other.emitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind +
+            " bytes " + this.bytesIn + "->" + this.bytesOut +
+            " names " + this.namesRewritten + "/" + this.namesVisited + " " + this.rewrites +
+            " parse " + this.parseNanos + "ns visit " + this.visitNanos + "ns emit " + this.emitNanos + "ns";
+    }
+}
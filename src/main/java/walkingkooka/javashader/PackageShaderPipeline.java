@@ -0,0 +1,492 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.ArchivePackageShader.Compressed;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shades an archive file through separate read, shade and compress stages, each with its own threads and connected
+ * by bounded queues, so reading and writing overlap shading. The calling thread writes entries in their original
+ * order or the {@link ClassLoadOrder}. At most capacity entries are in flight, which bounds the memory held by the pipeline.
+ * <br>
+ * The {@link PackageShaderStageMetrics} of every stage are returned, a stage whose utilization is close to 1 or whose
+ * queue is usually full is the bottleneck and needs more threads.
+ */
+public final class PackageShaderPipeline {
+
+    public static PackageShaderPipeline with(final Charset charset,
+                                             final ArchiveCompression compression,
+                                             final int readThreads,
+                                             final int shadeThreads,
+                                             final int compressThreads,
+                                             final int capacity) {
+        return with(
+            charset,
+            compression,
+            readThreads,
+            shadeThreads,
+            compressThreads,
+            capacity,
+            ClassLoadOrder.EMPTY
+        );
+    }
+
+    /**
+     * Creates a {@link PackageShaderPipeline} that writes the classes of the {@link ClassLoadOrder} first.
+     */
+    public static PackageShaderPipeline with(final Charset charset,
+                                             final ArchiveCompression compression,
+                                             final int readThreads,
+                                             final int shadeThreads,
+                                             final int compressThreads,
+                                             final int capacity,
+                                             final ClassLoadOrder order) {
+        checkCount(readThreads, "read threads");
+        checkCount(shadeThreads, "shade threads");
+        checkCount(compressThreads, "compress threads");
+        checkCount(capacity, "capacity");
+
+        return new PackageShaderPipeline(
+            ArchivePackageShader.with(
+                charset,
+                compression,
+                Runnable::run,
+                PackageReferenceIndex.EMPTY,
+                Sets.empty(),
+                order
+            ),
+            readThreads,
+            shadeThreads,
+            compressThreads,
+            capacity
+        );
+    }
+
+    private static void checkCount(final int count,
+                                   final String label) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Invalid " + label + " " + count + " must be greater than 0");
+        }
+    }
+
+    private PackageShaderPipeline(final ArchivePackageShader shader,
+                                  final int readThreads,
+                                  final int shadeThreads,
+                                  final int compressThreads,
+                                  final int capacity) {
+        super();
+        this.shader = shader;
+        this.readThreads = readThreads;
+        this.shadeThreads = shadeThreads;
+        this.compressThreads = compressThreads;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Shades the archive writing the result to the output file, returning the metrics of the read, shade, compress
+     * and write stages.
+     */
+    public List<PackageShaderStageMetrics> shade(final Path archive,
+                                                 final Map<PackageName, PackageName> mappings,
+                                                 final Path output) throws IOException {
+        return this.shade(
+            archive,
+            mappings,
+            output,
+            PackageShaderJob.NONE
+        );
+    }
+
+    /**
+     * Shades the archive reporting progress to the {@link PackageShaderJob} as entries are written, a cancelled job
+     * throws a {@link java.util.concurrent.CancellationException} and leaves any previous output file untouched.
+     */
+    public List<PackageShaderStageMetrics> shade(final Path archive,
+                                                 final Map<PackageName, PackageName> mappings,
+                                                 final Path output,
+                                                 final PackageShaderJob job) throws IOException {
+        Objects.requireNonNull(archive, "archive");
+        Objects.requireNonNull(mappings, "mappings");
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(job, "job");
+
+        final long start = System.nanoTime();
+
+        final PackageShaderStage<Item> read = PackageShaderStage.with("READ", this.readThreads, this.capacity);
+        final PackageShaderStage<Item> shade = PackageShaderStage.with("SHADE", this.shadeThreads, this.capacity);
+        final PackageShaderStage<Item> compress = PackageShaderStage.with("COMPRESS", this.compressThreads, this.capacity);
+        final PackageShaderStage<Item> write = PackageShaderStage.with("WRITE", 1, this.capacity);
+
+        try (final FileChannel input = FileChannel.open(archive, StandardOpenOption.READ)) {
+            final List<ArchiveEntry> entries = this.shader.orderRelocated(
+                relocate(
+                    ArchiveEntry.read(input),
+                    mappings
+                ),
+                mappings
+            );
+            final Run run = new Run(
+                input,
+                mappings,
+                entries,
+                job.start(
+                    entries.size(),
+                    ArchivePackageShader.size(entries)
+                ),
+                read,
+                shade,
+                compress,
+                write
+            );
+
+            final ExecutorService threads = Executors.newFixedThreadPool(
+                this.readThreads + this.shadeThreads + this.compressThreads,
+                (r) -> {
+                    final Thread thread = new Thread(r, "shade-pipeline");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+            try {
+                for (int i = 0; i < this.readThreads; i++) {
+                    threads.execute(run::read);
+                }
+                for (int i = 0; i < this.shadeThreads; i++) {
+                    threads.execute(run::shade);
+                }
+                for (int i = 0; i < this.compressThreads; i++) {
+                    threads.execute(run::compress);
+                }
+
+                ArchiveWriter.replace(
+                    output,
+                    (file) -> {
+                        final ArchiveWriter writer = ArchiveWriter.with(file);
+                        run.write(writer);
+                        writer.finish(ArchiveEntry.comment(input));
+                    }
+                );
+            } finally {
+                threads.shutdownNow();
+            }
+        } catch (final ClosedByInterruptException cause) {
+            throw PackageShaderJob.interrupted(cause);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        return Lists.of(
+            read.metrics(elapsed),
+            shade.metrics(elapsed),
+            compress.metrics(elapsed),
+            write.metrics(elapsed)
+        );
+    }
+
+    /**
+     * Returns the entries with their relocated names, failing if two entries have the same relocated name.
+     */
+    private static List<ArchiveEntry> relocate(final List<ArchiveEntry> entries,
+                                               final Map<PackageName, PackageName> mappings) {
+        final List<ArchiveEntry> relocated = Lists.array();
+        final Set<String> paths = Sets.hash();
+
+        for (final ArchiveEntry entry : entries) {
+            final String path = entry.name;
+            final String shadedPath = BatchPackageShader.path(path, mappings);
+            if (false == paths.add(shadedPath)) {
+                throw new IllegalArgumentException("Duplicate path " + shadedPath + " for " + path);
+            }
+            relocated.add(entry.setName(shadedPath));
+        }
+
+        return relocated;
+    }
+
+    /**
+     * The state of shading a single archive, shared by the threads of all stages.
+     */
+    private final class Run {
+
+        Run(final FileChannel input,
+            final Map<PackageName, PackageName> mappings,
+            final List<ArchiveEntry> entries,
+            final PackageShaderJob.Tracker tracker,
+            final PackageShaderStage<Item> read,
+            final PackageShaderStage<Item> shade,
+            final PackageShaderStage<Item> compress,
+            final PackageShaderStage<Item> write) {
+            this.input = input;
+            this.mappings = mappings;
+            this.entries = entries;
+            this.tracker = tracker;
+            this.read = read;
+            this.shade = shade;
+            this.compress = compress;
+            this.write = write;
+
+            final int count = entries.size();
+            final List<CompletableFuture<Item>> done = Lists.array();
+            for (int i = 0; i < count; i++) {
+                done.add(new CompletableFuture<>());
+            }
+            this.done = done;
+        }
+
+        /**
+         * Claims entries in order, reading and decompressing those that may need shading.
+         */
+        void read() {
+            try {
+                final int count = this.entries.size();
+
+                for (; ; ) {
+                    this.inFlight.acquire();
+                    final int index = this.next.getAndIncrement();
+                    if (index >= count) {
+                        this.inFlight.release();
+                        break;
+                    }
+                    this.read.depth(PackageShaderPipeline.this.capacity - this.inFlight.availablePermits());
+
+                    final long start = System.nanoTime();
+                    final ArchiveEntry entry = this.entries.get(index);
+                    final Item item = new Item(index, entry);
+                    try {
+                        this.tracker.check();
+                        if (ArchivePackageShader.needsContent(entry, this.mappings)) {
+                            item.content = entry.content(this.input);
+                        }
+                    } catch (final IOException | RuntimeException cause) {
+                        this.done.get(index).completeExceptionally(cause);
+                        continue;
+                    } finally {
+                        this.read.busy(System.nanoTime() - start);
+                    }
+                    this.shade.put(item);
+                }
+
+                if (0 == this.readers.decrementAndGet()) {
+                    this.end(this.shade);
+                }
+            } catch (final InterruptedException cancelled) {
+                // pipeline shutdown
+            }
+        }
+
+        void shade() {
+            try {
+                for (; ; ) {
+                    final Item item = this.shade.take();
+                    if (END == item) {
+                        break;
+                    }
+
+                    final long start = System.nanoTime();
+                    try {
+                        final byte[] content = item.content;
+                        if (null != content) {
+                            item.shaded = PackageShaderPipeline.this.shader.shadeContent(
+                                item.entry,
+                                content,
+                                this.mappings,
+                                this.tracker
+                            );
+                            item.content = null;
+                        }
+                    } catch (final RuntimeException cause) {
+                        this.done.get(item.index).completeExceptionally(cause);
+                        continue;
+                    } finally {
+                        this.shade.busy(System.nanoTime() - start);
+                    }
+                    this.compress.put(item);
+                }
+
+                if (0 == this.shaders.decrementAndGet()) {
+                    this.end(this.compress);
+                }
+            } catch (final InterruptedException cancelled) {
+                // pipeline shutdown
+            }
+        }
+
+        void compress() {
+            try {
+                for (; ; ) {
+                    final Item item = this.compress.take();
+                    if (END == item) {
+                        break;
+                    }
+
+                    final long start = System.nanoTime();
+                    RuntimeException failed = null;
+                    try {
+                        final byte[] shaded = item.shaded;
+                        if (null != shaded) {
+                            item.compressed = PackageShaderPipeline.this.shader.compress(
+                                item.entry,
+                                shaded
+                            );
+                            item.shaded = null;
+                        }
+                    } catch (final RuntimeException cause) {
+                        failed = cause;
+                    }
+                    this.compress.busy(System.nanoTime() - start);
+
+                    // metrics are recorded before completing, as the writer may finish with this item
+                    if (null != failed) {
+                        this.done.get(item.index).completeExceptionally(failed);
+                    } else {
+                        this.write.depth(this.waiting.incrementAndGet());
+                        this.done.get(item.index).complete(item);
+                    }
+                }
+            } catch (final InterruptedException cancelled) {
+                // pipeline shutdown
+            }
+        }
+
+        /**
+         * Writes every entry in order on the calling thread, waiting for each to pass through the other stages.
+         */
+        void write(final ArchiveWriter writer) throws IOException {
+            for (final CompletableFuture<Item> done : this.done) {
+                final Item item = this.tracker.join(done);
+                this.waiting.decrementAndGet();
+
+                final long start = System.nanoTime();
+                final Compressed compressed = item.compressed;
+                if (null != compressed) {
+                    writer.write(
+                        compressed.entry,
+                        compressed.bytes,
+                        compressed.offset,
+                        compressed.length
+                    );
+                } else {
+                    writer.write(
+                        item.entry,
+                        this.input,
+                        item.entry.dataOffset
+                    );
+                }
+                this.write.busy(System.nanoTime() - start);
+
+                this.inFlight.release();
+                this.tracker.done(item.entry.size);
+            }
+        }
+
+        private void end(final PackageShaderStage<Item> stage) {
+            try {
+                for (int i = 0; i < stage.threads; i++) {
+                    stage.put(END);
+                }
+            } catch (final InterruptedException cancelled) {
+                // pipeline shutdown
+            }
+        }
+
+        private final FileChannel input;
+        private final Map<PackageName, PackageName> mappings;
+        private final List<ArchiveEntry> entries;
+        private final PackageShaderJob.Tracker tracker;
+        private final PackageShaderStage<Item> read;
+        private final PackageShaderStage<Item> shade;
+        private final PackageShaderStage<Item> compress;
+        private final PackageShaderStage<Item> write;
+
+        /**
+         * Completed with each entry once compressed, in entry order.
+         */
+        private final List<CompletableFuture<Item>> done;
+
+        private final Semaphore inFlight = new Semaphore(PackageShaderPipeline.this.capacity);
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger readers = new AtomicInteger(PackageShaderPipeline.this.readThreads);
+        private final AtomicInteger shaders = new AtomicInteger(PackageShaderPipeline.this.shadeThreads);
+
+        /**
+         * The number of compressed entries waiting to be written.
+         */
+        private final AtomicInteger waiting = new AtomicInteger();
+    }
+
+    /**
+     * An entry passing through the pipeline, each stage replaces the content with its result.
+     */
+    private static final class Item {
+
+        Item(final int index,
+             final ArchiveEntry entry) {
+            this.index = index;
+            this.entry = entry;
+        }
+
+        final int index;
+        final ArchiveEntry entry;
+
+        byte[] content;
+        byte[] shaded;
+        Compressed compressed;
+    }
+
+    /**
+     * Marks the end of the items for a single thread of the next stage.
+     */
+    private final static Item END = new Item(-1, null);
+
+    private final ArchivePackageShader shader;
+
+    private final int readThreads;
+
+    private final int shadeThreads;
+
+    private final int compressThreads;
+
+    private final int capacity;
+
+    @Override
+    public String toString() {
+        return this.shader +
+            " read " + this.readThreads +
+            " shade " + this.shadeThreads +
+            " compress " + this.compressThreads +
+            " capacity " + this.capacity;
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.BatchPackageShader.Kind;
+import walkingkooka.reflect.PackageName;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link Flow.Processor} that shades files given as path and content, emitting each shaded file with its relocated
+ * path in the order they were received. Files are shaded on the {@link Executor} with at most parallelism at once.
+ * <br>
+ * Memory is bounded by the window, at most window files are held between being received and emitted to a subscriber
+ * that has requested them, and no more are requested from upstream while the content held exceeds the budget. A slow
+ * subscriber therefore slows the upstream publisher rather than filling the heap.
+ * <br>
+ * The budget is a soft limit, because the size of a file is only known once it arrives. The window is filled while less
+ * than half the budget is held, after that a single file is requested at a time. The content held therefore exceeds
+ * the budget by at most the files already requested when half the budget was reached, plus one file.
+ */
+final class PackageShaderProcessor implements Flow.Processor<Entry<String, byte[]>, Entry<String, byte[]>> {
+
+    static PackageShaderProcessor with(final Charset charset,
+                                       final Map<PackageName, PackageName> mappings,
+                                       final Executor executor,
+                                       final int parallelism,
+                                       final int window,
+                                       final long budget) {
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(mappings, "mappings");
+        Objects.requireNonNull(executor, "executor");
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism " + parallelism + " must be greater than 0");
+        }
+        if (window < parallelism) {
+            throw new IllegalArgumentException("Invalid window " + window + " must be at least parallelism " + parallelism);
+        }
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Invalid budget " + budget + " must be greater than 0");
+        }
+
+        final Map<PackageName, PackageName> copy = Maps.ordered();
+        copy.putAll(mappings);
+
+        return new PackageShaderProcessor(
+            charset,
+            copy,
+            executor,
+            parallelism,
+            window,
+            budget
+        );
+    }
+
+    private PackageShaderProcessor(final Charset charset,
+                                   final Map<PackageName, PackageName> mappings,
+                                   final Executor executor,
+                                   final int parallelism,
+                                   final int window,
+                                   final long budget) {
+        super();
+        this.charset = charset;
+        this.mappings = mappings;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.window = window;
+        this.budget = budget;
+    }
+
+    // Subscriber.......................................................................................................
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+
+        if (false == this.upstream.compareAndSet(null, subscription) || this.cancelled) {
+            subscription.cancel();
+        } else {
+            this.drain();
+        }
+    }
+
+    @Override
+    public void onNext(final Entry<String, byte[]> file) {
+        Objects.requireNonNull(file, "file");
+
+        if (false == this.done) {
+            final Item item = new Item(file);
+            this.requested.getAndUpdate(
+                (r) -> r > 0 ?
+                    r - 1 :
+                    r
+            );
+            this.held.incrementAndGet();
+            this.bytes.addAndGet(item.size);
+
+            this.pending.add(item);
+            this.waiting.add(item);
+            this.drain();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable cause) {
+        Objects.requireNonNull(cause, "cause");
+
+        this.error = cause;
+        this.done = true;
+        this.drain();
+    }
+
+    @Override
+    public void onComplete() {
+        this.done = true;
+        this.drain();
+    }
+
+    // Publisher........................................................................................................
+
+    /**
+     * Only a single subscriber is supported, any other subscriber receives an {@link IllegalStateException}.
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super Entry<String, byte[]>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        if (this.downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(
+                new Flow.Subscription() {
+                    @Override
+                    public void request(final long n) {
+                        PackageShaderProcessor.this.request(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        PackageShaderProcessor.this.cancel();
+                    }
+                }
+            );
+            this.drain();
+        } else {
+            subscriber.onSubscribe(
+                new Flow.Subscription() {
+                    @Override
+                    public void request(final long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                }
+            );
+            subscriber.onError(new IllegalStateException("Already subscribed"));
+        }
+    }
+
+    private void request(final long n) {
+        if (n <= 0) {
+            this.invalid = new IllegalArgumentException("Invalid request " + n + " must be greater than 0");
+        } else {
+            this.demand.getAndUpdate(
+                (d) -> d + n < 0 ?
+                    Long.MAX_VALUE :
+                    d + n
+            );
+        }
+        this.drain();
+    }
+
+    private void cancel() {
+        this.cancelled = true;
+        this.cancelUpstream();
+        this.drain();
+    }
+
+    private void cancelUpstream() {
+        final Flow.Subscription upstream = this.upstream.get();
+        if (null != upstream) {
+            upstream.cancel();
+        }
+    }
+
+    // drain............................................................................................................
+
+    /**
+     * Starts shading, emits shaded files and requests more from upstream. Only a single thread drains at a time, any
+     * signal arriving while another thread is draining makes that thread drain again, so subscribers are never called
+     * concurrently.
+     */
+    private void drain() {
+        if (0 == this.wip.getAndIncrement()) {
+            int missed = 1;
+            do {
+                this.drain0();
+                missed = this.wip.addAndGet(-missed);
+            } while (0 != missed);
+        }
+    }
+
+    private void drain0() {
+        if (this.terminated) {
+            return;
+        }
+        if (this.cancelled) {
+            this.terminate();
+            return;
+        }
+
+        this.start();
+
+        final Flow.Subscriber<? super Entry<String, byte[]>> downstream = this.downstream.get();
+        if (null != downstream) {
+            final Throwable invalid = this.invalid;
+            if (null != invalid) {
+                this.fail(downstream, invalid);
+                return;
+            }
+
+            for (; ; ) {
+                final Item head = this.pending.peek();
+                if (null == head || false == head.shaded.isDone()) {
+                    break;
+                }
+
+                final Entry<String, byte[]> shaded;
+                try {
+                    shaded = head.shaded.join();
+                } catch (final CompletionException cause) {
+                    this.fail(downstream, cause.getCause());
+                    return;
+                }
+
+                if (0 == this.demand.get()) {
+                    break;
+                }
+                this.demand.getAndUpdate(
+                    (d) -> Long.MAX_VALUE == d ?
+                        d :
+                        d - 1
+                );
+                this.pending.poll();
+                this.held.decrementAndGet();
+                this.bytes.addAndGet(-head.size);
+
+                downstream.onNext(shaded);
+                if (this.cancelled) {
+                    this.terminate();
+                    return;
+                }
+            }
+
+            if (this.done && this.pending.isEmpty()) {
+                this.terminate();
+
+                final Throwable error = this.error;
+                if (null != error) {
+                    downstream.onError(error);
+                } else {
+                    downstream.onComplete();
+                }
+                return;
+            }
+        }
+
+        this.requestUpstream();
+    }
+
+    /**
+     * Submits waiting files for shading while fewer than parallelism are running.
+     */
+    private void start() {
+        while (this.running.get() < this.parallelism) {
+            final Item item = this.waiting.poll();
+            if (null == item) {
+                break;
+            }
+
+            this.running.incrementAndGet();
+            try {
+                this.executor.execute(
+                    () -> this.shade(item)
+                );
+            } catch (final RuntimeException cause) {
+                this.running.decrementAndGet();
+                item.shaded.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private void shade(final Item item) {
+        Entry<String, byte[]> shaded = null;
+        Throwable failed = null;
+        try {
+            shaded = this.shade(item.path, item.content);
+        } catch (final Throwable cause) {
+            failed = cause;
+        }
+
+        this.running.decrementAndGet();
+        if (null != failed) {
+            item.shaded.completeExceptionally(failed);
+        } else {
+            item.shaded.complete(shaded);
+        }
+        this.drain();
+    }
+
+    /**
+     * Shades class and java files and relocates the path of every file.
+     */
+    private Entry<String, byte[]> shade(final String path,
+                                        final byte[] content) {
+        final Kind kind = Kind.of(path);
+
+        return Map.entry(
+            BatchPackageShader.path(path, this.mappings),
+            Kind.OTHER == kind ?
+                content :
+                BatchPackageShader.shade(
+                    kind,
+                    content,
+                    this.charset,
+                    this.mappings
+                )
+        );
+    }
+
+    /**
+     * Requests enough files from upstream to fill the window, unless the content held already exceeds the budget. Once
+     * half the budget is held only a single file is requested, and only when no other requested file is outstanding.
+     */
+    private void requestUpstream() {
+        final Flow.Subscription upstream = this.upstream.get();
+        if (null != upstream && false == this.done) {
+            final long bytes = this.bytes.get();
+            if (bytes < this.budget) {
+                final int requested = this.requested.get();
+                final int free = this.window - this.held.get() - requested;
+                final int request = this.budget - bytes > bytes ?
+                    free :
+                    0 == requested ?
+                        Math.min(free, 1) :
+                        0;
+                if (request > 0) {
+                    this.requested.addAndGet(request);
+                    upstream.request(request);
+                }
+            }
+        }
+    }
+
+    private void fail(final Flow.Subscriber<? super Entry<String, byte[]>> downstream,
+                      final Throwable cause) {
+        this.cancelUpstream();
+        this.terminate();
+        downstream.onError(cause);
+    }
+
+    private void terminate() {
+        this.terminated = true;
+        this.waiting.clear();
+        this.pending.clear();
+    }
+
+    /**
+     * A file that was received, its shaded result completes once it has been shaded.
+     */
+    private static final class Item {
+
+        Item(final Entry<String, byte[]> file) {
+            this.path = Objects.requireNonNull(file.getKey(), "path");
+            this.content = Objects.requireNonNull(file.getValue(), "content");
+            this.size = this.content.length;
+        }
+
+        final String path;
+        final byte[] content;
+        final long size;
+        final CompletableFuture<Entry<String, byte[]>> shaded = new CompletableFuture<>();
+    }
+
+    private final Charset charset;
+
+    private final Map<PackageName, PackageName> mappings;
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    /**
+     * The maximum number of files held, including those requested from upstream that have not yet arrived.
+     */
+    private final int window;
+
+    private final long budget;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+
+    private final AtomicReference<Flow.Subscriber<? super Entry<String, byte[]>>> downstream = new AtomicReference<>();
+
+    /**
+     * Every file received and not yet emitted, in the order received.
+     */
+    private final Queue<Item> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Files received that have not yet been submitted for shading.
+     */
+    private final Queue<Item> waiting = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Files requested from upstream that have not yet arrived.
+     */
+    private final AtomicInteger requested = new AtomicInteger();
+
+    private final AtomicInteger held = new AtomicInteger();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Files requested by the subscriber that have not yet been emitted.
+     */
+    private final AtomicLong demand = new AtomicLong();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean done;
+
+    private volatile Throwable error;
+
+    private volatile boolean cancelled;
+
+    private volatile IllegalArgumentException invalid;
+
+    /**
+     * Only read and written while draining.
+     */
+    private boolean terminated;
+
+    @Override
+    public String toString() {
+        return this.charset + " " + this.parallelism + " " + this.window + " " + this.budget;
+    }
+}
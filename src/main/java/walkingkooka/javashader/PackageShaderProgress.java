@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+/**
+ * The files and bytes shaded so far out of the totals of a single job, bytes are the uncompressed sizes of the files.
+ */
+public final class PackageShaderProgress {
+
+    static PackageShaderProgress with(final long filesDone,
+                                      final long files,
+                                      final long bytesDone,
+                                      final long bytes) {
+        return new PackageShaderProgress(
+            filesDone,
+            files,
+            bytesDone,
+            bytes
+        );
+    }
+
+    private PackageShaderProgress(final long filesDone,
+                                  final long files,
+                                  final long bytesDone,
+                                  final long bytes) {
+        super();
+        this.filesDone = filesDone;
+        this.files = files;
+        this.bytesDone = bytesDone;
+        this.bytes = bytes;
+    }
+
+    public long filesDone() {
+        return this.filesDone;
+    }
+
+    private final long filesDone;
+
+    public long files() {
+        return this.files;
+    }
+
+    private final long files;
+
+    public long bytesDone() {
+        return this.bytesDone;
+    }
+
+    private final long bytesDone;
+
+    public long bytes() {
+        return this.bytes;
+    }
+
+    private final long bytes;
+
+    /**
+     * The fraction of bytes done, falling back to files when the job holds no bytes.
+     */
+    public double fraction() {
+        return 0 != this.bytes ?
+            (double) this.bytesDone / this.bytes :
+            0 != this.files ?
+                (double) this.filesDone / this.files :
+                1;
+    }
+
+    public boolean isDone() {
+        return this.filesDone == this.files;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.filesDone) ^ Long.hashCode(this.bytesDone);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof PackageShaderProgress && this.equals0((PackageShaderProgress) other);
+    }
+
+    private boolean equals0(final PackageShaderProgress other) {
+        return this.filesDone == other.filesDone &&
+            this.files == other.files &&
+            this.bytesDone == other.bytesDone &&
+            this.bytes == other.bytes;
+    }
+
+    @Override
+    public String toString() {
+        return this.filesDone + "/" + this.files + " files " + this.bytesDone + "/" + this.bytes + " bytes";
+    }
+}
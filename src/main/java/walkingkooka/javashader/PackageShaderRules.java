@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.reflect.PackageName;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * Mappings compiled once into slash separated internal name prefixes, for shading many class files with the same
+ * mappings. Like {@link ClassFilePackageShader} the first mapping whose from package is a prefix of a name wins, and
+ * the matching prefix is replaced. Names whose first character starts no from package are rejected without testing
+ * any mapping.
+ */
+final class PackageShaderRules {
+
+    static PackageShaderRules with(final Map<PackageName, PackageName> mappings) {
+        Objects.requireNonNull(mappings, "mappings");
+
+        final int count = mappings.size();
+        final String[] from = new String[count];
+        final String[] to = new String[count];
+        final BitSet firsts = new BitSet();
+
+        int i = 0;
+        for (final Entry<PackageName, PackageName> mapping : mappings.entrySet()) {
+            from[i] = internalName(mapping.getKey());
+            to[i] = internalName(mapping.getValue());
+            firsts.set(from[i].charAt(0));
+            i++;
+        }
+
+        return new PackageShaderRules(from, to, firsts);
+    }
+
+    private static String internalName(final PackageName packageName) {
+        return packageName.value()
+            .replace('.', '/');
+    }
+
+    private PackageShaderRules(final String[] from,
+                               final String[] to,
+                               final BitSet firsts) {
+        super();
+        this.from = from;
+        this.to = to;
+        this.firsts = firsts;
+    }
+
+    /**
+     * Shades the slash separated internal name or path returning the same instance when no mapping matches.
+     */
+    String shade(final String internalName) {
+        String shaded = internalName;
+
+        if (false == internalName.isEmpty() && this.firsts.get(internalName.charAt(0))) {
+            final String[] from = this.from;
+            final int count = from.length;
+
+            for (int i = 0; i < count; i++) {
+                final String prefix = from[i];
+                if (internalName.startsWith(prefix)) {
+                    shaded = this.to[i] + internalName.substring(prefix.length());
+                    break;
+                }
+            }
+        }
+
+        return shaded;
+    }
+
+    /**
+     * Returns the original internal name or path that shades to the given name. Names that are not the result of
+     * shading are returned unchanged, and names that were relocated away return null, as they no longer exist once
+     * shaded.
+     */
+    String unshade(final String shadedName) {
+        String original = null;
+
+        final String[] to = this.to;
+        final int count = to.length;
+
+        for (int i = 0; i < count; i++) {
+            final String prefix = to[i];
+            if (shadedName.startsWith(prefix)) {
+                final String possible = this.from[i] + shadedName.substring(prefix.length());
+                if (shadedName.equals(this.shade(possible))) {
+                    original = possible;
+                    break;
+                }
+            }
+        }
+
+        if (null == original && shadedName.equals(this.shade(shadedName))) {
+            original = shadedName;
+        }
+
+        return original;
+    }
+
+    private final String[] from;
+    private final String[] to;
+
+    /**
+     * The first character of every from prefix.
+     */
+    private final BitSet firsts;
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+
+        final int count = this.from.length;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                b.append(", ");
+            }
+            b.append(this.from[i])
+                .append('=')
+                .append(this.to[i]);
+        }
+
+        return b.toString();
+    }
+}
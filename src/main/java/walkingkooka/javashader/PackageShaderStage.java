@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stage of a {@link PackageShaderPipeline} with its bounded input queue, recording queue depth and busy time.
+ */
+final class PackageShaderStage<T> {
+
+    static <T> PackageShaderStage<T> with(final String name,
+                                          final int threads,
+                                          final int capacity) {
+        return new PackageShaderStage<>(
+            name,
+            threads,
+            capacity
+        );
+    }
+
+    private PackageShaderStage(final String name,
+                               final int threads,
+                               final int capacity) {
+        super();
+        this.name = name;
+        this.threads = threads;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds an item to the input queue, waiting while the queue is full.
+     */
+    void put(final T item) throws InterruptedException {
+        this.queue.put(item);
+        this.depth(this.queue.size());
+    }
+
+    T take() throws InterruptedException {
+        return this.queue.take();
+    }
+
+    /**
+     * Records a sample of the number of items waiting for this stage.
+     */
+    void depth(final int depth) {
+        this.depthSamples.incrementAndGet();
+        this.depthTotal.addAndGet(depth);
+        this.maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Records the time spent working on a single item.
+     */
+    void busy(final long nanos) {
+        this.items.incrementAndGet();
+        this.busy.addAndGet(nanos);
+    }
+
+    PackageShaderStageMetrics metrics(final long elapsedNanos) {
+        final long samples = this.depthSamples.get();
+
+        return PackageShaderStageMetrics.with(
+            this.name,
+            this.threads,
+            this.items.get(),
+            this.capacity,
+            (int) this.maxDepth.get(),
+            0 == samples ?
+                0 :
+                (double) this.depthTotal.get() / samples,
+            this.busy.get(),
+            elapsedNanos
+        );
+    }
+
+    private final String name;
+
+    final int threads;
+
+    private final int capacity;
+
+    private final BlockingQueue<T> queue;
+
+    private final AtomicLong items = new AtomicLong();
+
+    private final AtomicLong busy = new AtomicLong();
+
+    private final AtomicLong depthSamples = new AtomicLong();
+
+    private final AtomicLong depthTotal = new AtomicLong();
+
+    private final AtomicLong maxDepth = new AtomicLong();
+
+    @Override
+    public String toString() {
+        return this.name + " " + this.queue.size() + "/" + this.capacity;
+    }
+}
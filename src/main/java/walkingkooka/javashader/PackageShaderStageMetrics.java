@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.util.Objects;
+
+/**
+ * The metrics of a single stage of a {@link PackageShaderPipeline}, used to tune thread counts and queue capacities.
+ * The queue depth is sampled whenever an item is added to the input queue of the stage.
+ */
+public final class PackageShaderStageMetrics {
+
+    static PackageShaderStageMetrics with(final String name,
+                                          final int threads,
+                                          final long items,
+                                          final int queueCapacity,
+                                          final int maxQueueDepth,
+                                          final double meanQueueDepth,
+                                          final long busyNanos,
+                                          final long elapsedNanos) {
+        return new PackageShaderStageMetrics(
+            Objects.requireNonNull(name, "name"),
+            threads,
+            items,
+            queueCapacity,
+            maxQueueDepth,
+            meanQueueDepth,
+            busyNanos,
+            elapsedNanos
+        );
+    }
+
+    private PackageShaderStageMetrics(final String name,
+                                      final int threads,
+                                      final long items,
+                                      final int queueCapacity,
+                                      final int maxQueueDepth,
+                                      final double meanQueueDepth,
+                                      final long busyNanos,
+                                      final long elapsedNanos) {
+        super();
+        this.name = name;
+        this.threads = threads;
+        this.items = items;
+        this.queueCapacity = queueCapacity;
+        this.maxQueueDepth = maxQueueDepth;
+        this.meanQueueDepth = meanQueueDepth;
+        this.busyNanos = busyNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    private final String name;
+
+    public int threads() {
+        return this.threads;
+    }
+
+    private final int threads;
+
+    /**
+     * The number of archive entries that passed through this stage.
+     */
+    public long items() {
+        return this.items;
+    }
+
+    private final long items;
+
+    public int queueCapacity() {
+        return this.queueCapacity;
+    }
+
+    private final int queueCapacity;
+
+    public int maxQueueDepth() {
+        return this.maxQueueDepth;
+    }
+
+    private final int maxQueueDepth;
+
+    public double meanQueueDepth() {
+        return this.meanQueueDepth;
+    }
+
+    private final double meanQueueDepth;
+
+    /**
+     * The total time all threads of this stage spent working rather than waiting on a queue.
+     */
+    public long busyNanos() {
+        return this.busyNanos;
+    }
+
+    private final long busyNanos;
+
+    public long elapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    private final long elapsedNanos;
+
+    /**
+     * The fraction of the available thread time spent working, a stage close to 1 is the bottleneck.
+     */
+    public double utilization() {
+        final long available = this.elapsedNanos * this.threads;
+        return 0 == available ?
+            0 :
+            (double) this.busyNanos / available;
+    }
+
+    @Override
+    public String toString() {
+        return this.name +
+            " threads " + this.threads +
+            " items " + this.items +
+            " queue " + String.format("%.1f", this.meanQueueDepth) + "/" + this.queueCapacity +
+            " max " + this.maxQueueDepth +
+            " utilization " + String.format("%.2f", this.utilization());
+    }
+}
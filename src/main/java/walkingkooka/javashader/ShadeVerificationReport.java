@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The result of verifying a shaded archive with {@link ShadedArchiveVerifier}. Leftovers are the types within a from
+ * package still referenced by each class file, failures the message of every class file that failed the bytecode
+ * checks. Both are in archive order.
+ */
+public final class ShadeVerificationReport {
+
+    static ShadeVerificationReport with(final int classFiles,
+                                        final int checked,
+                                        final Map<String, Set<String>> leftovers,
+                                        final Map<String, String> failures,
+                                        final long elapsedNanos) {
+        return new ShadeVerificationReport(
+            classFiles,
+            checked,
+            Objects.requireNonNull(leftovers, "leftovers"),
+            Objects.requireNonNull(failures, "failures"),
+            elapsedNanos
+        );
+    }
+
+    private ShadeVerificationReport(final int classFiles,
+                                    final int checked,
+                                    final Map<String, Set<String>> leftovers,
+                                    final Map<String, String> failures,
+                                    final long elapsedNanos) {
+        super();
+        this.classFiles = classFiles;
+        this.checked = checked;
+        this.leftovers = leftovers;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The number of class files whose constant pool was scanned, which is every class file.
+     */
+    public int classFiles() {
+        return this.classFiles;
+    }
+
+    private final int classFiles;
+
+    /**
+     * The number of sampled class files that were checked by <code>CheckClassAdapter</code>.
+     */
+    public int checked() {
+        return this.checked;
+    }
+
+    private final int checked;
+
+    /**
+     * The path of every class file still referencing a from package, and the internal names of those types.
+     */
+    public Map<String, Set<String>> leftovers() {
+        return this.leftovers;
+    }
+
+    private final Map<String, Set<String>> leftovers;
+
+    /**
+     * The path of every checked class file that failed, and the failure message.
+     */
+    public Map<String, String> failures() {
+        return this.failures;
+    }
+
+    private final Map<String, String> failures;
+
+    public long elapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    private final long elapsedNanos;
+
+    /**
+     * Returns true if there were no leftovers or failures.
+     */
+    public boolean isValid() {
+        return this.leftovers.isEmpty() && this.failures.isEmpty();
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.classFiles,
+            this.checked,
+            this.leftovers,
+            this.failures
+        );
+    }
+
+    /**
+     * The elapsed time is ignored.
+     */
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof ShadeVerificationReport && this.equals0((ShadeVerificationReport) other);
+    }
+
+    private boolean equals0(final ShadeVerificationReport other) {
+        return this.classFiles == other.classFiles &&
+            this.checked == other.checked &&
+            this.leftovers.equals(other.leftovers) &&
+            this.failures.equals(other.failures);
+    }
+
+    @Override
+    public String toString() {
+        return this.classFiles + " classes " +
+            this.checked + " checked " +
+            this.leftovers.size() + " leftovers " +
+            this.failures.size() + " failures";
+    }
+}
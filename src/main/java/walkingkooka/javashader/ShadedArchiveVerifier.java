@@ -0,0 +1,289 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.util.CheckClassAdapter;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies a shaded archive without loading any class. The constant pool of every class file is scanned for types that
+ * are still within a from package, and a sample of the class files is checked by {@link CheckClassAdapter} including
+ * the data flow of every method. Class files are verified in parallel on the {@link Executor}.
+ * <br>
+ * The sample is chosen from a hash of each path, so the same class files are checked every time.
+ */
+public final class ShadedArchiveVerifier {
+
+    /**
+     * Creates a verifier for an archive shaded with the mappings, checking the given fraction of the class files.
+     * A sample of 0 only scans constant pools, while 1 checks every class file.
+     */
+    public static ShadedArchiveVerifier with(final Map<PackageName, PackageName> mappings,
+                                             final double sample,
+                                             final Executor executor) {
+        Objects.requireNonNull(mappings, "mappings");
+        if (false == (sample >= 0 && sample <= 1)) {
+            throw new IllegalArgumentException("Invalid sample " + sample + " expected between 0 and 1");
+        }
+        Objects.requireNonNull(executor, "executor");
+
+        final Map<PackageName, PackageName> copy = Maps.ordered();
+        copy.putAll(mappings);
+
+        return new ShadedArchiveVerifier(
+            copy,
+            sample,
+            executor
+        );
+    }
+
+    private ShadedArchiveVerifier(final Map<PackageName, PackageName> mappings,
+                                  final double sample,
+                                  final Executor executor) {
+        super();
+        this.mappings = mappings;
+        this.from = internalNames(mappings.keySet());
+        this.to = internalNames(mappings.values());
+        this.sample = sample;
+        this.executor = executor;
+    }
+
+    /**
+     * The directory of each package including a trailing slash, so a sibling package sharing a prefix never matches.
+     */
+    private static List<String> internalNames(final Iterable<PackageName> packageNames) {
+        final List<String> internalNames = Lists.array();
+        for (final PackageName packageName : packageNames) {
+            internalNames.add(
+                BatchPackageShader.directory(packageName)
+            );
+        }
+        return internalNames;
+    }
+
+    /**
+     * Verifies every class file within the archive.
+     */
+    public ShadeVerificationReport verify(final Path archive) throws IOException {
+        Objects.requireNonNull(archive, "archive");
+
+        final long start = System.nanoTime();
+
+        try (final FileChannel input = FileChannel.open(archive, StandardOpenOption.READ)) {
+            final List<String> paths = Lists.array();
+            final List<CompletableFuture<Result>> results = Lists.array();
+
+            for (final ArchiveEntry entry : ArchiveEntry.read(input)) {
+                final String path = entry.name;
+                if (null != ArchiveClassGraph.className(path) && entry.isReadable()) {
+                    paths.add(path);
+                    results.add(
+                        CompletableFuture.supplyAsync(
+                            () -> {
+                                try {
+                                    return this.verify(path, entry.content(input));
+                                } catch (final IOException cause) {
+                                    throw new IllegalStateException("Unable to read " + path, cause);
+                                }
+                            },
+                            this.executor
+                        )
+                    );
+                }
+            }
+
+            int checked = 0;
+            final Map<String, Set<String>> leftovers = Maps.ordered();
+            final Map<String, String> failures = Maps.ordered();
+
+            for (int i = 0; i < paths.size(); i++) {
+                final String path = paths.get(i);
+                final Result result = ArchivePackageShader.join(results.get(i));
+
+                if (result.checked) {
+                    checked++;
+                }
+                if (false == result.leftovers.isEmpty()) {
+                    leftovers.put(path, result.leftovers);
+                }
+                if (null != result.failure) {
+                    failures.put(path, result.failure);
+                }
+            }
+
+            return ShadeVerificationReport.with(
+                paths.size(),
+                checked,
+                leftovers,
+                failures,
+                System.nanoTime() - start
+            );
+        }
+    }
+
+    /**
+     * Scans and if sampled checks a single class file.
+     */
+    // @VisibleForTesting
+    Result verify(final String path,
+                  final byte[] classFile) {
+        Set<String> leftovers;
+        String failure = null;
+
+        try {
+            leftovers = this.leftovers(classFile);
+        } catch (final RuntimeException cause) {
+            leftovers = Sets.empty();
+            failure = cause.getMessage();
+        }
+
+        final boolean checked = null == failure && isSampled(path, this.sample);
+        if (checked) {
+            failure = check(classFile);
+        }
+
+        return new Result(
+            leftovers,
+            checked,
+            failure
+        );
+    }
+
+    /**
+     * Returns the types still within a from package. Types within the to package of the same mapping are only ignored
+     * when a package is shaded into one of its own sub packages.
+     */
+    private Set<String> leftovers(final byte[] classFile) {
+        return PackageReferenceIndex.classFileTypes(classFile)
+            .stream()
+            .filter(this::isLeftover)
+            .collect(Collectors.toCollection(Sets::sorted));
+    }
+
+    /**
+     * Finds the first mapping whose from package holds the type, like shading does. The type is a leftover unless the
+     * to package of that mapping is a sub package of its from package and also holds the type.
+     */
+    private boolean isLeftover(final String internalName) {
+        final List<String> from = this.from;
+        final List<String> to = this.to;
+        boolean leftover = false;
+
+        for (int i = 0; i < from.size(); i++) {
+            final String fromDirectory = from.get(i);
+            if (internalName.startsWith(fromDirectory)) {
+                final String toDirectory = to.get(i);
+                leftover = false == (toDirectory.startsWith(fromDirectory) && internalName.startsWith(toDirectory));
+                break;
+            }
+        }
+
+        return leftover;
+    }
+
+    /**
+     * Runs {@link CheckClassAdapter} with data flow checks, returning the failure message or null.
+     */
+    private static String check(final byte[] classFile) {
+        String failure = null;
+
+        try {
+            new ClassReader(classFile)
+                .accept(
+                    new CheckClassAdapter(null, true),
+                    0
+                );
+        } catch (final RuntimeException cause) {
+            failure = null != cause.getMessage() ?
+                cause.getMessage() :
+                cause.toString();
+        }
+
+        return failure;
+    }
+
+    /**
+     * Selects about the given fraction of paths, always selecting the same paths.
+     */
+    static boolean isSampled(final String path,
+                             final double sample) {
+        return (path.hashCode() & 0x7fffffff) % SAMPLE_BUCKETS < sample * SAMPLE_BUCKETS;
+    }
+
+    private final static int SAMPLE_BUCKETS = 10000;
+
+    /**
+     * The outcome of verifying a single class file.
+     */
+    static final class Result {
+
+        Result(final Set<String> leftovers,
+               final boolean checked,
+               final String failure) {
+            this.leftovers = leftovers;
+            this.checked = checked;
+            this.failure = failure;
+        }
+
+        final Set<String> leftovers;
+        final boolean checked;
+        final String failure;
+    }
+
+    private final Map<PackageName, PackageName> mappings;
+
+    /**
+     * The from packages as internal name prefixes.
+     */
+    private final List<String> from;
+
+    /**
+     * The to packages as internal name prefixes.
+     */
+    private final List<String> to;
+
+    private final double sample;
+
+    private final Executor executor;
+
+    @Override
+    public String toString() {
+        return this.mappings.entrySet()
+            .stream()
+            .map(e -> e.getKey() + "=" + e.getValue())
+            .collect(Collectors.joining(", ")) +
+            " " +
+            this.sample;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.PackageName;
+import walkingkooka.test.Testing;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link ShadedClassTesting} alternative that compares the class files of the shaded and emulated class.
+ * Neither class is loaded or initialized, members are filtered using {@link ClassFileMember} and the same messages
+ * are reported.
+ */
+public interface ShadedClassFileTesting extends Testing {
+
+    // class............................................................................................................
+
+    @Test
+    default void testClassFileClass() {
+        final ShadedClassFileTestingHelper helper = this.shadedClassFileTestingHelper();
+        final ClassFileType type = helper.type(this.typeName());
+
+        this.checkEquals(
+            Lists.empty(),
+            helper.checkClass(
+                type,
+                helper.type(helper.mapDifferentOrFail(type.name()))
+            )
+        );
+    }
+
+    // constructors......................................................................................................
+
+    @Test
+    default void testClassFileConstructors() {
+        final ShadedClassFileTestingHelper helper = this.shadedClassFileTestingHelper();
+        final ClassFileType type = helper.type(this.typeName());
+
+        this.checkEquals(
+            Lists.empty(),
+            helper.checkConstructors(
+                type,
+                helper.type(helper.mapDifferentOrFail(type.name())),
+                this.requiredClassFileConstructors()
+            )
+        );
+    }
+
+    /**
+     * This {@link Predicate} is used to filter constructors that should be present on the shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileConstructors();
+
+    // methods...........................................................................................................
+
+    @Test
+    default void testClassFileMethods() {
+        final ShadedClassFileTestingHelper helper = this.shadedClassFileTestingHelper();
+        final ClassFileType type = helper.type(this.typeName());
+
+        this.checkEquals(
+            Lists.empty(),
+            helper.checkMethods(
+                type,
+                helper.type(helper.mapDifferentOrFail(type.name())),
+                this.requiredClassFileMethods()
+            )
+        );
+    }
+
+    /**
+     * This {@link Predicate} is used to filter methods that should be present on the shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileMethods();
+
+    // fields...........................................................................................................
+
+    @Test
+    default void testClassFileFields() {
+        final ShadedClassFileTestingHelper helper = this.shadedClassFileTestingHelper();
+        final ClassFileType type = helper.type(this.typeName());
+
+        this.checkEquals(
+            Lists.empty(),
+            helper.checkFields(
+                type,
+                helper.type(helper.mapDifferentOrFail(type.name())),
+                this.requiredClassFileFields()
+            )
+        );
+    }
+
+    /**
+     * This {@link Predicate} is used to filter fields that should be present on the shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileFields();
+
+    // helpers...........................................................................................................
+
+    /**
+     * The binary name of the class being tested, eg <code>walkingkooka.javashader.java.io.File</code>.
+     */
+    String typeName();
+
+    /**
+     * A {@link UnaryOperator} that maps some but not necessarily all binary type names to their shaded form.
+     * This should map {@link #typeName()} to another type.
+     */
+    UnaryOperator<String> typeNameMapper();
+
+    /**
+     * The {@link ClassLoader} used to locate class files, no classes are defined or loaded.
+     */
+    default ClassLoader classFileClassLoader() {
+        return this.getClass().getClassLoader();
+    }
+
+    /**
+     * An optional file written by {@link ClassFileSnapshot}, types present in the snapshot such as the JRE classes
+     * being emulated are read from it rather than the class path.
+     */
+    default Optional<Path> classFileSnapshot() {
+        return Optional.empty();
+    }
+
+    private ShadedClassFileTestingHelper shadedClassFileTestingHelper() {
+        return ShadedClassFileTestingHelper.with(
+            this.typeNameMapper(),
+            this.classFileClassLoader(),
+            this.classFileSnapshot()
+                .map(ClassFileSnapshot::shared)
+        );
+    }
+
+    /**
+     * A basic {@link UnaryOperator} that maps a binary type name from one {@link Package} to another. Unlike
+     * {@link ShadedClassTesting#typeMapper(PackageName, PackageName)} the mapped type is never loaded.
+     */
+    static UnaryOperator<String> typeNameMapper(final PackageName from,
+                                                final PackageName to) {
+        Objects.requireNonNull(from, "from package");
+        Objects.requireNonNull(to, "to package");
+
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("From and to packages " + from + " must be different");
+        }
+
+        final String fromPrefix = from.value() + ".";
+        final String toPrefix = to.value() + ".";
+
+        return (t) -> t.startsWith(fromPrefix) ?
+            toPrefix + t.substring(fromPrefix.length()) :
+            t;
+    }
+}
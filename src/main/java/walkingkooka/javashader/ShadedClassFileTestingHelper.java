@@ -0,0 +1,571 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Remapper;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+import walkingkooka.text.CharSequences;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Compares the api of a shaded class against its target using only their class files. The messages produced match
+ * those of {@link ShadedClassTesting}.
+ */
+final class ShadedClassFileTestingHelper {
+
+    static ShadedClassFileTestingHelper with(final UnaryOperator<String> typeNameMapper,
+                                             final ClassLoader classLoader) {
+        return with(
+            typeNameMapper,
+            classLoader,
+            Optional.empty()
+        );
+    }
+
+    /**
+     * Creates a helper that reads types from the {@link ClassFileSnapshot} when present, before trying the
+     * {@link ClassLoader}.
+     */
+    static ShadedClassFileTestingHelper with(final UnaryOperator<String> typeNameMapper,
+                                             final ClassLoader classLoader,
+                                             final Optional<ClassFileSnapshot> snapshot) {
+        return new ShadedClassFileTestingHelper(typeNameMapper, classLoader, snapshot);
+    }
+
+    private ShadedClassFileTestingHelper(final UnaryOperator<String> typeNameMapper,
+                                         final ClassLoader classLoader,
+                                         final Optional<ClassFileSnapshot> snapshot) {
+        super();
+        this.typeNameMapper = typeNameMapper;
+        this.classLoader = classLoader;
+        this.snapshot = snapshot;
+        this.remapper = new Remapper() {
+            @Override
+            public String map(final String internalName) {
+                return ClassFileType.internalName(
+                    typeNameMapper.apply(
+                        ClassFileType.binaryName(internalName)
+                    )
+                );
+            }
+        };
+    }
+
+    // types............................................................................................................
+
+    /**
+     * Reads the class file for the given binary type name. Types are cached as throws checks repeatedly walk the
+     * same exception hierarchies. The cache is concurrent so a single helper may be shared by tests running in parallel.
+     */
+    ClassFileType type(final String typeName) {
+        return this.findType(typeName)
+            .orElseThrow(() -> new IllegalArgumentException("Class file for " + typeName + " not found"));
+    }
+
+    /**
+     * Reads the class file for the given binary type name if it exists. Types in the snapshot are never read from
+     * the {@link ClassLoader}.
+     */
+    Optional<ClassFileType> findType(final String typeName) {
+        ClassFileType type = this.types.get(typeName);
+        if (null == type) {
+            type = this.snapshot.flatMap(s -> s.type(typeName))
+                .orElse(null);
+            if (null == type) {
+                final byte[] classFile = this.classFile(typeName);
+                if (null != classFile) {
+                    type = ClassFileType.read(classFile);
+                }
+            }
+            if (null != type) {
+                this.types.putIfAbsent(typeName, type);
+            }
+        }
+        return Optional.ofNullable(type);
+    }
+
+    private final Map<String, ClassFileType> types = new ConcurrentHashMap<>();
+
+    private byte[] classFile(final String typeName) {
+        final String resourceName = ClassFileType.internalName(typeName) + ".class";
+
+        try (final InputStream file = this.classLoader.getResourceAsStream(resourceName)) {
+            return null != file ?
+                file.readAllBytes() :
+                null;
+        } catch (final IOException cause) {
+            throw new IllegalArgumentException("Unable to read class file for " + typeName, cause);
+        }
+    }
+
+    /**
+     * Finds the binary names of all classes within the given package and its sub packages, for every directory or jar
+     * on the class path of the {@link ClassLoader}. Jars without directory entries are not found, use
+     * {@link #typeNames(Path, PackageName)} for those.
+     */
+    List<String> typeNames(final PackageName packageName) {
+        final String path = packagePath(packageName);
+        final Set<String> typeNames = Sets.sorted();
+
+        try {
+            final Enumeration<URL> roots = this.classLoader.getResources(path);
+            while (roots.hasMoreElements()) {
+                final URL root = roots.nextElement();
+
+                switch (root.getProtocol()) {
+                    case "file":
+                        addDirectoryTypeNames(
+                            Paths.get(root.toURI()),
+                            path,
+                            typeNames
+                        );
+                        break;
+                    case "jar":
+                        addJarTypeNames(
+                            Paths.get(((JarURLConnection) root.openConnection()).getJarFileURL().toURI()),
+                            path,
+                            typeNames
+                        );
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unable to list classes in " + root);
+                }
+            }
+        } catch (final IOException | URISyntaxException cause) {
+            throw new IllegalArgumentException("Unable to list classes in " + packageName, cause);
+        }
+
+        return list(typeNames);
+    }
+
+    /**
+     * Finds the binary names of all classes within the given package and its sub packages in a single directory or jar.
+     */
+    static List<String> typeNames(final Path directoryOrJar,
+                                  final PackageName packageName) {
+        final String path = packagePath(packageName);
+        final Set<String> typeNames = Sets.sorted();
+
+        try {
+            if (Files.isDirectory(directoryOrJar)) {
+                final Path directory = directoryOrJar.resolve(path);
+                if (Files.isDirectory(directory)) {
+                    addDirectoryTypeNames(directory, path, typeNames);
+                }
+            } else {
+                addJarTypeNames(directoryOrJar, path, typeNames);
+            }
+        } catch (final IOException cause) {
+            throw new IllegalArgumentException("Unable to list classes in " + directoryOrJar, cause);
+        }
+
+        return list(typeNames);
+    }
+
+    private static String packagePath(final PackageName packageName) {
+        return ClassFileType.internalName(packageName.value()) + "/";
+    }
+
+    private static void addDirectoryTypeNames(final Path directory,
+                                              final String path,
+                                              final Set<String> typeNames) throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            files.map(f -> path + directory.relativize(f).toString().replace(File.separatorChar, '/'))
+                .forEach(f -> addTypeName(f, typeNames));
+        }
+    }
+
+    private static void addJarTypeNames(final Path jar,
+                                        final String path,
+                                        final Set<String> typeNames) throws IOException {
+        try (final JarFile jarFile = new JarFile(jar.toFile())) {
+            jarFile.stream()
+                .map(JarEntry::getName)
+                .filter(n -> n.startsWith(path))
+                .forEach(n -> addTypeName(n, typeNames));
+        }
+    }
+
+    private static List<String> list(final Set<String> typeNames) {
+        final List<String> list = Lists.array();
+        list.addAll(typeNames);
+        return list;
+    }
+
+    private static void addTypeName(final String path,
+                                    final Set<String> typeNames) {
+        if (path.endsWith(".class") && false == path.endsWith("package-info.class") && false == path.endsWith("module-info.class")) {
+            typeNames.add(
+                ClassFileType.binaryName(
+                    path.substring(0, path.length() - ".class".length())
+                )
+            );
+        }
+    }
+
+    private final ClassLoader classLoader;
+
+    private final Optional<ClassFileSnapshot> snapshot;
+
+    // mapping..........................................................................................................
+
+    String map(final String typeName) {
+        return this.typeNameMapper.apply(typeName);
+    }
+
+    String mapDifferentOrFail(final String typeName) {
+        final String different = this.map(typeName);
+        if (typeName.equals(different)) {
+            throw new IllegalArgumentException("Type " + typeName + " not shaded");
+        }
+        return different;
+    }
+
+    private final UnaryOperator<String> typeNameMapper;
+
+    /**
+     * Maps all types within a JVM descriptor.
+     */
+    String mapDescriptor(final String descriptor) {
+        return '(' == descriptor.charAt(0) ?
+            this.remapper.mapMethodDesc(descriptor) :
+            this.remapper.mapDesc(descriptor);
+    }
+
+    private final Remapper remapper;
+
+    /**
+     * Maps the parameter types of a constructor or method returning the parameter portion of the descriptor.
+     */
+    private String mapParameterDescriptor(final ClassFileMember member) {
+        final String mapped = this.mapDescriptor(member.descriptor());
+        return mapped.substring(0, mapped.indexOf(')') + 1);
+    }
+
+    // class............................................................................................................
+
+    List<String> checkClass(final ClassFileType type,
+                            final ClassFileType target) {
+        final List<String> messages = Lists.array();
+
+        {
+            final JavaVisibility targetVisibility = target.visibility();
+            if (targetVisibility != type.visibility()) {
+                messages.add("Class visibility " + targetVisibility + " different: " + target);
+            }
+        }
+
+        {
+            final boolean targetTypeStatic = Modifier.isStatic(target.modifiers());
+            final boolean typeStatic = Modifier.isStatic(type.modifiers());
+            if (targetTypeStatic != typeStatic) {
+                messages.add((targetTypeStatic ? "Static" : "Instance") + " expected " + (typeStatic ? "static" : "instance") + ": " + type);
+            }
+        }
+
+        {
+            final boolean targetTypeFinal = Modifier.isFinal(target.modifiers());
+            final boolean typeFinal = Modifier.isFinal(type.modifiers());
+            if (targetTypeFinal != typeFinal) {
+                messages.add((targetTypeFinal ? "Final" : "Not final") + " expected " + (typeFinal ? "final" : "not final") + ": " + type);
+            }
+        }
+
+        {
+            final boolean targetTypeAbstract = Modifier.isAbstract(target.modifiers());
+            final boolean typeAbstract = Modifier.isAbstract(type.modifiers());
+            if (targetTypeAbstract != typeAbstract) {
+                messages.add((targetTypeAbstract ? "Abstract" : "Not abstract") + " expected " + (typeAbstract ? "abstract" : "not abstract") + ": " + type);
+            }
+        }
+
+        return messages;
+    }
+
+    // constructors.....................................................................................................
+
+    List<String> checkConstructors(final ClassFileType type,
+                                   final ClassFileType target,
+                                   final Predicate<ClassFileMember> required) {
+        final List<String> messages = Lists.array();
+        final Map<String, ClassFileMember> targetConstructors = Maps.hash();
+        for (final ClassFileMember constructor : target.constructors()) {
+            targetConstructors.put(constructor.parameterDescriptor(), constructor);
+        }
+
+        for (final ClassFileMember constructor : type.constructors()) {
+            if (false == required.test(constructor)) {
+                continue;
+            }
+
+            final ClassFileMember targetConstructor = targetConstructors.get(
+                this.mapParameterDescriptor(constructor)
+            );
+            if (null == targetConstructor) {
+                if (constructor.visibility().isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
+                    continue; // private/package private ctor doesnt exist on target ignore.
+                }
+                messages.add("Constructor missing from target: " + constructor);
+                continue;
+            }
+
+            {
+                final JavaVisibility targetVisibility = targetConstructor.visibility();
+                if (targetVisibility != constructor.visibility()) {
+                    messages.add("Constructor visibility " + targetVisibility + " different: " + targetConstructor);
+                    continue;
+                }
+            }
+
+            {
+                final List<String> extraThrows = this.checkDeclaredThrows(constructor.exceptions(),
+                    targetConstructor.exceptions());
+                if (false == extraThrows.isEmpty()) {
+                    messages.add("Constructor includes unexpected throws: " + targetConstructor);
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    // methods..........................................................................................................
+
+    List<String> checkMethods(final ClassFileType type,
+                              final ClassFileType target,
+                              final Predicate<ClassFileMember> required) {
+        final List<String> messages = Lists.array();
+        final Map<String, ClassFileMember> targetMethods = Maps.hash();
+        for (final ClassFileMember method : target.methods()) {
+            if (method.isConstructor()) {
+                continue;
+            }
+            final String key = method.name() + method.parameterDescriptor();
+            if (method.isBridge()) {
+                targetMethods.putIfAbsent(key, method);
+            } else {
+                targetMethods.put(key, method);
+            }
+        }
+
+        // if $type is final dont test finalness of methods
+        final boolean typeFinal = JavaVisibility.PUBLIC == type.visibility();
+
+        for (final ClassFileMember method : type.methods()) {
+            if (method.isConstructor() || method.isSynthetic() || method.isBridge() || false == required.test(method)) {
+                continue;
+            }
+
+            final ClassFileMember targetMethod = targetMethods.get(
+                method.name() + this.mapParameterDescriptor(method)
+            );
+            if (null == targetMethod) {
+                if (method.visibility().isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
+                    continue; // private/package private method doesnt exist on target ignore.
+                }
+                messages.add("Method missing from target: " + method);
+                continue;
+            }
+
+            {
+                final String returnType = method.typeDescriptor();
+                if (false == targetMethod.typeDescriptor().equals(this.mapDescriptor(returnType))) {
+                    messages.add("Method return type " + ClassFileMember.className(Type.getType(returnType)) + " different: " + method);
+                }
+            }
+
+            {
+                final JavaVisibility targetVisibility = targetMethod.visibility();
+                if (targetVisibility != method.visibility()) {
+                    messages.add("Method visibility " + targetVisibility + " different: " + targetMethod);
+                    continue;
+                }
+            }
+
+            {
+                final List<String> extraThrows = this.checkDeclaredThrows(method.exceptions(),
+                    targetMethod.exceptions());
+                if (false == extraThrows.isEmpty()) {
+                    messages.add("Method includes unexpected throws(" + String.join(", ", extraThrows) + "): " + method);
+                }
+            }
+
+            {
+                final boolean targetMethodStatic = Modifier.isStatic(targetMethod.modifiers());
+                final boolean methodStatic = Modifier.isStatic(method.modifiers());
+                if (targetMethodStatic != methodStatic) {
+                    messages.add((targetMethodStatic ? "Static" : "Instance") + " expected " + (methodStatic ? "static" : "instance") + ": " + method);
+                }
+            }
+            {
+                final boolean targetMethodAbstract = Modifier.isAbstract(targetMethod.modifiers());
+                final boolean methodAbstract = Modifier.isAbstract(method.modifiers());
+                if (targetMethodAbstract != methodAbstract) {
+                    messages.add((targetMethodAbstract ? "Abstract" : "Non abstract") + " expected " + (methodAbstract ? "abstract" : "non abstract") + ": " + method);
+                }
+            }
+
+            if (false == typeFinal) {
+                final boolean targetMethodFinal = Modifier.isFinal(targetMethod.modifiers());
+                final boolean methodFinal = Modifier.isFinal(method.modifiers());
+                if (targetMethodFinal != methodFinal) {
+                    messages.add((targetMethodFinal ? "Final" : "Non final") + " expected " + (methodFinal ? "final" : "non final") + ": " + method);
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    // fields...........................................................................................................
+
+    List<String> checkFields(final ClassFileType type,
+                             final ClassFileType target,
+                             final Predicate<ClassFileMember> required) {
+        final List<String> messages = Lists.array();
+        final Map<String, ClassFileMember> targetFields = Maps.hash();
+        for (final ClassFileMember field : target.fields()) {
+            targetFields.put(field.name(), field);
+        }
+
+        for (final ClassFileMember field : type.fields()) {
+            if (field.isSynthetic() || false == required.test(field)) {
+                continue;
+            }
+
+            final ClassFileMember targetField = targetFields.get(field.name());
+            if (null == targetField) {
+                if (field.visibility().isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
+                    continue; // private/package private field doesnt exist on target ignore.
+                }
+
+                messages.add("Field missing from target: " + field);
+                continue;
+            }
+
+            final String targetFieldType = targetField.descriptor();
+            final String fieldType = field.descriptor();
+            if (false == targetFieldType.equals(this.mapDescriptor(fieldType))) {
+                messages.add("Field type " + ClassFileMember.className(Type.getType(fieldType)) + " different: " + field);
+            }
+
+            final JavaVisibility targetVisibility = targetField.visibility();
+            if (targetVisibility != field.visibility()) {
+                messages.add("Field visibility " + targetVisibility + " different: " + targetField);
+            }
+
+            final boolean targetFieldStatic = Modifier.isStatic(targetField.modifiers());
+            final boolean fieldStatic = Modifier.isStatic(field.modifiers());
+            if (targetFieldStatic != fieldStatic) {
+                messages.add((targetFieldStatic ? "Static" : "Instance") + " expected " + (fieldStatic ? "static" : "instance") + ": " + field);
+            }
+            final boolean targetFieldFinal = Modifier.isFinal(targetField.modifiers());
+            final boolean fieldFinal = Modifier.isFinal(field.modifiers());
+            if (targetFieldFinal != fieldFinal) {
+                messages.add((targetFieldFinal ? "Final" : "Non final") + " expected " + (fieldFinal ? "final" : "non final") + ": " + field);
+            }
+
+            // constants are compared using the ConstantValue attribute so the class is never initialized.
+            if (isPrimitiveOrString(targetFieldType) &&
+                isPrimitiveOrString(fieldType) &&
+                fieldStatic &&
+                targetFieldFinal) {
+                final Object fieldValue = field.value();
+                final Object targetFieldValue = targetField.value();
+                if (false == Objects.equals(fieldValue, targetFieldValue)) {
+                    messages.add("Field value " + CharSequences.quoteIfChars(fieldValue) + " different " + CharSequences.quoteIfChars(targetFieldValue) + ": " + field);
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    private static boolean isPrimitiveOrString(final String descriptor) {
+        return 1 == descriptor.length() || "Ljava/lang/String;".equals(descriptor);
+    }
+
+    // throws...........................................................................................................
+
+    List<String> checkDeclaredThrows(final List<String> throwns,
+                                     final List<String> targetThrowns) {
+        final List<String> extra = Lists.array();
+
+        for (final String thrown : throwns) {
+            boolean pass = false;
+
+            for (final String possible : targetThrowns) {
+                pass = this.isAssignableFrom(possible, this.map(thrown));
+                if (pass) {
+                    break;
+                }
+            }
+
+            if (!pass) {
+                extra.add(thrown);
+            }
+        }
+
+        return extra;
+    }
+
+    /**
+     * Walks the super classes of the given type, exceptions are always classes so interfaces are ignored.
+     */
+    private boolean isAssignableFrom(final String type,
+                                     final String from) {
+        String superName = from;
+
+        while (null != superName) {
+            if (type.equals(superName)) {
+                return true;
+            }
+            superName = this.type(superName)
+                .superName();
+        }
+
+        return false;
+    }
+}
@@ -30,8 +30,11 @@ import walkingkooka.text.CharSequences;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
@@ -94,16 +97,30 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
         final Class<T> type = this.type();
         final Class<?> target = helper.mapDifferentOrFail(type);
 
+        final ShadedClassTestingCache cache = ShadedClassTestingCache.with(
+            this.shadedClassTestingCache(),
+            this.getClass(),
+            "testConstructors",
+            type,
+            target
+        );
+        final Optional<List<String>> cached = cache.messages();
+        if (cached.isPresent()) {
+            this.checkEquals(Lists.empty(), cached.get());
+            return;
+        }
+
+        final Map<List<Class<?>>, Constructor<?>> targetConstructors = helper.declaredConstructors(target);
+
         for (final Constructor<?> constructor : type.getDeclaredConstructors()) {
             if (false == required.test(constructor)) {
                 continue;
             }
 
-            final Constructor<?> targetConstructor;
-            final Class<?>[] parameters = helper.mapArray(constructor.getParameterTypes());
-            try {
-                targetConstructor = target.getDeclaredConstructor(parameters);
-            } catch (final NoSuchMethodException cause) {
+            final Constructor<?> targetConstructor = targetConstructors.get(
+                helper.mapList(constructor.getParameterTypes())
+            );
+            if (null == targetConstructor) {
                 if (JavaVisibility.of(constructor).isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
                     continue; // private/package private ctor doesnt exist on target ignore.
                 }
@@ -129,6 +146,7 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
             }
         }
 
+        cache.save(messages);
         this.checkEquals(Lists.empty(), messages);
     }
 
@@ -149,6 +167,21 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
         final Class<T> type = this.type();
         final Class<?> target = helper.mapDifferentOrFail(type);
 
+        final ShadedClassTestingCache cache = ShadedClassTestingCache.with(
+            this.shadedClassTestingCache(),
+            this.getClass(),
+            "testMethods",
+            type,
+            target
+        );
+        final Optional<List<String>> cached = cache.messages();
+        if (cached.isPresent()) {
+            this.checkEquals(Lists.empty(), cached.get());
+            return;
+        }
+
+        final Map<List<Object>, Method> targetMethods = helper.declaredMethods(target);
+
         // if $type is final dont test finalness of methods
         final boolean typeFinal = JavaVisibility.PUBLIC == JavaVisibility.of(type);
 
@@ -157,11 +190,13 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
                 continue;
             }
 
-            final Method targetMethod;
-            final Class<?>[] parameters = helper.mapArray(method.getParameterTypes());
-            try {
-                targetMethod = target.getDeclaredMethod(method.getName(), parameters);
-            } catch (final NoSuchMethodException cause) {
+            final Method targetMethod = targetMethods.get(
+                ShadedClassTestingHelper.methodKey(
+                    method.getName(),
+                    helper.mapList(method.getParameterTypes())
+                )
+            );
+            if (null == targetMethod) {
                 if (JavaVisibility.of(method).isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
                     continue; // private/package private method doesnt exist on target ignore.
                 }
@@ -219,6 +254,7 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
             }
         }
 
+        cache.save(messages);
         this.checkEquals(Lists.empty(), messages);
     }
 
@@ -239,15 +275,28 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
         final Class<T> type = this.type();
         final Class<?> target = helper.mapDifferentOrFail(type);
 
+        final ShadedClassTestingCache cache = ShadedClassTestingCache.with(
+            this.shadedClassTestingCache(),
+            this.getClass(),
+            "testFields",
+            type,
+            target
+        );
+        final Optional<List<String>> cached = cache.messages();
+        if (cached.isPresent()) {
+            this.checkEquals(Lists.empty(), cached.get());
+            return;
+        }
+
+        final Map<String, Field> targetFields = helper.declaredFields(target);
+
         for (final Field field : type.getDeclaredFields()) {
             if (field.isSynthetic() || false == required.test(field)) {
                 continue;
             }
 
-            final Field targetField;
-            try {
-                targetField = target.getDeclaredField(field.getName());
-            } catch (final NoSuchFieldException cause) {
+            final Field targetField = targetFields.get(field.getName());
+            if (null == targetField) {
                 if (JavaVisibility.of(field).isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
                     continue; // private/package private field doesnt exist on target ignore.
                 }
@@ -293,6 +342,7 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
             }
         }
 
+        cache.save(messages);
         this.checkEquals(Lists.empty(), messages);
     }
 
@@ -358,6 +408,15 @@ public interface ShadedClassTesting<T> extends ClassTesting<T> {
         };
     }
 
+    /**
+     * An optional directory used to remember the results of {@link #testConstructors()}, {@link #testMethods()} and
+     * {@link #testFields()}. When neither class api nor this test class has changed, the cached messages are
+     * reported without repeating the checks. Caching is disabled by default.
+     */
+    default Optional<Path> shadedClassTestingCache() {
+        return Optional.empty();
+    }
+
     /**
      * Copy the visibility of the shade target class
      */
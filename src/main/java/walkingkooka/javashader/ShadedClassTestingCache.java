@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Remembers the messages of a single {@link ShadedClassTesting} test for a type and its target, along with a
+ * fingerprint of the api of both and the class files of the test class and all its super classes and interfaces,
+ * which hold the member filters. When the fingerprint is unchanged the messages are returned without repeating the
+ * reflective checks.
+ * <br>
+ * The api includes the access flags, super types and the name, descriptor, generic signature, constant value and throws
+ * of every member, along with the super classes and interfaces of each thrown type. Method bodies are ignored, so a
+ * field value computed by a static initializer is not part of the fingerprint, nor are parameter types.
+ */
+final class ShadedClassTestingCache {
+
+    /**
+     * Creates a cache for the given test, an empty directory disables caching and no fingerprint is ever computed.
+     */
+    static ShadedClassTestingCache with(final Optional<Path> directory,
+                                        final Class<?> test,
+                                        final String testName,
+                                        final Class<?> type,
+                                        final Class<?> target) {
+        return new ShadedClassTestingCache(
+            directory.map(d -> d.resolve(test.getName() + "-" + testName + ".properties")),
+            test,
+            type,
+            target
+        );
+    }
+
+    private ShadedClassTestingCache(final Optional<Path> file,
+                                    final Class<?> test,
+                                    final Class<?> type,
+                                    final Class<?> target) {
+        super();
+        this.file = file;
+        this.test = test;
+        this.type = type;
+        this.target = target;
+    }
+
+    /**
+     * Returns the cached messages if the fingerprint is unchanged.
+     */
+    Optional<List<String>> messages() {
+        List<String> messages = null;
+
+        if (this.file.isPresent()) {
+            final Properties properties = new Properties();
+            try (final InputStream input = Files.newInputStream(this.file.get())) {
+                properties.load(input);
+            } catch (final NoSuchFileException ignore) {
+                // never cached
+            } catch (final IOException cause) {
+                throw new IllegalStateException("Unable to read " + this.file.get(), cause);
+            }
+
+            if (this.fingerprint().equals(properties.getProperty(FINGERPRINT))) {
+                final int count = Integer.parseInt(properties.getProperty(COUNT, "0"));
+                messages = Lists.array();
+                for (int i = 0; i < count; i++) {
+                    messages.add(properties.getProperty(MESSAGE + i));
+                }
+            }
+        }
+
+        return Optional.ofNullable(messages);
+    }
+
+    /**
+     * Saves the messages with the current fingerprint, replacing any previous file atomically where the file system
+     * supports it so parallel tests never see a partial file.
+     */
+    void save(final List<String> messages) {
+        if (this.file.isPresent()) {
+            final Path file = this.file.get();
+
+            final Properties properties = new Properties();
+            properties.setProperty(FINGERPRINT, this.fingerprint());
+            properties.setProperty(COUNT, String.valueOf(messages.size()));
+            for (int i = 0; i < messages.size(); i++) {
+                properties.setProperty(MESSAGE + i, messages.get(i));
+            }
+
+            try {
+                Files.createDirectories(file.getParent());
+
+                final Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+                try {
+                    try (final OutputStream output = Files.newOutputStream(temp)) {
+                        properties.store(output, null);
+                    }
+                    move(temp, file);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (final IOException cause) {
+                throw new IllegalStateException("Unable to write " + file, cause);
+            }
+        }
+    }
+
+    /**
+     * Moves the temporary file over the cache file, falling back to a plain replace when the file system does not
+     * support atomic moves.
+     */
+    private static void move(final Path temp,
+                             final Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException notAtomic) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private final static String FINGERPRINT = "fingerprint";
+    private final static String COUNT = "count";
+    private final static String MESSAGE = "message.";
+
+    private final Optional<Path> file;
+
+    // fingerprint......................................................................................................
+
+    /**
+     * Lazily computes a fingerprint of the api of the type and target and the class files of the test and all its super
+     * types.
+     */
+    String fingerprint() {
+        if (null == this.fingerprint) {
+            final MessageDigest digest = sha256();
+            api(this.type, digest);
+            api(this.target, digest);
+            for (final Class<?> type : hierarchy(this.test)) {
+                digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(classFile(type));
+            }
+
+            final StringBuilder b = new StringBuilder();
+            for (final byte value : digest.digest()) {
+                b.append(Character.forDigit((value >> 4) & 0xf, 16))
+                    .append(Character.forDigit(value & 0xf, 16));
+            }
+            this.fingerprint = b.toString();
+        }
+        return this.fingerprint;
+    }
+
+    private String fingerprint;
+
+    private final Class<?> test;
+    private final Class<?> type;
+    private final Class<?> target;
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException cause) {
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Adds the api of the class followed by the super classes and interfaces of every thrown type, which decide whether
+     * the throws of a member and its target are compatible.
+     */
+    private static void api(final Class<?> type,
+                            final MessageDigest digest) {
+        final Api api = new Api();
+        new ClassReader(classFile(type))
+            .accept(
+                api,
+                ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES
+            );
+
+        final StringBuilder b = api.text;
+        for (final String thrown : api.throwns) {
+            b.append(thrown);
+            for (final Class<?> superType : hierarchy(thrownType(thrown, type))) {
+                b.append(' ')
+                    .append(superType.getName());
+            }
+            b.append('\n');
+        }
+
+        digest.update(b.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Class<?> thrownType(final String internalName,
+                                       final Class<?> type) {
+        final String name = ClassFileType.binaryName(internalName);
+        try {
+            return Class.forName(
+                name,
+                false,
+                type.getClassLoader()
+            );
+        } catch (final ClassNotFoundException cause) {
+            throw new IllegalArgumentException("Unable to load " + name + " thrown by " + type.getName(), cause);
+        }
+    }
+
+    /**
+     * {@link ClassVisitor} that writes the access flags, super types and member signatures of a class as text, one
+     * declaration per line, and collects the thrown types.
+     */
+    private static class Api extends ClassVisitor {
+
+        Api() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(final int version,
+                          final int access,
+                          final String name,
+                          final String signature,
+                          final String superName,
+                          final String[] interfaces) {
+            this.name = name;
+            this.line(
+                access,
+                name,
+                signature,
+                superName,
+                null != interfaces ?
+                    Arrays.asList(interfaces) :
+                    Lists.empty()
+            );
+        }
+
+        /**
+         * Nested classes get their true modifiers such as static and private from their own InnerClasses entry.
+         */
+        @Override
+        public void visitInnerClass(final String name,
+                                    final String outerName,
+                                    final String innerName,
+                                    final int access) {
+            if (name.equals(this.name)) {
+                this.line(
+                    access,
+                    name
+                );
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access,
+                                       final String name,
+                                       final String descriptor,
+                                       final String signature,
+                                       final Object value) {
+            this.line(
+                access,
+                name,
+                descriptor,
+                signature,
+                value
+            );
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access,
+                                         final String name,
+                                         final String descriptor,
+                                         final String signature,
+                                         final String[] exceptions) {
+            final List<String> throwns = null != exceptions ?
+                Arrays.asList(exceptions) :
+                Lists.empty();
+            this.line(
+                access,
+                name,
+                descriptor,
+                signature,
+                throwns
+            );
+            this.throwns.addAll(throwns);
+            return null;
+        }
+
+        private void line(final int access,
+                          final Object... values) {
+            final StringBuilder b = this.text;
+            b.append(Integer.toHexString(access));
+            for (final Object value : values) {
+                b.append(' ')
+                    .append(value);
+            }
+            b.append('\n');
+        }
+
+        private String name;
+
+        final StringBuilder text = new StringBuilder();
+
+        final Set<String> throwns = Sets.sorted();
+    }
+
+    /**
+     * Returns the given types followed by all their super classes and interfaces, ignoring {@link Object}.
+     */
+    // @VisibleForTesting
+    static Set<Class<?>> hierarchy(final Class<?>... types) {
+        final Set<Class<?>> hierarchy = Sets.ordered();
+        for (final Class<?> type : types) {
+            hierarchy(type, hierarchy);
+        }
+        return hierarchy;
+    }
+
+    private static void hierarchy(final Class<?> type,
+                                  final Set<Class<?>> hierarchy) {
+        if (null != type && Object.class != type && hierarchy.add(type)) {
+            hierarchy(type.getSuperclass(), hierarchy);
+            for (final Class<?> interfaceType : type.getInterfaces()) {
+                hierarchy(interfaceType, hierarchy);
+            }
+        }
+    }
+
+    private static byte[] classFile(final Class<?> type) {
+        final String resourceName = "/" + ClassFileType.internalName(type.getName()) + ".class";
+
+        try (final InputStream file = type.getResourceAsStream(resourceName)) {
+            if (null == file) {
+                throw new IllegalArgumentException("Class file for " + type.getName() + " not found");
+            }
+            return file.readAllBytes();
+        } catch (final IOException cause) {
+            throw new IllegalArgumentException("Unable to read class file for " + type.getName(), cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.file.map(Path::toString)
+            .orElse("");
+    }
+}
@@ -18,9 +18,14 @@
 package walkingkooka.javashader;
 
 import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
 
 final class ShadedClassTestingHelper {
@@ -47,16 +52,89 @@ final class ShadedClassTestingHelper {
     }
 
     /**
-     * Reflection APIs use arrays.
+     * Maps the parameter types of a member into a {@link List} suitable as a key for the declared member indexes.
      */
-    Class<?>[] mapArray(final Class<?>... types) {
-        return Arrays.stream(types)
-            .map(this::map)
-            .toArray(Class[]::new);
+    List<Class<?>> mapList(final Class<?>... types) {
+        return Arrays.asList(
+            Arrays.stream(types)
+                .map(this::map)
+                .toArray(Class[]::new)
+        );
     }
 
     private final UnaryOperator<Class<?>> typeMapper;
 
+    // declared members.................................................................................................
+
+    /**
+     * Indexes the declared constructors of the given {@link Class} by their parameter types. This avoids
+     * {@link Class#getDeclaredConstructor(Class[])} which throws a {@link NoSuchMethodException} for every missing constructor.
+     */
+    Map<List<Class<?>>, Constructor<?>> declaredConstructors(final Class<?> type) {
+        final Map<List<Class<?>>, Constructor<?>> constructors = Maps.hash();
+
+        for (final Constructor<?> constructor : type.getDeclaredConstructors()) {
+            constructors.put(
+                Arrays.asList(constructor.getParameterTypes()),
+                constructor
+            );
+        }
+
+        return constructors;
+    }
+
+    /**
+     * Indexes the declared methods of the given {@link Class} by name and parameter types, see {@link #methodKey(String, List)}.
+     * Like {@link Class#getDeclaredMethod(String, Class[])} a bridge method never replaces the method with the more
+     * specific return type.
+     */
+    Map<List<Object>, Method> declaredMethods(final Class<?> type) {
+        final Map<List<Object>, Method> methods = Maps.hash();
+
+        for (final Method method : type.getDeclaredMethods()) {
+            final List<Object> key = methodKey(
+                method.getName(),
+                Arrays.asList(method.getParameterTypes())
+            );
+            if (method.isBridge()) {
+                methods.putIfAbsent(key, method);
+            } else {
+                methods.put(key, method);
+            }
+        }
+
+        return methods;
+    }
+
+    /**
+     * Creates the key used to index methods by {@link #declaredMethods(Class)}.
+     */
+    static List<Object> methodKey(final String name,
+                                  final List<Class<?>> parameterTypes) {
+        final List<Object> key = Lists.array();
+        key.add(name);
+        key.addAll(parameterTypes);
+        return key;
+    }
+
+    /**
+     * Indexes the declared fields of the given {@link Class} by name.
+     */
+    Map<String, Field> declaredFields(final Class<?> type) {
+        final Map<String, Field> fields = Maps.hash();
+
+        for (final Field field : type.getDeclaredFields()) {
+            fields.put(
+                field.getName(),
+                field
+            );
+        }
+
+        return fields;
+    }
+
+    // throws...........................................................................................................
+
     List<Class<?>> checkDeclaredThrows(final Class<?>[] throwns,
                                        final Class<?>[] targetThrowns) {
         final List<Class<?>> extra = Lists.array();
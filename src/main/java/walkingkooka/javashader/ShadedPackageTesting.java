@@ -0,0 +1,231 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+import walkingkooka.test.Testing;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verifies every class in a shaded package against its target using {@link ShadedClassFileTesting} checks, producing
+ * one {@link DynamicTest} per class. Class files are read in parallel before any test runs, and the tests share no
+ * mutable state so they may also be executed concurrently.
+ * <br>
+ * Shaded classes are found on the class path of {@link #classFileClassLoader()} unless {@link #shadedClassFiles()}
+ * names a jar or directory, which is closed when the returned stream is closed after the tests run. Class files in the
+ * jar or directory are always read ahead of any copies on the class path, so the shaded output itself is verified.
+ */
+public interface ShadedPackageTesting extends Testing {
+
+    @TestFactory
+    default Stream<DynamicTest> testShadedPackage() {
+        final PackageName from = this.fromPackage();
+        final Optional<Path> shadedClassFiles = this.shadedClassFiles();
+
+        final Optional<URLClassLoader> shadedClassLoader = shadedClassFiles.map(
+            p -> shadedClassLoader(p, this.classFileClassLoader())
+        );
+
+        try {
+            final ShadedClassFileTestingHelper helper = ShadedClassFileTestingHelper.with(
+                ShadedClassFileTesting.typeNameMapper(
+                    from,
+                    this.toPackage()
+                ),
+                shadedClassLoader.isPresent() ?
+                    shadedClassLoader.get() :
+                    this.classFileClassLoader(),
+                this.classFileSnapshot()
+                    .map(ClassFileSnapshot::shared)
+            );
+
+            final Predicate<String> requiredTypes = this.requiredTypes();
+            final Predicate<ClassFileMember> constructors = this.requiredClassFileConstructors();
+            final Predicate<ClassFileMember> methods = this.requiredClassFileMethods();
+            final Predicate<ClassFileMember> fields = this.requiredClassFileFields();
+
+            final List<String> typeNames = shadedClassFiles.map(p -> ShadedClassFileTestingHelper.typeNames(p, from))
+                .orElseGet(() -> helper.typeNames(from))
+                .stream()
+                .filter(requiredTypes)
+                .collect(Collectors.toList());
+
+            // read both class files of every pair in parallel, the helper caches them for the tests
+            typeNames.parallelStream()
+                .forEach(t -> {
+                    helper.type(t);
+                    helper.findType(helper.map(t));
+                });
+
+            // JUnit closes the stream after the dynamic tests run, which closes the jar of the shaded class files
+            return typeNames.stream()
+                .map(t -> DynamicTest.dynamicTest(
+                    t,
+                    () -> this.checkEquals(
+                        Lists.empty(),
+                        checkShadedType(
+                            helper.type(t),
+                            helper,
+                            constructors,
+                            methods,
+                            fields
+                        )
+                    )
+                ))
+                .onClose(() -> shadedClassLoader.ifPresent(ShadedPackageTesting::close));
+        } catch (final RuntimeException | Error cause) {
+            shadedClassLoader.ifPresent(ShadedPackageTesting::close);
+            throw cause;
+        }
+    }
+
+    /**
+     * Creates a {@link URLClassLoader} that finds resources in the shaded class files before asking its parent, unlike
+     * the default parent first delegation, which would find any copies of the same classes on the class path.
+     * {@link ClassLoader#getResourceAsStream(String)} goes through {@link ClassLoader#getResource(String)}.
+     */
+    private static URLClassLoader shadedClassLoader(final Path shadedClassFiles,
+                                                    final ClassLoader parent) {
+        try {
+            return new URLClassLoader(
+                new URL[]{shadedClassFiles.toUri().toURL()},
+                parent
+            ) {
+                @Override
+                public URL getResource(final String name) {
+                    final URL url = this.findResource(name);
+                    return null != url ?
+                        url :
+                        super.getResource(name);
+                }
+            };
+        } catch (final MalformedURLException cause) {
+            throw new IllegalArgumentException("Invalid shaded class files " + shadedClassFiles, cause);
+        }
+    }
+
+    private static void close(final URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (final IOException cause) {
+            throw new IllegalStateException("Unable to close " + classLoader, cause);
+        }
+    }
+
+    /**
+     * Runs all the class, constructor, method and field checks for a single type returning any messages.
+     */
+    private static List<String> checkShadedType(final ClassFileType type,
+                                                final ShadedClassFileTestingHelper helper,
+                                                final Predicate<ClassFileMember> constructors,
+                                                final Predicate<ClassFileMember> methods,
+                                                final Predicate<ClassFileMember> fields) {
+        final List<String> messages = Lists.array();
+
+        final Optional<ClassFileType> maybeTarget = helper.findType(helper.map(type.name()));
+        if (maybeTarget.isPresent()) {
+            final ClassFileType target = maybeTarget.get();
+
+            messages.addAll(helper.checkClass(type, target));
+            messages.addAll(helper.checkConstructors(type, target, constructors));
+            messages.addAll(helper.checkMethods(type, target, methods));
+            messages.addAll(helper.checkFields(type, target, fields));
+        } else {
+            if (false == type.visibility().isOrLess(JavaVisibility.PACKAGE_PRIVATE)) {
+                messages.add("Class missing from target: " + type);
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * The package holding the shaded classes, sub packages are also verified.
+     */
+    PackageName fromPackage();
+
+    /**
+     * The package holding the original classes.
+     */
+    PackageName toPackage();
+
+    /**
+     * Filters the binary type names of the classes that are verified. The default skips anonymous and local classes,
+     * whose names end with a dollar sign followed by a digit.
+     */
+    default Predicate<String> requiredTypes() {
+        return (t) -> {
+            final int dollar = t.lastIndexOf('$');
+            return -1 == dollar ||
+                dollar + 1 == t.length() ||
+                false == Character.isDigit(t.charAt(dollar + 1));
+        };
+    }
+
+    /**
+     * This {@link Predicate} is used to filter constructors that should be present on each shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileConstructors();
+
+    /**
+     * This {@link Predicate} is used to filter methods that should be present on each shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileMethods();
+
+    /**
+     * This {@link Predicate} is used to filter fields that should be present on each shaded class.
+     */
+    Predicate<ClassFileMember> requiredClassFileFields();
+
+    /**
+     * An optional jar or directory holding the shaded classes, when empty the shaded classes are found on the class path.
+     * Class files in the jar or directory are read before those on the class path of {@link #classFileClassLoader()}.
+     */
+    default Optional<Path> shadedClassFiles() {
+        return Optional.empty();
+    }
+
+    /**
+     * An optional file written by {@link ClassFileSnapshot}, target types present in the snapshot are read from it
+     * rather than the class path.
+     */
+    default Optional<Path> classFileSnapshot() {
+        return Optional.empty();
+    }
+
+    /**
+     * The {@link ClassLoader} used to find and read class files, no classes are defined or loaded.
+     */
+    default ClassLoader classFileClassLoader() {
+        return this.getClass().getClassLoader();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.PackageName;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A {@link ClassFileTransformer} that shades the references of classes as they are loaded, so a jar that references
+ * relocated packages may be used without shading it during the build. A class being defined cannot be renamed, so
+ * classes within a from package are never transformed, use {@link ShadingClassLoader} to load classes by their shaded
+ * name. Classes defined by the bootstrap and platform {@link ClassLoader} are never transformed.
+ * <br>
+ * The transformer may be installed as an agent with mappings in the form <code>from=to,from2=to2</code>.
+ */
+public final class ShadingClassFileTransformer implements ClassFileTransformer {
+
+    /**
+     * Installs a {@link ShadingClassFileTransformer} when the JVM starts.
+     */
+    public static void premain(final String arguments,
+                               final Instrumentation instrumentation) {
+        instrumentation.addTransformer(
+            with(
+                mappings(arguments)
+            )
+        );
+    }
+
+    /**
+     * Installs a {@link ShadingClassFileTransformer} into a running JVM, only classes loaded afterwards are shaded.
+     */
+    public static void agentmain(final String arguments,
+                                 final Instrumentation instrumentation) {
+        premain(arguments, instrumentation);
+    }
+
+    /**
+     * Parses agent arguments in the form <code>from=to,from2=to2</code>.
+     */
+    static Map<PackageName, PackageName> mappings(final String arguments) {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+
+        if (null != arguments) {
+            for (final String mapping : arguments.split(",")) {
+                if (false == mapping.isBlank()) {
+                    final int equals = mapping.indexOf('=');
+                    if (-1 == equals) {
+                        throw new IllegalArgumentException("Invalid mapping " + mapping + " expected from=to");
+                    }
+                    mappings.put(
+                        PackageName.with(mapping.substring(0, equals).trim()),
+                        PackageName.with(mapping.substring(equals + 1).trim())
+                    );
+                }
+            }
+        }
+
+        return mappings;
+    }
+
+    public static ShadingClassFileTransformer with(final Map<PackageName, PackageName> mappings) {
+        return new ShadingClassFileTransformer(
+            PackageShaderRules.with(mappings)
+        );
+    }
+
+    private ShadingClassFileTransformer(final PackageShaderRules rules) {
+        super();
+        this.rules = rules;
+    }
+
+    /**
+     * Returns the shaded class file or null when the class is unchanged.
+     */
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String className,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] classFile) {
+        byte[] transformed = null;
+
+        if (null != loader &&
+            PLATFORM != loader &&
+            null != className &&
+            className.equals(this.rules.shade(className))) {
+            final Transformed cached = this.classFiles.get(className);
+            if (null != cached && Arrays.equals(cached.input, classFile)) {
+                transformed = cached.output;
+            } else {
+                final PackageShaderRules rules = this.rules;
+                final boolean[] rewritten = new boolean[1];
+
+                final byte[] shaded = ClassFilePackageShader.shadeClassFile(
+                    classFile,
+                    (typeName) -> {
+                        final String shadedName = rules.shade(typeName);
+                        rewritten[0] |= shadedName != typeName;
+                        return shadedName;
+                    }
+                );
+                if (rewritten[0]) {
+                    transformed = shaded;
+                    this.classFiles.put(
+                        className,
+                        new Transformed(classFile, transformed)
+                    );
+                }
+            }
+        }
+
+        return transformed;
+    }
+
+    private final static ClassLoader PLATFORM = ClassLoader.getPlatformClassLoader();
+
+    private final PackageShaderRules rules;
+
+    /**
+     * The most recently transformed class files by internal class name, the input is kept because different
+     * {@link ClassLoader} may define different classes with the same name. Unchanged classes are not cached.
+     */
+    private final Map<String, Transformed> classFiles = ShadingClassLoader.cache();
+
+    private final static class Transformed {
+
+        Transformed(final byte[] input,
+                    final byte[] output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        final byte[] input;
+
+        /**
+         * The shaded class file.
+         */
+        final byte[] output;
+    }
+
+    @Override
+    public String toString() {
+        return this.rules.toString();
+    }
+}
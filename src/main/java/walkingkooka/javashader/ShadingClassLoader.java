@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import walkingkooka.reflect.PackageName;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A {@link ClassLoader} that defines shaded copies of the classes found by another {@link ClassLoader}, shading class
+ * files as they are loaded instead of during a build. Classes are looked up by their shaded name, which is resolved
+ * back to the original class file, and resources within shaded packages are resolved the same way. Classes in
+ * packages that were relocated away cannot be loaded by their original name.
+ * <br>
+ * Classes are loaded from the platform {@link ClassLoader} first, so JDK classes are never defined twice, and only
+ * then from the class files of the source, which are never loaded unshaded by a parent. Class files of the JDK image
+ * found by the source are never defined. The most recently shaded class files are cached and also returned by
+ * {@link #getResourceAsStream(String)}.
+ */
+public final class ShadingClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Creates a {@link ShadingClassLoader} that reads class files and resources from the given source.
+     */
+    public static ShadingClassLoader with(final ClassLoader source,
+                                          final Map<PackageName, PackageName> mappings) {
+        Objects.requireNonNull(source, "source");
+
+        return new ShadingClassLoader(
+            source,
+            PackageShaderRules.with(mappings)
+        );
+    }
+
+    private ShadingClassLoader(final ClassLoader source,
+                               final PackageShaderRules rules) {
+        super(ClassLoader.getPlatformClassLoader());
+        this.source = source;
+        this.rules = rules;
+    }
+
+    /**
+     * Delegates to the platform {@link ClassLoader} first, only defining a shaded class when the platform has no such
+     * class and the source has a class file outside the JDK image.
+     */
+    @Override
+    protected Class<?> loadClass(final String name,
+                                 final boolean resolve) throws ClassNotFoundException {
+        synchronized (this.getClassLoadingLock(name)) {
+            Class<?> type = this.findLoadedClass(name);
+            if (null == type) {
+                try {
+                    type = this.getParent()
+                        .loadClass(name);
+                } catch (final ClassNotFoundException notPlatform) {
+                    type = this.findClass(name);
+                }
+            }
+            if (resolve) {
+                this.resolveClass(type);
+            }
+            return type;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        final byte[] classFile = this.shadedClassFile(name.replace('.', '/') + CLASS);
+        if (null == classFile) {
+            throw new ClassNotFoundException(name);
+        }
+        return this.defineClass(name, classFile, 0, classFile.length);
+    }
+
+    /**
+     * Finds the original resource of a possibly shaded resource name.
+     */
+    @Override
+    protected URL findResource(final String name) {
+        final String original = this.rules.unshade(name);
+        return null != original ?
+            this.source.getResource(original) :
+            null;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(final String name) throws IOException {
+        final String original = this.rules.unshade(name);
+        return null != original ?
+            this.source.getResources(original) :
+            super.findResources(name);
+    }
+
+    /**
+     * Class files are returned shaded, all other resources are returned unchanged.
+     */
+    @Override
+    public InputStream getResourceAsStream(final String name) {
+        final InputStream stream;
+
+        if (name.endsWith(CLASS)) {
+            final byte[] classFile = this.shadedClassFile(name);
+            stream = null != classFile ?
+                new ByteArrayInputStream(classFile) :
+                super.getResourceAsStream(name);
+        } else {
+            stream = super.getResourceAsStream(name);
+        }
+
+        return stream;
+    }
+
+    /**
+     * Returns the shaded class file for the given shaded resource name, or null if it has no original class file or
+     * the original is within the JDK image.
+     */
+    private byte[] shadedClassFile(final String name) {
+        byte[] classFile = this.classFiles.get(name);
+
+        if (null == classFile) {
+            final String original = this.rules.unshade(name);
+            final URL url = null != original ?
+                this.source.getResource(original) :
+                null;
+
+            if (null != url && false == JRT.equals(url.getProtocol())) {
+                try (final InputStream input = url.openStream()) {
+                    classFile = ClassFilePackageShader.shadeClassFile(
+                        input.readAllBytes(),
+                        this.rules
+                    );
+                    this.classFiles.put(name, classFile);
+                } catch (final IOException cause) {
+                    throw new IllegalStateException("Unable to read " + original, cause);
+                }
+            }
+        }
+
+        return classFile;
+    }
+
+    private final static String JRT = "jrt";
+
+    /**
+     * Creates a cache holding the most recently used {@link #CACHE_SIZE} shaded class files, so class files that are
+     * not needed again do not stay in memory for the life of the JVM.
+     */
+    static <V> Map<String, V> cache() {
+        return Collections.synchronizedMap(
+            new LinkedHashMap<String, V>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+                    return this.size() > CACHE_SIZE;
+                }
+            }
+        );
+    }
+
+    // @VisibleForTesting
+    final static int CACHE_SIZE = 256;
+
+    private final ClassLoader source;
+
+    private final PackageShaderRules rules;
+
+    /**
+     * The most recently shaded class files by their shaded resource name.
+     */
+    private final Map<String, byte[]> classFiles = cache();
+
+    private final static String CLASS = ".class";
+
+    @Override
+    public String toString() {
+        return this.rules + " " + this.source;
+    }
+}
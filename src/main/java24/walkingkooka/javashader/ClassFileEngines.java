@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+/**
+ * Selects the {@link ClassFileEngine} on Java 24 and later. ASM remains the default, the engine built on the JDK class
+ * file API is selected by the {@link #PROPERTY}.
+ */
+final class ClassFileEngines {
+
+    /**
+     * The system property that selects the engine by name.
+     */
+    final static String PROPERTY = "walkingkooka.javashader.engine";
+
+    final static String ASM = "asm";
+
+    final static String JDK = "jdk";
+
+    /**
+     * The engine used when the {@link #PROPERTY} is absent.
+     */
+    final static String DEFAULT = ASM;
+
+    /**
+     * The engine used by {@link ClassFilePackageShader}, selected by the {@link #PROPERTY} when present otherwise the
+     * {@link #DEFAULT}.
+     */
+    static ClassFileEngine engine() {
+        return ENGINE;
+    }
+
+    private final static ClassFileEngine ENGINE = engine(
+        System.getProperty(PROPERTY, DEFAULT)
+    );
+
+    /**
+     * Returns the engine with the given name, failing if it is unknown.
+     */
+    static ClassFileEngine engine(final String name) {
+        switch (String.valueOf(name)) {
+            case ASM:
+                return AsmClassFileEngine.INSTANCE;
+            case JDK:
+                return JdkClassFileEngine.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unknown class file engine " + name);
+        }
+    }
+
+    /**
+     * Stop creation
+     */
+    private ClassFileEngines() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import java.lang.classfile.Annotation;
+import java.lang.classfile.AnnotationElement;
+import java.lang.classfile.AnnotationValue;
+import java.lang.classfile.Attribute;
+import java.lang.classfile.Attributes;
+import java.lang.classfile.ClassBuilder;
+import java.lang.classfile.ClassElement;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassModel;
+import java.lang.classfile.ClassTransform;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.CodeElement;
+import java.lang.classfile.CodeModel;
+import java.lang.classfile.CodeTransform;
+import java.lang.classfile.FieldModel;
+import java.lang.classfile.Interfaces;
+import java.lang.classfile.MethodBuilder;
+import java.lang.classfile.MethodElement;
+import java.lang.classfile.MethodModel;
+import java.lang.classfile.Signature;
+import java.lang.classfile.Superclass;
+import java.lang.classfile.TypeAnnotation;
+import java.lang.classfile.attribute.AnnotationDefaultAttribute;
+import java.lang.classfile.attribute.EnclosingMethodAttribute;
+import java.lang.classfile.attribute.ExceptionsAttribute;
+import java.lang.classfile.attribute.InnerClassInfo;
+import java.lang.classfile.attribute.InnerClassesAttribute;
+import java.lang.classfile.attribute.MethodParametersAttribute;
+import java.lang.classfile.attribute.ModuleAttribute;
+import java.lang.classfile.attribute.ModuleMainClassAttribute;
+import java.lang.classfile.attribute.ModuleProvideInfo;
+import java.lang.classfile.attribute.NestHostAttribute;
+import java.lang.classfile.attribute.NestMembersAttribute;
+import java.lang.classfile.attribute.PermittedSubclassesAttribute;
+import java.lang.classfile.attribute.RecordAttribute;
+import java.lang.classfile.attribute.RecordComponentInfo;
+import java.lang.classfile.attribute.RuntimeInvisibleAnnotationsAttribute;
+import java.lang.classfile.attribute.RuntimeInvisibleParameterAnnotationsAttribute;
+import java.lang.classfile.attribute.RuntimeInvisibleTypeAnnotationsAttribute;
+import java.lang.classfile.attribute.RuntimeVisibleAnnotationsAttribute;
+import java.lang.classfile.attribute.RuntimeVisibleParameterAnnotationsAttribute;
+import java.lang.classfile.attribute.RuntimeVisibleTypeAnnotationsAttribute;
+import java.lang.classfile.attribute.SignatureAttribute;
+import java.lang.classfile.attribute.SourceDebugExtensionAttribute;
+import java.lang.classfile.attribute.SourceFileAttribute;
+import java.lang.classfile.attribute.StackMapFrameInfo;
+import java.lang.classfile.attribute.StackMapFrameInfo.ObjectVerificationTypeInfo;
+import java.lang.classfile.attribute.StackMapFrameInfo.VerificationTypeInfo;
+import java.lang.classfile.attribute.StackMapTableAttribute;
+import java.lang.classfile.constantpool.ClassEntry;
+import java.lang.classfile.constantpool.ConstantPoolBuilder;
+import java.lang.classfile.constantpool.Utf8Entry;
+import java.lang.classfile.instruction.ConstantInstruction.LoadConstantInstruction;
+import java.lang.classfile.instruction.ExceptionCatch;
+import java.lang.classfile.instruction.FieldInstruction;
+import java.lang.classfile.instruction.InvokeDynamicInstruction;
+import java.lang.classfile.instruction.InvokeInstruction;
+import java.lang.classfile.instruction.LineNumber;
+import java.lang.classfile.instruction.LocalVariable;
+import java.lang.classfile.instruction.LocalVariableType;
+import java.lang.classfile.instruction.NewMultiArrayInstruction;
+import java.lang.classfile.instruction.NewObjectInstruction;
+import java.lang.classfile.instruction.NewReferenceArrayInstruction;
+import java.lang.classfile.instruction.TypeCheckInstruction;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDesc;
+import java.lang.constant.DirectMethodHandleDesc;
+import java.lang.constant.DynamicCallSiteDesc;
+import java.lang.constant.DynamicConstantDesc;
+import java.lang.constant.MethodHandleDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link ClassFileEngine} that uses the JDK class file API, available from Java 24. The class is rebuilt with a new
+ * constant pool so no entry holding an original name is left behind. Stack maps are never computed, the original
+ * frames are remapped and written back, so no class hierarchy is needed.
+ * <br>
+ * Module descriptors are remapped like ASM's ClassRemapper does, the main class and the used and provided services are
+ * remapped while the module, required module, exported, opened and package names are kept.
+ */
+final class JdkClassFileEngine implements ClassFileEngine {
+
+    final static JdkClassFileEngine INSTANCE = new JdkClassFileEngine();
+
+    private JdkClassFileEngine() {
+        super();
+    }
+
+    @Override
+    public Shading parse(final byte[] content,
+                         final Set<ClassFileDebugInfo> debugInfo) {
+        final ClassFile classFile = ClassFile.of(
+            ClassFile.ConstantPoolSharingOption.NEW_POOL,
+            ClassFile.StackMapsOption.DROP_STACK_MAPS,
+            debugInfo.isEmpty() ?
+                ClassFile.DebugElementsOption.DROP_DEBUG :
+                ClassFile.DebugElementsOption.PASS_DEBUG
+        );
+        final ClassModel model = classFile.parse(content);
+
+        return new Shading() {
+            @Override
+            public void visit(final UnaryOperator<String> map) {
+                final Remapper remapper = new Remapper(map, debugInfo);
+                this.shaded = classFile.transformClass(
+                    model,
+                    remapper.type(model.thisClass().asSymbol()),
+                    remapper
+                );
+            }
+
+            @Override
+            public byte[] emit() {
+                return this.shaded;
+            }
+
+            private byte[] shaded;
+        };
+    }
+
+    /**
+     * Rebuilds every element of a class replacing the type names within, dropping the debug info that is not kept.
+     */
+    private static final class Remapper implements ClassTransform {
+
+        Remapper(final UnaryOperator<String> map,
+                 final Set<ClassFileDebugInfo> debugInfo) {
+            this.map = map;
+            this.sourceFile = debugInfo.contains(ClassFileDebugInfo.SOURCE_FILE);
+            this.lineNumbers = debugInfo.contains(ClassFileDebugInfo.LINE_NUMBERS);
+            this.localVariables = debugInfo.contains(ClassFileDebugInfo.LOCAL_VARIABLES);
+        }
+
+        // class........................................................................................................
+
+        @Override
+        public void accept(final ClassBuilder builder,
+                           final ClassElement element) {
+            switch (element) {
+                case Superclass superclass -> builder.withSuperclass(
+                    this.type(superclass.superclassEntry())
+                );
+                case Interfaces interfaces -> builder.withInterfaceSymbols(
+                    this.types(interfaces.interfaces())
+                );
+                case FieldModel field -> builder.withField(
+                    field.fieldName().stringValue(),
+                    this.type(field.fieldTypeSymbol()),
+                    (f) -> field.forEach(
+                        (e) -> f.with(this.attribute(e, f.constantPool()))
+                    )
+                );
+                case MethodModel method -> builder.withMethod(
+                    method.methodName().stringValue(),
+                    this.methodType(method.methodTypeSymbol()),
+                    method.flags().flagsMask(),
+                    (m) -> method.forEach(
+                        (e) -> this.method(m, e)
+                    )
+                );
+                case InnerClassesAttribute inner -> builder.with(
+                    InnerClassesAttribute.of(
+                        inner.classes()
+                            .stream()
+                            .map(this::innerClass)
+                            .toList()
+                    )
+                );
+                case EnclosingMethodAttribute enclosing -> builder.with(
+                    EnclosingMethodAttribute.of(
+                        this.type(enclosing.enclosingClass()),
+                        enclosing.enclosingMethodName()
+                            .map(Utf8Entry::stringValue),
+                        enclosing.enclosingMethodTypeSymbol()
+                            .map(this::methodType)
+                    )
+                );
+                case NestHostAttribute host -> builder.with(
+                    NestHostAttribute.of(
+                        this.type(host.nestHost())
+                    )
+                );
+                case NestMembersAttribute members -> builder.with(
+                    NestMembersAttribute.ofSymbols(
+                        this.types(members.nestMembers())
+                    )
+                );
+                case PermittedSubclassesAttribute permitted -> builder.with(
+                    PermittedSubclassesAttribute.ofSymbols(
+                        this.types(permitted.permittedSubclasses())
+                    )
+                );
+                case RecordAttribute record -> builder.with(
+                    RecordAttribute.of(
+                        record.components()
+                            .stream()
+                            .map((c) -> this.recordComponent(c, builder.constantPool()))
+                            .toList()
+                    )
+                );
+                case ModuleAttribute module -> builder.with(
+                    this.module(module, builder.constantPool())
+                );
+                case ModuleMainClassAttribute main -> builder.with(
+                    ModuleMainClassAttribute.of(
+                        this.type(main.mainClass())
+                    )
+                );
+                case SourceFileAttribute source -> {
+                    if (this.sourceFile) {
+                        builder.with(source);
+                    }
+                }
+                case SourceDebugExtensionAttribute extension -> {
+                    if (this.sourceFile) {
+                        builder.with(extension);
+                    }
+                }
+                default -> builder.with(
+                    this.attribute(element, builder.constantPool())
+                );
+            }
+        }
+
+        private InnerClassInfo innerClass(final InnerClassInfo inner) {
+            return InnerClassInfo.of(
+                this.type(inner.innerClass()),
+                inner.outerClass()
+                    .map(this::type),
+                inner.innerName()
+                    .map(Utf8Entry::stringValue),
+                inner.flagsMask()
+            );
+        }
+
+        /**
+         * Remaps the used and provided services, the names of modules and packages are copied unchanged.
+         */
+        private ModuleAttribute module(final ModuleAttribute module,
+                                       final ConstantPoolBuilder pool) {
+            return ModuleAttribute.of(
+                module.moduleName(),
+                module.moduleFlagsMask(),
+                module.moduleVersion()
+                    .orElse(null),
+                module.requires(),
+                module.exports(),
+                module.opens(),
+                module.uses()
+                    .stream()
+                    .map((u) -> pool.classEntry(this.type(u)))
+                    .toList(),
+                module.provides()
+                    .stream()
+                    .map(
+                        (p) -> ModuleProvideInfo.of(
+                            this.type(p.provides()),
+                            this.types(p.providesWith())
+                        )
+                    ).toList()
+            );
+        }
+
+        private RecordComponentInfo recordComponent(final RecordComponentInfo component,
+                                                    final ConstantPoolBuilder pool) {
+            return RecordComponentInfo.of(
+                component.name().stringValue(),
+                this.type(component.descriptorSymbol()),
+                component.attributes()
+                    .stream()
+                    .map((a) -> (Attribute<?>) this.attribute(a, pool))
+                    .toList()
+            );
+        }
+
+        // method.......................................................................................................
+
+        private void method(final MethodBuilder builder,
+                            final MethodElement element) {
+            switch (element) {
+                case CodeModel code -> builder.transformCode(
+                    code,
+                    this.code(code)
+                );
+                case ExceptionsAttribute exceptions -> builder.with(
+                    ExceptionsAttribute.ofSymbols(
+                        this.types(exceptions.exceptions())
+                    )
+                );
+                case AnnotationDefaultAttribute value -> builder.with(
+                    AnnotationDefaultAttribute.of(
+                        this.annotationValue(value.defaultValue())
+                    )
+                );
+                case RuntimeVisibleParameterAnnotationsAttribute parameters -> builder.with(
+                    RuntimeVisibleParameterAnnotationsAttribute.of(
+                        parameters.parameterAnnotations()
+                            .stream()
+                            .map(this::annotations)
+                            .toList()
+                    )
+                );
+                case RuntimeInvisibleParameterAnnotationsAttribute parameters -> builder.with(
+                    RuntimeInvisibleParameterAnnotationsAttribute.of(
+                        parameters.parameterAnnotations()
+                            .stream()
+                            .map(this::annotations)
+                            .toList()
+                    )
+                );
+                case MethodParametersAttribute parameters -> {
+                    if (this.localVariables) {
+                        builder.with(parameters);
+                    }
+                }
+                default -> builder.with(
+                    this.attribute(element, builder.constantPool())
+                );
+            }
+        }
+
+        // code.........................................................................................................
+
+        /**
+         * Remaps the instructions of the code, the original stack map frames are remapped and written after them.
+         */
+        private CodeTransform code(final CodeModel code) {
+            return new CodeTransform() {
+                @Override
+                public void accept(final CodeBuilder builder,
+                                   final CodeElement element) {
+                    Remapper.this.code(builder, element);
+                }
+
+                @Override
+                public void atEnd(final CodeBuilder builder) {
+                    code.findAttribute(Attributes.stackMapTable())
+                        .ifPresent(
+                            (t) -> builder.with(
+                                StackMapTableAttribute.of(
+                                    t.entries()
+                                        .stream()
+                                        .map(Remapper.this::frame)
+                                        .toList()
+                                )
+                            )
+                        );
+                }
+            };
+        }
+
+        private void code(final CodeBuilder builder,
+                          final CodeElement element) {
+            switch (element) {
+                case FieldInstruction field -> builder.fieldAccess(
+                    field.opcode(),
+                    this.type(field.owner()),
+                    field.name().stringValue(),
+                    this.type(field.typeSymbol())
+                );
+                case InvokeInstruction invoke -> builder.invoke(
+                    invoke.opcode(),
+                    this.type(invoke.owner()),
+                    invoke.name().stringValue(),
+                    this.methodType(invoke.typeSymbol()),
+                    invoke.isInterface()
+                );
+                case InvokeDynamicInstruction dynamic -> builder.invokedynamic(
+                    DynamicCallSiteDesc.of(
+                        this.methodHandle(dynamic.bootstrapMethod()),
+                        dynamic.name().stringValue(),
+                        this.methodType(dynamic.typeSymbol()),
+                        this.constants(dynamic.bootstrapArgs())
+                    )
+                );
+                case NewObjectInstruction create -> builder.new_(
+                    this.type(create.className())
+                );
+                case NewReferenceArrayInstruction array -> builder.anewarray(
+                    this.type(array.componentType())
+                );
+                case NewMultiArrayInstruction array -> builder.multianewarray(
+                    this.type(array.arrayType()),
+                    array.dimensions()
+                );
+                case TypeCheckInstruction check -> builder.with(
+                    TypeCheckInstruction.of(
+                        check.opcode(),
+                        this.type(check.type())
+                    )
+                );
+                case LoadConstantInstruction constant -> builder.ldc(
+                    this.constant(constant.constantValue())
+                );
+                case ExceptionCatch handler -> {
+                    if (handler.catchType().isPresent()) {
+                        builder.exceptionCatch(
+                            handler.tryStart(),
+                            handler.tryEnd(),
+                            handler.handler(),
+                            this.type(handler.catchType().get())
+                        );
+                    } else {
+                        builder.exceptionCatchAll(
+                            handler.tryStart(),
+                            handler.tryEnd(),
+                            handler.handler()
+                        );
+                    }
+                }
+                case LocalVariable variable -> {
+                    if (this.localVariables) {
+                        builder.localVariable(
+                            variable.slot(),
+                            variable.name().stringValue(),
+                            this.type(variable.typeSymbol()),
+                            variable.startScope(),
+                            variable.endScope()
+                        );
+                    }
+                }
+                case LocalVariableType variable -> {
+                    if (this.localVariables) {
+                        builder.localVariableType(
+                            variable.slot(),
+                            variable.name().stringValue(),
+                            Signature.parseFrom(
+                                this.signature(variable.signature())
+                            ),
+                            variable.startScope(),
+                            variable.endScope()
+                        );
+                    }
+                }
+                case LineNumber line -> {
+                    if (this.lineNumbers) {
+                        builder.with(line);
+                    }
+                }
+                case StackMapTableAttribute ignored -> {
+                    // written with the remapped frames at the end
+                }
+                default -> builder.with(
+                    this.attribute(element, builder.constantPool())
+                );
+            }
+        }
+
+        private StackMapFrameInfo frame(final StackMapFrameInfo frame) {
+            return StackMapFrameInfo.of(
+                frame.target(),
+                this.verificationTypes(frame.locals()),
+                this.verificationTypes(frame.stack())
+            );
+        }
+
+        private List<VerificationTypeInfo> verificationTypes(final List<VerificationTypeInfo> types) {
+            return types.stream()
+                .map(
+                    (t) -> t instanceof ObjectVerificationTypeInfo object ?
+                        ObjectVerificationTypeInfo.of(this.type(object.className())) :
+                        t
+                ).toList();
+        }
+
+        // constants....................................................................................................
+
+        private ConstantDesc[] constants(final List<ConstantDesc> constants) {
+            return constants.stream()
+                .map(this::constant)
+                .toArray(ConstantDesc[]::new);
+        }
+
+        private ConstantDesc constant(final ConstantDesc constant) {
+            return switch (constant) {
+                case ClassDesc type -> this.type(type);
+                case MethodTypeDesc type -> this.methodType(type);
+                case DirectMethodHandleDesc handle -> this.methodHandle(handle);
+                case DynamicConstantDesc<?> dynamic -> DynamicConstantDesc.ofNamed(
+                    this.methodHandle(dynamic.bootstrapMethod()),
+                    dynamic.constantName(),
+                    this.type(dynamic.constantType()),
+                    this.constants(dynamic.bootstrapArgsList())
+                );
+                default -> constant;
+            };
+        }
+
+        private DirectMethodHandleDesc methodHandle(final DirectMethodHandleDesc handle) {
+            return MethodHandleDesc.of(
+                handle.kind(),
+                this.type(handle.owner()),
+                handle.methodName(),
+                this.signature(handle.lookupDescriptor())
+            );
+        }
+
+        // attributes...................................................................................................
+
+        /**
+         * Remaps the signature and annotations attributes shared by classes, fields, methods, code and record
+         * components, returning any other element unchanged. The result is an element of the same kind.
+         */
+        @SuppressWarnings("unchecked")
+        private <E> E attribute(final E element,
+                                final ConstantPoolBuilder pool) {
+            final Object attribute;
+            switch (element) {
+                case SignatureAttribute signature -> attribute = SignatureAttribute.of(
+                    pool.utf8Entry(
+                        this.signature(signature.signature())
+                    )
+                );
+                case RuntimeVisibleAnnotationsAttribute annotations -> attribute = RuntimeVisibleAnnotationsAttribute.of(
+                    this.annotations(annotations.annotations())
+                );
+                case RuntimeInvisibleAnnotationsAttribute annotations -> attribute = RuntimeInvisibleAnnotationsAttribute.of(
+                    this.annotations(annotations.annotations())
+                );
+                case RuntimeVisibleTypeAnnotationsAttribute annotations -> attribute = RuntimeVisibleTypeAnnotationsAttribute.of(
+                    this.typeAnnotations(annotations.annotations())
+                );
+                case RuntimeInvisibleTypeAnnotationsAttribute annotations -> attribute = RuntimeInvisibleTypeAnnotationsAttribute.of(
+                    this.typeAnnotations(annotations.annotations())
+                );
+                default -> attribute = element;
+            }
+            return (E) attribute;
+        }
+
+        private List<Annotation> annotations(final List<Annotation> annotations) {
+            return annotations.stream()
+                .map(this::annotation)
+                .toList();
+        }
+
+        private Annotation annotation(final Annotation annotation) {
+            return Annotation.of(
+                this.type(annotation.classSymbol()),
+                annotation.elements()
+                    .stream()
+                    .map(
+                        (e) -> AnnotationElement.of(
+                            e.name().stringValue(),
+                            this.annotationValue(e.value())
+                        )
+                    ).toList()
+            );
+        }
+
+        private List<TypeAnnotation> typeAnnotations(final List<TypeAnnotation> annotations) {
+            return annotations.stream()
+                .map(
+                    (a) -> TypeAnnotation.of(
+                        a.targetInfo(),
+                        a.targetPath(),
+                        this.annotation(a.annotation())
+                    )
+                ).toList();
+        }
+
+        private AnnotationValue annotationValue(final AnnotationValue value) {
+            return switch (value) {
+                case AnnotationValue.OfAnnotation annotation -> AnnotationValue.ofAnnotation(
+                    this.annotation(annotation.annotation())
+                );
+                case AnnotationValue.OfArray array -> AnnotationValue.ofArray(
+                    array.values()
+                        .stream()
+                        .map(this::annotationValue)
+                        .toList()
+                );
+                case AnnotationValue.OfClass type -> AnnotationValue.ofClass(
+                    this.type(type.classSymbol())
+                );
+                case AnnotationValue.OfEnum constant -> AnnotationValue.ofEnum(
+                    this.type(constant.classSymbol()),
+                    constant.constantName().stringValue()
+                );
+                default -> value;
+            };
+        }
+
+        // types........................................................................................................
+
+        private List<ClassDesc> types(final List<ClassEntry> types) {
+            return types.stream()
+                .map(this::type)
+                .toList();
+        }
+
+        private ClassDesc type(final ClassEntry type) {
+            return this.type(type.asSymbol());
+        }
+
+        ClassDesc type(final ClassDesc type) {
+            return ClassDesc.ofDescriptor(
+                this.signature(type.descriptorString())
+            );
+        }
+
+        private MethodTypeDesc methodType(final MethodTypeDesc type) {
+            return MethodTypeDesc.ofDescriptor(
+                this.signature(type.descriptorString())
+            );
+        }
+
+        private String signature(final Utf8Entry signature) {
+            return this.signature(signature.stringValue());
+        }
+
+        private String signature(final String signature) {
+            return ClassFileSignatures.map(
+                signature,
+                this.map
+            );
+        }
+
+        private final UnaryOperator<String> map;
+
+        private final boolean sourceFile;
+
+        private final boolean lineNumbers;
+
+        private final boolean localVariables;
+    }
+
+    @Override
+    public String toString() {
+        return ClassFileEngines.JDK;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchiveBudgetTest implements ClassTesting<ArchiveBudget> {
+
+    @Test
+    public void testWithZeroFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveBudget.with(0)
+        );
+        this.checkEquals("Invalid budget 0 must be greater than 0", thrown.getMessage());
+    }
+
+    @Test
+    public void testTryAcquire() {
+        final ArchiveBudget budget = ArchiveBudget.with(100);
+
+        this.checkEquals(true, budget.tryAcquire(60), "first");
+        this.checkEquals(false, budget.tryAcquire(50), "second");
+        this.checkEquals(true, budget.tryAcquire(40), "third");
+        this.checkEquals(0L, budget.available(), "available");
+    }
+
+    @Test
+    public void testTryAcquireMoreThanLimit() {
+        this.checkEquals(false, ArchiveBudget.with(100).tryAcquire(101));
+    }
+
+    @Test
+    public void testRelease() {
+        final ArchiveBudget budget = ArchiveBudget.with(100);
+        budget.tryAcquire(60);
+        budget.release(60);
+
+        this.checkEquals(100L, budget.available(), "available");
+        this.checkEquals(true, budget.tryAcquire(100), "acquire all");
+    }
+
+    @Test
+    public void testReleaseMoreThanAcquiredFails() {
+        final ArchiveBudget budget = ArchiveBudget.with(100);
+        budget.tryAcquire(10);
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> budget.release(11)
+        );
+    }
+
+    @Test
+    public void testPeak() {
+        final ArchiveBudget budget = ArchiveBudget.with(100);
+        budget.tryAcquire(30);
+        budget.tryAcquire(40);
+        budget.release(70);
+        budget.tryAcquire(20);
+
+        this.checkEquals(70L, budget.peak());
+    }
+
+    @Test
+    public void testToString() {
+        final ArchiveBudget budget = ArchiveBudget.with(100);
+        budget.tryAcquire(30);
+
+        this.checkEquals("70/100", budget.toString());
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveBudget> type() {
+        return ArchiveBudget.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchiveClassGraphTest implements ClassTesting<ArchiveClassGraph> {
+
+    @Test
+    public void testWithNullRootsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchiveClassGraph.with(null)
+        );
+    }
+
+    // className........................................................................................................
+
+    @Test
+    public void testClassName() {
+        this.classNameAndCheck("package1/Type2.class", "package1/Type2");
+    }
+
+    @Test
+    public void testClassNameNested() {
+        this.classNameAndCheck("package1/Type2$Type3.class", "package1/Type2$Type3");
+    }
+
+    @Test
+    public void testClassNameVersioned() {
+        this.classNameAndCheck("META-INF/versions/11/package1/Type2.class", "package1/Type2");
+    }
+
+    @Test
+    public void testClassNameModuleInfo() {
+        this.classNameAndCheck("module-info.class", null);
+    }
+
+    @Test
+    public void testClassNamePackageInfo() {
+        this.classNameAndCheck("package1/package-info.class", null);
+    }
+
+    @Test
+    public void testClassNameJavaFile() {
+        this.classNameAndCheck("package1/Type2.java", null);
+    }
+
+    private void classNameAndCheck(final String path,
+                                   final String className) {
+        this.checkEquals(
+            className,
+            ArchiveClassGraph.className(path),
+            path
+        );
+    }
+
+    // unreachable......................................................................................................
+
+    @Test
+    public void testUnreachable() {
+        final ArchiveClassGraph graph = ArchiveClassGraph.with(Lists.of("a/Root"));
+        graph.add("a/Root", Sets.of("a/Root", "b/Used", "java/lang/Object"));
+        graph.add("b/Used", Sets.of("b/Used", "c/Transitive"));
+        graph.add("c/Transitive", Sets.of("a/Root"));
+        graph.add("d/Unused", Sets.of("b/Used"));
+        graph.add("e/Provider", Sets.of());
+        graph.root("e/Provider");
+
+        this.checkEquals(
+            Sets.of("d/Unused"),
+            graph.unreachable()
+        );
+    }
+
+    @Test
+    public void testUnreachableMissingRoot() {
+        final ArchiveClassGraph graph = ArchiveClassGraph.with(Lists.of("a/Missing"));
+        graph.add("b/Type", Sets.of("b/Type"));
+
+        this.checkEquals(
+            Sets.of("b/Type"),
+            graph.unreachable()
+        );
+    }
+
+    @Test
+    public void testAddMerges() {
+        final ArchiveClassGraph graph = ArchiveClassGraph.with(Lists.of("a/Root"));
+        graph.add("a/Root", Sets.of("b/Java8"));
+        graph.add("a/Root", Sets.of("c/Java11"));
+        graph.add("b/Java8", Sets.of());
+        graph.add("c/Java11", Sets.of());
+
+        this.checkEquals(
+            Sets.empty(),
+            graph.unreachable()
+        );
+    }
+
+    @Test
+    public void testToString() {
+        final ArchiveClassGraph graph = ArchiveClassGraph.with(Lists.of("a/Root"));
+        graph.add("a/Root", Sets.of());
+        graph.add("b/Type", Sets.of());
+
+        this.checkEquals(
+            "1 roots 2 classes",
+            graph.toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveClassGraph> type() {
+        return ArchiveClassGraph.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
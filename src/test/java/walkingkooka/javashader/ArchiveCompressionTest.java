@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchiveCompressionTest implements ClassTesting<ArchiveCompression> {
+
+    private final static byte[] CONTENT = "abc123abc123abc123abc123abc123abc123".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testDeflatedInvalidLevelFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveCompression.deflated(10)
+        );
+        this.checkEquals("Invalid level 10 expected -1 or between 0 and 9", thrown.getMessage());
+    }
+
+    @Test
+    public void testDeflatedInvalidNegativeLevelFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveCompression.deflated(-2)
+        );
+    }
+
+    @Test
+    public void testOriginalSame() {
+        assertSame(
+            ArchiveCompression.original(),
+            ArchiveCompression.original()
+        );
+    }
+
+    @Test
+    public void testStoredCompress() {
+        assertSame(
+            CONTENT,
+            ArchiveCompression.stored()
+                .compress(ArchiveEntry.STORED, CONTENT)
+        );
+    }
+
+    @Test
+    public void testDeflatedCompress() throws Exception {
+        final byte[] compressed = ArchiveCompression.deflated(Deflater.BEST_COMPRESSION)
+            .compress(ArchiveEntry.DEFLATED, CONTENT);
+
+        this.checkEquals(true, compressed.length < CONTENT.length, "compressed");
+
+        final Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed);
+        final byte[] inflated = new byte[CONTENT.length];
+        this.checkEquals(CONTENT.length, inflater.inflate(inflated), "inflated");
+        inflater.end();
+
+        this.checkEquals(new String(CONTENT, StandardCharsets.UTF_8), new String(inflated, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDeflatedCompressFileSameAsMemory() throws Exception {
+        final ArchiveCompression compression = ArchiveCompression.deflated(Deflater.BEST_COMPRESSION);
+
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".tmp");
+        try {
+            final long length;
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                length = compression.compress(ArchiveEntry.DEFLATED, CONTENT, channel);
+            }
+
+            final byte[] compressed = Files.readAllBytes(file);
+            this.checkEquals((long) compressed.length, length, "length");
+            this.checkEquals(
+                true,
+                Arrays.equals(
+                    compression.compress(ArchiveEntry.DEFLATED, CONTENT),
+                    compressed
+                ),
+                "same as in memory"
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEquals() {
+        this.checkEquals(
+            ArchiveCompression.deflated(9),
+            ArchiveCompression.deflated(9)
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentLevel() {
+        this.checkNotEquals(
+            ArchiveCompression.deflated(1),
+            ArchiveCompression.deflated(9)
+        );
+    }
+
+    @Test
+    public void testToStringStored() {
+        this.checkEquals("STORED", ArchiveCompression.stored().toString());
+    }
+
+    @Test
+    public void testToStringDeflated() {
+        this.checkEquals("DEFLATED 9", ArchiveCompression.deflated(9).toString());
+    }
+
+    @Test
+    public void testToStringOriginal() {
+        this.checkEquals("ORIGINAL", ArchiveCompression.original().toString());
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveCompression> type() {
+        return ArchiveCompression.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
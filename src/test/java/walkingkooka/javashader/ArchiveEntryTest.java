@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class ArchiveEntryTest implements ClassTesting<ArchiveEntry> {
+
+    private final static String CONTENT = "abc123abc123abc123abc123";
+
+    @Test
+    public void testReadDeflated() throws IOException {
+        final ArchiveEntry entry = this.read(false);
+
+        this.checkEquals("dir1/file1.txt", entry.name, "name");
+        this.checkEquals(ArchiveEntry.DEFLATED, entry.method, "method");
+        this.checkEquals((long) CONTENT.length(), entry.size, "size");
+        this.checkEquals(true, entry.isReadable(), "readable");
+        this.checkEquals(CONTENT, new String(entry.content(this.archive(false)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadStored() throws IOException {
+        final ArchiveEntry entry = this.read(true);
+
+        this.checkEquals(ArchiveEntry.STORED, entry.method, "method");
+        this.checkEquals(entry.size, entry.compressedSize, "compressedSize");
+        this.checkEquals(CONTENT, new String(entry.content(this.archive(true)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testContentFileLargerThanBuffer() throws IOException {
+        // random bytes barely compress, so the compressed bytes are read in several buffers
+        final byte[] content = new byte[200 * 1024];
+        new Random(1).nextBytes(content);
+
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("dir1/file1.bin", content);
+
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".zip");
+        try {
+            Files.write(file, ArchivePackageShaderTest.archive(files, false));
+
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final ArchiveEntry entry = ArchiveEntry.read(channel)
+                    .get(0);
+                this.checkEquals(ArchiveEntry.DEFLATED, entry.method, "method");
+                this.checkEquals(true, Arrays.equals(content, entry.content(channel)), "content");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSetNameSame() throws IOException {
+        final ArchiveEntry entry = this.read(false);
+        assertSame(entry, entry.setName(entry.name));
+    }
+
+    @Test
+    public void testSetNameNonAscii() throws IOException {
+        final ArchiveEntry entry = this.read(false)
+            .setName("dir1/\u00e9.txt");
+
+        this.checkEquals("dir1/\u00e9.txt", entry.name, "name");
+        this.checkEquals(ArchiveEntry.FLAG_UTF8, entry.flags & ArchiveEntry.FLAG_UTF8, "flags");
+    }
+
+    @Test
+    public void testSetDataStoredToDeflatedVersionNeeded() throws IOException {
+        final ArchiveEntry entry = this.read(true);
+        this.checkEquals(true, entry.versionNeeded < ArchiveEntry.VERSION_NEEDED_DEFLATED, "stored versionNeeded");
+
+        this.checkEquals(
+            ArchiveEntry.VERSION_NEEDED_DEFLATED,
+            entry.setData(ArchiveEntry.DEFLATED, entry.crc, entry.compressedSize, entry.size)
+                .versionNeeded
+        );
+    }
+
+    @Test
+    public void testSetDataStoredVersionNeededUnchanged() throws IOException {
+        final ArchiveEntry entry = this.read(true);
+
+        this.checkEquals(
+            entry.versionNeeded,
+            entry.setData(ArchiveEntry.STORED, entry.crc, entry.compressedSize, entry.size)
+                .versionNeeded
+        );
+    }
+
+    @Test
+    public void testIsDirectory() throws IOException {
+        this.checkEquals(false, this.read(false).isDirectory(), "file");
+        this.checkEquals(true, this.read(false).setName("dir1/").isDirectory(), "directory");
+    }
+
+    @Test
+    public void testToString() throws IOException {
+        final ArchiveEntry entry = this.read(true);
+
+        this.checkEquals(
+            "dir1/file1.txt 0 24/24",
+            entry.toString()
+        );
+    }
+
+    private ArchiveEntry read(final boolean stored) throws IOException {
+        final List<ArchiveEntry> entries = ArchiveEntry.read(this.archive(stored));
+        this.checkEquals(1, entries.size(), "entries");
+        return entries.get(0);
+    }
+
+    private byte[] archive(final boolean stored) throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("dir1/file1.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+        return ArchivePackageShaderTest.archive(files, stored);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveEntry> type() {
+        return ArchiveEntry.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchiveFilePackageShaderTest implements ClassTesting<ArchiveFilePackageShader> {
+
+    private final static String JAVA_FILE = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+
+    private final static Map<PackageName, PackageName> MAPPINGS = Maps.of(
+        PackageName.with("package1"),
+        PackageName.with("package91")
+    );
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWithInvalidBudgetFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveFilePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), Runnable::run, 0)
+        );
+        this.checkEquals("Invalid budget 0 must be greater than 0", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchiveFilePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), null, 1)
+        );
+    }
+
+    @Test
+    public void testShadeNullArchiveFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader(Runnable::run, 1000)
+                .shade(null, MAPPINGS, this.directory.resolve("output.jar"))
+        );
+    }
+
+    @Test
+    public void testShadeSameAsInMemory() throws IOException {
+        this.shadeAndCheck(Runnable::run, 1024 * 1024);
+    }
+
+    @Test
+    public void testShadeSmallBudget() throws IOException {
+        this.shadeAndCheck(Runnable::run, 512);
+    }
+
+    @Test
+    public void testShadeSpilled() throws IOException {
+        // the java files in package1 need their compressed bytes and twice their size, more than the budget
+        final ArchiveBudget budget = this.shadeAndCheck(Runnable::run, 200);
+        this.checkEquals(true, budget.peak() <= 200, "peak " + budget.peak());
+    }
+
+    @Test
+    public void testShadeBudgetTooSmallFails() throws IOException {
+        final Path input = this.input();
+        final Path output = this.directory.resolve("output.jar");
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> this.shader(Runnable::run, 1)
+                .shade(input, MAPPINGS, output)
+        );
+        this.checkEquals(
+            "Entry package1/Type2.java needs " + 2 * bytes(JAVA_FILE).length + " bytes to shade, more than the budget 1",
+            thrown.getMessage()
+        );
+        this.checkEquals(false, Files.exists(output), "output");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(1L, left.count(), "temporary files deleted");
+        }
+    }
+
+    @Test
+    public void testShadeParallelSmallBudget() throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final ArchiveBudget budget = this.shadeAndCheck(executor, 1024);
+            this.checkEquals(true, budget.peak() <= 1024, "peak " + budget.peak());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private ArchiveBudget shadeAndCheck(final Executor executor,
+                                        final long limit) throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < 20; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+            files.put("package1/Type" + i + ".txt", bytes("text" + i));
+            files.put("package3/Type" + i + ".java", bytes("package package3;\nclass Type" + i + "{\n};"));
+        }
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, archive);
+        final Path output = this.directory.resolve("output.jar");
+
+        final ArchiveBudget budget = ArchiveBudget.with(limit);
+        this.shader(executor, limit)
+            .shade(input, MAPPINGS, output, budget);
+
+        this.checkEquals(
+            true,
+            Arrays.equals(
+                ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.deflated(1), Runnable::run)
+                    .apply(archive, MAPPINGS),
+                Files.readAllBytes(output)
+            ),
+            "same as in memory"
+        );
+        this.checkEquals(limit, budget.available(), "all released");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(2L, left.count(), "temporary files deleted");
+        }
+
+        return budget;
+    }
+
+    @Test
+    public void testShadeClassLoadOrder() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestUser.class), BatchPackageShaderTest.classFile(TestUser.class));
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, archive);
+        final Path output = this.directory.resolve("output.jar");
+
+        final ClassLoadOrder order = ClassLoadOrder.with(Lists.of(TestUser.class.getName()));
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.from(TestDependency.class.getPackage()),
+            PackageName.with("shaded")
+        );
+        ArchiveFilePackageShader.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.deflated(1),
+            Runnable::run,
+            1024 * 1024,
+            order
+        ).shade(input, mappings, output);
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                BatchPackageShaderTest.path(TestUser.class),
+                "shaded/TestDependency.class"
+            ),
+            Lists.of(ArchivePackageShaderTest.read(Files.readAllBytes(output)).keySet().toArray())
+        );
+    }
+
+    // job..............................................................................................................
+
+    @Test
+    public void testShadeProgress() throws IOException {
+        final Path input = this.input();
+        final List<PackageShaderProgress> progress = Lists.array();
+
+        this.shader(Runnable::run, 1024)
+            .shade(
+                input,
+                MAPPINGS,
+                this.directory.resolve("output.jar"),
+                PackageShaderJob.with(Optional.empty(), progress::add)
+            );
+
+        this.checkEquals(3, progress.size(), "progress " + progress);
+        this.checkEquals(
+            PackageShaderProgress.with(0, 2, 0, JAVA_FILE.length() + 4),
+            progress.get(0)
+        );
+        this.checkEquals(
+            PackageShaderProgress.with(2, 2, JAVA_FILE.length() + 4, JAVA_FILE.length() + 4),
+            progress.get(2)
+        );
+    }
+
+    @Test
+    public void testShadeDeadlinePassedKeepsOutput() throws IOException {
+        final Path input = this.input();
+        final Path output = this.directory.resolve("output.jar");
+        Files.write(output, bytes("previous"));
+
+        final Instant deadline = Instant.now()
+            .minusSeconds(1);
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> this.shader(Runnable::run, 1024)
+                .shade(
+                    input,
+                    MAPPINGS,
+                    output,
+                    PackageShaderJob.with(
+                        Optional.of(deadline),
+                        (p) -> {
+                        }
+                    )
+                )
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+        this.checkEquals("previous", new String(Files.readAllBytes(output), StandardCharsets.UTF_8), "output");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(2L, left.count(), "temporary files deleted");
+        }
+    }
+
+    @Test
+    public void testShadeInterruptedNoOutput() throws IOException {
+        final Path input = this.input();
+        final Path output = this.directory.resolve("output.jar");
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(
+                CancellationException.class,
+                () -> this.shader(Runnable::run, 1024)
+                    .shade(
+                        input,
+                        MAPPINGS,
+                        output,
+                        PackageShaderJob.NONE
+                    )
+            );
+        } finally {
+            Thread.interrupted();
+        }
+        this.checkEquals(false, Files.exists(output), "output");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(1L, left.count(), "temporary files deleted");
+        }
+    }
+
+    @Test
+    public void testShadeFailedQueuedTaskNotRun() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.txt", bytes("text"));
+        files.put("package91/Type2.txt", bytes("text"));
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, ArchivePackageShaderTest.archive(files, false));
+
+        final List<Runnable> queued = Lists.array();
+        final AtomicInteger decoded = new AtomicInteger();
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveFilePackageShader.with(
+                ArchivePackageShaderTest.countingCharset(decoded),
+                ArchiveCompression.deflated(1),
+                queued::add,
+                1024
+            ).shade(
+                input,
+                MAPPINGS,
+                this.directory.resolve("output.jar")
+            )
+        );
+        this.checkEquals(1, queued.size(), "queued");
+
+        queued.forEach(Runnable::run);
+        this.checkEquals(0, decoded.get(), "java files decoded after failure");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(1L, left.count(), "temporary files deleted");
+        }
+    }
+
+    private Path input() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.txt", bytes("text"));
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, ArchivePackageShaderTest.archive(files, false));
+        return input;
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "UTF-8 DEFLATED 1 1000",
+            this.shader(Runnable::run, 1000).toString()
+        );
+    }
+
+    private ArchiveFilePackageShader shader(final Executor executor,
+                                            final long budget) {
+        return ArchiveFilePackageShader.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.deflated(1),
+            executor,
+            budget
+        );
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveFilePackageShader> type() {
+        return ArchiveFilePackageShader.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
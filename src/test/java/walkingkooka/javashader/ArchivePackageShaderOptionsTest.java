@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchivePackageShaderOptionsTest implements ClassTesting<ArchivePackageShaderOptions> {
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShaderOptions.with(null)
+        );
+    }
+
+    @Test
+    public void testWith() {
+        final ArchivePackageShaderOptions options = ArchivePackageShaderOptions.with(StandardCharsets.UTF_8);
+
+        this.checkEquals(StandardCharsets.UTF_8, options.charset(), "charset");
+        assertSame(ArchiveCompression.original(), options.compression(), "compression");
+        assertSame(PackageReferenceIndex.EMPTY, options.index(), "index");
+        this.checkEquals(Sets.empty(), options.roots(), "roots");
+        assertSame(ClassLoadOrder.EMPTY, options.order(), "order");
+        assertSame(PackageShaderJob.NONE, options.job(), "job");
+    }
+
+    @Test
+    public void testSetCompressionNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setCompression(null)
+        );
+    }
+
+    @Test
+    public void testSetCompressionSame() {
+        final ArchivePackageShaderOptions options = this.options();
+        assertSame(options, options.setCompression(ArchiveCompression.original()));
+    }
+
+    @Test
+    public void testSetCompressionDifferent() {
+        final ArchivePackageShaderOptions options = this.options();
+        final ArchiveCompression compression = ArchiveCompression.stored();
+        final ArchivePackageShaderOptions different = options.setCompression(compression);
+
+        assertSame(compression, different.compression(), "compression");
+        assertSame(ArchiveCompression.original(), options.compression(), "original unchanged");
+    }
+
+    @Test
+    public void testSetExecutorNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setExecutor(null)
+        );
+    }
+
+    @Test
+    public void testSetExecutorDifferent() {
+        final Executor executor = (r) -> {
+            throw new UnsupportedOperationException();
+        };
+        final ArchivePackageShaderOptions options = this.options()
+            .setExecutor(executor);
+
+        assertSame(executor, options.executor());
+        assertSame(options, options.setExecutor(executor));
+    }
+
+    @Test
+    public void testSetIndexNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setIndex(null)
+        );
+    }
+
+    @Test
+    public void testSetIndexSame() {
+        final ArchivePackageShaderOptions options = this.options();
+        assertSame(options, options.setIndex(PackageReferenceIndex.EMPTY));
+    }
+
+    @Test
+    public void testSetRootsNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setRoots(null)
+        );
+    }
+
+    @Test
+    public void testSetRootsSame() {
+        final ArchivePackageShaderOptions options = this.options();
+        assertSame(options, options.setRoots(Sets.empty()));
+    }
+
+    @Test
+    public void testSetRootsCopied() {
+        final Set<String> roots = Sets.ordered();
+        roots.add("package1.Type2");
+
+        final ArchivePackageShaderOptions options = this.options()
+            .setRoots(roots);
+        roots.add("package1.Type3");
+
+        this.checkEquals(Sets.of("package1.Type2"), options.roots());
+        assertThrows(
+            UnsupportedOperationException.class,
+            () -> options.roots().add("package1.Type4")
+        );
+    }
+
+    @Test
+    public void testSetOrderNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setOrder(null)
+        );
+    }
+
+    @Test
+    public void testSetOrderSame() {
+        final ArchivePackageShaderOptions options = this.options();
+        assertSame(options, options.setOrder(ClassLoadOrder.EMPTY));
+    }
+
+    @Test
+    public void testSetJobNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.options().setJob(null)
+        );
+    }
+
+    @Test
+    public void testSetJobDifferent() {
+        final PackageShaderJob job = PackageShaderJob.with(
+            Optional.empty(),
+            (p) -> {
+            }
+        );
+        final ArchivePackageShaderOptions options = this.options()
+            .setJob(job);
+
+        assertSame(job, options.job(), "job");
+        assertSame(PackageShaderJob.NONE, this.options().job(), "original unchanged");
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "UTF-8 STORED roots [package1.Type2]",
+            this.options()
+                .setCompression(ArchiveCompression.stored())
+                .setRoots(Sets.of("package1.Type2"))
+                .toString()
+        );
+    }
+
+    private ArchivePackageShaderOptions options() {
+        return ArchivePackageShaderOptions.with(StandardCharsets.UTF_8);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchivePackageShaderOptions> type() {
+        return ArchivePackageShaderOptions.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,981 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchivePackageShaderTest implements ClassTesting<ArchivePackageShader> {
+
+    private final static String JAVA_FILE = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+
+    private final static String SHADED_JAVA_FILE = "package package91;\nclass Type2{\npublic static package91.Type3 x(){return null}\n};";
+
+    private final static String UNCHANGED_JAVA_FILE = "package package3;\nclass Type3{\n};";
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(null)
+        );
+    }
+
+    @Test
+    public void testWithNullCompressionFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(StandardCharsets.UTF_8, null, Runnable::run)
+        );
+    }
+
+    @Test
+    public void testWithNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), null)
+        );
+    }
+
+    @Test
+    public void testApplyNullArchiveFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader().apply(null, Maps.empty())
+        );
+    }
+
+    @Test
+    public void testApplyNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader().apply(new byte[0], null)
+        );
+    }
+
+    @Test
+    public void testApplyNotArchiveFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> this.shader().apply(bytes("not a zip archive"), Maps.empty())
+        );
+        this.checkEquals("Not a zip archive, end of central directory missing", thrown.getMessage());
+    }
+
+    @Test
+    public void testShadedAndRelocated() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put("package1/", new byte[0]);
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.properties", bytes("key=value\n"));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final Map<String, byte[]> shaded = read(
+            this.shader()
+                .apply(
+                    archive(files, false),
+                    Maps.of(
+                        PackageName.with("package1"), PackageName.with("package91"),
+                        PackageName.with(TestClass.class.getPackage().getName()), PackageName.with("shaded")
+                    )
+                )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                "package91/",
+                "package91/Type2.java",
+                "package91/Type2.properties",
+                "shaded/ArchivePackageShaderTest$TestClass.class"
+            ),
+            Lists.of(shaded.keySet().toArray()),
+            "paths"
+        );
+        this.checkEquals("Manifest-Version: 1.0\n", string(shaded.get("META-INF/MANIFEST.MF")), "manifest");
+        this.checkEquals("key=value\n", string(shaded.get("package91/Type2.properties")), "properties");
+        this.checkEquals(SHADED_JAVA_FILE, string(shaded.get("package91/Type2.java")), "java");
+        this.checkEquals(
+            true,
+            new String(shaded.get("shaded/ArchivePackageShaderTest$TestClass.class"), StandardCharsets.ISO_8859_1)
+                .contains("shaded/ArchivePackageShaderTest$TestClass"),
+            "class file"
+        );
+    }
+
+    @Test
+    public void testUnchangedCompressedBytesCopied() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package3/Type3.java", bytes(UNCHANGED_JAVA_FILE));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final byte[] archive = archive(files, false);
+        final byte[] shaded = this.shader()
+            .apply(
+                archive,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            );
+
+        final List<ArchiveEntry> before = ArchiveEntry.read(archive);
+        final List<ArchiveEntry> after = ArchiveEntry.read(shaded);
+
+        this.compressedAndCheck(archive, before.get(0), shaded, after.get(0), true);
+        this.compressedAndCheck(archive, before.get(1), shaded, after.get(1), false);
+        this.compressedAndCheck(archive, before.get(2), shaded, after.get(2), true);
+        this.compressedAndCheck(archive, before.get(3), shaded, after.get(3), true);
+    }
+
+    private void compressedAndCheck(final byte[] archive,
+                                    final ArchiveEntry entry,
+                                    final byte[] shaded,
+                                    final ArchiveEntry shadedEntry,
+                                    final boolean same) {
+        this.checkEquals(
+            same,
+            entry.crc == shadedEntry.crc && Arrays.equals(
+                archive,
+                (int) entry.dataOffset,
+                (int) entry.dataOffset + (int) entry.compressedSize,
+                shaded,
+                (int) shadedEntry.dataOffset,
+                (int) shadedEntry.dataOffset + (int) shadedEntry.compressedSize
+            ),
+            entry.name
+        );
+    }
+
+    @Test
+    public void testStoredRemainsStored() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+
+        final byte[] shaded = this.shader()
+            .apply(
+                archive(files, true),
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            );
+
+        this.checkEquals(
+            ArchiveEntry.STORED,
+            ArchiveEntry.read(shaded).get(0).method,
+            "method"
+        );
+        this.checkEquals(
+            SHADED_JAVA_FILE,
+            string(read(shaded).get("package91/Type2.java"))
+        );
+    }
+
+    @Test
+    public void testCompressionStored() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package3/Type3.java", bytes(UNCHANGED_JAVA_FILE));
+
+        final byte[] shaded = ArchivePackageShader.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.stored(),
+            Runnable::run
+        ).apply(
+            archive(files, false),
+            Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+        );
+
+        final List<ArchiveEntry> entries = ArchiveEntry.read(shaded);
+        this.checkEquals(ArchiveEntry.STORED, entries.get(0).method, "rewritten method");
+        this.checkEquals(ArchiveEntry.DEFLATED, entries.get(1).method, "unchanged method");
+        this.checkEquals(SHADED_JAVA_FILE, string(read(shaded).get("package91/Type2.java")));
+    }
+
+    @Test
+    public void testCompressionDeflatedStoredEntry() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+
+        final byte[] shaded = ArchivePackageShader.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.deflated(Deflater.BEST_SPEED),
+            Runnable::run
+        ).apply(
+            archive(files, true),
+            Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+        );
+
+        this.checkEquals(ArchiveEntry.DEFLATED, ArchiveEntry.read(shaded).get(0).method, "method");
+        this.checkEquals(SHADED_JAVA_FILE, string(read(shaded).get("package91/Type2.java")));
+    }
+
+    @Test
+    public void testParallelSameAsSequential() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < 50; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+            files.put("package3/Type" + i + ".java", bytes(UNCHANGED_JAVA_FILE.replace("Type3", "Type" + i)));
+            files.put("package1/Type" + i + ".txt", bytes("text" + i));
+        }
+        final byte[] archive = archive(files, false);
+        final Map<PackageName, PackageName> mappings = Maps.of(PackageName.with("package1"), PackageName.with("package91"));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final ArchiveCompression compression = ArchiveCompression.deflated(Deflater.BEST_COMPRESSION);
+
+            this.checkEquals(
+                true,
+                Arrays.equals(
+                    ArchivePackageShader.with(StandardCharsets.UTF_8, compression, Runnable::run)
+                        .apply(archive, mappings),
+                    ArchivePackageShader.with(StandardCharsets.UTF_8, compression, executor)
+                        .apply(archive, mappings)
+                )
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelFailureRethrown() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.class", bytes("not a class file package1"));
+
+        final byte[] archive = archive(files, false);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), executor)
+                    .apply(
+                        archive,
+                        Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+                    )
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCommentsKept() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            final ZipEntry entry = new ZipEntry("package1/Type2.java");
+            entry.setComment("entry-comment");
+            zip.putNextEntry(entry);
+            zip.write(bytes(JAVA_FILE));
+            zip.setComment("archive-comment");
+        }
+
+        final byte[] shaded = this.shader()
+            .apply(
+                bytes.toByteArray(),
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            );
+
+        this.checkEquals("archive-comment", string(ArchiveEntry.comment(shaded)), "archive comment");
+        this.checkEquals("entry-comment", string(ArchiveEntry.read(shaded).get(0).comment), "entry comment");
+    }
+
+    @Test
+    public void testDuplicatePathFails() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.txt", bytes("1"));
+        files.put("package91/Type2.txt", bytes("2"));
+
+        final byte[] archive = archive(files, false);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> this.shader()
+                .apply(
+                    archive,
+                    Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+                )
+        );
+        this.checkEquals("Duplicate path package91/Type2.txt for package91/Type2.txt", thrown.getMessage());
+    }
+
+    @Test
+    public void testContains() {
+        this.containsAndCheck("abc/def", "c/d", true);
+    }
+
+    @Test
+    public void testContainsStart() {
+        this.containsAndCheck("abc/def", "abc", true);
+    }
+
+    @Test
+    public void testContainsEnd() {
+        this.containsAndCheck("abc/def", "def", true);
+    }
+
+    @Test
+    public void testContainsMissing() {
+        this.containsAndCheck("abc/def", "xyz", false);
+    }
+
+    @Test
+    public void testContainsLonger() {
+        this.containsAndCheck("abc", "abcd", false);
+    }
+
+    @Test
+    public void testContainsNonAscii() {
+        this.checkEquals(
+            true,
+            ArchivePackageShader.contains(
+                classFile("package\u00e9\u4e2d/Type2"),
+                "package\u00e9\u4e2d"
+            )
+        );
+    }
+
+    @Test
+    public void testContainsNonAsciiMissing() {
+        this.checkEquals(
+            false,
+            ArchivePackageShader.contains(
+                classFile("package\u00e8/Type2"),
+                "package\u00e9"
+            )
+        );
+    }
+
+    @Test
+    public void testModifiedUtf8() throws IOException {
+        final String text = "a\u0000\u00e9\u4e2d\ud83d\ude00";
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeUTF(text);
+        }
+        final byte[] expected = bytes.toByteArray();
+
+        assertArrayEquals(
+            Arrays.copyOfRange(expected, 2, expected.length),
+            ArchivePackageShader.modifiedUtf8(text)
+        );
+    }
+
+    @Test
+    public void testSiblingPackageNotRelocated() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.txt", bytes("text"));
+        files.put("package1b/Type2.txt", bytes("text"));
+        files.put("package1b/Type2.class", classFile("package1b/Type2"));
+
+        final Map<String, byte[]> shaded = read(
+            this.shader()
+                .apply(
+                    archive(files, false),
+                    Maps.of(
+                        PackageName.with("package1"), PackageName.with("package91")
+                    )
+                )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "package91/Type2.txt",
+                "package1b/Type2.txt",
+                "package1b/Type2.class"
+            ),
+            Lists.of(shaded.keySet().toArray())
+        );
+    }
+
+    @Test
+    public void testShadedNonAsciiPackage() throws IOException {
+        final String from = "package\u00e9";
+
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(from + "/Type2.class", classFile(from + "/Type2"));
+
+        final Map<String, byte[]> shaded = read(
+            this.shader()
+                .apply(
+                    archive(files, false),
+                    Maps.of(
+                        PackageName.with(from), PackageName.with("package91")
+                    )
+                )
+        );
+
+        final byte[] classFile = shaded.get("package91/Type2.class");
+        this.checkEquals(true, ArchivePackageShader.contains(classFile, "package91/Type2"), "shaded");
+        this.checkEquals(false, ArchivePackageShader.contains(classFile, from), "from");
+    }
+
+    /**
+     * An empty class with the given internal name.
+     */
+    static byte[] classFile(final String internalName) {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private void containsAndCheck(final String content,
+                                  final String text,
+                                  final boolean expected) {
+        this.checkEquals(
+            expected,
+            ArchivePackageShader.contains(bytes(content), text),
+            () -> content + " contains " + text
+        );
+    }
+
+    @Test
+    public void testReferences() {
+        this.referencesAndCheck("package1/Type2", "package1", true);
+    }
+
+    @Test
+    public void testReferencesSubPackage() {
+        this.referencesAndCheck("package1/sub/Type2", "package1", true);
+    }
+
+    @Test
+    public void testReferencesMissing() {
+        this.referencesAndCheck("package2/Type2", "package1", false);
+    }
+
+    @Test
+    public void testReferencesClassFileTypes() {
+        this.checkEquals(
+            true,
+            ArchivePackageShader.references(
+                PackageReferenceIndex.classFileTypes(classFile("package1/Type2")),
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            )
+        );
+    }
+
+    private void referencesAndCheck(final String type,
+                                    final String from,
+                                    final boolean expected) {
+        this.checkEquals(
+            expected,
+            ArchivePackageShader.references(
+                Sets.of("java/lang/Object", type),
+                Maps.of(PackageName.with(from), PackageName.with("package91"))
+            ),
+            () -> type + " references " + from
+        );
+    }
+
+    @Test
+    public void testWithNullIndexFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), Runnable::run, null)
+        );
+    }
+
+    @Test
+    public void testIndexSameAsWithout() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package3/Type4.java", bytes("package package3;\nclass Type4{}"));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".jar");
+        try {
+            final byte[] archive = archive(files, false);
+            Files.write(file, archive);
+
+            final PackageReferenceIndex index = PackageReferenceIndex.scan(file, StandardCharsets.UTF_8, true, Runnable::run);
+            final Map<PackageName, PackageName> mappings = Maps.of(PackageName.with("package1"), PackageName.with("package91"));
+
+            assertArrayEquals(
+                this.shader().apply(archive, mappings),
+                ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.original(), Runnable::run, index)
+                    .apply(archive, mappings)
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testIndexSkipsEntriesWithoutReferences() throws IOException {
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".jar");
+        try {
+            Files.write(file, archive(Maps.of("Type2.java", bytes("class Type2{}")), false));
+
+            final PackageReferenceIndex index = PackageReferenceIndex.scan(file, StandardCharsets.UTF_8, true, Runnable::run);
+
+            // the index says Type2.java references nothing, so its content is never read
+            this.checkEquals(
+                JAVA_FILE,
+                string(
+                    read(
+                        ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.original(), Runnable::run, index)
+                            .apply(
+                                archive(Maps.of("Type2.java", bytes(JAVA_FILE)), false),
+                                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+                            )
+                    ).get("Type2.java")
+                )
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWithNullRootsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), Runnable::run, PackageReferenceIndex.EMPTY, null)
+        );
+    }
+
+    @Test
+    public void testMinimize() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put(BatchPackageShaderTest.path(TestUser.class), BatchPackageShaderTest.classFile(TestUser.class));
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final Map<String, byte[]> shaded = read(
+            this.minimizer(TestUser.class.getName())
+                .apply(
+                    archive(files, false),
+                    Maps.of(PackageName.from(TestDependency.class.getPackage()), PackageName.with("shaded"))
+                )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                BatchPackageShaderTest.path(TestUser.class),
+                "shaded/TestDependency.class"
+            ),
+            Lists.of(shaded.keySet().toArray())
+        );
+    }
+
+    @Test
+    public void testMinimizeServiceProviderKept() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/services/java.util.function.Supplier", bytes("# comment\n" + TestUser.class.getName() + "\n"));
+        files.put(BatchPackageShaderTest.path(TestUser.class), BatchPackageShaderTest.classFile(TestUser.class));
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final Map<String, byte[]> shaded = read(
+            this.minimizer(TestClass.class.getName())
+                .apply(
+                    archive(files, false),
+                    Maps.empty()
+                )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/services/java.util.function.Supplier",
+                BatchPackageShaderTest.path(TestUser.class),
+                BatchPackageShaderTest.path(TestDependency.class),
+                BatchPackageShaderTest.path(TestClass.class)
+            ),
+            Lists.of(shaded.keySet().toArray())
+        );
+    }
+
+    @Test
+    public void testMinimizeRootAfterShading() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestClass.class), BatchPackageShaderTest.classFile(TestClass.class));
+
+        final Map<String, byte[]> shaded = read(
+            this.minimizer(TestDependency.class.getName())
+                .apply(
+                    archive(files, false),
+                    Maps.of(PackageName.from(TestDependency.class.getPackage()), PackageName.with("shaded"))
+                )
+        );
+
+        this.checkEquals(
+            Lists.of("shaded/TestDependency.class"),
+            Lists.of(shaded.keySet().toArray())
+        );
+    }
+
+    private ArchivePackageShader minimizer(final String root) {
+        return ArchivePackageShader.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.original(),
+            Runnable::run,
+            PackageReferenceIndex.EMPTY,
+            Sets.of(root)
+        );
+    }
+
+    @Test
+    public void testWithNullOrderFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), Runnable::run, PackageReferenceIndex.EMPTY, Sets.empty(), null)
+        );
+    }
+
+    @Test
+    public void testClassLoadOrder() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestUser.class), BatchPackageShaderTest.classFile(TestUser.class));
+
+        final Map<String, byte[]> shaded = read(
+            ArchivePackageShader.with(
+                StandardCharsets.UTF_8,
+                ArchiveCompression.original(),
+                Runnable::run,
+                PackageReferenceIndex.EMPTY,
+                Sets.empty(),
+                ClassLoadOrder.with(Lists.of(TestUser.class.getName(), TestDependency.class.getName()))
+            ).apply(
+                archive(files, false),
+                Maps.of(PackageName.from(TestDependency.class.getPackage()), PackageName.with("shaded"))
+            )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                BatchPackageShaderTest.path(TestUser.class),
+                "shaded/TestDependency.class",
+                "package1/Type2.java"
+            ),
+            Lists.of(shaded.keySet().toArray())
+        );
+    }
+
+    // job..............................................................................................................
+
+    @Test
+    public void testApplyProgressParallel() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < 8; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+        }
+        final byte[] archive = archive(files, false);
+        final Map<PackageName, PackageName> mappings = Maps.of(PackageName.with("package1"), PackageName.with("package91"));
+
+        final List<PackageShaderProgress> progress = Lists.array();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final byte[] shaded = ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), executor)
+                .apply(
+                    archive,
+                    mappings,
+                    PackageShaderJob.with(Optional.empty(), progress::add)
+                );
+            assertArrayEquals(
+                ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), Runnable::run)
+                    .apply(archive, mappings),
+                shaded
+            );
+        } finally {
+            executor.shutdown();
+        }
+
+        this.checkEquals(9, progress.size(), "progress " + progress);
+        final PackageShaderProgress last = progress.get(8);
+        this.checkEquals(8L, last.filesDone(), "files done");
+        this.checkEquals(last.bytes(), last.bytesDone(), "bytes done");
+    }
+
+    @Test
+    public void testApplyDeadlinePassed() throws IOException {
+        final byte[] archive = archive(Maps.of("package1/Type2.java", bytes(JAVA_FILE)), false);
+        final Instant deadline = Instant.now()
+            .minusSeconds(1);
+
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> JavaShaders.archivePackageShader(
+                ArchivePackageShaderOptions.with(StandardCharsets.UTF_8)
+                    .setCompression(ArchiveCompression.stored())
+                    .setJob(
+                        PackageShaderJob.with(
+                            Optional.of(deadline),
+                            (p) -> {
+                            }
+                        )
+                    )
+            ).apply(
+                archive,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            )
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+    }
+
+    @Test
+    public void testApplyFailedQueuedTaskNotRun() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.txt", bytes("text"));
+        files.put("package91/Type2.txt", bytes("text"));
+
+        final List<Runnable> queued = Lists.array();
+        final AtomicInteger decoded = new AtomicInteger();
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchivePackageShader.with(countingCharset(decoded), ArchiveCompression.stored(), queued::add)
+                .apply(
+                    archive(files, false),
+                    Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+                )
+        );
+        this.checkEquals(1, queued.size(), "queued");
+
+        queued.forEach(Runnable::run);
+        this.checkEquals(0, decoded.get(), "java files decoded after failure");
+    }
+
+    @Test
+    public void testApplyCancelledQueuedTaskNotRun() throws IOException {
+        final byte[] archive = archive(Maps.of("package1/Type2.java", bytes(JAVA_FILE)), false);
+        final List<Runnable> queued = Lists.array();
+        final AtomicInteger decoded = new AtomicInteger();
+
+        assertThrows(
+            CancellationException.class,
+            () -> ArchivePackageShader.with(countingCharset(decoded), ArchiveCompression.stored(), queued::add)
+                .apply(
+                    archive,
+                    Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+                    PackageShaderJob.with(
+                        Optional.of(Instant.now().plusMillis(50)),
+                        (p) -> {
+                        }
+                    )
+                )
+        );
+        this.checkEquals(1, queued.size(), "queued");
+
+        queued.forEach(Runnable::run);
+        this.checkEquals(0, decoded.get(), "java files decoded after cancellation");
+    }
+
+    @Test
+    public void testSubmit() {
+        final CompletableFuture<String> future = ArchivePackageShader.submit(
+            () -> "shaded",
+            (r) -> {
+                throw new UnsupportedOperationException();
+            },
+            Runnable::run
+        );
+        this.checkEquals("shaded", future.join());
+    }
+
+    @Test
+    public void testSubmitCancelledNotRun() {
+        final List<Runnable> queued = Lists.array();
+        final AtomicInteger ran = new AtomicInteger();
+
+        final CompletableFuture<Integer> future = ArchivePackageShader.submit(
+            ran::incrementAndGet,
+            (r) -> {
+                throw new UnsupportedOperationException();
+            },
+            queued::add
+        );
+        ArchivePackageShader.cancel(Lists.of(future));
+
+        queued.forEach(Runnable::run);
+        this.checkEquals(0, ran.get(), "ran");
+        this.checkEquals(true, future.isCancelled(), "cancelled");
+    }
+
+    @Test
+    public void testSubmitCancelledWhileRunningDiscarded() {
+        final List<Runnable> queued = Lists.array();
+        final List<String> discarded = Lists.array();
+        final List<CompletableFuture<String>> futures = Lists.array();
+
+        futures.add(
+            ArchivePackageShader.submit(
+                () -> {
+                    ArchivePackageShader.cancel(futures);
+                    return "shaded";
+                },
+                discarded::add,
+                queued::add
+            )
+        );
+
+        queued.forEach(Runnable::run);
+        this.checkEquals(Lists.of("shaded"), discarded, "discarded");
+        this.checkEquals(true, futures.get(0).isCancelled(), "cancelled");
+    }
+
+    /**
+     * A {@link Charset} that counts every decoder it creates, which shows if the content of a java file was read.
+     */
+    static Charset countingCharset(final AtomicInteger decoders) {
+        return new Charset("x-counting", null) {
+            @Override
+            public boolean contains(final Charset charset) {
+                return StandardCharsets.UTF_8.contains(charset);
+            }
+
+            @Override
+            public CharsetDecoder newDecoder() {
+                decoders.incrementAndGet();
+                return StandardCharsets.UTF_8.newDecoder();
+            }
+
+            @Override
+            public CharsetEncoder newEncoder() {
+                return StandardCharsets.UTF_8.newEncoder();
+            }
+        };
+    }
+
+    @Test
+    public void testToStringRoots() {
+        this.checkEquals(
+            "UTF-8 ORIGINAL roots [package1.Type2]",
+            this.minimizer("package1.Type2").toString()
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "UTF-8 ORIGINAL",
+            this.shader().toString()
+        );
+    }
+
+    private ArchivePackageShader shader() {
+        return ArchivePackageShader.with(StandardCharsets.UTF_8);
+    }
+
+    static byte[] archive(final Map<String, byte[]> files,
+                          final boolean stored) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (final Map.Entry<String, byte[]> file : files.entrySet()) {
+                final byte[] content = file.getValue();
+                final ZipEntry entry = new ZipEntry(file.getKey());
+                if (stored) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(content);
+
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                zip.write(content);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static Map<String, byte[]> read(final byte[] archive) throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        try (final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); null != entry; entry = zip.getNextEntry()) {
+                files.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return files;
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(final byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class TestClass {
+        @SuppressWarnings("unused")
+        TestClass self() {
+            return this;
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchivePackageShader> type() {
+        return ArchivePackageShader.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ArchiveWriterTest implements ClassTesting<ArchiveWriter> {
+
+    @Test
+    public void testWithNullOutputFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ArchiveWriter.with(null)
+        );
+    }
+
+    @Test
+    public void testCopy() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("file1.txt", "content1".getBytes(StandardCharsets.UTF_8));
+        files.put("dir2/file2.txt", "content2content2content2".getBytes(StandardCharsets.UTF_8));
+
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ArchiveWriter writer = ArchiveWriter.with(output);
+        for (final ArchiveEntry entry : ArchiveEntry.read(archive)) {
+            writer.write(
+                entry,
+                archive,
+                (int) entry.dataOffset,
+                (int) entry.compressedSize
+            );
+        }
+        writer.finish(new byte[0]);
+
+        final Map<String, byte[]> copy = ArchivePackageShaderTest.read(output.toByteArray());
+        this.checkEquals(files.keySet(), copy.keySet(), "paths");
+        this.checkEquals("content2content2content2", new String(copy.get("dir2/file2.txt"), StandardCharsets.UTF_8));
+        this.checkEquals("2 entries " + (output.size() - 22 - 46 * 2 - "file1.txt".length() - "dir2/file2.txt".length()) + " bytes", writer.toString());
+    }
+
+    @Test
+    public void testWriteInvalidLengthFails() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("file1.txt", "content1".getBytes(StandardCharsets.UTF_8));
+
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+        final ArchiveEntry entry = ArchiveEntry.read(archive).get(0);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ArchiveWriter.with(new ByteArrayOutputStream())
+                .write(
+                    entry,
+                    archive,
+                    (int) entry.dataOffset,
+                    1
+                )
+        );
+        this.checkEquals(
+            "Compressed size " + entry.compressedSize + " of file1.txt differs from 1",
+            thrown.getMessage()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ArchiveWriter> type() {
+        return ArchiveWriter.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
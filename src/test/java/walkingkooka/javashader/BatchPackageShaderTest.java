@@ -0,0 +1,347 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class BatchPackageShaderTest implements ClassTesting<BatchPackageShader> {
+
+    private final static String JAVA_FILE = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+
+    private final static String SHADED_JAVA_FILE = "package package91;\nclass Type2{\npublic static package91.Type3 x(){return null}\n};";
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> BatchPackageShader.with(null)
+        );
+    }
+
+    @Test
+    public void testApplyNullFilesFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader().apply(null, Maps.empty())
+        );
+    }
+
+    @Test
+    public void testApplyNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader().apply(Maps.empty(), null)
+        );
+    }
+
+    @Test
+    public void testShadedAndRelocated() throws IOException {
+        final byte[] manifest = bytes("Manifest-Version: 1.0\n");
+        final byte[] properties = bytes("key=value\n");
+        final byte[] classFile = classFile(TestClass.class);
+
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", manifest);
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.properties", properties);
+        files.put(path(TestClass.class), classFile);
+
+        final Map<String, byte[]> shaded = this.shader()
+            .apply(
+                files,
+                Maps.of(
+                    PackageName.with("package1"), PackageName.with("package91"),
+                    PackageName.with(TestClass.class.getPackage().getName()), PackageName.with("shaded")
+                )
+            );
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                "package91/Type2.java",
+                "package91/Type2.properties",
+                "shaded/BatchPackageShaderTest$TestClass.class"
+            ),
+            Lists.of(shaded.keySet().toArray()),
+            "paths"
+        );
+        assertSame(manifest, shaded.get("META-INF/MANIFEST.MF"), "manifest");
+        assertSame(properties, shaded.get("package91/Type2.properties"), "properties");
+        this.checkEquals(
+            SHADED_JAVA_FILE,
+            new String(shaded.get("package91/Type2.java"), StandardCharsets.UTF_8),
+            "java"
+        );
+        this.checkEquals(
+            true,
+            new String(shaded.get("shaded/BatchPackageShaderTest$TestClass.class"), StandardCharsets.ISO_8859_1)
+                .contains("shaded/BatchPackageShaderTest$TestClass"),
+            "class file"
+        );
+    }
+
+    @Test
+    public void testDuplicatesShadedOnce() {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("module1/package1/Type2.java", bytes(JAVA_FILE));
+        files.put("module2/package1/Type2.java", bytes(JAVA_FILE));
+
+        final Map<String, byte[]> shaded = this.shader()
+            .apply(
+                files,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            );
+
+        final byte[] first = shaded.get("module1/package1/Type2.java");
+        this.checkEquals(SHADED_JAVA_FILE, new String(first, StandardCharsets.UTF_8));
+        assertSame(first, shaded.get("module2/package1/Type2.java"));
+    }
+
+    @Test
+    public void testDuplicatesDifferentKind() {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.txt", bytes(JAVA_FILE));
+
+        final Map<String, byte[]> shaded = this.shader()
+            .apply(
+                files,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+            );
+
+        assertNotSame(
+            shaded.get("package91/Type2.java"),
+            shaded.get("package91/Type2.txt")
+        );
+        this.checkEquals(JAVA_FILE, new String(shaded.get("package91/Type2.txt"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnchangedSameInstance() throws IOException {
+        final byte[] javaFile = bytes(JAVA_FILE);
+        final byte[] classFile = classFile(TestClass.class);
+
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", javaFile);
+        files.put(path(TestClass.class), classFile);
+
+        final Map<String, byte[]> shaded = this.shader()
+            .apply(
+                files,
+                Maps.of(PackageName.with("different"), PackageName.with("different2"))
+            );
+
+        assertSame(javaFile, shaded.get("package1/Type2.java"), "java");
+        assertSame(classFile, shaded.get(path(TestClass.class)), "class");
+    }
+
+    @Test
+    public void testDuplicatePathFails() {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.txt", bytes("1"));
+        files.put("package91/Type2.txt", bytes("2"));
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> this.shader()
+                .apply(
+                    files,
+                    Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+                )
+        );
+        this.checkEquals("Duplicate path package91/Type2.txt for package91/Type2.txt", thrown.getMessage());
+    }
+
+    // job..............................................................................................................
+
+    @Test
+    public void testApplyNullJobFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.shader().apply(Maps.empty(), Maps.empty(), null)
+        );
+    }
+
+    @Test
+    public void testApplyProgress() {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.java", bytes(JAVA_FILE));
+        files.put("package1/Type2.txt", bytes("123"));
+
+        final List<PackageShaderProgress> progress = Lists.array();
+        this.shader()
+            .apply(
+                files,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+                PackageShaderJob.with(Optional.empty(), progress::add)
+            );
+
+        final long bytes = JAVA_FILE.length() + 3;
+        this.checkEquals(
+            Lists.of(
+                PackageShaderProgress.with(0, 2, 0, bytes),
+                PackageShaderProgress.with(1, 2, JAVA_FILE.length(), bytes),
+                PackageShaderProgress.with(2, 2, bytes, bytes)
+            ),
+            progress
+        );
+    }
+
+    @Test
+    public void testApplyDeadlinePassed() {
+        final Instant deadline = Instant.now()
+            .minusSeconds(1);
+        final List<PackageShaderProgress> progress = Lists.array();
+
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> this.shader()
+                .apply(
+                    Maps.of("package1/Type2.java", bytes(JAVA_FILE)),
+                    Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+                    PackageShaderJob.with(Optional.of(deadline), progress::add)
+                )
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+        this.checkEquals(1, progress.size(), "progress");
+    }
+
+    @Test
+    public void testApplyInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            final CancellationException thrown = assertThrows(
+                CancellationException.class,
+                () -> this.shader()
+                    .apply(
+                        Maps.of("package1/Type2.java", bytes(JAVA_FILE)),
+                        Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+                        PackageShaderJob.NONE
+                    )
+            );
+            this.checkEquals("Interrupted", thrown.getMessage());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testPath() {
+        this.pathAndCheck("package1/Type2.class", "package91/Type2.class");
+    }
+
+    @Test
+    public void testPathSubPackage() {
+        this.pathAndCheck("package1/sub/Type2.class", "package91/sub/Type2.class");
+    }
+
+    @Test
+    public void testPathFirstMappingWins() {
+        this.pathAndCheck("package2/Type2.class", "package92/Type2.class");
+    }
+
+    @Test
+    public void testPathSiblingPrefixUnmapped() {
+        this.pathAndCheck("package1b/Type2.class", "package1b/Type2.class");
+    }
+
+    @Test
+    public void testPathSiblingPrefixResourceUnmapped() {
+        this.pathAndCheck("package1b/sub/resource.txt", "package1b/sub/resource.txt");
+    }
+
+    @Test
+    public void testPathDirectory() {
+        this.pathAndCheck("package1/", "package91/");
+    }
+
+    @Test
+    public void testPathUnmapped() {
+        this.pathAndCheck("package3/Type2.class", "package3/Type2.class");
+    }
+
+    private void pathAndCheck(final String path,
+                              final String expected) {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+        mappings.put(PackageName.with("package1"), PackageName.with("package91"));
+        mappings.put(PackageName.with("package2"), PackageName.with("package92"));
+        mappings.put(PackageName.with("package2.sub"), PackageName.with("never"));
+
+        this.checkEquals(
+            expected,
+            BatchPackageShader.path(path, mappings),
+            path
+        );
+    }
+
+    private BatchPackageShader shader() {
+        return BatchPackageShader.with(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String path(final Class<?> type) {
+        return type.getName().replace('.', '/') + ".class";
+    }
+
+    static byte[] classFile(final Class<?> type) throws IOException {
+        try (final InputStream file = type.getResourceAsStream("/" + path(type))) {
+            assertNotNull(file, () -> "Class file for " + type.getName() + " not found");
+            return file.readAllBytes();
+        }
+    }
+
+    public static class TestClass {
+        public TestClass returnsThis() {
+            return this;
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<BatchPackageShader> type() {
+        return BatchPackageShader.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class ClassFileDebugInfoTest implements ClassTesting<ClassFileDebugInfo> {
+
+    @Test
+    public void testParsingOptionsNone() {
+        this.checkEquals(
+            ClassReader.SKIP_DEBUG,
+            ClassFileDebugInfo.parsingOptions(EnumSet.noneOf(ClassFileDebugInfo.class))
+        );
+    }
+
+    @Test
+    public void testParsingOptionsSome() {
+        this.checkEquals(
+            0,
+            ClassFileDebugInfo.parsingOptions(EnumSet.of(ClassFileDebugInfo.LINE_NUMBERS))
+        );
+    }
+
+    @Test
+    public void testFilterAll() {
+        final ClassVisitor visitor = new ClassWriter(0);
+        assertSame(
+            visitor,
+            ClassFileDebugInfo.filter(visitor, ClassFileDebugInfo.ALL)
+        );
+    }
+
+    @Test
+    public void testFilterNone() {
+        final ClassVisitor visitor = new ClassWriter(0);
+        assertSame(
+            visitor,
+            ClassFileDebugInfo.filter(visitor, EnumSet.noneOf(ClassFileDebugInfo.class))
+        );
+    }
+
+    @Test
+    public void testFilterSome() {
+        final ClassVisitor visitor = new ClassWriter(0);
+        assertNotSame(
+            visitor,
+            ClassFileDebugInfo.filter(visitor, EnumSet.of(ClassFileDebugInfo.SOURCE_FILE))
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileDebugInfo> type() {
+        return ClassFileDebugInfo.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
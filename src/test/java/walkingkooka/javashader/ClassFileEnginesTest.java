@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ClassFileEnginesTest implements ClassTesting<ClassFileEngines> {
+
+    @Test
+    public void testEngine() {
+        assertSame(
+            AsmClassFileEngine.INSTANCE,
+            ClassFileEngines.engine()
+        );
+    }
+
+    @Test
+    public void testDefault() {
+        this.checkEquals(
+            ClassFileEngines.ASM,
+            ClassFileEngines.DEFAULT
+        );
+    }
+
+    @Test
+    public void testEngineAsm() {
+        assertSame(
+            AsmClassFileEngine.INSTANCE,
+            ClassFileEngines.engine(ClassFileEngines.ASM)
+        );
+    }
+
+    @Test
+    public void testEngineJdkFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ClassFileEngines.engine(ClassFileEngines.JDK)
+        );
+        this.checkEquals("Class file engine jdk requires Java 24", thrown.getMessage());
+    }
+
+    @Test
+    public void testEngineUnknownFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ClassFileEngines.engine("unknown")
+        );
+        this.checkEquals("Unknown class file engine unknown", thrown.getMessage());
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "asm",
+            AsmClassFileEngine.INSTANCE.toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileEngines> type() {
+        return ClassFileEngines.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
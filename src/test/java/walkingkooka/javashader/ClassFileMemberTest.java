@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Type;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public final class ClassFileMemberTest implements ClassTesting<ClassFileMember> {
+
+    @Test
+    public void testToStringConstructor() throws Exception {
+        this.toStringAndCheck(
+            TestMembers.class.getDeclaredConstructor(String[].class, Object.class)
+        );
+    }
+
+    @Test
+    public void testToStringMethod() throws Exception {
+        this.toStringAndCheck(
+            TestMembers.class.getDeclaredMethod("method1", int.class, String.class)
+        );
+    }
+
+    @Test
+    public void testToStringMethodStaticArray() throws Exception {
+        this.toStringAndCheck(
+            TestMembers.class.getDeclaredMethod("method2", long[][].class)
+        );
+    }
+
+    @Test
+    public void testToStringMethodVarArgs() throws Exception {
+        final Member method = TestMembers.class.getDeclaredMethod("method3", String[].class);
+        this.checkEquals(
+            ((Method) method).toGenericString(),
+            this.member(method).toString()
+        );
+    }
+
+    @Test
+    public void testToStringField() throws Exception {
+        this.toStringAndCheck(
+            TestMembers.class.getDeclaredField("field1")
+        );
+    }
+
+    @Test
+    public void testToStringDefaultMethod() throws Exception {
+        this.toStringAndCheck(
+            TestInterface.class.getDeclaredMethod("method")
+        );
+    }
+
+    @Test
+    public void testValueBoolean() throws Exception {
+        this.valueAndCheck("BOOLEAN", true);
+    }
+
+    @Test
+    public void testValueByte() throws Exception {
+        this.valueAndCheck("BYTE", (byte) 1);
+    }
+
+    @Test
+    public void testValueChar() throws Exception {
+        this.valueAndCheck("CHAR", 'A');
+    }
+
+    @Test
+    public void testValueShort() throws Exception {
+        this.valueAndCheck("SHORT", (short) 2);
+    }
+
+    @Test
+    public void testValueString() throws Exception {
+        this.valueAndCheck("STRING", "abc");
+    }
+
+    @Test
+    public void testValueNotConstant() throws Exception {
+        this.valueAndCheck("NOT_CONSTANT", null);
+    }
+
+    @Test
+    public void testVisibility() throws Exception {
+        this.checkEquals(
+            JavaVisibility.PROTECTED,
+            this.member(TestMembers.class.getDeclaredMethod("method1", int.class, String.class))
+                .visibility()
+        );
+    }
+
+    private void toStringAndCheck(final Member member) throws IOException {
+        this.checkEquals(
+            member.toString(),
+            this.member(member).toString()
+        );
+    }
+
+    private void valueAndCheck(final String fieldName,
+                               final Object value) throws Exception {
+        this.checkEquals(
+            value,
+            this.member(TestMembers.class.getDeclaredField(fieldName))
+                .value()
+        );
+    }
+
+    private ClassFileMember member(final Member member) throws IOException {
+        final Class<?> declaring = member.getDeclaringClass();
+        final String resourceName = "/" + declaring.getName().replace('.', '/') + ".class";
+
+        try (final InputStream file = this.getClass().getResourceAsStream(resourceName)) {
+            assertNotNull(file, () -> "Class file for " + declaring.getName() + " not found");
+
+            final ClassFileType type = ClassFileType.read(file.readAllBytes());
+            final String name;
+            final String descriptor;
+            if (member instanceof Constructor) {
+                name = ClassFileMember.CONSTRUCTOR;
+                descriptor = Type.getConstructorDescriptor((Constructor<?>) member);
+            } else if (member instanceof Method) {
+                name = member.getName();
+                descriptor = Type.getMethodDescriptor((Method) member);
+            } else {
+                name = member.getName();
+                descriptor = Type.getDescriptor(((Field) member).getType());
+            }
+
+            return (member instanceof Field ? type.fields() : type.methods())
+                .stream()
+                .filter(m -> m.name().equals(name) && m.descriptor().equals(descriptor))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Member " + member + " not found"));
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static abstract class TestMembers {
+
+        final static boolean BOOLEAN = true;
+        final static byte BYTE = 1;
+        final static char CHAR = 'A';
+        final static short SHORT = 2;
+        final static String STRING = "abc";
+        final static String NOT_CONSTANT = String.valueOf(1);
+
+        public TestMembers(final String[] strings, final Object object) throws IllegalStateException, IllegalArgumentException {
+        }
+
+        protected final synchronized String method1(final int i, final String s) {
+            return null;
+        }
+
+        static native Object[] method2(final long[][] longs) throws Exception;
+
+        public abstract void method3(final String... strings);
+
+        transient volatile int field1;
+    }
+
+    interface TestInterface {
+        default void method() {
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileMember> type() {
+        return ClassFileMember.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -18,17 +18,27 @@
 package walkingkooka.javashader;
 
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.util.CheckClassAdapter;
 import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.collect.map.Maps;
 import walkingkooka.reflect.PackageName;
 import walkingkooka.test.Testing;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public final class ClassFilePackageShaderTest implements Testing {
 
@@ -64,6 +74,194 @@ public final class ClassFilePackageShaderTest implements Testing {
         this.checkEquals(loaded, loadedType.getMethod("returnsThis").invoke(loaded), "returnsThis");
     }
 
+    // engine...........................................................................................................
+
+    /**
+     * The engine may be selected by the system property, so these tests may be run against either engine.
+     */
+    @Test
+    public void testEngine() {
+        this.checkEquals(
+            System.getProperty(ClassFileEngines.PROPERTY, ClassFileEngines.DEFAULT),
+            ClassFileEngines.engine().toString(),
+            "engine"
+        );
+    }
+
+    @Test
+    public void testShadedVerifiesAndDefines() throws Exception {
+        final String from = RoundTrip.class.getName();
+        final String shaded = "shaded." + from;
+
+        final byte[] file = ClassFilePackageShader.shadeClassFile(
+            this.loadClassFile(from),
+            Maps.of(
+                PackageName.from(RoundTrip.class.getPackage()),
+                PackageName.with("shaded." + RoundTrip.class.getPackage().getName())
+            )
+        );
+
+        final ByteClassLoader classLoader = new ByteClassLoader();
+        classLoader.setClass(shaded, file);
+        final Class<?> loadedType = classLoader.loadClass(shaded);
+        this.checkEquals(shaded, loadedType.getName(), "shaded type name");
+
+        final StringWriter errors = new StringWriter();
+        CheckClassAdapter.verify(
+            new ClassReader(file),
+            classLoader,
+            false,
+            new PrintWriter(errors)
+        );
+        this.checkEquals("", errors.toString(), "verify");
+
+        this.checkEquals(
+            "roundTrip failed true",
+            loadedType.getMethod("run")
+                .invoke(loadedType.getDeclaredConstructor().newInstance())
+        );
+    }
+
+    // listener.........................................................................................................
+
+    @Test
+    public void testListener() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.with("different"), PackageName.with("different2"),
+            PackageName.with(TestClass.class.getName()), PackageName.with("shaded." + TestClass.class.getName())
+        );
+
+        final List<PackageShaderMetrics> metrics = Lists.array();
+        final byte[] shaded = ClassFilePackageShader.with(metrics::add)
+            .apply(file, mappings);
+
+        this.checkEquals(
+            ClassFilePackageShader.shadeClassFile(file, mappings).length,
+            shaded.length,
+            "same length as shaded without listener"
+        );
+        this.checkEquals(1, metrics.size(), "metrics");
+
+        final PackageShaderMetrics metric = metrics.get(0);
+        this.checkEquals(PackageShaderMetrics.Kind.CLASS_FILE, metric.kind(), "kind");
+        this.checkEquals(file.length, metric.bytesIn(), "bytesIn");
+        this.checkEquals(shaded.length, metric.bytesOut(), "bytesOut");
+        this.checkEquals(false, metric.isUnchanged(), "unchanged");
+        this.checkEquals(
+            Maps.of(PackageName.with(TestClass.class.getName()), metric.namesRewritten()),
+            metric.rewrites(),
+            "rewrites"
+        );
+        this.checkEquals(true, metric.namesVisited() > metric.namesRewritten(), () -> "namesVisited " + metric);
+    }
+
+    @Test
+    public void testListenerUnchanged() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+
+        final List<PackageShaderMetrics> metrics = Lists.array();
+        ClassFilePackageShader.with(metrics::add)
+            .apply(
+                file,
+                Maps.of(PackageName.with("different"), PackageName.with("different2"))
+            );
+
+        final PackageShaderMetrics metric = metrics.get(0);
+        this.checkEquals(true, metric.isUnchanged(), "unchanged");
+        this.checkEquals(0, metric.namesRewritten(), "namesRewritten");
+        this.checkEquals(Maps.empty(), metric.rewrites(), "rewrites");
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassFilePackageShader.with(null)
+        );
+    }
+
+    // debugInfo........................................................................................................
+
+    @Test
+    public void testSetDebugInfoNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassFilePackageShader.INSTANCE.setDebugInfo(null)
+        );
+    }
+
+    @Test
+    public void testSetDebugInfoSame() {
+        assertSame(
+            ClassFilePackageShader.INSTANCE,
+            ClassFilePackageShader.INSTANCE.setDebugInfo(EnumSet.allOf(ClassFileDebugInfo.class))
+        );
+    }
+
+    @Test
+    public void testDebugInfoStripped() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+        final byte[] stripped = ClassFilePackageShader.INSTANCE.setDebugInfo(EnumSet.noneOf(ClassFileDebugInfo.class))
+            .apply(file, Maps.empty());
+
+        this.checkEquals(true, stripped.length < file.length, () -> "stripped " + stripped.length + " < " + file.length);
+        this.debugInfoAndCheck(stripped, false, false, false);
+        this.checkEquals("method2", this.defineAndInvoke(TestClass.class.getName(), stripped, "method"), "method2");
+    }
+
+    @Test
+    public void testDebugInfoLineNumbersOnly() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+        final byte[] shaded = ClassFilePackageShader.INSTANCE.setDebugInfo(EnumSet.of(ClassFileDebugInfo.LINE_NUMBERS))
+            .apply(file, Maps.empty());
+
+        this.debugInfoAndCheck(shaded, false, true, false);
+        this.checkEquals("method2", this.defineAndInvoke(TestClass.class.getName(), shaded, "method"), "method2");
+    }
+
+    @Test
+    public void testDebugInfoSourceFileAndLineNumbersWithListener() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+        final List<PackageShaderMetrics> metrics = Lists.array();
+
+        final byte[] shaded = ClassFilePackageShader.with(metrics::add)
+            .setDebugInfo(EnumSet.of(ClassFileDebugInfo.SOURCE_FILE, ClassFileDebugInfo.LINE_NUMBERS))
+            .apply(file, Maps.empty());
+
+        this.debugInfoAndCheck(shaded, true, true, false);
+        this.checkEquals(1, metrics.size(), "metrics");
+    }
+
+    @Test
+    public void testDebugInfoKept() throws Exception {
+        final byte[] file = this.loadClassFile(TestClass.class.getName());
+
+        this.debugInfoAndCheck(
+            ClassFilePackageShader.INSTANCE.apply(file, Maps.empty()),
+            true,
+            true,
+            contains(file, "LocalVariableTable")
+        );
+    }
+
+    private void debugInfoAndCheck(final byte[] classFile,
+                                   final boolean sourceFile,
+                                   final boolean lineNumbers,
+                                   final boolean localVariables) {
+        this.checkEquals(sourceFile, contains(classFile, "SourceFile"), "SourceFile");
+        this.checkEquals(lineNumbers, contains(classFile, "LineNumberTable"), "LineNumberTable");
+        this.checkEquals(localVariables, contains(classFile, "LocalVariableTable"), "LocalVariableTable");
+    }
+
+    /**
+     * Attribute names are only present in the constant pool when the attribute was written.
+     */
+    private static boolean contains(final byte[] classFile,
+                                    final String attributeName) {
+        return ArchivePackageShader.contains(classFile, attributeName);
+    }
+
     // helpers..........................................................................................................
 
     private <T> T shadeAndLoad(final Class<T> type,
@@ -98,6 +296,22 @@ public final class ClassFilePackageShaderTest implements Testing {
         return klass.getDeclaredConstructor().newInstance();
     }
 
+    /**
+     * Defines the class file and invokes the method of a new instance, verifying the class file is still valid.
+     */
+    private Object defineAndInvoke(final String typeName,
+                                   final byte[] classFile,
+                                   final String method) throws Exception {
+        final ByteClassLoader classLoader = new ByteClassLoader();
+        classLoader.setClass(
+            typeName,
+            classFile
+        );
+        final Class<?> klass = classLoader.findClass(typeName);
+        return klass.getMethod(method)
+            .invoke(klass.getDeclaredConstructor().newInstance());
+    }
+
     private static String classFileResourceName(final String typeName) {
         return "/" + typeName.replace('.', '/') + ".class";
     }
@@ -148,4 +362,42 @@ public final class ClassFilePackageShaderTest implements Testing {
             return this;
         }
     }
+
+    /**
+     * Has frames, handlers, arrays, casts and an invokedynamic referencing its own type, all of which must be shaded.
+     */
+    public static class RoundTrip {
+
+        public String run() {
+            final List<RoundTrip> list = new ArrayList<>();
+            list.add(this);
+
+            RoundTrip last = null;
+            for (final RoundTrip roundTrip : list) {
+                if (roundTrip == this) {
+                    last = roundTrip;
+                }
+            }
+
+            final Function<RoundTrip, String> name = RoundTrip::name;
+            final RoundTrip[][] arrays = new RoundTrip[1][1];
+            arrays[0][0] = last;
+
+            try {
+                final Object object = arrays[0][0];
+                ((RoundTrip) object).fail();
+            } catch (final IllegalStateException cause) {
+                return name.apply(arrays[0][0]) + " " + cause.getMessage() + " " + (arrays[0] instanceof RoundTrip[]);
+            }
+            return "unreachable";
+        }
+
+        String name() {
+            return "roundTrip";
+        }
+
+        void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.Remapper;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+public final class ClassFileSignaturesTest implements ClassTesting<ClassFileSignatures> {
+
+    private final static UnaryOperator<String> MAP = (n) -> n.startsWith("package1/") ?
+        "package91/" + n.substring("package1/".length()) :
+        n;
+
+    @Test
+    public void testFieldDescriptor() {
+        this.mapAndCheck(
+            "Lpackage1/Type2;",
+            "Lpackage91/Type2;"
+        );
+    }
+
+    @Test
+    public void testFieldDescriptorPrimitive() {
+        this.mapAndCheck(
+            "J",
+            "J"
+        );
+    }
+
+    @Test
+    public void testFieldDescriptorArray() {
+        this.mapAndCheck(
+            "[[Lpackage1/Type2;",
+            "[[Lpackage91/Type2;"
+        );
+    }
+
+    @Test
+    public void testMethodDescriptor() {
+        this.mapAndCheck(
+            "(ILpackage1/Type2;[JLpackage3/Type4;)Lpackage1/Type5;",
+            "(ILpackage91/Type2;[JLpackage3/Type4;)Lpackage91/Type5;"
+        );
+    }
+
+    @Test
+    public void testMethodDescriptorVoid() {
+        this.mapAndCheck(
+            "()V",
+            "()V"
+        );
+    }
+
+    @Test
+    public void testFieldSignatureTypeArguments() {
+        this.mapAndCheck(
+            "Ljava/util/Map<Lpackage1/Type2;+Lpackage1/Type3;>;",
+            "Ljava/util/Map<Lpackage91/Type2;+Lpackage91/Type3;>;"
+        );
+    }
+
+    @Test
+    public void testFieldSignatureWildcard() {
+        this.mapAndCheck(
+            "Ljava/util/List<*>;",
+            "Ljava/util/List<*>;"
+        );
+    }
+
+    @Test
+    public void testFieldSignatureNested() {
+        this.mapAndCheck(
+            "Lpackage1/Outer<TT;>.Inner<-Lpackage1/Type2;>;",
+            "Lpackage91/Outer<TT;>.Inner<-Lpackage91/Type2;>;"
+        );
+    }
+
+    @Test
+    public void testClassSignatureTypeParameters() {
+        this.mapAndCheck(
+            "<LIST:Lpackage1/Type2;V::Lpackage1/Type3<TLIST;>;>Lpackage1/Type4;Lpackage1/Type5<TV;>;",
+            "<LIST:Lpackage91/Type2;V::Lpackage91/Type3<TLIST;>;>Lpackage91/Type4;Lpackage91/Type5<TV;>;"
+        );
+    }
+
+    @Test
+    public void testMethodSignatureThrows() {
+        this.mapAndCheck(
+            "<E:Lpackage1/Type2;>(TE;[TE;)Lpackage1/Type3;^TE;^Lpackage1/Type4;",
+            "<E:Lpackage91/Type2;>(TE;[TE;)Lpackage91/Type3;^TE;^Lpackage91/Type4;"
+        );
+    }
+
+    @Test
+    public void testTypeVariableLikeClassName() {
+        this.mapAndCheck(
+            "(TLpackage1;)V",
+            "(TLpackage1;)V"
+        );
+    }
+
+    @Test
+    public void testInternalName() {
+        this.checkEquals(
+            "package91/Type2",
+            ClassFileSignatures.internalName("package1/Type2", MAP)
+        );
+    }
+
+    @Test
+    public void testInternalNameArray() {
+        this.checkEquals(
+            "[Lpackage91/Type2;",
+            ClassFileSignatures.internalName("[Lpackage1/Type2;", MAP)
+        );
+    }
+
+    /**
+     * Every descriptor and signature of some real classes is mapped the same as the ASM {@link Remapper}.
+     */
+    @Test
+    public void testSameAsAsm() throws IOException {
+        final UnaryOperator<String> map = (n) -> n.startsWith("java/") ?
+            "shaded/" + n :
+            n;
+        final Remapper remapper = new Remapper() {
+            @Override
+            public String map(final String internalName) {
+                return map.apply(internalName);
+            }
+        };
+
+        final List<String> signatures = Lists.array();
+        for (final Class<?> type : Lists.of(ClassFileSignatures.class, ClassTesting.class, java.util.HashMap.class, java.util.stream.Collectors.class)) {
+            try (final InputStream file = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+                new ClassReader(file.readAllBytes())
+                    .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visit(final int version,
+                                              final int access,
+                                              final String name,
+                                              final String signature,
+                                              final String superName,
+                                              final String[] interfaces) {
+                                add(signature);
+                            }
+
+                            @Override
+                            public FieldVisitor visitField(final int access,
+                                                           final String name,
+                                                           final String descriptor,
+                                                           final String signature,
+                                                           final Object value) {
+                                add(descriptor);
+                                add(signature);
+                                return null;
+                            }
+
+                            @Override
+                            public MethodVisitor visitMethod(final int access,
+                                                             final String name,
+                                                             final String descriptor,
+                                                             final String signature,
+                                                             final String[] exceptions) {
+                                add(descriptor);
+                                add(signature);
+                                return null;
+                            }
+
+                            private void add(final String signature) {
+                                if (null != signature) {
+                                    signatures.add(signature);
+                                }
+                            }
+                        },
+                        ClassReader.SKIP_CODE
+                    );
+            }
+        }
+
+        this.checkEquals(true, signatures.size() > 100, "signatures " + signatures.size());
+        for (final String signature : signatures) {
+            this.checkEquals(
+                remapper.mapSignature(signature, false),
+                ClassFileSignatures.map(signature, map),
+                signature
+            );
+        }
+    }
+
+    private void mapAndCheck(final String signature,
+                             final String expected) {
+        this.checkEquals(
+            expected,
+            ClassFileSignatures.map(signature, MAP),
+            signature
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileSignatures> type() {
+        return ClassFileSignatures.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ClassFileSnapshotTest implements ClassTesting<ClassFileSnapshot> {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWriteNullFileFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassFileSnapshot.write(null, Lists.of(PackageName.with("java.io")))
+        );
+    }
+
+    @Test
+    public void testWriteNullPackagesFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassFileSnapshot.write(this.directory.resolve("snapshot"), null)
+        );
+    }
+
+    @Test
+    public void testReadNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassFileSnapshot.read(null)
+        );
+    }
+
+    @Test
+    public void testReadInvalidFails() throws IOException {
+        final Path file = this.directory.resolve("invalid");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ClassFileSnapshot.read(file)
+        );
+    }
+
+    @Test
+    public void testWriteReadJre() throws IOException {
+        final Path file = this.directory.resolve("jre.snapshot");
+        ClassFileSnapshot.write(file, Lists.of(PackageName.with("java.io")));
+
+        final ClassFileSnapshot snapshot = ClassFileSnapshot.read(file);
+        final ClassFileType type = snapshot.type(java.io.File.class.getName())
+            .get();
+
+        final ClassFileType expected = ClassFileSnapshot.jre(Lists.of(PackageName.with("java.io")))
+            .stream()
+            .filter(t -> t.name().equals(java.io.File.class.getName()))
+            .findFirst()
+            .get();
+
+        this.checkEquals(expected.toString(), type.toString(), "type");
+        this.checkEquals(expected.superName(), type.superName(), "superName");
+        this.checkEquals(expected.interfaces(), type.interfaces(), "interfaces");
+        this.checkEquals(api(expected.fields()), type.fields(), "fields");
+        this.checkEquals(api(expected.methods()), type.methods(), "methods");
+    }
+
+    @Test
+    public void testTypeNamesPackagePrivate() throws IOException {
+        final Path file = this.directory.resolve("jre.snapshot");
+        ClassFileSnapshot.main(
+            new String[]{
+                file.toString(),
+                "java.io"
+            }
+        );
+
+        final ClassFileSnapshot snapshot = ClassFileSnapshot.read(file);
+        this.checkEquals(true, snapshot.typeNames().contains("java.io.File"), "java.io.File");
+        this.checkEquals(true, snapshot.typeNames().contains("java.io.DefaultFileSystem"), "package private");
+        this.checkEquals(false, snapshot.typeNames().contains("java.io.File$TempDirectory"), "private");
+        this.checkEquals(false, snapshot.typeNames().contains("java.util.Map"), "other package");
+        this.checkEquals(Optional.empty(), snapshot.type("java.io.File$TempDirectory"));
+    }
+
+    @Test
+    public void testWriteReadPackagePrivateMembers() throws IOException {
+        final ClassFileType type = this.read(TestMembers.class.getName());
+
+        final Path file = this.directory.resolve("members.snapshot");
+        ClassFileSnapshot.writeTypes(file, Lists.of(type));
+
+        final ClassFileType read = ClassFileSnapshot.read(file)
+            .type(type.name())
+            .get();
+        this.checkEquals(
+            Lists.of("publicField", "packagePrivateField"),
+            read.fields()
+                .stream()
+                .map(ClassFileMember::name)
+                .collect(Collectors.toList()),
+            "fields"
+        );
+        this.checkEquals(
+            Lists.of("<init>", "publicMethod", "packagePrivateMethod"),
+            read.methods()
+                .stream()
+                .map(ClassFileMember::name)
+                .collect(Collectors.toList()),
+            "methods"
+        );
+        this.checkEquals(
+            JavaVisibility.PACKAGE_PRIVATE,
+            read.methods()
+                .get(2)
+                .visibility(),
+            "packagePrivateMethod visibility"
+        );
+    }
+
+    @Test
+    public void testWriteReadConstants() throws IOException {
+        final ClassFileType type = this.read(TestConstants.class.getName());
+
+        final Path file = this.directory.resolve("constants.snapshot");
+        ClassFileSnapshot.writeTypes(file, Lists.of(type));
+
+        this.checkEquals(
+            Optional.of(type),
+            ClassFileSnapshot.read(file)
+                .type(type.name())
+        );
+    }
+
+    @Test
+    public void testWriteReadInterface() throws IOException {
+        final ClassFileType type = this.read(TestInterface.class.getName());
+
+        final Path file = this.directory.resolve("interface.snapshot");
+        ClassFileSnapshot.writeTypes(file, Lists.of(type));
+
+        this.checkEquals(
+            Optional.of(type),
+            ClassFileSnapshot.read(file)
+                .type(type.name())
+        );
+    }
+
+    @Test
+    public void testShared() throws IOException {
+        final Path file = this.directory.resolve("shared.snapshot");
+        ClassFileSnapshot.writeTypes(file, Lists.of(this.read(TestInterface.class.getName())));
+
+        assertSame(
+            ClassFileSnapshot.shared(file),
+            ClassFileSnapshot.shared(file)
+        );
+    }
+
+    private static List<ClassFileMember> api(final List<ClassFileMember> members) {
+        return members.stream()
+            .filter(m -> JavaVisibility.PRIVATE != m.visibility())
+            .collect(Collectors.toList());
+    }
+
+    private ClassFileType read(final String typeName) throws IOException {
+        final String resourceName = "/" + typeName.replace('.', '/') + ".class";
+
+        try (final InputStream file = this.getClass().getResourceAsStream(resourceName)) {
+            assertNotNull(file, () -> "Class file for " + typeName + " resource=" + resourceName + " not found");
+            return ClassFileType.read(file.readAllBytes());
+        }
+    }
+
+    public static class TestConstants {
+        public final static boolean BOOLEAN = true;
+        public final static byte BYTE = 1;
+        public final static char CHAR = 'c';
+        public final static short SHORT = 2;
+        public final static int INT = 3;
+        public final static long LONG = 4;
+        public final static float FLOAT = 5.5f;
+        public final static double DOUBLE = 6.5;
+        public final static String STRING = "string\u00e9";
+        public final static Object OBJECT = "not constant";
+
+        protected TestConstants() throws IllegalStateException {
+        }
+
+        public static String method(final int value, final String... values) {
+            return value + String.join(",", values);
+        }
+    }
+
+    public static class TestMembers {
+        public int publicField;
+        int packagePrivateField;
+        private int privateField;
+
+        public void publicMethod() {
+        }
+
+        void packagePrivateMethod() {
+        }
+
+        private void privateMethod() {
+        }
+    }
+
+    public interface TestInterface extends Runnable, Comparable<TestInterface> {
+        default void defaultMethod() {
+        }
+
+        static void staticMethod() {
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileSnapshot> type() {
+        return ClassFileSnapshot.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public final class ClassFileTypeTest implements ClassTesting<ClassFileType> {
+
+    @Test
+    public void testRead() throws Exception {
+        final ClassFileType type = this.read(TestReadClass.class.getName());
+
+        this.checkEquals(TestReadClass.class.getName(), type.name(), "name");
+        this.checkEquals(TestReadClass.class.getModifiers(), type.modifiers(), "modifiers");
+        this.checkEquals(Object.class.getName(), type.superName(), "superName");
+        this.checkEquals(Lists.of(Runnable.class.getName()), type.interfaces(), "interfaces");
+        this.checkEquals(
+            Lists.of(TestReadClass.class.getDeclaredField("field").toString()),
+            type.fields()
+                .stream()
+                .map(ClassFileMember::toString)
+                .collect(Collectors.toList()),
+            "fields"
+        );
+        this.checkEquals(
+            Lists.of(TestReadClass.class.getDeclaredConstructor(String.class).toString()),
+            type.constructors()
+                .stream()
+                .map(ClassFileMember::toString)
+                .collect(Collectors.toList()),
+            "constructors"
+        );
+    }
+
+    @Test
+    public void testReadPrivateStaticNested() throws Exception {
+        this.checkEquals(
+            Modifier.PRIVATE | Modifier.STATIC,
+            this.read(TestPrivateStaticClass.class.getName()).modifiers()
+        );
+    }
+
+    @Test
+    public void testReadNeverInitializes() throws Exception {
+        // the class name is used so the class itself is never loaded
+        final ClassFileType type = this.read(this.getClass().getName() + "$TestStaticInitializerFails");
+        this.checkEquals(
+            Lists.empty(),
+            type.methods()
+                .stream()
+                .filter(m -> false == m.isConstructor())
+                .collect(Collectors.toList()),
+            "static initializer should be ignored"
+        );
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        this.checkEquals(
+            TestReadClass.class.toGenericString(),
+            this.read(TestReadClass.class.getName()).toString()
+        );
+    }
+
+    @Test
+    public void testToStringInterface() throws Exception {
+        this.checkEquals(
+            Runnable.class.toGenericString(),
+            this.read(Runnable.class.getName()).toString()
+        );
+    }
+
+    private ClassFileType read(final String typeName) throws IOException {
+        final String resourceName = "/" + typeName.replace('.', '/') + ".class";
+
+        try (final InputStream file = this.getClass().getResourceAsStream(resourceName)) {
+            assertNotNull(file, () -> "Class file for " + typeName + " resource=" + resourceName + " not found");
+            return ClassFileType.read(file.readAllBytes());
+        }
+    }
+
+    public static class TestReadClass implements Runnable {
+
+        public TestReadClass(final String field) {
+            this.field = field;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        protected final String field;
+    }
+
+    private static class TestPrivateStaticClass {
+    }
+
+    @SuppressWarnings("unused")
+    static class TestStaticInitializerFails {
+        static {
+            if (true) {
+                throw new Error("Static initializer should never run");
+            }
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassFileType> type() {
+        return ClassFileType.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ClassLoadOrderTest implements ClassTesting<ClassLoadOrder> {
+
+    private final static Map<PackageName, PackageName> MAPPINGS = Maps.of(
+        PackageName.with("package1"),
+        PackageName.with("package91")
+    );
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(this.directory.resolve("classes.txt"));
+        Files.deleteIfExists(this.directory);
+    }
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassLoadOrder.with(null)
+        );
+    }
+
+    @Test
+    public void testWithEmptyClassNameFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ClassLoadOrder.with(Lists.of(""))
+        );
+        this.checkEquals("Invalid class name ", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithDuplicates() {
+        this.checkEquals(
+            Lists.of("package1.Type2", "package1.Type3"),
+            ClassLoadOrder.with(Lists.of("package1.Type2", "package1.Type3", "package1.Type2"))
+                .classNames()
+        );
+    }
+
+    @Test
+    public void testWithEmpty() {
+        assertSame(
+            ClassLoadOrder.EMPTY,
+            ClassLoadOrder.with(Lists.empty())
+        );
+    }
+
+    // parse............................................................................................................
+
+    @Test
+    public void testParseNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ClassLoadOrder.parse(null)
+        );
+    }
+
+    @Test
+    public void testParseClassNames() {
+        this.parseAndCheck(
+            "package1.Type2\n\n# comment\npackage1.Type3\r\n",
+            "package1.Type2",
+            "package1.Type3"
+        );
+    }
+
+    @Test
+    public void testParseXlog() {
+        this.parseAndCheck(
+            "[0.008s][info][class,load] java.lang.Object source: shared objects file\n" +
+                "[0.120s][info][class,load] package1.Type2 source: file:/app.jar\n" +
+                "[0.121s][info][class,load] package1.Type2$$Lambda$14/0x0000000800c03000 source: package1.Type2\n",
+            "java.lang.Object",
+            "package1.Type2",
+            "package1.Type2$$Lambda$14/0x0000000800c03000"
+        );
+    }
+
+    @Test
+    public void testParseVerboseClass() {
+        this.parseAndCheck(
+            "[Opened /jre/lib/rt.jar]\n[Loaded java.lang.Object from /jre/lib/rt.jar]\n[Loaded package1.Type2 from file:/app.jar]\n",
+            "java.lang.Object",
+            "package1.Type2"
+        );
+    }
+
+    private void parseAndCheck(final String text,
+                               final String... classNames) {
+        this.checkEquals(
+            Lists.of(classNames),
+            ClassLoadOrder.parse(text).classNames(),
+            text
+        );
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        final Path file = this.directory.resolve("classes.txt");
+        Files.write(file, "package1.Type2\npackage1.Type3\n".getBytes(StandardCharsets.UTF_8));
+
+        this.checkEquals(
+            ClassLoadOrder.with(Lists.of("package1.Type2", "package1.Type3")),
+            ClassLoadOrder.read(file)
+        );
+    }
+
+    // sort.............................................................................................................
+
+    @Test
+    public void testSortEmptyKeepsOrder() {
+        final List<String> paths = Lists.of("package1/Type2.class", "package1/Type3.class");
+        assertSame(
+            paths,
+            ClassLoadOrder.EMPTY.sort(paths, Function.identity(), MAPPINGS)
+        );
+    }
+
+    @Test
+    public void testSort() {
+        this.sortAndCheck(
+            "package2.Type5\npackage2.Type4\n",
+            Lists.of(
+                "META-INF/",
+                "META-INF/MANIFEST.MF",
+                "package2/Type3.class",
+                "package2/Type4.class",
+                "package2/Type5.class",
+                "package2/Type6.properties"
+            ),
+            Lists.of(
+                "META-INF/",
+                "META-INF/MANIFEST.MF",
+                "package2/Type5.class",
+                "package2/Type4.class",
+                "package2/Type3.class",
+                "package2/Type6.properties"
+            )
+        );
+    }
+
+    @Test
+    public void testSortManifestFirst() {
+        this.sortAndCheck(
+            "package2.Type3",
+            Lists.of(
+                "package2/Type4.class",
+                "package2/Type3.class",
+                "META-INF/MANIFEST.MF"
+            ),
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                "package2/Type3.class",
+                "package2/Type4.class"
+            )
+        );
+    }
+
+    @Test
+    public void testSortRelocatedClassNames() {
+        this.sortAndCheck(
+            "package1.Type3\npackage1.Type2",
+            Lists.of(
+                "package91/Type2.class",
+                "package91/Type3.class"
+            ),
+            Lists.of(
+                "package91/Type3.class",
+                "package91/Type2.class"
+            )
+        );
+    }
+
+    @Test
+    public void testSortShadedClassNames() {
+        this.sortAndCheck(
+            "package91.Type3\npackage91.Type2",
+            Lists.of(
+                "package91/Type2.class",
+                "package91/Type3.class"
+            ),
+            Lists.of(
+                "package91/Type3.class",
+                "package91/Type2.class"
+            )
+        );
+    }
+
+    @Test
+    public void testSortMultiReleaseVersionsTogether() {
+        this.sortAndCheck(
+            "package2.Type3",
+            Lists.of(
+                "package2/Type2.class",
+                "package2/Type3.class",
+                "META-INF/versions/11/package2/Type3.class"
+            ),
+            Lists.of(
+                "package2/Type3.class",
+                "META-INF/versions/11/package2/Type3.class",
+                "package2/Type2.class"
+            )
+        );
+    }
+
+    private void sortAndCheck(final String classNames,
+                              final List<String> paths,
+                              final List<String> expected) {
+        this.checkEquals(
+            expected,
+            ClassLoadOrder.parse(classNames)
+                .sort(paths, Function.identity(), MAPPINGS)
+        );
+    }
+
+    // Object...........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "2 classes",
+            ClassLoadOrder.with(Lists.of("package1.Type2", "package1.Type3")).toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ClassLoadOrder> type() {
+        return ClassLoadOrder.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
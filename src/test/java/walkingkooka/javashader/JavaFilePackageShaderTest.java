@@ -18,11 +18,17 @@
 package walkingkooka.javashader;
 
 import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.collect.map.Maps;
 import walkingkooka.reflect.PackageName;
 import walkingkooka.test.Testing;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public final class JavaFilePackageShaderTest implements Testing {
 
@@ -179,6 +185,81 @@ public final class JavaFilePackageShaderTest implements Testing {
             "package package91;\nimport package92.type3;\nclass Type4{\npublic static package91.Type5 x(){return null}\n};");
     }
 
+    // listener.........................................................................................................
+
+    @Test
+    public void testListener() {
+        final String original = "package package1;\nimport package2.Type3;\nclass Type4{\npublic static package1.Type5 x(){return null}\n};";
+        final String expected = "package package91;\nimport package2.Type3;\nclass Type4{\npublic static package91.Type5 x(){return null}\n};";
+
+        final List<PackageShaderMetrics> metrics = Lists.array();
+        final byte[] shaded = JavaFilePackageShader.with(StandardCharsets.UTF_8, metrics::add)
+            .apply(
+                original.getBytes(StandardCharsets.UTF_8),
+                Maps.of(
+                    PackageName.with("package99"), PackageName.with("NEVER"),
+                    PackageName.with("package1"), PackageName.with("package91")
+                )
+            );
+
+        this.checkEquals(expected, new String(shaded, StandardCharsets.UTF_8));
+        this.checkEquals(1, metrics.size(), "metrics");
+
+        final PackageShaderMetrics metric = metrics.get(0);
+        this.checkEquals(PackageShaderMetrics.Kind.JAVA_FILE, metric.kind(), "kind");
+        this.checkEquals(original.length(), metric.bytesIn(), "bytesIn");
+        this.checkEquals(expected.length(), metric.bytesOut(), "bytesOut");
+        this.checkEquals(2, metric.namesRewritten(), "namesRewritten");
+        this.checkEquals(Maps.of(PackageName.with("package1"), 2), metric.rewrites(), "rewrites");
+        this.checkEquals(false, metric.isUnchanged(), "unchanged");
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> JavaFilePackageShader.with(StandardCharsets.UTF_8, null)
+        );
+    }
+
+    // cancel...........................................................................................................
+
+    @Test
+    public void testShadeCancelled() {
+        final int[] polled = new int[1];
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> JavaFilePackageShader.shade(
+                "package package1;\nclass Type2{}".getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8,
+                Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+                (m) -> {
+                },
+                () -> {
+                    polled[0]++;
+                    throw new CancellationException("Stopped");
+                }
+            )
+        );
+        this.checkEquals("Stopped", thrown.getMessage());
+        this.checkEquals(1, polled[0], "polled");
+    }
+
+    @Test
+    public void testShadeNotCancelled() {
+        final int[] polled = new int[1];
+        final byte[] shaded = JavaFilePackageShader.shade(
+            "package package1;\nclass Type2{}".getBytes(StandardCharsets.UTF_8),
+            StandardCharsets.UTF_8,
+            Maps.of(PackageName.with("package1"), PackageName.with("package91")),
+            (m) -> {
+            },
+            () -> polled[0]++
+        );
+        this.checkEquals("package package91;\nclass Type2{}", new String(shaded, StandardCharsets.UTF_8));
+        this.checkEquals(true, polled[0] > 0, "polled");
+    }
+
     private void shadeAndCheck(final String original) {
         this.shadeAndCheck(original, Maps.empty());
     }
@@ -17,13 +17,63 @@
 
 package walkingkooka.javashader;
 
+import org.junit.jupiter.api.Test;
 import walkingkooka.reflect.JavaVisibility;
 import walkingkooka.reflect.PublicStaticHelperTesting;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 public final class JavaShadersTest implements PublicStaticHelperTesting<JavaShaders> {
 
+    @Test
+    public void testCanHavePublicTypesDebugInfo() throws Exception {
+        this.checkEquals(
+            true,
+            this.canHavePublicTypes(
+                JavaShaders.class.getMethod("classFilePackageShader", Set.class)
+            )
+        );
+    }
+
+    @Test
+    public void testCanHavePublicTypesDebugInfoAndListener() throws Exception {
+        this.checkEquals(
+            true,
+            this.canHavePublicTypes(
+                JavaShaders.class.getMethod("classFilePackageShader", Set.class, PackageShaderListener.class)
+            )
+        );
+    }
+
+    @Test
+    public void testCanHavePublicTypesOptions() throws Exception {
+        this.checkEquals(
+            true,
+            this.canHavePublicTypes(
+                JavaShaders.class.getMethod(
+                    "archivePackageShader",
+                    ArchivePackageShaderOptions.class
+                )
+            )
+        );
+    }
+
+    @Test
+    public void testCanHavePublicTypesCharsetOnly() throws Exception {
+        this.checkEquals(
+            false,
+            this.canHavePublicTypes(
+                JavaShaders.class.getMethod("javaFilePackageShader", Charset.class)
+            )
+        );
+    }
+
     @Override
     public Class<JavaShaders> type() {
         return JavaShaders.class;
@@ -36,6 +86,30 @@ public final class JavaShadersTest implements PublicStaticHelperTesting<JavaShad
 
     @Override
     public boolean canHavePublicTypes(final Method method) {
-        return false;
+        final List<Class<?>> parameters = Arrays.asList(method.getParameterTypes());
+        return parameters.contains(PackageShaderListener.class) ||
+            parameters.contains(ArchivePackageShaderOptions.class) ||
+            parameters.contains(PackageShaderJob.class) ||
+            isSetOf(method, ClassFileDebugInfo.class);
+    }
+
+    /**
+     * Tests if any parameter is a {@link Set} of the given type, such as {@link ClassFileDebugInfo}.
+     */
+    private static boolean isSetOf(final Method method,
+                                   final Class<?> type) {
+        boolean found = false;
+
+        for (final Type parameter : method.getGenericParameterTypes()) {
+            if (parameter instanceof ParameterizedType) {
+                final ParameterizedType parameterized = (ParameterizedType) parameter;
+                if (Set.class == parameterized.getRawType() && type == parameterized.getActualTypeArguments()[0]) {
+                    found = true;
+                    break;
+                }
+            }
+        }
+
+        return found;
     }
 }
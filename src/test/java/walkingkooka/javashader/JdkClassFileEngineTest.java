@@ -0,0 +1,301 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.ClassFilePackageShaderTest.RoundTrip;
+import walkingkooka.test.Testing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Round trips class files through the {@link ClassFileEngine} built on the JDK class file API, which is only available
+ * when the tests run against the multi-release jar on Java 24 or later. The java24 profile selects the engine with the
+ * {@link ClassFileEngines#PROPERTY}, which makes a missing engine fail the tests, otherwise they are skipped.
+ */
+public final class JdkClassFileEngineTest implements Testing {
+
+    private final static String PACKAGE = RoundTrip.class.getPackage()
+        .getName()
+        .replace('.', '/') + '/';
+
+    private final static String SHADED_PACKAGE = "shaded/" + PACKAGE;
+
+    @Test
+    public void testEngineSelected() {
+        final ClassFileEngine engine = engine();
+        assumeTrue(
+            isSelected(),
+            "Engine not selected by " + ClassFileEngines.PROPERTY
+        );
+
+        assertSame(
+            engine,
+            ClassFileEngines.engine()
+        );
+    }
+
+    @Test
+    public void testShadeRoundTrip() throws Exception {
+        this.shadeRoundTripAndCheck(ClassFileDebugInfo.ALL);
+    }
+
+    @Test
+    public void testShadeRoundTripWithoutDebugInfo() throws Exception {
+        this.shadeRoundTripAndCheck(Sets.empty());
+    }
+
+    private void shadeRoundTripAndCheck(final Set<ClassFileDebugInfo> debugInfo) throws Exception {
+        final byte[] shaded = engine()
+            .shade(
+                classFile(RoundTrip.class),
+                (t) -> t.startsWith(PACKAGE) ?
+                    SHADED_PACKAGE + t.substring(PACKAGE.length()) :
+                    t,
+                debugInfo
+            );
+
+        final List<String> frameTypes = frameTypes(shaded);
+        final String shadedName = SHADED_PACKAGE + RoundTrip.class.getName()
+            .replace('.', '/')
+            .substring(PACKAGE.length());
+        this.checkEquals(true, frameTypes.contains(shadedName), () -> "shaded frame type missing " + frameTypes);
+        this.checkEquals(
+            false,
+            frameTypes.stream()
+                .anyMatch(t -> t.startsWith(PACKAGE)),
+            () -> "unshaded frame types " + frameTypes
+        );
+
+        // defining and running the class verifies the remapped stack map frames
+        final String shadedType = shadedName.replace('/', '.');
+        final ClassFilePackageShaderTest.ByteClassLoader classLoader = new ClassFilePackageShaderTest.ByteClassLoader();
+        classLoader.setClass(shadedType, shaded);
+        final Class<?> loadedType = classLoader.loadClass(shadedType);
+
+        this.checkEquals(
+            "roundTrip failed true",
+            loadedType.getMethod("run")
+                .invoke(loadedType.getDeclaredConstructor().newInstance())
+        );
+    }
+
+    @Test
+    public void testShadeModuleInfoSameAsAsm() {
+        final String packageName = PACKAGE.substring(0, PACKAGE.length() - 1);
+
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V11, Opcodes.ACC_MODULE, "module-info", null, null, null);
+        final ModuleVisitor module = writer.visitModule("test.module", 0, "1.0");
+        module.visitMainClass(PACKAGE + "Main");
+        module.visitPackage(packageName);
+        module.visitRequire("java.base", Opcodes.ACC_MANDATED, null);
+        module.visitExport(packageName, 0);
+        module.visitOpen(packageName, 0, "java.base");
+        module.visitUse(PACKAGE + "Service");
+        module.visitProvide(PACKAGE + "Service", PACKAGE + "Provider", "java/lang/Object");
+        module.visitEnd();
+        writer.visitEnd();
+
+        final byte[] classFile = writer.toByteArray();
+        final UnaryOperator<String> map = (t) -> t.startsWith(PACKAGE) ?
+            SHADED_PACKAGE + t.substring(PACKAGE.length()) :
+            t;
+
+        final List<String> asm = module(
+            AsmClassFileEngine.INSTANCE.shade(classFile, map, ClassFileDebugInfo.ALL)
+        );
+        this.checkEquals(
+            true,
+            asm.contains("use " + SHADED_PACKAGE + "Service"),
+            () -> "asm " + asm
+        );
+        this.checkEquals(
+            asm,
+            module(
+                engine().shade(classFile, map, ClassFileDebugInfo.ALL)
+            )
+        );
+    }
+
+    /**
+     * Returns every part of the module descriptor as text.
+     */
+    private static List<String> module(final byte[] classFile) {
+        final List<String> parts = Lists.array();
+
+        new ClassReader(classFile)
+            .accept(
+                new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public ModuleVisitor visitModule(final String name,
+                                                     final int access,
+                                                     final String version) {
+                        parts.add("module " + name + " " + access + " " + version);
+
+                        return new ModuleVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visitMainClass(final String mainClass) {
+                                parts.add("main " + mainClass);
+                            }
+
+                            @Override
+                            public void visitPackage(final String packaze) {
+                                parts.add("package " + packaze);
+                            }
+
+                            @Override
+                            public void visitRequire(final String module,
+                                                     final int access,
+                                                     final String version) {
+                                parts.add("require " + module + " " + access + " " + version);
+                            }
+
+                            @Override
+                            public void visitExport(final String packaze,
+                                                    final int access,
+                                                    final String... modules) {
+                                parts.add("export " + packaze + " " + access + " " + Arrays.toString(modules));
+                            }
+
+                            @Override
+                            public void visitOpen(final String packaze,
+                                                  final int access,
+                                                  final String... modules) {
+                                parts.add("open " + packaze + " " + access + " " + Arrays.toString(modules));
+                            }
+
+                            @Override
+                            public void visitUse(final String service) {
+                                parts.add("use " + service);
+                            }
+
+                            @Override
+                            public void visitProvide(final String service,
+                                                     final String... providers) {
+                                parts.add("provide " + service + " " + Arrays.toString(providers));
+                            }
+                        };
+                    }
+                },
+                0
+            );
+
+        return parts;
+    }
+
+    /**
+     * Returns the types of the locals and stack of every stack map frame of every method.
+     */
+    private static List<String> frameTypes(final byte[] classFile) {
+        final List<String> types = Lists.array();
+
+        new ClassReader(classFile)
+            .accept(
+                new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(final int access,
+                                                     final String name,
+                                                     final String descriptor,
+                                                     final String signature,
+                                                     final String[] exceptions) {
+                        return new MethodVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visitFrame(final int type,
+                                                   final int numLocal,
+                                                   final Object[] local,
+                                                   final int numStack,
+                                                   final Object[] stack) {
+                                add(local, numLocal);
+                                add(stack, numStack);
+                            }
+
+                            private void add(final Object[] frame,
+                                             final int count) {
+                                for (int i = 0; i < count; i++) {
+                                    final Object type = frame[i];
+                                    if (type instanceof String) {
+                                        types.add((String) type);
+                                    }
+                                }
+                            }
+                        };
+                    }
+                },
+                0
+            );
+
+        return types;
+    }
+
+    /**
+     * Returns the JDK class file engine. When it is not available the test fails if the engine was selected, as the
+     * multi-release jar is broken, otherwise it is skipped.
+     */
+    private static ClassFileEngine engine() {
+        ClassFileEngine engine = null;
+        IllegalArgumentException unavailable = null;
+        try {
+            engine = ClassFileEngines.engine(ClassFileEngines.JDK);
+        } catch (final IllegalArgumentException cause) {
+            unavailable = cause;
+        }
+
+        if (null == engine) {
+            final String message = "JDK class file engine requires the multi-release jar on Java 24 or later";
+            if (isSelected()) {
+                throw new AssertionError(message, unavailable);
+            }
+            assumeTrue(false, message);
+        }
+        return engine;
+    }
+
+    /**
+     * The java24 profile selects the JDK engine when it runs the tests against the multi-release jar.
+     */
+    private static boolean isSelected() {
+        return ClassFileEngines.JDK.equals(System.getProperty(ClassFileEngines.PROPERTY));
+    }
+
+    private static byte[] classFile(final Class<?> type) throws IOException {
+        final String resourceName = "/" + type.getName().replace('.', '/') + ".class";
+
+        try (final InputStream file = type.getResourceAsStream(resourceName)) {
+            assertNotNull(file, () -> "Class file for " + type.getName() + " resource=" + resourceName + " not found");
+            return file.readAllBytes();
+        }
+    }
+}
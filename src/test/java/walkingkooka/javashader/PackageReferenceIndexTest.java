@@ -0,0 +1,386 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PackageReferenceIndexTest implements ClassTesting<PackageReferenceIndex> {
+
+    private final static String USER = BatchPackageShaderTest.path(TestUser.class);
+
+    private final static String DEPENDENCY = BatchPackageShaderTest.path(TestDependency.class);
+
+    private final static String JAVA_FILE = "package package1;\nimport package2.Type3;\nimport static package4.Type5.method;\nimport package6.*;\n// package7.Type8\n/* package9.Type10 */\nclass Type11 {\n  String s = \"package12.Type13\";\n  package14.sub15.Type16 field;\n}";
+
+    private final static PackageName USER_PACKAGE = PackageName.from(TestUser.class.getPackage());
+
+    private final static PackageName DEPENDENCY_PACKAGE = PackageName.from(TestDependency.class.getPackage());
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    // scan.............................................................................................................
+
+    @Test
+    public void testScanNullPathFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageReferenceIndex.scan(null, StandardCharsets.UTF_8, true, Runnable::run)
+        );
+    }
+
+    @Test
+    public void testScanNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageReferenceIndex.scan(this.directory, null, true, Runnable::run)
+        );
+    }
+
+    @Test
+    public void testScanNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageReferenceIndex.scan(this.directory, StandardCharsets.UTF_8, true, null)
+        );
+    }
+
+    @Test
+    public void testScanArchive() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            true,
+            Runnable::run
+        );
+
+        this.checkEquals(
+            Lists.of(USER, DEPENDENCY, "package1/Type11.java", "package1/Type11.properties"),
+            index.entries(),
+            "entries"
+        );
+        this.checkEquals(
+            true,
+            index.references(USER).contains(DEPENDENCY_PACKAGE),
+            "user references dependency"
+        );
+        this.checkEquals(
+            Sets.of(USER, DEPENDENCY),
+            index.referencing(DEPENDENCY_PACKAGE),
+            "referencing dependency"
+        );
+        this.checkEquals(
+            Sets.of("package1/Type11.java"),
+            index.referencing(PackageName.with("package14.sub15")),
+            "referencing package14.sub15"
+        );
+    }
+
+    @Test
+    public void testScanArchiveParallelSameAsSequential() throws IOException {
+        final Path archive = this.archive();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            this.checkEquals(
+                PackageReferenceIndex.scan(archive, StandardCharsets.UTF_8, true, Runnable::run),
+                PackageReferenceIndex.scan(archive, StandardCharsets.UTF_8, true, executor)
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testScanArchiveWithoutSources() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            false,
+            Runnable::run
+        );
+
+        this.checkEquals(
+            Sets.empty(),
+            index.references("package1/Type11.java")
+        );
+        this.checkEquals(
+            true,
+            index.mayReference("package1/Type11.java", Maps.of(PackageName.with("package99"), PackageName.with("package98"))),
+            "unscanned java file"
+        );
+    }
+
+    @Test
+    public void testScanDirectory() throws IOException {
+        final Path file = this.directory.resolve("sources/package1/Type11.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, JAVA_FILE.getBytes(StandardCharsets.UTF_8));
+
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.directory.resolve("sources"),
+            StandardCharsets.UTF_8,
+            true,
+            Runnable::run
+        );
+
+        this.checkEquals(
+            Lists.of("package1/Type11.java"),
+            index.entries(),
+            "entries"
+        );
+        this.checkEquals(
+            Sets.of(
+                PackageName.with("package1"),
+                PackageName.with("package2"),
+                PackageName.with("package4"),
+                PackageName.with("package6"),
+                PackageName.with("package14.sub15")
+            ),
+            index.references("package1/Type11.java")
+        );
+    }
+
+    // packages.........................................................................................................
+
+    @Test
+    public void testClassFilePackages() throws IOException {
+        this.checkEquals(
+            true,
+            PackageReferenceIndex.classFilePackages(BatchPackageShaderTest.classFile(TestUser.class))
+                .containsAll(
+                    Sets.of(
+                        USER_PACKAGE.value(),
+                        DEPENDENCY_PACKAGE.value(),
+                        "java.lang",
+                        "java.util.function"
+                    )
+                )
+        );
+    }
+
+    @Test
+    public void testClassFileTypes() throws IOException {
+        this.checkEquals(
+            true,
+            PackageReferenceIndex.classFileTypes(BatchPackageShaderTest.classFile(TestUser.class))
+                .containsAll(
+                    Sets.of(
+                        USER.substring(0, USER.length() - ".class".length()),
+                        DEPENDENCY.substring(0, DEPENDENCY.length() - ".class".length()),
+                        "java/util/function/Supplier"
+                    )
+                )
+        );
+    }
+
+    @Test
+    public void testClassFilePackagesInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageReferenceIndex.classFilePackages(new byte[20])
+        );
+        this.checkEquals("Invalid class file", thrown.getMessage());
+    }
+
+    @Test
+    public void testSourcePackages() {
+        this.checkEquals(
+            Sets.of("package1", "package2", "package4", "package6", "package14.sub15"),
+            PackageReferenceIndex.sourcePackages(JAVA_FILE)
+        );
+    }
+
+    @Test
+    public void testSourcePackagesTextBlockIgnored() {
+        this.checkEquals(
+            Sets.of("package1"),
+            PackageReferenceIndex.sourcePackages("class Type2 {\n  String s = \"\"\"\n    package3.Type4\n    \"\"\";\n  char c = '\\'';\n  package1.Type5 field;\n}")
+        );
+    }
+
+    // dryRun...........................................................................................................
+
+    @Test
+    public void testDryRun() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            true,
+            Runnable::run
+        );
+
+        final Map<String, String> changes = Maps.ordered();
+        changes.put(USER, USER);
+        changes.put(DEPENDENCY, "shaded/" + DEPENDENCY.substring(DEPENDENCY.lastIndexOf('/') + 1));
+
+        this.checkEquals(
+            changes,
+            index.dryRun(Maps.of(DEPENDENCY_PACKAGE, PackageName.with("shaded")))
+        );
+    }
+
+    @Test
+    public void testDryRunRelocatedResource() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            true,
+            Runnable::run
+        );
+
+        final Map<String, String> changes = Maps.ordered();
+        changes.put("package1/Type11.java", "package91/Type11.java");
+        changes.put("package1/Type11.properties", "package91/Type11.properties");
+
+        this.checkEquals(
+            changes,
+            index.dryRun(Maps.of(PackageName.with("package1"), PackageName.with("package91")))
+        );
+    }
+
+    @Test
+    public void testDryRunNothing() throws IOException {
+        this.checkEquals(
+            Maps.empty(),
+            PackageReferenceIndex.scan(this.archive(), StandardCharsets.UTF_8, true, Runnable::run)
+                .dryRun(Maps.of(PackageName.with("package99"), PackageName.with("package98")))
+        );
+    }
+
+    @Test
+    public void testMayReferenceUnknownPath() {
+        this.checkEquals(
+            true,
+            PackageReferenceIndex.EMPTY.mayReference("unknown/Type.class", Maps.empty())
+        );
+    }
+
+    // persistence......................................................................................................
+
+    @Test
+    public void testWriteRead() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            false,
+            Runnable::run
+        );
+
+        final Path file = this.directory.resolve("index");
+        index.write(file);
+
+        final PackageReferenceIndex read = PackageReferenceIndex.read(file);
+        this.checkEquals(index, read);
+        this.checkEquals(index.referencing(DEPENDENCY_PACKAGE), read.referencing(DEPENDENCY_PACKAGE));
+    }
+
+    @Test
+    public void testReadInvalidFails() throws IOException {
+        final Path file = this.directory.resolve("index");
+        Files.write(file, new byte[8]);
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageReferenceIndex.read(file)
+        );
+        this.checkEquals("Invalid package reference index " + file, thrown.getMessage());
+    }
+
+    // Object...........................................................................................................
+
+    @Test
+    public void testToStringEmpty() {
+        this.checkEquals(
+            "0 entries 0 packages",
+            PackageReferenceIndex.EMPTY.toString()
+        );
+    }
+
+    @Test
+    public void testToString() throws IOException {
+        final PackageReferenceIndex index = PackageReferenceIndex.scan(
+            this.archive(),
+            StandardCharsets.UTF_8,
+            false,
+            Runnable::run
+        );
+        this.checkEquals(
+            "4 entries " + index.packages().size() + " packages",
+            index.toString()
+        );
+    }
+
+    private Path archive() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(USER, BatchPackageShaderTest.classFile(TestUser.class));
+        files.put(DEPENDENCY, BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put("package1/Type11.java", JAVA_FILE.getBytes(StandardCharsets.UTF_8));
+        files.put("package1/Type11.properties", "key=value\n".getBytes(StandardCharsets.UTF_8));
+
+        final Path archive = this.directory.resolve("archive.jar");
+        Files.write(archive, ArchivePackageShaderTest.archive(files, false));
+        return archive;
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageReferenceIndex> type() {
+        return PackageReferenceIndex.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
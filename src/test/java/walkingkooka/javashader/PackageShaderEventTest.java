@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public final class PackageShaderEventTest implements ClassTesting<PackageShaderEvent> {
+
+    private final static String EVENT_NAME = "walkingkooka.javashader.Shade";
+
+    @Test
+    public void testDisabledByDefault() {
+        this.checkEquals(
+            false,
+            EventType.getEventType(PackageShaderEvent.class).isEnabled()
+        );
+    }
+
+    @Test
+    public void testRecordDisabledPassesListener() {
+        final PackageShaderListener listener = (m) -> {
+            throw new UnsupportedOperationException();
+        };
+
+        this.checkEquals(
+            "shaded",
+            PackageShaderEvent.record(
+                Maps.empty(),
+                listener,
+                (l) -> {
+                    this.checkEquals(listener, l, "listener");
+                    return "shaded";
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testRecorded() throws IOException {
+        final String original = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.with("package1"),
+            PackageName.with("package91")
+        );
+
+        final byte[][] shaded = new byte[1][];
+        final List<RecordedEvent> events = this.recordedEvents(
+            () -> shaded[0] = JavaShaders.javaFilePackageShader(StandardCharsets.UTF_8)
+                .apply(original.getBytes(StandardCharsets.UTF_8), mappings)
+        );
+        this.checkEquals(1, events.size(), () -> "events " + events);
+
+        final RecordedEvent event = events.get(0);
+        this.checkEquals("source", event.getString("kind"), "kind");
+        this.checkEquals(original.length(), event.getInt("inputSize"), "inputSize");
+        this.checkEquals(shaded[0].length, event.getInt("outputSize"), "outputSize");
+        this.checkEquals(2, event.getInt("rewriteCount"), "rewriteCount");
+        this.checkEquals(PackageShaderEvent.fingerprint(mappings), event.getString("ruleSetFingerprint"), "ruleSetFingerprint");
+    }
+
+    @Test
+    public void testRecordedClassFile() throws IOException {
+        final byte[] original = BatchPackageShaderTest.classFile(TestUser.class);
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.from(TestDependency.class.getPackage()),
+            PackageName.with("shaded")
+        );
+
+        final List<PackageShaderMetrics> metrics = Lists.array();
+        final byte[][] shaded = new byte[1][];
+        final List<RecordedEvent> events = this.recordedEvents(
+            () -> shaded[0] = JavaShaders.classFilePackageShader(metrics::add)
+                .apply(original, mappings)
+        );
+        this.checkEquals(1, events.size(), () -> "events " + events);
+        this.checkEquals(1, metrics.size(), () -> "listener " + metrics);
+
+        final RecordedEvent event = events.get(0);
+        this.checkEquals("class", event.getString("kind"), "kind");
+        this.checkEquals(original.length, event.getInt("inputSize"), "inputSize");
+        this.checkEquals(shaded[0].length, event.getInt("outputSize"), "outputSize");
+        this.checkEquals(metrics.get(0).namesRewritten(), event.getInt("rewriteCount"), "rewriteCount");
+    }
+
+    /**
+     * Runs the shading within a recording of the shade event, returning the recorded events.
+     */
+    private List<RecordedEvent> recordedEvents(final Runnable shade) throws IOException {
+        final Path file = Files.createTempFile(this.getClass().getSimpleName(), ".jfr");
+        try {
+            try (final Recording recording = new Recording()) {
+                recording.enable(EVENT_NAME)
+                    .withoutThreshold();
+                recording.start();
+
+                shade.run();
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            return RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(e -> e.getEventType().getName().equals(EVENT_NAME))
+                .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFingerprint() {
+        final String fingerprint = PackageShaderEvent.fingerprint(
+            Maps.of(PackageName.with("package1"), PackageName.with("package2"))
+        );
+
+        this.checkEquals(16, fingerprint.length(), fingerprint);
+        this.checkEquals(
+            fingerprint,
+            PackageShaderEvent.fingerprint(
+                Maps.of(PackageName.with("package1"), PackageName.with("package2"))
+            )
+        );
+        this.checkNotEquals(
+            fingerprint,
+            PackageShaderEvent.fingerprint(
+                Maps.of(PackageName.with("package1"), PackageName.with("package3"))
+            )
+        );
+    }
+
+    @Test
+    public void testFingerprintMappingsModified() {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+        mappings.put(PackageName.with("package1"), PackageName.with("package2"));
+        final String fingerprint = PackageShaderEvent.fingerprint(mappings);
+
+        mappings.put(PackageName.with("package1"), PackageName.with("package3"));
+
+        this.checkEquals(
+            PackageShaderEvent.fingerprint(
+                Maps.of(PackageName.with("package1"), PackageName.with("package3"))
+            ),
+            PackageShaderEvent.fingerprint(mappings)
+        );
+        this.checkNotEquals(
+            fingerprint,
+            PackageShaderEvent.fingerprint(mappings)
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderEvent> type() {
+        return PackageShaderEvent.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
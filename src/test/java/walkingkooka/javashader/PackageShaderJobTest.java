@@ -0,0 +1,223 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PackageShaderJobTest implements ClassTesting<PackageShaderJob> {
+
+    @Test
+    public void testWithNullDeadlineFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderJob.with(
+                null,
+                (p) -> {
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullListenerFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderJob.with(Optional.empty(), null)
+        );
+    }
+
+    @Test
+    public void testStartAndDone() {
+        final List<PackageShaderProgress> progress = Lists.array();
+        final PackageShaderJob.Tracker tracker = PackageShaderJob.with(Optional.empty(), progress::add)
+            .start(2, 30);
+        tracker.done(10);
+        tracker.done(20);
+
+        this.checkEquals(
+            Lists.of(
+                PackageShaderProgress.with(0, 2, 0, 30),
+                PackageShaderProgress.with(1, 2, 10, 30),
+                PackageShaderProgress.with(2, 2, 30, 30)
+            ),
+            progress
+        );
+    }
+
+    @Test
+    public void testCheckDeadlineFuture() {
+        this.job(Instant.now().plusSeconds(60))
+            .start(1, 1)
+            .check();
+    }
+
+    @Test
+    public void testCheckDeadlineMax() {
+        this.job(Instant.MAX)
+            .start(1, 1)
+            .check();
+    }
+
+    @Test
+    public void testCheckDeadlinePassed() {
+        final Instant deadline = Instant.now()
+            .minusSeconds(1);
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> this.job(deadline)
+                .start(1, 1)
+                .check()
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+    }
+
+    @Test
+    public void testCheckDeadlineMin() {
+        assertThrows(
+            CancellationException.class,
+            () -> this.job(Instant.MIN)
+                .start(1, 1)
+                .check()
+        );
+    }
+
+    @Test
+    public void testCheckInterruptedRemainsCancelled() {
+        final PackageShaderJob.Tracker tracker = PackageShaderJob.NONE.start(1, 1);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(
+                CancellationException.class,
+                tracker::check
+            );
+        } finally {
+            Thread.interrupted();
+        }
+
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            tracker::check
+        );
+        this.checkEquals("Interrupted", thrown.getMessage());
+    }
+
+    @Test
+    public void testTypesChecksEvery64Names() {
+        final List<String> types = Lists.array();
+        final Consumer<String> checking = PackageShaderJob.NONE.start(1, 1)
+            .types(types::add);
+
+        Thread.currentThread().interrupt();
+        try {
+            for (int i = 1; i < 64; i++) {
+                checking.accept("Type" + i);
+            }
+            assertThrows(
+                CancellationException.class,
+                () -> checking.accept("Type64")
+            );
+        } finally {
+            Thread.interrupted();
+        }
+        this.checkEquals(63, types.size(), "types");
+    }
+
+    @Test
+    public void testJoin() {
+        this.checkEquals(
+            "done",
+            PackageShaderJob.NONE.start(1, 1)
+                .join(CompletableFuture.completedFuture("done"))
+        );
+    }
+
+    @Test
+    public void testJoinFailureRethrown() {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalArgumentException("Failed123"));
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderJob.NONE.start(1, 1)
+                .join(future)
+        );
+        this.checkEquals("Failed123", thrown.getMessage());
+    }
+
+    @Test
+    public void testJoinDeadlinePassesWhileWaiting() {
+        final Instant deadline = Instant.now()
+            .plusMillis(50);
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> this.job(deadline)
+                .start(1, 1)
+                .join(new CompletableFuture<>())
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "deadline 2000-01-02T03:04:05Z",
+            this.job(Instant.parse("2000-01-02T03:04:05Z")).toString()
+        );
+    }
+
+    @Test
+    public void testToStringNone() {
+        this.checkEquals(
+            "no deadline",
+            PackageShaderJob.NONE.toString()
+        );
+    }
+
+    private PackageShaderJob job(final Instant deadline) {
+        return PackageShaderJob.with(
+            Optional.of(deadline),
+            (p) -> {
+            }
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderJob> type() {
+        return PackageShaderJob.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+public final class PackageShaderMetricsTest implements ClassTesting<PackageShaderMetrics> {
+
+    @Test
+    public void testIsUnchanged() {
+        this.checkEquals(
+            true,
+            PackageShaderMetrics.with(
+                PackageShaderMetrics.Kind.CLASS_FILE,
+                100,
+                101,
+                10,
+                0,
+                Maps.empty(),
+                1,
+                2,
+                3
+            ).isUnchanged()
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "JAVA_FILE bytes 100->110 names 2/10 {package1=2} parse 1ns visit 2ns emit 3ns",
+            PackageShaderMetrics.with(
+                PackageShaderMetrics.Kind.JAVA_FILE,
+                100,
+                110,
+                10,
+                2,
+                Maps.of(PackageName.with("package1"), 2),
+                1,
+                2,
+                3
+            ).toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderMetrics> type() {
+        return PackageShaderMetrics.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PackageShaderPipelineTest implements ClassTesting<PackageShaderPipeline> {
+
+    private final static String JAVA_FILE = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+
+    private final static Map<PackageName, PackageName> MAPPINGS = Maps.of(
+        PackageName.with("package1"),
+        PackageName.with("package91")
+    );
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWithInvalidReadThreadsFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderPipeline.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), 0, 1, 1, 1)
+        );
+        this.checkEquals("Invalid read threads 0 must be greater than 0", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithInvalidCapacityFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderPipeline.with(StandardCharsets.UTF_8, ArchiveCompression.stored(), 1, 1, 1, 0)
+        );
+        this.checkEquals("Invalid capacity 0 must be greater than 0", thrown.getMessage());
+    }
+
+    @Test
+    public void testShadeNullArchiveFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.pipeline(1, 1, 1, 1)
+                .shade(null, MAPPINGS, this.directory.resolve("output.jar"))
+        );
+    }
+
+    @Test
+    public void testShadeSingleThreads() throws IOException {
+        this.shadeAndCheck(this.pipeline(1, 1, 1, 1));
+    }
+
+    @Test
+    public void testShadeManyThreads() throws IOException {
+        this.shadeAndCheck(this.pipeline(2, 4, 3, 8));
+    }
+
+    @Test
+    public void testShadeCapacityLargerThanEntries() throws IOException {
+        this.shadeAndCheck(this.pipeline(2, 2, 2, 1000));
+    }
+
+    private void shadeAndCheck(final PackageShaderPipeline pipeline) throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < 30; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+            files.put("package1/Type" + i + ".txt", bytes("text" + i));
+            files.put("package3/Type" + i + ".java", bytes("package package3;\nclass Type" + i + "{\n};"));
+        }
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, archive);
+        final Path output = this.directory.resolve("output.jar");
+
+        final List<PackageShaderStageMetrics> metrics = pipeline.shade(input, MAPPINGS, output);
+
+        this.checkEquals(
+            true,
+            Arrays.equals(
+                ArchivePackageShader.with(StandardCharsets.UTF_8, ArchiveCompression.deflated(1), Runnable::run)
+                    .apply(archive, MAPPINGS),
+                Files.readAllBytes(output)
+            ),
+            "same as in memory"
+        );
+        this.checkEquals(
+            Lists.of("READ", "SHADE", "COMPRESS", "WRITE"),
+            metrics.stream()
+                .map(PackageShaderStageMetrics::name)
+                .collect(Collectors.toList()),
+            "names"
+        );
+        this.checkEquals(
+            Lists.of(90L, 90L, 90L, 90L),
+            metrics.stream()
+                .map(PackageShaderStageMetrics::items)
+                .collect(Collectors.toList()),
+            "items"
+        );
+    }
+
+    @Test
+    public void testShadeFailureRethrown() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type1.txt", bytes("text"));
+        files.put("package1/Type2.class", bytes("not a class file package1"));
+        files.put("package1/Type3.txt", bytes("text"));
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, ArchivePackageShaderTest.archive(files, false));
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> this.pipeline(2, 2, 2, 2)
+                .shade(input, MAPPINGS, this.directory.resolve("output.jar"))
+        );
+    }
+
+    @Test
+    public void testShadeDuplicatePathFails() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Type2.txt", bytes("1"));
+        files.put("package91/Type2.txt", bytes("2"));
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, ArchivePackageShaderTest.archive(files, false));
+
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> this.pipeline(1, 1, 1, 1)
+                .shade(input, MAPPINGS, this.directory.resolve("output.jar"))
+        );
+        this.checkEquals("Duplicate path package91/Type2.txt for package91/Type2.txt", thrown.getMessage());
+    }
+
+    @Test
+    public void testShadeClassLoadOrder() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n"));
+        files.put(BatchPackageShaderTest.path(TestDependency.class), BatchPackageShaderTest.classFile(TestDependency.class));
+        files.put(BatchPackageShaderTest.path(TestUser.class), BatchPackageShaderTest.classFile(TestUser.class));
+        final byte[] archive = ArchivePackageShaderTest.archive(files, false);
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, archive);
+        final Path output = this.directory.resolve("output.jar");
+
+        final ClassLoadOrder order = ClassLoadOrder.with(Lists.of(TestUser.class.getName()));
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.from(TestDependency.class.getPackage()),
+            PackageName.with("shaded")
+        );
+        PackageShaderPipeline.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.deflated(1),
+            2,
+            2,
+            2,
+            4,
+            order
+        ).shade(input, mappings, output);
+
+        this.checkEquals(
+            Lists.of(
+                "META-INF/MANIFEST.MF",
+                BatchPackageShaderTest.path(TestUser.class),
+                "shaded/TestDependency.class"
+            ),
+            Lists.of(ArchivePackageShaderTest.read(Files.readAllBytes(output)).keySet().toArray())
+        );
+    }
+
+    // job..............................................................................................................
+
+    @Test
+    public void testShadeProgress() throws IOException {
+        final Path input = this.input(10);
+        final List<PackageShaderProgress> progress = Lists.array();
+
+        this.pipeline(2, 2, 2, 4)
+            .shade(
+                input,
+                MAPPINGS,
+                this.directory.resolve("output.jar"),
+                PackageShaderJob.with(Optional.empty(), progress::add)
+            );
+
+        this.checkEquals(11, progress.size(), "progress " + progress);
+        this.checkEquals(
+            Lists.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L),
+            progress.stream()
+                .map(PackageShaderProgress::filesDone)
+                .collect(Collectors.toList()),
+            "files done"
+        );
+        final PackageShaderProgress last = progress.get(10);
+        this.checkEquals(last.bytes(), last.bytesDone(), "bytes done");
+        this.checkEquals(true, last.isDone(), "done");
+    }
+
+    @Test
+    public void testShadeDeadlinePassedKeepsOutput() throws IOException {
+        final Path input = this.input(10);
+        final Path output = this.directory.resolve("output.jar");
+        Files.write(output, bytes("previous"));
+
+        final Instant deadline = Instant.now()
+            .minusSeconds(1);
+        final CancellationException thrown = assertThrows(
+            CancellationException.class,
+            () -> this.pipeline(2, 2, 2, 4)
+                .shade(
+                    input,
+                    MAPPINGS,
+                    output,
+                    PackageShaderJob.with(
+                        Optional.of(deadline),
+                        (p) -> {
+                        }
+                    )
+                )
+        );
+        this.checkEquals("Deadline " + deadline + " exceeded", thrown.getMessage());
+        this.checkEquals("previous", new String(Files.readAllBytes(output), StandardCharsets.UTF_8), "output");
+
+        try (final Stream<Path> left = Files.list(this.directory)) {
+            this.checkEquals(2L, left.count(), "temporary files deleted");
+        }
+    }
+
+    @Test
+    public void testShadeInterruptedPartWay() throws IOException {
+        final Path input = this.input(10);
+        final Path output = this.directory.resolve("output.jar");
+
+        try {
+            final CancellationException thrown = assertThrows(
+                CancellationException.class,
+                () -> this.pipeline(2, 2, 2, 4)
+                    .shade(
+                        input,
+                        MAPPINGS,
+                        output,
+                        PackageShaderJob.with(
+                            Optional.empty(),
+                            (p) -> {
+                                if (3 == p.filesDone()) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                        )
+                    )
+            );
+            this.checkEquals("Interrupted", thrown.getMessage());
+        } finally {
+            Thread.interrupted();
+        }
+        this.checkEquals(false, Files.exists(output), "output");
+    }
+
+    private Path input(final int count) throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < count; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+        }
+
+        final Path input = this.directory.resolve("input.jar");
+        Files.write(input, ArchivePackageShaderTest.archive(files, false));
+        return input;
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "UTF-8 DEFLATED 1 read 1 shade 2 compress 3 capacity 4",
+            this.pipeline(1, 2, 3, 4).toString()
+        );
+    }
+
+    private PackageShaderPipeline pipeline(final int read,
+                                           final int shade,
+                                           final int compress,
+                                           final int capacity) {
+        return PackageShaderPipeline.with(
+            StandardCharsets.UTF_8,
+            ArchiveCompression.deflated(1),
+            read,
+            shade,
+            compress,
+            capacity
+        );
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderPipeline> type() {
+        return PackageShaderPipeline.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PackageShaderProcessorTest implements ClassTesting<PackageShaderProcessor> {
+
+    private final static String JAVA_FILE = "package package1;\nclass Type2{\npublic static package1.Type3 x(){return null}\n};";
+
+    private final static Map<PackageName, PackageName> MAPPINGS = Maps.of(
+        PackageName.with("package1"),
+        PackageName.with("package91")
+    );
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderProcessor.with(null, MAPPINGS, Runnable::run, 1, 1, 1)
+        );
+    }
+
+    @Test
+    public void testWithNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderProcessor.with(StandardCharsets.UTF_8, null, Runnable::run, 1, 1, 1)
+        );
+    }
+
+    @Test
+    public void testWithNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderProcessor.with(StandardCharsets.UTF_8, MAPPINGS, null, 1, 1, 1)
+        );
+    }
+
+    @Test
+    public void testWithInvalidParallelismFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderProcessor.with(StandardCharsets.UTF_8, MAPPINGS, Runnable::run, 0, 1, 1)
+        );
+        this.checkEquals("Invalid parallelism 0 must be greater than 0", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithInvalidWindowFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderProcessor.with(StandardCharsets.UTF_8, MAPPINGS, Runnable::run, 2, 1, 1)
+        );
+        this.checkEquals("Invalid window 1 must be at least parallelism 2", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithInvalidBudgetFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> PackageShaderProcessor.with(StandardCharsets.UTF_8, MAPPINGS, Runnable::run, 1, 1, 0)
+        );
+        this.checkEquals("Invalid budget 0 must be greater than 0", thrown.getMessage());
+    }
+
+    // shade............................................................................................................
+
+    @Test
+    public void testShade() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(Long.MAX_VALUE);
+        processor.subscribe(downstream);
+
+        final Map<String, byte[]> files = files(3);
+        files.forEach((p, c) -> processor.onNext(Map.entry(p, c)));
+        processor.onComplete();
+
+        this.checkEquals(
+            text(BatchPackageShader.with(StandardCharsets.UTF_8).apply(files, MAPPINGS).entrySet()),
+            text(downstream.items)
+        );
+        this.checkEquals(true, downstream.complete, "complete");
+        this.checkEquals(null, downstream.error, "error");
+    }
+
+    @Test
+    public void testShadeBeforeSubscriber() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Map<String, byte[]> files = files(1);
+        files.forEach((p, c) -> processor.onNext(Map.entry(p, c)));
+        processor.onComplete();
+
+        final Downstream downstream = new Downstream(Long.MAX_VALUE);
+        processor.subscribe(downstream);
+
+        this.checkEquals(3, downstream.items.size(), "items");
+        this.checkEquals(true, downstream.complete, "complete");
+    }
+
+    @Test
+    public void testShadeParallelPreservesOrder() throws InterruptedException {
+        final Map<String, byte[]> files = files(100);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final PackageShaderProcessor processor = PackageShaderProcessor.with(
+                StandardCharsets.UTF_8,
+                MAPPINGS,
+                executor,
+                4,
+                16,
+                1024
+            );
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            final Downstream downstream = new Downstream(Long.MAX_VALUE) {
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    latch.countDown();
+                }
+            };
+
+            // closing the publisher completes the processor
+            try (final SubmissionPublisher<Entry<String, byte[]>> publisher = new SubmissionPublisher<>(executor, 8)) {
+                publisher.subscribe(processor);
+                processor.subscribe(downstream);
+
+                files.forEach((p, c) -> publisher.submit(Map.entry(p, c)));
+            }
+
+            this.checkEquals(true, latch.await(30, TimeUnit.SECONDS), "completed");
+            this.checkEquals(
+                text(BatchPackageShader.with(StandardCharsets.UTF_8).apply(files, MAPPINGS).entrySet()),
+                text(downstream.items)
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // backpressure.....................................................................................................
+
+    @Test
+    public void testRequestsWindow() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        this.checkEquals(4L, upstream.requested, "requested");
+    }
+
+    @Test
+    public void testSlowSubscriberStopsRequests() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(0);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 4);
+        this.checkEquals(4L, upstream.requested, "requested while nothing emitted");
+        this.checkEquals(0, downstream.items.size(), "items");
+
+        downstream.subscription.request(1);
+        this.checkEquals(1, downstream.items.size(), "items");
+        this.checkEquals(5L, upstream.requested, "requested after one emitted");
+    }
+
+    @Test
+    public void testBudgetStopsRequests() {
+        final PackageShaderProcessor processor = this.processor(4, 1);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(0);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 4);
+
+        downstream.subscription.request(3);
+        this.checkEquals(3, downstream.items.size(), "items");
+        this.checkEquals(4L, upstream.requested, "requested while over budget");
+
+        downstream.subscription.request(1);
+        this.checkEquals(4, downstream.items.size(), "items");
+        this.checkEquals(8L, upstream.requested, "requested once under budget");
+    }
+
+    @Test
+    public void testBudgetNearRequestsOneFile() {
+        final long size = bytes(JAVA_FILE.replace("Type2", "Type0")).length;
+        final PackageShaderProcessor processor = this.processor(4, 4 * size);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(0);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 4);
+        this.checkEquals(4L, upstream.requested, "requested while over budget");
+
+        downstream.subscription.request(1);
+        this.checkEquals(5L, upstream.requested, "requested one with 3/4 budget held");
+
+        downstream.subscription.request(1);
+        this.checkEquals(5L, upstream.requested, "requested while one outstanding");
+
+        processor.onNext(Map.entry("package1/Type4.java", bytes(JAVA_FILE.replace("Type2", "Type4"))));
+        this.checkEquals(6L, upstream.requested, "requested one after outstanding arrived");
+    }
+
+    @Test
+    public void testOnNextMoreThanRequested() {
+        final PackageShaderProcessor processor = this.processor(4, 1024 * 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(0);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 5);
+        this.checkEquals(4L, upstream.requested, "requested");
+
+        downstream.subscription.request(5);
+        this.checkEquals(5, downstream.items.size(), "items");
+        this.checkEquals(8L, upstream.requested, "requested never more than window");
+    }
+
+    @Test
+    public void testDemandHonoured() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        processor.onSubscribe(new Upstream());
+
+        final Downstream downstream = new Downstream(2);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 3);
+        processor.onComplete();
+
+        this.checkEquals(2, downstream.items.size(), "items");
+        this.checkEquals(false, downstream.complete, "complete");
+
+        downstream.subscription.request(1);
+        this.checkEquals(3, downstream.items.size(), "items");
+        this.checkEquals(true, downstream.complete, "complete");
+    }
+
+    // errors...........................................................................................................
+
+    @Test
+    public void testCancel() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(Long.MAX_VALUE);
+        processor.subscribe(downstream);
+        downstream.subscription.cancel();
+
+        this.onNext(processor, 1);
+
+        this.checkEquals(true, upstream.cancelled, "upstream cancelled");
+        this.checkEquals(0, downstream.items.size(), "items");
+    }
+
+    @Test
+    public void testUpstreamError() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        processor.onSubscribe(new Upstream());
+
+        final Downstream downstream = new Downstream(Long.MAX_VALUE);
+        processor.subscribe(downstream);
+
+        this.onNext(processor, 1);
+        final Exception cause = new Exception("upstream failed");
+        processor.onError(cause);
+
+        this.checkEquals(1, downstream.items.size(), "items emitted before error");
+        assertSame(cause, downstream.error);
+        this.checkEquals(false, downstream.complete, "complete");
+    }
+
+    @Test
+    public void testShadeFailure() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(Long.MAX_VALUE);
+        processor.subscribe(downstream);
+
+        processor.onNext(Map.entry("package1/Type2.class", bytes("not a class file")));
+
+        this.checkEquals(true, null != downstream.error, "error");
+        this.checkEquals(true, upstream.cancelled, "upstream cancelled");
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        final Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        final Downstream downstream = new Downstream(0);
+        processor.subscribe(downstream);
+        downstream.subscription.request(0);
+
+        this.checkEquals("Invalid request 0 must be greater than 0", downstream.error.getMessage());
+        this.checkEquals(true, upstream.cancelled, "upstream cancelled");
+    }
+
+    @Test
+    public void testSecondSubscriberFails() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        processor.subscribe(new Downstream(0));
+
+        final Downstream second = new Downstream(0);
+        processor.subscribe(second);
+
+        this.checkEquals("Already subscribed", second.error.getMessage());
+    }
+
+    @Test
+    public void testSecondUpstreamCancelled() {
+        final PackageShaderProcessor processor = this.processor(4, 1024);
+        processor.onSubscribe(new Upstream());
+
+        final Upstream second = new Upstream();
+        processor.onSubscribe(second);
+
+        this.checkEquals(true, second.cancelled, "cancelled");
+        this.checkEquals(0L, second.requested, "requested");
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "UTF-8 4 16 1024",
+            PackageShaderProcessor.with(StandardCharsets.UTF_8, MAPPINGS, Runnable::run, 4, 16, 1024).toString()
+        );
+    }
+
+    private PackageShaderProcessor processor(final int window,
+                                             final long budget) {
+        return PackageShaderProcessor.with(
+            StandardCharsets.UTF_8,
+            MAPPINGS,
+            Runnable::run,
+            1,
+            window,
+            budget
+        );
+    }
+
+    private void onNext(final PackageShaderProcessor processor,
+                        final int count) {
+        for (int i = 0; i < count; i++) {
+            processor.onNext(Map.entry("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i))));
+        }
+    }
+
+    private static Map<String, byte[]> files(final int count) {
+        final Map<String, byte[]> files = Maps.ordered();
+        for (int i = 0; i < count; i++) {
+            files.put("package1/Type" + i + ".java", bytes(JAVA_FILE.replace("Type2", "Type" + i)));
+            files.put("package1/Type" + i + ".txt", bytes("text" + i));
+            files.put("package3/Type" + i + ".java", bytes("package package3;\nclass Type" + i + "{\n};"));
+        }
+        return files;
+    }
+
+    private static List<String> text(final Iterable<Entry<String, byte[]>> files) {
+        final List<String> text = Lists.array();
+        files.forEach((e) -> text.add(e.getKey() + "=" + new String(e.getValue(), StandardCharsets.UTF_8)));
+        return text;
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records the files requested and whether it was cancelled.
+     */
+    private static final class Upstream implements Flow.Subscription {
+
+        @Override
+        public void request(final long n) {
+            this.requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        long requested;
+
+        boolean cancelled;
+    }
+
+    /**
+     * Collects every file, requesting the given number when subscribed.
+     */
+    private static class Downstream implements Flow.Subscriber<Entry<String, byte[]>> {
+
+        Downstream(final long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initial > 0) {
+                subscription.request(this.initial);
+            }
+        }
+
+        @Override
+        public void onNext(final Entry<String, byte[]> file) {
+            this.items.add(file);
+        }
+
+        @Override
+        public void onError(final Throwable cause) {
+            this.error = cause;
+        }
+
+        @Override
+        public void onComplete() {
+            this.complete = true;
+        }
+
+        private final long initial;
+
+        Flow.Subscription subscription;
+
+        final List<Entry<String, byte[]>> items = new CopyOnWriteArrayList<>();
+
+        volatile Throwable error;
+
+        volatile boolean complete;
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderProcessor> type() {
+        return PackageShaderProcessor.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+public final class PackageShaderProgressTest implements ClassTesting<PackageShaderProgress> {
+
+    @Test
+    public void testFraction() {
+        this.checkEquals(
+            0.25,
+            PackageShaderProgress.with(1, 2, 250, 1000).fraction()
+        );
+    }
+
+    @Test
+    public void testFractionWithoutBytes() {
+        this.checkEquals(
+            0.5,
+            PackageShaderProgress.with(1, 2, 0, 0).fraction()
+        );
+    }
+
+    @Test
+    public void testFractionEmpty() {
+        this.checkEquals(
+            1.0,
+            PackageShaderProgress.with(0, 0, 0, 0).fraction()
+        );
+    }
+
+    @Test
+    public void testIsDone() {
+        this.checkEquals(
+            true,
+            PackageShaderProgress.with(2, 2, 100, 100).isDone()
+        );
+    }
+
+    @Test
+    public void testIsDoneFalse() {
+        this.checkEquals(
+            false,
+            PackageShaderProgress.with(1, 2, 50, 100).isDone()
+        );
+    }
+
+    @Test
+    public void testEquals() {
+        this.checkEquals(
+            PackageShaderProgress.with(1, 2, 3, 4),
+            PackageShaderProgress.with(1, 2, 3, 4)
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "2/10 files 100/1000 bytes",
+            PackageShaderProgress.with(2, 10, 100, 1000).toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderProgress> type() {
+        return PackageShaderProgress.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
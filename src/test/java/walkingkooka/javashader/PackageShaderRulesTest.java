@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PackageShaderRulesTest implements ClassTesting<PackageShaderRules> {
+
+    @Test
+    public void testWithNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> PackageShaderRules.with(null)
+        );
+    }
+
+    @Test
+    public void testShadeUnmappedSame() {
+        final String name = "package3/Type3";
+        assertSame(
+            name,
+            this.rules().shade(name)
+        );
+    }
+
+    @Test
+    public void testShadeUnmappedSameFirstCharacter() {
+        final String name = "package3/Type3";
+        assertSame(
+            name,
+            PackageShaderRules.with(
+                Maps.of(
+                    PackageName.with("package1"),
+                    PackageName.with("package2")
+                )
+            ).shade(name)
+        );
+    }
+
+    @Test
+    public void testShade() {
+        this.shadeAndCheck(
+            "package1/Type1",
+            "shaded1/Type1"
+        );
+    }
+
+    @Test
+    public void testShadeSubPackage() {
+        this.shadeAndCheck(
+            "package1/sub/Type1",
+            "shaded1/sub/Type1"
+        );
+    }
+
+    @Test
+    public void testShadeFirstMatch() {
+        this.shadeAndCheck(
+            "package2/Type2",
+            "package1/Type2"
+        );
+    }
+
+    @Test
+    public void testShadeOnlyPrefix() {
+        this.shadeAndCheck(
+            "package1/package1/Type1",
+            "shaded1/package1/Type1"
+        );
+    }
+
+    private void shadeAndCheck(final String name,
+                               final String expected) {
+        this.checkEquals(
+            expected,
+            this.rules().shade(name),
+            () -> "shade " + name
+        );
+    }
+
+    @Test
+    public void testUnshadeShaded() {
+        this.unshadeAndCheck(
+            "shaded1/Type1",
+            "package1/Type1"
+        );
+    }
+
+    @Test
+    public void testUnshadeResource() {
+        this.unshadeAndCheck(
+            "shaded1/sub/file.txt",
+            "package1/sub/file.txt"
+        );
+    }
+
+    @Test
+    public void testUnshadeUnmapped() {
+        this.unshadeAndCheck(
+            "package3/Type3",
+            "package3/Type3"
+        );
+    }
+
+    @Test
+    public void testUnshadeSwapped() {
+        this.unshadeAndCheck(
+            "package1/Type2",
+            "package2/Type2"
+        );
+    }
+
+    @Test
+    public void testUnshadeRelocatedAway() {
+        this.unshadeAndCheck(
+            "package2/Type2",
+            null
+        );
+    }
+
+    private void unshadeAndCheck(final String name,
+                                 final String expected) {
+        this.checkEquals(
+            expected,
+            this.rules().unshade(name),
+            () -> "unshade " + name
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "package1=shaded1, package2=package1",
+            this.rules().toString()
+        );
+    }
+
+    private PackageShaderRules rules() {
+        final Map<PackageName, PackageName> mappings = Maps.ordered();
+        mappings.put(PackageName.with("package1"), PackageName.with("shaded1"));
+        mappings.put(PackageName.with("package2"), PackageName.with("package1"));
+        return PackageShaderRules.with(mappings);
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderRules> type() {
+        return PackageShaderRules.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+public final class PackageShaderStageMetricsTest implements ClassTesting<PackageShaderStageMetrics> {
+
+    @Test
+    public void testUtilization() {
+        this.checkEquals(
+            0.25,
+            this.metrics().utilization()
+        );
+    }
+
+    @Test
+    public void testUtilizationZeroElapsed() {
+        this.checkEquals(
+            0.0,
+            PackageShaderStageMetrics.with("READ", 1, 0, 1, 0, 0, 0, 0)
+                .utilization()
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "SHADE threads 4 items 100 queue 2.5/8 max 8 utilization 0.25",
+            this.metrics().toString()
+        );
+    }
+
+    private PackageShaderStageMetrics metrics() {
+        return PackageShaderStageMetrics.with(
+            "SHADE",
+            4,
+            100,
+            8,
+            8,
+            2.5,
+            1000,
+            1000
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<PackageShaderStageMetrics> type() {
+        return PackageShaderStageMetrics.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
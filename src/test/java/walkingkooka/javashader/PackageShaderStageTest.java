@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+public final class PackageShaderStageTest implements ClassTesting<PackageShaderStage<?>> {
+
+    @Test
+    public void testPutTake() throws InterruptedException {
+        final PackageShaderStage<String> stage = PackageShaderStage.with("SHADE", 2, 4);
+        stage.put("a");
+        stage.put("b");
+
+        this.checkEquals("a", stage.take());
+        this.checkEquals("SHADE 1/4", stage.toString());
+    }
+
+    @Test
+    public void testMetrics() throws InterruptedException {
+        final PackageShaderStage<String> stage = PackageShaderStage.with("SHADE", 2, 4);
+        stage.put("a");
+        stage.put("b");
+        stage.put("c");
+        stage.busy(10);
+        stage.busy(30);
+
+        final PackageShaderStageMetrics metrics = stage.metrics(100);
+        this.checkEquals(2L, metrics.items(), "items");
+        this.checkEquals(3, metrics.maxQueueDepth(), "maxQueueDepth");
+        this.checkEquals(2.0, metrics.meanQueueDepth(), "meanQueueDepth");
+        this.checkEquals(40L, metrics.busyNanos(), "busyNanos");
+        this.checkEquals(0.2, metrics.utilization(), "utilization");
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Class<PackageShaderStage<?>> type() {
+        return (Class) PackageShaderStage.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
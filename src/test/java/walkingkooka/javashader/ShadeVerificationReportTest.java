@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadeVerificationReportTest implements ClassTesting<ShadeVerificationReport> {
+
+    @Test
+    public void testWithNullLeftoversFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadeVerificationReport.with(1, 1, null, Maps.empty(), 0)
+        );
+    }
+
+    @Test
+    public void testWithNullFailuresFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadeVerificationReport.with(1, 1, Maps.empty(), null, 0)
+        );
+    }
+
+    @Test
+    public void testGetters() {
+        final ShadeVerificationReport report = ShadeVerificationReport.with(
+            10,
+            2,
+            Maps.of("package1/Type2.class", Sets.of("package3/Type4")),
+            Maps.of("package1/Type5.class", "Error at instruction 0"),
+            123
+        );
+
+        this.checkEquals(10, report.classFiles(), "classFiles");
+        this.checkEquals(2, report.checked(), "checked");
+        this.checkEquals(Maps.of("package1/Type2.class", Sets.of("package3/Type4")), report.leftovers(), "leftovers");
+        this.checkEquals(Maps.of("package1/Type5.class", "Error at instruction 0"), report.failures(), "failures");
+        this.checkEquals(123L, report.elapsedNanos(), "elapsedNanos");
+        this.checkEquals(false, report.isValid(), "valid");
+    }
+
+    @Test
+    public void testIsValid() {
+        this.checkEquals(
+            true,
+            ShadeVerificationReport.with(10, 2, Maps.empty(), Maps.empty(), 0)
+                .isValid()
+        );
+    }
+
+    @Test
+    public void testEqualsIgnoresElapsed() {
+        this.checkEquals(
+            ShadeVerificationReport.with(10, 2, Maps.empty(), Maps.empty(), 1),
+            ShadeVerificationReport.with(10, 2, Maps.empty(), Maps.empty(), 2)
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "10 classes 2 checked 1 leftovers 0 failures",
+            ShadeVerificationReport.with(10, 2, Maps.of("package1/Type2.class", Sets.of("package3/Type4")), Maps.empty(), 0)
+                .toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadeVerificationReport> type() {
+        return ShadeVerificationReport.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
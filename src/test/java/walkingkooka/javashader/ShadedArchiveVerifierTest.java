@@ -0,0 +1,349 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadedArchiveVerifierTest implements ClassTesting<ShadedArchiveVerifier> {
+
+    private final static String USER = BatchPackageShaderTest.path(TestUser.class);
+
+    private final static String DEPENDENCY = BatchPackageShaderTest.path(TestDependency.class);
+
+    private final static String DEPENDENCY_INTERNAL_NAME = DEPENDENCY.substring(0, DEPENDENCY.length() - ".class".length());
+
+    private final static Map<PackageName, PackageName> MAPPINGS = Maps.of(
+        PackageName.from(TestDependency.class.getPackage()),
+        PackageName.with("shaded")
+    );
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadedArchiveVerifier.with(null, 1, Runnable::run)
+        );
+    }
+
+    @Test
+    public void testWithInvalidSampleFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ShadedArchiveVerifier.with(MAPPINGS, 1.5, Runnable::run)
+        );
+        this.checkEquals("Invalid sample 1.5 expected between 0 and 1", thrown.getMessage());
+    }
+
+    @Test
+    public void testWithNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadedArchiveVerifier.with(MAPPINGS, 1, null)
+        );
+    }
+
+    // verify...........................................................................................................
+
+    @Test
+    public void testVerifyNullArchiveFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadedArchiveVerifier.with(MAPPINGS, 1, Runnable::run)
+                .verify(null)
+        );
+    }
+
+    @Test
+    public void testVerifyShaded() throws IOException {
+        this.verifyAndCheck(
+            this.shadedArchive(),
+            1,
+            ShadeVerificationReport.with(2, 2, Maps.empty(), Maps.empty(), 0)
+        );
+    }
+
+    @Test
+    public void testVerifyShadedWithoutSample() throws IOException {
+        this.verifyAndCheck(
+            this.shadedArchive(),
+            0,
+            ShadeVerificationReport.with(2, 0, Maps.empty(), Maps.empty(), 0)
+        );
+    }
+
+    @Test
+    public void testVerifyLeftovers() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(USER, BatchPackageShaderTest.classFile(TestUser.class));
+        files.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+
+        final Path archive = this.directory.resolve("unshaded.jar");
+        Files.write(archive, ArchivePackageShaderTest.archive(files, false));
+
+        this.verifyAndCheck(
+            archive,
+            1,
+            ShadeVerificationReport.with(
+                1,
+                1,
+                Maps.of(USER, Sets.of(DEPENDENCY_INTERNAL_NAME)),
+                Maps.empty(),
+                0
+            )
+        );
+    }
+
+    @Test
+    public void testVerifySubPackageTargetNotLeftover() throws IOException {
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.from(TestDependency.class.getPackage()),
+            PackageName.with(TestDependency.class.getPackage().getName() + ".shaded")
+        );
+
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(USER, BatchPackageShaderTest.classFile(TestUser.class));
+        files.put(DEPENDENCY, BatchPackageShaderTest.classFile(TestDependency.class));
+
+        final Path archive = this.directory.resolve("shaded.jar");
+        Files.write(
+            archive,
+            ArchivePackageShader.with(StandardCharsets.UTF_8)
+                .apply(ArchivePackageShaderTest.archive(files, false), mappings)
+        );
+
+        this.checkEquals(
+            true,
+            ShadedArchiveVerifier.with(mappings, 1, Runnable::run)
+                .verify(archive)
+                .isValid()
+        );
+    }
+
+    @Test
+    public void testVerifySiblingPackageNotLeftover() throws IOException {
+        this.leftoversAndCheck(
+            "package1b/Type2",
+            Maps.of(PackageName.with("package1"), PackageName.with("package91"))
+        );
+    }
+
+    @Test
+    public void testVerifyShadedIntoParentPackageLeftover() throws IOException {
+        this.leftoversAndCheck(
+            "package1/sub/Type2",
+            Maps.of(PackageName.with("package1.sub"), PackageName.with("package1")),
+            "package1/sub/Type2"
+        );
+    }
+
+    @Test
+    public void testVerifyShadedIntoParentPackageShadedNotLeftover() throws IOException {
+        this.leftoversAndCheck(
+            "package1/Type2",
+            Maps.of(PackageName.with("package1.sub"), PackageName.with("package1"))
+        );
+    }
+
+    /**
+     * Verifies an archive holding a single empty class, checking the leftover types it references.
+     */
+    private void leftoversAndCheck(final String internalName,
+                                   final Map<PackageName, PackageName> mappings,
+                                   final String... leftovers) throws IOException {
+        final String path = internalName + ".class";
+        final Path archive = this.directory.resolve("leftovers.jar");
+        Files.write(
+            archive,
+            ArchivePackageShaderTest.archive(
+                Maps.of(path, ArchivePackageShaderTest.classFile(internalName)),
+                false
+            )
+        );
+
+        this.checkEquals(
+            0 == leftovers.length ?
+                Maps.empty() :
+                Maps.of(path, Sets.of(leftovers)),
+            ShadedArchiveVerifier.with(mappings, 0, Runnable::run)
+                .verify(archive)
+                .leftovers(),
+            internalName
+        );
+    }
+
+    @Test
+    public void testVerifyFailures() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put("package1/Invalid.class", invalidClassFile());
+        files.put("package1/NotClass.class", new byte[20]);
+
+        final Path archive = this.directory.resolve("invalid.jar");
+        Files.write(archive, ArchivePackageShaderTest.archive(files, false));
+
+        final ShadeVerificationReport report = ShadedArchiveVerifier.with(MAPPINGS, 1, Runnable::run)
+            .verify(archive);
+
+        this.checkEquals(1, report.checked(), "checked");
+        this.checkEquals(false, report.isValid(), "valid");
+        this.checkEquals(
+            Sets.of("package1/Invalid.class", "package1/NotClass.class"),
+            report.failures().keySet(),
+            "failures"
+        );
+        this.checkEquals("Invalid class file", report.failures().get("package1/NotClass.class"), "NotClass");
+    }
+
+    @Test
+    public void testVerifyParallelSameAsSequential() throws IOException {
+        final Path archive = this.shadedArchive();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            this.checkEquals(
+                ShadedArchiveVerifier.with(MAPPINGS, 1, Runnable::run).verify(archive),
+                ShadedArchiveVerifier.with(MAPPINGS, 1, executor).verify(archive)
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void verifyAndCheck(final Path archive,
+                                final double sample,
+                                final ShadeVerificationReport expected) throws IOException {
+        this.checkEquals(
+            expected,
+            ShadedArchiveVerifier.with(MAPPINGS, sample, Runnable::run)
+                .verify(archive)
+        );
+    }
+
+    private Path shadedArchive() throws IOException {
+        final Map<String, byte[]> files = Maps.ordered();
+        files.put(USER, BatchPackageShaderTest.classFile(TestUser.class));
+        files.put(DEPENDENCY, BatchPackageShaderTest.classFile(TestDependency.class));
+
+        final Path archive = this.directory.resolve("shaded.jar");
+        Files.write(
+            archive,
+            ArchivePackageShader.with(StandardCharsets.UTF_8)
+                .apply(ArchivePackageShaderTest.archive(files, false), MAPPINGS)
+        );
+        return archive;
+    }
+
+    /**
+     * A class whose only method adds two ints from an empty stack.
+     */
+    private static byte[] invalidClassFile() {
+        final ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, "package1/Invalid", null, "java/lang/Object", null);
+
+        final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "invalid", "()I", null, null);
+        method.visitCode();
+        method.visitInsn(Opcodes.IADD);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(2, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    // isSampled........................................................................................................
+
+    @Test
+    public void testIsSampledNone() {
+        this.checkEquals(false, ShadedArchiveVerifier.isSampled("package1/Type2.class", 0));
+    }
+
+    @Test
+    public void testIsSampledAll() {
+        this.checkEquals(true, ShadedArchiveVerifier.isSampled("package1/Type2.class", 1));
+    }
+
+    @Test
+    public void testIsSampledFraction() {
+        final long sampled = IntStream.range(0, 10000)
+            .filter(i -> ShadedArchiveVerifier.isSampled("package1/Type" + i + ".class", 0.1))
+            .count();
+        this.checkEquals(true, sampled > 800 && sampled < 1200, "sampled " + sampled);
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            TestDependency.class.getPackage().getName() + "=shaded 0.5",
+            ShadedArchiveVerifier.with(MAPPINGS, 0.5, Runnable::run).toString()
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadedArchiveVerifier> type() {
+        return ShadedArchiveVerifier.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
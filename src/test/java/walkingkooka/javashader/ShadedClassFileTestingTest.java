@@ -0,0 +1,507 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.predicate.Predicates;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorString;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorString2;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorInt;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorThrowsIllegalArgumentException;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorThrowsIllegalArgumentException2;
+import walkingkooka.javashader.ShadedClassTestingTest.TestConstructorThrowsIllegalStateException;
+import walkingkooka.javashader.ShadedClassTestingTest.TestFieldInt;
+import walkingkooka.javashader.ShadedClassTestingTest.TestFieldIntConstant;
+import walkingkooka.javashader.ShadedClassTestingTest.TestFieldIntConstant2;
+import walkingkooka.javashader.ShadedClassTestingTest.TestFieldString;
+import walkingkooka.javashader.ShadedClassTestingTest.TestFieldString2;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodParameterFrom;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodParameterInt;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodParameterString;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodParameterTo;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodReturnInt;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodReturnString;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodStatic;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodNotStatic;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodThrowsIllegalArgumentException;
+import walkingkooka.javashader.ShadedClassTestingTest.TestMethodThrowsIllegalStateException;
+import walkingkooka.javashader.ShadedClassTestingTest.TestPublicClass;
+import walkingkooka.javashader.ShadedClassTestingTest.TestPublicFinalClass;
+import walkingkooka.javashader.ShadedClassTestingTest.TestPublicStaticClass;
+import walkingkooka.javashader.ShadedClassTestingTest.TestPublicMethod;
+import walkingkooka.javashader.ShadedClassTestingTest.TestProtectedMethod;
+import walkingkooka.javashader.ShadedClassTestingTest.TestPackagePrivateMethod;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadedClassFileTestingTest implements ClassTesting<ShadedClassFileTesting> {
+
+    // typeNameMapper...................................................................................................
+
+    @Test
+    public void testTypeNameMapperFromPackageNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadedClassFileTesting.typeNameMapper(
+                null,
+                PackageName.with("java.io")
+            )
+        );
+    }
+
+    @Test
+    public void testTypeNameMapperToPackageNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadedClassFileTesting.typeNameMapper(
+                PackageName.with("java.io"),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testTypeNameMapperFromPackageToPackageSameFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ShadedClassFileTesting.typeNameMapper(
+                PackageName.with("java.io"),
+                PackageName.with("java.io")
+            )
+        );
+    }
+
+    @Test
+    public void testTypeNameMapperWrongPackage() {
+        this.typeNameMapperAndCheck(
+            "java.lang.String",
+            "java.lang.String"
+        );
+    }
+
+    @Test
+    public void testTypeNameMapperPackage() {
+        this.typeNameMapperAndCheck(
+            "walkingkooka.javashader.java.io.File",
+            "java.io.File"
+        );
+    }
+
+    @Test
+    public void testTypeNameMapperNested() {
+        this.typeNameMapperAndCheck(
+            "walkingkooka.javashader.java.util.Map$Entry",
+            "java.util.Map$Entry"
+        );
+    }
+
+    private void typeNameMapperAndCheck(final String typeName,
+                                        final String expected) {
+        this.checkEquals(
+            expected,
+            ShadedClassFileTesting.typeNameMapper(
+                PackageName.with("walkingkooka.javashader.java"),
+                PackageName.with("java")
+            ).apply(typeName)
+        );
+    }
+
+    // class............................................................................................................
+
+    @Test
+    public void testClassFileEmulatedFile() {
+        this.classFileTesting(
+            walkingkooka.javashader.java.io.File.class.getName(),
+            ShadedClassFileTesting.typeNameMapper(
+                PackageName.with("walkingkooka.javashader.java"),
+                PackageName.with("java")
+            )
+        ).testClassFileClass();
+    }
+
+    @Test
+    public void testClassFileNotShadedFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> this.classFileTesting(TestPublicClass.class, TestPublicClass.class)
+                .testClassFileClass()
+        );
+    }
+
+    @Test
+    public void testClassFileDifferentStaticFails() {
+        this.classFailsAndCheck(
+            TestPublicStaticClass.class,
+            TestPublicClass.class,
+            "Instance expected static: " + TestPublicStaticClass.class.toGenericString()
+        );
+    }
+
+    @Test
+    public void testClassFileDifferentFinalFails() {
+        this.classFailsAndCheck(
+            TestPublicStaticClass.class,
+            TestPublicFinalClass.class,
+            "Instance expected static: " + TestPublicStaticClass.class.toGenericString() + ", Final expected not final: " + TestPublicStaticClass.class.toGenericString()
+        );
+    }
+
+    private void classFailsAndCheck(final Class<?> from,
+                                    final Class<?> to,
+                                    final String message) {
+        final Throwable thrown = assertThrows(
+            AssertionError.class,
+            () -> this.classFileTesting(from, to)
+                .testClassFileClass()
+        );
+        this.checkEquals("expected: <[]> but was: <[" + message + "]>", thrown.getMessage());
+    }
+
+    // constructors.....................................................................................................
+
+    @Test
+    public void testClassFileConstructors() {
+        this.classFileTesting(TestConstructorString.class, TestConstructorString2.class)
+            .testClassFileConstructors();
+    }
+
+    @Test
+    public void testClassFileConstructorsThrows() {
+        this.classFileTesting(TestConstructorThrowsIllegalArgumentException.class, TestConstructorThrowsIllegalArgumentException2.class)
+            .testClassFileConstructors();
+    }
+
+    @Test
+    public void testClassFileConstructorsMissingFails() {
+        this.constructorsFailsAndCheck(
+            TestConstructorString.class,
+            TestConstructorInt.class,
+            "Constructor missing from target: public walkingkooka.javashader.ShadedClassTestingTest$TestConstructorString(java.lang.String)"
+        );
+    }
+
+    @Test
+    public void testClassFileConstructorsDifferentThrowsFails() {
+        this.constructorsFailsAndCheck(
+            TestConstructorThrowsIllegalArgumentException.class,
+            TestConstructorThrowsIllegalStateException.class,
+            "Constructor includes unexpected throws: public walkingkooka.javashader.ShadedClassTestingTest$TestConstructorThrowsIllegalStateException() throws java.lang.IllegalStateException"
+        );
+    }
+
+    @Test
+    public void testClassFileConstructorsSnapshot() throws IOException {
+        final Path directory = Files.createTempDirectory(this.getClass().getSimpleName());
+        try {
+            // the snapshot holds a public target with a String constructor, the real TestConstructorInt class file is ignored
+            final ClassFileType type = ShadedClassFileTestingHelper.with(UnaryOperator.identity(), this.getClass().getClassLoader())
+                .type(TestConstructorString.class.getName());
+            final Path snapshot = directory.resolve("snapshot");
+            ClassFileSnapshot.writeTypes(
+                snapshot,
+                Lists.of(
+                    ClassFileType.with(
+                        TestConstructorInt.class.getName(),
+                        type.access() | Modifier.PUBLIC,
+                        type.superName(),
+                        type.interfaces(),
+                        type.fields(),
+                        type.methods()
+                    )
+                )
+            );
+
+            this.classFileTesting(
+                TestConstructorString.class.getName(),
+                typeNameMapper(Maps.of(TestConstructorString.class, TestConstructorInt.class)),
+                Optional.of(snapshot)
+            ).testClassFileConstructors();
+        } finally {
+            try (final Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder())
+                    .forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    private void constructorsFailsAndCheck(final Class<?> from,
+                                           final Class<?> to,
+                                           final String message) {
+        final Throwable thrown = assertThrows(
+            AssertionError.class,
+            () -> this.classFileTesting(from, to)
+                .testClassFileConstructors()
+        );
+        this.checkEquals("expected: <[]> but was: <[" + message + "]>", thrown.getMessage());
+    }
+
+    // methods..........................................................................................................
+
+    @Test
+    public void testClassFileMethods() {
+        this.classFileTesting(TestMethodParameterString.class, ShadedClassTestingTest.TestMethodString2.class)
+            .testClassFileMethods();
+    }
+
+    @Test
+    public void testClassFileMethodsParameterMapped() {
+        this.classFileTesting(
+            TestMethodParameterFrom.class.getName(),
+            typeNameMapper(
+                Maps.of(
+                    TestMethodParameterFrom.class, TestMethodParameterTo.class,
+                    ShadedClassTestingTest.TestFrom.class, ShadedClassTestingTest.TestTo.class
+                )
+            )
+        ).testClassFileMethods();
+    }
+
+    @Test
+    public void testClassFileMethodsMissingFails() {
+        this.methodsFailsAndCheck(
+            TestMethodParameterString.class,
+            TestMethodParameterInt.class,
+            "Method missing from target: public void walkingkooka.javashader.ShadedClassTestingTest$TestMethodParameterString.method123(java.lang.String)"
+        );
+    }
+
+    @Test
+    public void testClassFileMethodsVisibilityFails() throws Exception {
+        this.methodsFailsAndCheck(
+            TestPublicMethod.class,
+            TestProtectedMethod.class,
+            "Method visibility " + JavaVisibility.PROTECTED + " different: " + TestProtectedMethod.class.getDeclaredMethod("method123").toGenericString()
+        );
+    }
+
+    @Test
+    public void testClassFileMethodsSnapshotPackagePrivateVisibilityFails() throws Exception {
+        final Path directory = Files.createTempDirectory(this.getClass().getSimpleName());
+        try {
+            // the snapshot keeps package private members, so the same message as the class path is reported
+            final Path snapshot = directory.resolve("snapshot");
+            ClassFileSnapshot.writeTypes(
+                snapshot,
+                Lists.of(
+                    ShadedClassFileTestingHelper.with(UnaryOperator.identity(), this.getClass().getClassLoader())
+                        .type(TestPackagePrivateMethod.class.getName())
+                )
+            );
+
+            final Throwable thrown = assertThrows(
+                AssertionError.class,
+                () -> this.classFileTesting(
+                    TestPublicMethod.class.getName(),
+                    typeNameMapper(Maps.of(TestPublicMethod.class, TestPackagePrivateMethod.class)),
+                    Optional.of(snapshot)
+                ).testClassFileMethods()
+            );
+            this.checkEquals(
+                "expected: <[]> but was: <[Method visibility " + JavaVisibility.PACKAGE_PRIVATE + " different: " + TestPackagePrivateMethod.class.getDeclaredMethod("method123").toGenericString() + "]>",
+                thrown.getMessage()
+            );
+        } finally {
+            try (final Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder())
+                    .forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testClassFileMethodsDifferentThrowsFails() {
+        this.methodsFailsAndCheck(
+            TestMethodThrowsIllegalArgumentException.class,
+            TestMethodThrowsIllegalStateException.class,
+            "Method includes unexpected throws(java.lang.IllegalArgumentException): public void walkingkooka.javashader.ShadedClassTestingTest$TestMethodThrowsIllegalArgumentException.method123() throws java.lang.IllegalArgumentException"
+        );
+    }
+
+    @Test
+    public void testClassFileMethodsThrowsSubclass() {
+        this.classFileTesting(TestMethodThrowsNumberFormatException.class, TestMethodThrowsIllegalArgumentException.class)
+            .testClassFileMethods();
+    }
+
+    static class TestMethodThrowsNumberFormatException {
+        @SuppressWarnings("unused")
+        public void method123() throws NumberFormatException {
+        }
+    }
+
+    @Test
+    public void testClassFileMethodsDifferentReturnTypeFails() {
+        this.methodsFailsAndCheck(
+            TestMethodReturnString.class,
+            TestMethodReturnInt.class,
+            "Method return type java.lang.String different: public java.lang.String walkingkooka.javashader.ShadedClassTestingTest$TestMethodReturnString.method123()"
+        );
+    }
+
+    @Test
+    public void testClassFileMethodsStaticNotStaticFails() {
+        this.methodsFailsAndCheck(
+            TestMethodStatic.class,
+            TestMethodNotStatic.class,
+            "Instance expected static: public static void walkingkooka.javashader.ShadedClassTestingTest$TestMethodStatic.method123()"
+        );
+    }
+
+    private void methodsFailsAndCheck(final Class<?> from,
+                                      final Class<?> to,
+                                      final String message) {
+        final Throwable thrown = assertThrows(
+            AssertionError.class,
+            () -> this.classFileTesting(from, to)
+                .testClassFileMethods()
+        );
+        this.checkEquals("expected: <[]> but was: <[" + message + "]>", thrown.getMessage());
+    }
+
+    // fields...........................................................................................................
+
+    @Test
+    public void testClassFileFields() {
+        this.classFileTesting(TestFieldString.class, TestFieldString2.class)
+            .testClassFileFields();
+    }
+
+    @Test
+    public void testClassFileFieldsDifferentTypeFails() {
+        this.fieldsFailsAndCheck(
+            TestFieldString.class,
+            TestFieldInt.class,
+            "Field type java.lang.String different: public java.lang.String walkingkooka.javashader.ShadedClassTestingTest$TestFieldString.field123"
+        );
+    }
+
+    @Test
+    public void testClassFileFieldsConstantDifferentFails() {
+        this.fieldsFailsAndCheck(
+            TestFieldIntConstant.class,
+            TestFieldIntConstant2.class,
+            "Field value 1 different 23: public static final int walkingkooka.javashader.ShadedClassTestingTest$TestFieldIntConstant.field123"
+        );
+    }
+
+    private void fieldsFailsAndCheck(final Class<?> from,
+                                     final Class<?> to,
+                                     final String message) {
+        final Throwable thrown = assertThrows(
+            AssertionError.class,
+            () -> this.classFileTesting(from, to)
+                .testClassFileFields()
+        );
+        this.checkEquals("expected: <[]> but was: <[" + message + "]>", thrown.getMessage());
+    }
+
+    // helpers..........................................................................................................
+
+    private ShadedClassFileTesting classFileTesting(final Class<?> from,
+                                                    final Class<?> to) {
+        return this.classFileTesting(
+            from.getName(),
+            typeNameMapper(Maps.of(from, to))
+        );
+    }
+
+    private ShadedClassFileTesting classFileTesting(final String typeName,
+                                                    final UnaryOperator<String> typeNameMapper) {
+        return this.classFileTesting(
+            typeName,
+            typeNameMapper,
+            Optional.empty()
+        );
+    }
+
+    private ShadedClassFileTesting classFileTesting(final String typeName,
+                                                    final UnaryOperator<String> typeNameMapper,
+                                                    final Optional<Path> snapshot) {
+        return new ShadedClassFileTesting() {
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileConstructors() {
+                return Predicates.always();
+            }
+
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileMethods() {
+                return Predicates.always();
+            }
+
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileFields() {
+                return Predicates.always();
+            }
+
+            @Override
+            public String typeName() {
+                return typeName;
+            }
+
+            @Override
+            public UnaryOperator<String> typeNameMapper() {
+                return typeNameMapper;
+            }
+
+            @Override
+            public Optional<Path> classFileSnapshot() {
+                return snapshot;
+            }
+        };
+    }
+
+    private static UnaryOperator<String> typeNameMapper(final Map<Class<?>, Class<?>> mapping) {
+        return (t) -> {
+            for (final Map.Entry<Class<?>, Class<?>> fromAndTo : mapping.entrySet()) {
+                if (fromAndTo.getKey().getName().equals(t)) {
+                    return fromAndTo.getValue().getName();
+                }
+            }
+            return t;
+        };
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadedClassFileTesting> type() {
+        return Cast.to(ShadedClassFileTesting.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
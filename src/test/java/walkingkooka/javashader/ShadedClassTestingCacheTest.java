@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public final class ShadedClassTestingCacheTest implements ClassTesting<ShadedClassTestingCache> {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory(this.getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testMessagesNeverSaved() {
+        this.checkEquals(
+            Optional.empty(),
+            this.cache(TestFrom.class, TestTo.class)
+                .messages()
+        );
+    }
+
+    @Test
+    public void testSaveThenMessages() {
+        final List<String> messages = Lists.of("message1", "message2\nline2");
+        this.cache(TestFrom.class, TestTo.class)
+            .save(messages);
+
+        this.checkEquals(
+            Optional.of(messages),
+            this.cache(TestFrom.class, TestTo.class)
+                .messages()
+        );
+    }
+
+    @Test
+    public void testSaveEmptyThenMessages() {
+        this.cache(TestFrom.class, TestTo.class)
+            .save(Lists.empty());
+
+        this.checkEquals(
+            Optional.of(Lists.empty()),
+            this.cache(TestFrom.class, TestTo.class)
+                .messages()
+        );
+    }
+
+    @Test
+    public void testSaveDifferentTargetMessages() {
+        this.cache(TestFrom.class, TestTo.class)
+            .save(Lists.of("message1"));
+
+        this.checkEquals(
+            Optional.empty(),
+            this.cache(TestFrom.class, TestDifferentTo.class)
+                .messages()
+        );
+    }
+
+    @Test
+    public void testFingerprintSame() {
+        this.checkEquals(
+            this.cache(TestFrom.class, TestTo.class).fingerprint(),
+            this.cache(TestFrom.class, TestTo.class).fingerprint()
+        );
+    }
+
+    @Test
+    public void testFingerprintDifferentTarget() {
+        this.checkNotEquals(
+            this.cache(TestFrom.class, TestTo.class).fingerprint(),
+            this.cache(TestFrom.class, TestDifferentTo.class).fingerprint()
+        );
+    }
+
+    @Test
+    public void testFingerprintDifferentThrows() {
+        this.checkNotEquals(
+            this.cache(TestFrom.class, TestTo.class).fingerprint(),
+            this.cache(TestFrom.class, TestThrowsTo.class).fingerprint()
+        );
+    }
+
+    @Test
+    public void testHierarchy() {
+        this.checkEquals(
+            Lists.of(TestSub.class, TestTo.class, TestInterface.class),
+            Lists.of(ShadedClassTestingCache.hierarchy(TestSub.class).toArray())
+        );
+    }
+
+    @Test
+    public void testHierarchyIncludesTestInterfaces() {
+        this.checkEquals(
+            true,
+            ShadedClassTestingCache.hierarchy(this.getClass()).contains(ClassTesting.class),
+            "ClassTesting"
+        );
+    }
+
+    @Test
+    public void testSaveReplacesThenMessages() {
+        final ShadedClassTestingCache cache = this.cache(TestFrom.class, TestTo.class);
+        cache.save(Lists.of("message1"));
+        cache.save(Lists.of("message2"));
+
+        this.checkEquals(
+            Optional.of(Lists.of("message2")),
+            this.cache(TestFrom.class, TestTo.class)
+                .messages()
+        );
+    }
+
+    @Test
+    public void testDisabled() {
+        final ShadedClassTestingCache cache = ShadedClassTestingCache.with(
+            Optional.empty(),
+            this.getClass(),
+            "testMethods",
+            TestFrom.class,
+            TestTo.class
+        );
+        cache.save(Lists.of("message1"));
+
+        this.checkEquals(
+            Optional.empty(),
+            cache.messages()
+        );
+    }
+
+    private ShadedClassTestingCache cache(final Class<?> type,
+                                          final Class<?> target) {
+        return ShadedClassTestingCache.with(
+            Optional.of(this.directory),
+            this.getClass(),
+            "testMethods",
+            type,
+            target
+        );
+    }
+
+    static class TestFrom {
+        public String method() {
+            return "from";
+        }
+    }
+
+    static class TestTo {
+        public String method() {
+            return "to";
+        }
+    }
+
+    interface TestInterface {
+    }
+
+    static class TestSub extends TestTo implements TestInterface {
+    }
+
+    static class TestThrowsTo {
+        public String method() throws IOException {
+            return "to";
+        }
+    }
+
+    static class TestDifferentTo {
+        public Object method() {
+            return "to";
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadedClassTestingCache> type() {
+        return ShadedClassTestingCache.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -17,11 +17,134 @@
 
 package walkingkooka.javashader;
 
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
 import walkingkooka.reflect.ClassTesting;
 import walkingkooka.reflect.JavaVisibility;
 
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
 public final class ShadedClassTestingHelperTest implements ClassTesting<ShadedClassTestingHelper> {
 
+    // declaredConstructors.............................................................................................
+
+    @Test
+    public void testDeclaredConstructors() throws Exception {
+        this.checkEquals(
+            Maps.of(
+                Lists.of(String.class), TestMembers.class.getDeclaredConstructor(String.class),
+                Lists.of(Integer.TYPE, Object.class), TestMembers.class.getDeclaredConstructor(Integer.TYPE, Object.class)
+            ),
+            this.createHelper()
+                .declaredConstructors(TestMembers.class)
+        );
+    }
+
+    @Test
+    public void testDeclaredConstructorsMissing() {
+        this.checkEquals(
+            null,
+            this.createHelper()
+                .declaredConstructors(TestMembers.class)
+                .get(Lists.of(Long.TYPE))
+        );
+    }
+
+    // declaredMethods..................................................................................................
+
+    @Test
+    public void testDeclaredMethodsOverloads() throws Exception {
+        final Map<List<Object>, Method> methods = this.createHelper()
+            .declaredMethods(TestMembers.class);
+
+        this.checkEquals(
+            TestMembers.class.getDeclaredMethod("method123"),
+            methods.get(ShadedClassTestingHelper.methodKey("method123", Lists.empty()))
+        );
+        this.checkEquals(
+            TestMembers.class.getDeclaredMethod("method123", String.class),
+            methods.get(ShadedClassTestingHelper.methodKey("method123", Lists.of(String.class)))
+        );
+    }
+
+    @Test
+    public void testDeclaredMethodsMissing() {
+        this.checkEquals(
+            null,
+            this.createHelper()
+                .declaredMethods(TestMembers.class)
+                .get(ShadedClassTestingHelper.methodKey("method123", Lists.of(Integer.TYPE)))
+        );
+    }
+
+    @Test
+    public void testDeclaredMethodsIgnoresBridge() throws Exception {
+        this.checkEquals(
+            TestCovariant.class.getDeclaredMethod("get"),
+            this.createHelper()
+                .declaredMethods(TestCovariant.class)
+                .get(ShadedClassTestingHelper.methodKey("get", Lists.empty()))
+        );
+    }
+
+    // declaredFields...................................................................................................
+
+    @Test
+    public void testDeclaredFields() throws Exception {
+        this.checkEquals(
+            Maps.of("field123", TestMembers.class.getDeclaredField("field123")),
+            this.createHelper()
+                .declaredFields(TestMembers.class)
+        );
+    }
+
+    // mapList..........................................................................................................
+
+    @Test
+    public void testMapList() {
+        this.checkEquals(
+            Lists.of(java.io.File.class, Integer.TYPE),
+            ShadedClassTestingHelper.with(
+                (c) -> c == File.class ? java.io.File.class : c
+            ).mapList(File.class, Integer.TYPE)
+        );
+    }
+
+    private ShadedClassTestingHelper createHelper() {
+        return ShadedClassTestingHelper.with(UnaryOperator.identity());
+    }
+
+    @SuppressWarnings("unused")
+    static class TestMembers {
+
+        TestMembers(final String string) {
+        }
+
+        TestMembers(final int i, final Object object) {
+        }
+
+        void method123() {
+        }
+
+        void method123(final String string) {
+        }
+
+        String field123;
+    }
+
+    static class TestCovariant implements java.util.function.Supplier<Object> {
+        @Override
+        public String get() {
+            return null;
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
     @Override
     public Class<ShadedClassTestingHelper> type() {
         return ShadedClassTestingHelper.class;
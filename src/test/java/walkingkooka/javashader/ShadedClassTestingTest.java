@@ -19,6 +19,7 @@ package walkingkooka.javashader;
 
 import org.junit.jupiter.api.Test;
 import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.collect.map.Maps;
 import walkingkooka.predicate.Predicates;
 import walkingkooka.reflect.ClassTesting;
@@ -26,12 +27,18 @@ import walkingkooka.reflect.JavaVisibility;
 import walkingkooka.reflect.PackageName;
 import walkingkooka.text.CharSequences;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -686,6 +693,145 @@ public final class ShadedClassTestingTest implements ClassTesting<ShadedClassTes
             "expected: <[]> but was: <[Method missing from target: public void walkingkooka.javashader.ShadedClassTestingTest$TestMethodParameterString.method123(java.lang.String)]>");
     }
 
+    @Test
+    public void testMethodOverloads() {
+        methodTesting(TestMethodOverloads.class, TestMethodOverloads2.class)
+            .testMethods();
+    }
+
+    @Test
+    public void testMethodOverloadMissingFails() {
+        methodTestingFails(TestMethodOverloads.class,
+            TestMethodParameterString.class,
+            "expected: <[]> but was: <[Method missing from target: public void walkingkooka.javashader.ShadedClassTestingTest$TestMethodOverloads.method123(int)]>");
+    }
+
+    @Test
+    public void testMethodPackagePrivateMissing() {
+        methodTesting(TestMethodPackagePrivateMissing.class, TestMethodParameterString.class)
+            .testMethods();
+    }
+
+    @Test
+    public void testMethodsCached() throws IOException {
+        final Path directory = Files.createTempDirectory(this.getClass().getSimpleName());
+        try {
+            final ShadedClassTesting<TestMethodOverloads> testing = methodTestingCached(
+                TestMethodOverloads.class,
+                TestMethodParameterString.class,
+                directory
+            );
+
+            // pretend an earlier run passed, the missing method should not be reported
+            ShadedClassTestingCache.with(
+                Optional.of(directory),
+                testing.getClass(),
+                "testMethods",
+                TestMethodOverloads.class,
+                TestMethodParameterString.class
+            ).save(Lists.empty());
+
+            testing.testMethods();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testMethodsCachedFails() throws IOException {
+        final Path directory = Files.createTempDirectory(this.getClass().getSimpleName());
+        try {
+            for (int i = 0; i < 2; i++) {
+                final Throwable thrown = assertThrows(
+                    AssertionError.class,
+                    () -> methodTestingCached(
+                        TestMethodOverloads.class,
+                        TestMethodParameterString.class,
+                        directory
+                    ).testMethods()
+                );
+                this.checkEquals(
+                    "expected: <[]> but was: <[Method missing from target: public void walkingkooka.javashader.ShadedClassTestingTest$TestMethodOverloads.method123(int)]>",
+                    thrown.getMessage(),
+                    "run " + i
+                );
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static <T> ShadedClassTesting<T> methodTestingCached(final Class<T> from,
+                                                                 final Class<?> to,
+                                                                 final Path directory) {
+        return new FakeShadedClassTesting<>() {
+            @Override
+            public Predicate<Method> requiredMethods() {
+                return Predicates.always();
+            }
+
+            @Override
+            public UnaryOperator<Class<?>> typeMapper() {
+                return typeMapper0(Maps.of(from, to));
+            }
+
+            @Override
+            public Optional<Path> shadedClassTestingCache() {
+                return Optional.of(directory);
+            }
+
+            @Override
+            public Class<T> type() {
+                return from;
+            }
+        };
+    }
+
+    private static void deleteDirectory(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder())
+                .forEach(f -> f.toFile().delete());
+        }
+    }
+
+    static class TestMethodOverloads {
+        @SuppressWarnings("unused")
+        public void method123(final String string) {
+        }
+
+        @SuppressWarnings("unused")
+        public void method123(final int ignored) {
+        }
+    }
+
+    static class TestMethodOverloads2 {
+        @SuppressWarnings("unused")
+        public void method123(final int ignored) {
+        }
+
+        @SuppressWarnings("unused")
+        public void method123(final String string) {
+        }
+
+        @SuppressWarnings("unused")
+        public void method123(final long ignored) {
+        }
+    }
+
+    static class TestMethodPackagePrivateMissing {
+        @SuppressWarnings("unused")
+        public void method123(final String string) {
+        }
+
+        @SuppressWarnings("unused")
+        void method123(final int ignored) {
+        }
+
+        @SuppressWarnings("unused")
+        private void method456() {
+        }
+    }
+
     @Test
     public void TestMethodString() {
         methodTesting(TestMethodParameterString.class, TestMethodString2.class)
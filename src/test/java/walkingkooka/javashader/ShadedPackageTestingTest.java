@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.predicate.Predicates;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadedPackageTestingTest implements ClassTesting<ShadedPackageTesting> {
+
+    private final static String FROM = "walkingkooka.javashader.shadedpackage.from";
+
+    @Test
+    public void testShadedPackageDisplayNames() {
+        this.checkEquals(
+            Lists.of(
+                FROM + ".TestFail",
+                FROM + ".TestMissing",
+                FROM + ".TestPackagePrivateMissing",
+                FROM + ".TestPass"
+            ),
+            this.dynamicTests()
+                .stream()
+                .map(DynamicTest::getDisplayName)
+                .collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void testShadedPackageJar() throws Throwable {
+        final Path jar = Files.createTempFile(this.getClass().getSimpleName(), ".jar");
+        try {
+            try (final JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+                for (final String className : Lists.of("from/TestPass", "from/TestFail", "to/TestPass", "to/TestFail")) {
+                    final String entry = "walkingkooka/javashader/shadedpackage/" + className + ".class";
+                    output.putNextEntry(new JarEntry(entry));
+                    try (final InputStream input = this.getClass().getResourceAsStream("/" + entry)) {
+                        input.transferTo(output);
+                    }
+                }
+            }
+
+            try (final Stream<DynamicTest> stream = this.shadedPackageTesting(
+                ClassLoader.getPlatformClassLoader(),
+                Optional.of(jar)
+            ).testShadedPackage()) {
+                final List<DynamicTest> tests = stream.collect(Collectors.toList());
+                this.checkEquals(
+                    Lists.of(
+                        FROM + ".TestFail",
+                        FROM + ".TestPass"
+                    ),
+                    tests.stream()
+                        .map(DynamicTest::getDisplayName)
+                        .collect(Collectors.toList())
+                );
+
+                tests.get(1)
+                    .getExecutable()
+                    .execute();
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    public void testShadedPackageJarBeforeClassPath() throws Throwable {
+        final String to = "walkingkooka.javashader.shadedpackage.to";
+        final String entry = FROM.replace('.', '/') + "/TestFail.class";
+
+        final Path jar = Files.createTempFile(this.getClass().getSimpleName(), ".jar");
+        try {
+            try (final JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+                // the jar holds a TestFail matching its target, unlike the copy on the class path
+                output.putNextEntry(new JarEntry(entry));
+                try (final InputStream input = this.getClass().getResourceAsStream("/" + to.replace('.', '/') + "/TestFail.class")) {
+                    output.write(
+                        ClassFilePackageShader.shadeClassFile(
+                            input.readAllBytes(),
+                            Maps.of(
+                                PackageName.with(to),
+                                PackageName.with(FROM)
+                            )
+                        )
+                    );
+                }
+            }
+
+            try (final Stream<DynamicTest> stream = this.shadedPackageTesting(
+                this.getClass().getClassLoader(),
+                Optional.of(jar)
+            ).testShadedPackage()) {
+                final List<DynamicTest> tests = stream.collect(Collectors.toList());
+                this.checkEquals(
+                    Lists.of(
+                        FROM + ".TestFail"
+                    ),
+                    tests.stream()
+                        .map(DynamicTest::getDisplayName)
+                        .collect(Collectors.toList())
+                );
+
+                tests.get(0)
+                    .getExecutable()
+                    .execute();
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    public void testRequiredTypesTopLevel() {
+        this.requiredTypesAndCheck(FROM + ".TestPass", true);
+    }
+
+    @Test
+    public void testRequiredTypesNested() {
+        this.requiredTypesAndCheck(FROM + ".TestPass$Nested", true);
+    }
+
+    @Test
+    public void testRequiredTypesAnonymous() {
+        this.requiredTypesAndCheck(FROM + ".TestPass$1", false);
+    }
+
+    @Test
+    public void testRequiredTypesLocal() {
+        this.requiredTypesAndCheck(FROM + ".TestPass$1Local", false);
+    }
+
+    @Test
+    public void testRequiredTypesEndsWithDollar() {
+        this.requiredTypesAndCheck(FROM + ".TestPass$", true);
+    }
+
+    private void requiredTypesAndCheck(final String type,
+                                       final boolean expected) {
+        this.checkEquals(
+            expected,
+            this.shadedPackageTesting(
+                this.getClass().getClassLoader(),
+                Optional.empty()
+            ).requiredTypes()
+                .test(type),
+            type
+        );
+    }
+
+    @Test
+    public void testShadedPackagePass() throws Throwable {
+        this.dynamicTest("TestPass")
+            .getExecutable()
+            .execute();
+    }
+
+    @Test
+    public void testShadedPackagePackagePrivateMissing() throws Throwable {
+        this.dynamicTest("TestPackagePrivateMissing")
+            .getExecutable()
+            .execute();
+    }
+
+    @Test
+    public void testShadedPackageMethodMissingFails() {
+        this.dynamicTestFails(
+            "TestFail",
+            "Method missing from target: public void " + FROM + ".TestFail.method()"
+        );
+    }
+
+    @Test
+    public void testShadedPackageClassMissingFails() {
+        this.dynamicTestFails(
+            "TestMissing",
+            "Class missing from target: public class " + FROM + ".TestMissing"
+        );
+    }
+
+    private void dynamicTestFails(final String simpleName,
+                                  final String message) {
+        final Throwable thrown = assertThrows(
+            AssertionError.class,
+            () -> this.dynamicTest(simpleName)
+                .getExecutable()
+                .execute()
+        );
+        this.checkEquals("expected: <[]> but was: <[" + message + "]>", thrown.getMessage());
+    }
+
+    private DynamicTest dynamicTest(final String simpleName) {
+        return this.dynamicTests()
+            .stream()
+            .filter(t -> t.getDisplayName().equals(FROM + "." + simpleName))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("Missing dynamic test for " + simpleName));
+    }
+
+    private List<DynamicTest> dynamicTests() {
+        try (final Stream<DynamicTest> tests = this.shadedPackageTesting(
+            this.getClass().getClassLoader(),
+            Optional.empty()
+        ).testShadedPackage()) {
+            return tests.collect(Collectors.toList());
+        }
+    }
+
+    private ShadedPackageTesting shadedPackageTesting(final ClassLoader classLoader,
+                                                      final Optional<Path> shadedClassFiles) {
+        return new ShadedPackageTesting() {
+            @Override
+            public PackageName fromPackage() {
+                return PackageName.with(FROM);
+            }
+
+            @Override
+            public PackageName toPackage() {
+                return PackageName.with("walkingkooka.javashader.shadedpackage.to");
+            }
+
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileConstructors() {
+                return Predicates.always();
+            }
+
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileMethods() {
+                return Predicates.always();
+            }
+
+            @Override
+            public Predicate<ClassFileMember> requiredClassFileFields() {
+                return Predicates.always();
+            }
+
+            @Override
+            public Optional<Path> shadedClassFiles() {
+                return shadedClassFiles;
+            }
+
+            @Override
+            public ClassLoader classFileClassLoader() {
+                return classLoader;
+            }
+        };
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadedPackageTesting> type() {
+        return Cast.to(ShadedPackageTesting.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.PackageName;
+import walkingkooka.test.Testing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Fails when shading a fixed fixture allocates more bytes than its budget. Each fixture and a baseline doing the
+ * unavoidable work of parsing and writing the same fixture are run repeatedly to warm up, then the smallest allocation
+ * of several runs on the current thread is compared. Budgets are a multiple of the baseline measured in the same JVM,
+ * so they hold on every JDK even though each JDK allocates differently. Lower the budgets after an improvement.
+ */
+public final class ShaderAllocationBudgetTest implements Testing {
+
+    private final static int WARMUP = 2000;
+
+    private final static int RUNS = 20;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    public static void threadMXBean() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+    }
+
+    // class file.......................................................................................................
+
+    @Test
+    public void testClassFileUnchanged() throws IOException {
+        final byte[] classFile = this.classFile(TestClass.class);
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.with("different"),
+            PackageName.with("different2")
+        );
+
+        this.allocationAndCheck(
+            () -> ClassFilePackageShader.shadeClassFile(classFile, mappings),
+            () -> copy(classFile),
+            CLASS_FILE_UNCHANGED_BUDGET
+        );
+    }
+
+    @Test
+    public void testClassFileShaded() throws IOException {
+        final byte[] classFile = this.classFile(TestClass.class);
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.with(TestClass.class.getPackage().getName()),
+            PackageName.with("shaded." + TestClass.class.getPackage().getName())
+        );
+
+        this.allocationAndCheck(
+            () -> ClassFilePackageShader.shadeClassFile(classFile, mappings),
+            () -> copy(classFile),
+            CLASS_FILE_SHADED_BUDGET
+        );
+    }
+
+    // java file........................................................................................................
+
+    @Test
+    public void testJavaFileShaded() {
+        final byte[] javaFile = JAVA_FILE.getBytes(StandardCharsets.UTF_8);
+        final Map<PackageName, PackageName> mappings = Maps.of(
+            PackageName.with("package1"),
+            PackageName.with("package91"),
+            PackageName.with("package2"),
+            PackageName.with("package92")
+        );
+
+        this.allocationAndCheck(
+            () -> JavaShaders.javaFilePackageShader(StandardCharsets.UTF_8)
+                .apply(javaFile, mappings),
+            () -> JavaFilePackageShader.parse(new String(javaFile, StandardCharsets.UTF_8)),
+            JAVA_FILE_SHADED_BUDGET
+        );
+    }
+
+    private final static String JAVA_FILE = "package package1;\n" +
+        "\n" +
+        "import package2.Type2;\n" +
+        "import package3.Type3;\n" +
+        "\n" +
+        "public class Type1 extends package2.Type4 implements package3.Type5 {\n" +
+        "\n" +
+        "    private final package2.Type2 field = new package2.Type2();\n" +
+        "\n" +
+        "    public package1.Type6 method(final package3.Type3 parameter) {\n" +
+        "        final java.util.List<package2.Type7> list = new java.util.ArrayList<package2.Type7>();\n" +
+        "        for (int i = 0; i < 10; i++) {\n" +
+        "            list.add(new package2.Type7(parameter, i));\n" +
+        "        }\n" +
+        "        return new package1.Type6(list);\n" +
+        "    }\n" +
+        "}\n";
+
+    // budgets as a multiple of the baseline allocation..................................................................
+
+    private final static double CLASS_FILE_UNCHANGED_BUDGET = 2.5; // 1.85 on JDK 11, 17 and 21
+
+    private final static double CLASS_FILE_SHADED_BUDGET = 3.0; // 2.29 on JDK 11, 2.27 on JDK 17 and 21
+
+    private final static double JAVA_FILE_SHADED_BUDGET = 1.5; // 1.06 to 1.08 on JDK 11, 17 and 21, parsing dominates
+
+    // helpers..........................................................................................................
+
+    private void allocationAndCheck(final Supplier<byte[]> shade,
+                                    final Supplier<?> baseline,
+                                    final double budget) {
+        assumeTrue(
+            null != threads && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+            "Thread allocated memory not supported"
+        );
+
+        final long shaded = this.allocated(shade);
+        final long base = this.allocated(baseline);
+        this.checkEquals(
+            true,
+            shaded <= budget * base,
+            () -> "Allocated " + shaded + " bytes exceeds budget " + budget + " x baseline " + base + " bytes"
+        );
+    }
+
+    /**
+     * Warms up then returns the smallest number of bytes allocated by a single run.
+     */
+    private long allocated(final Supplier<?> run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.get();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long before = threads.getThreadAllocatedBytes(threadId);
+            this.checkNotEquals(null, run.get());
+            allocated = Math.min(
+                allocated,
+                threads.getThreadAllocatedBytes(threadId) - before
+            );
+        }
+        return allocated;
+    }
+
+    /**
+     * The baseline for class files, parsing and writing the class file without any changes.
+     */
+    private static byte[] copy(final byte[] classFile) {
+        final ClassWriter writer = new ClassWriter(0);
+        new ClassReader(classFile)
+            .accept(writer, 0);
+        return writer.toByteArray();
+    }
+
+    private byte[] classFile(final Class<?> type) throws IOException {
+        final String resourceName = "/" + type.getName().replace('.', '/') + ".class";
+
+        try (final InputStream file = type.getResourceAsStream(resourceName)) {
+            this.checkEquals(
+                false,
+                null == file,
+                () -> "Class file for " + type.getName() + " resource=" + resourceName + " not found"
+            );
+            return file.readAllBytes();
+        }
+    }
+
+    public static class TestClass {
+
+        public final String field = "field1";
+
+        public Object method(final Map<String, Object> map) {
+            return map.getOrDefault(this.field, this);
+        }
+
+        public TestClass returnsThis() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadingClassFileTransformerTest implements ClassTesting<ShadingClassFileTransformer> {
+
+    private final static String SHADED_PACKAGE = "walkingkooka.javashader.shadingclassloader.shaded";
+
+    @Test
+    public void testWithNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadingClassFileTransformer.with(null)
+        );
+    }
+
+    @Test
+    public void testTransformNullClassName() throws IOException {
+        this.checkEquals(
+            null,
+            this.transform(
+                null,
+                classFile(TestUser.class)
+            )
+        );
+    }
+
+    @Test
+    public void testTransformUnchanged() throws IOException {
+        this.checkEquals(
+            null,
+            this.transform(
+                internalName(PackageShaderRules.class),
+                classFile(PackageShaderRules.class)
+            )
+        );
+    }
+
+    @Test
+    public void testTransformClassWithinFromPackage() throws IOException {
+        this.checkEquals(
+            null,
+            this.transform(
+                internalName(TestDependency.class),
+                classFile(TestDependency.class)
+            )
+        );
+    }
+
+    @Test
+    public void testTransform() throws IOException {
+        final byte[] transformed = this.transform(
+            internalName(TestUser.class),
+            classFile(TestUser.class)
+        );
+        assertNotNull(transformed, "transformed");
+
+        final ClassFileType type = ClassFileType.read(transformed);
+        this.checkEquals(
+            TestUser.class.getName(),
+            type.name(),
+            "name"
+        );
+    }
+
+    @Test
+    public void testTransformBootstrapClassLoader() throws IOException {
+        this.transformAndCheckNull(null);
+    }
+
+    @Test
+    public void testTransformPlatformClassLoader() throws IOException {
+        this.transformAndCheckNull(ClassLoader.getPlatformClassLoader());
+    }
+
+    private void transformAndCheckNull(final ClassLoader loader) throws IOException {
+        this.checkEquals(
+            null,
+            this.transformer()
+                .transform(
+                    loader,
+                    internalName(TestUser.class),
+                    null,
+                    null,
+                    classFile(TestUser.class)
+                )
+        );
+    }
+
+    @Test
+    public void testTransformCached() throws IOException {
+        final ShadingClassFileTransformer transformer = this.transformer();
+        final ClassLoader loader = this.getClass().getClassLoader();
+        final byte[] classFile = classFile(TestUser.class);
+
+        assertSame(
+            transformer.transform(loader, internalName(TestUser.class), null, null, classFile),
+            transformer.transform(loader, internalName(TestUser.class), null, null, classFile.clone())
+        );
+    }
+
+    @Test
+    public void testMappings() {
+        final Map<PackageName, PackageName> expected = Maps.ordered();
+        expected.put(PackageName.with("package1"), PackageName.with("package2"));
+        expected.put(PackageName.with("package3"), PackageName.with("package4"));
+
+        this.checkEquals(
+            expected,
+            ShadingClassFileTransformer.mappings("package1=package2, package3=package4")
+        );
+    }
+
+    @Test
+    public void testMappingsNull() {
+        this.checkEquals(
+            Maps.empty(),
+            ShadingClassFileTransformer.mappings(null)
+        );
+    }
+
+    @Test
+    public void testMappingsInvalidFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> ShadingClassFileTransformer.mappings("package1")
+        );
+        this.checkEquals(
+            "Invalid mapping package1 expected from=to",
+            thrown.getMessage()
+        );
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            "walkingkooka/javashader/shadingclassloader/dependency=walkingkooka/javashader/shadingclassloader/shaded",
+            this.transformer().toString()
+        );
+    }
+
+    private byte[] transform(final String className,
+                             final byte[] classFile) {
+        return this.transformer()
+            .transform(
+                this.getClass().getClassLoader(),
+                className,
+                null,
+                null,
+                classFile
+            );
+    }
+
+    private ShadingClassFileTransformer transformer() {
+        return ShadingClassFileTransformer.with(
+            Maps.of(
+                PackageName.with(TestDependency.class.getPackage().getName()),
+                PackageName.with(SHADED_PACKAGE)
+            )
+        );
+    }
+
+    private static String internalName(final Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static byte[] classFile(final Class<?> type) throws IOException {
+        try (final InputStream input = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+            return input.readAllBytes();
+        }
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadingClassFileTransformer> type() {
+        return ShadingClassFileTransformer.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
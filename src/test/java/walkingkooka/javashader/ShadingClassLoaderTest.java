@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.javashader;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.javashader.shadingclassloader.TestUser;
+import walkingkooka.javashader.shadingclassloader.dependency.TestDependency;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PackageName;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ShadingClassLoaderTest implements ClassTesting<ShadingClassLoader> {
+
+    private final static String SHADED_PACKAGE = "walkingkooka.javashader.shadingclassloader.shaded";
+
+    private final static String SHADED_DEPENDENCY = SHADED_PACKAGE + ".TestDependency";
+
+    @Test
+    public void testWithNullSourceFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadingClassLoader.with(
+                null,
+                Maps.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullMappingsFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> ShadingClassLoader.with(
+                this.getClass().getClassLoader(),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testLoadClassUnmapped() throws Exception {
+        final ShadingClassLoader loader = this.loader();
+        final Class<?> type = loader.loadClass(TestUser.class.getName());
+
+        assertNotSame(
+            TestUser.class,
+            type
+        );
+        assertSame(
+            loader,
+            type.getClassLoader()
+        );
+    }
+
+    @Test
+    public void testLoadClassShaded() throws Exception {
+        final ShadingClassLoader loader = this.loader();
+
+        this.checkEquals(
+            SHADED_DEPENDENCY,
+            loader.loadClass(SHADED_DEPENDENCY)
+                .getName()
+        );
+    }
+
+    @Test
+    public void testLoadClassRelocatedAwayFails() {
+        assertThrows(
+            ClassNotFoundException.class,
+            () -> this.loader()
+                .loadClass(TestDependency.class.getName())
+        );
+    }
+
+    @Test
+    public void testLoadClassJdk() throws Exception {
+        assertSame(
+            String.class,
+            this.loader()
+                .loadClass(String.class.getName())
+        );
+    }
+
+    @Test
+    public void testLoadClassPlatformJavax() throws Exception {
+        assertSame(
+            DataSource.class,
+            this.loader()
+                .loadClass(DataSource.class.getName())
+        );
+    }
+
+    @Test
+    public void testLoadClassPlatformOrgW3c() throws Exception {
+        assertSame(
+            Document.class,
+            this.loader()
+                .loadClass(Document.class.getName())
+        );
+    }
+
+    @Test
+    public void testLoadClassJdkNotShaded() throws Exception {
+        final ShadingClassLoader loader = ShadingClassLoader.with(
+            this.getClass().getClassLoader(),
+            Maps.of(
+                PackageName.with("javax.sql"),
+                PackageName.with(SHADED_PACKAGE)
+            )
+        );
+        assertThrows(
+            ClassNotFoundException.class,
+            () -> loader.loadClass(SHADED_PACKAGE + ".DataSource")
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReferencesShaded() throws Exception {
+        final Supplier<String> user = (Supplier<String>) this.loader()
+            .loadClass(TestUser.class.getName())
+            .getDeclaredConstructor()
+            .newInstance();
+
+        this.checkEquals(
+            SHADED_DEPENDENCY,
+            user.get()
+        );
+    }
+
+    @Test
+    public void testLoadClassSameClass() throws Exception {
+        final ShadingClassLoader loader = this.loader();
+
+        assertSame(
+            loader.loadClass(SHADED_DEPENDENCY),
+            loader.loadClass(SHADED_DEPENDENCY)
+        );
+    }
+
+    @Test
+    public void testGetResourceShaded() {
+        assertNotNull(
+            this.loader()
+                .getResource(SHADED_DEPENDENCY.replace('.', '/') + ".class")
+        );
+    }
+
+    @Test
+    public void testGetResourceRelocatedAway() {
+        this.checkEquals(
+            null,
+            this.loader()
+                .getResource(TestDependency.class.getName().replace('.', '/') + ".class")
+        );
+    }
+
+    @Test
+    public void testGetResourceAsStreamShadedClassFile() throws IOException {
+        try (final InputStream input = this.loader().getResourceAsStream(SHADED_DEPENDENCY.replace('.', '/') + ".class")) {
+            assertNotNull(input, "resource");
+
+            this.checkEquals(
+                SHADED_DEPENDENCY,
+                ClassFileType.read(input.readAllBytes())
+                    .name()
+            );
+        }
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        final Map<String, byte[]> cache = ShadingClassLoader.cache();
+        for (int i = 0; i <= ShadingClassLoader.CACHE_SIZE; i++) {
+            cache.put("Class" + i, new byte[0]);
+        }
+
+        this.checkEquals(ShadingClassLoader.CACHE_SIZE, cache.size(), "size");
+        this.checkEquals(false, cache.containsKey("Class0"), "eldest evicted");
+    }
+
+    @Test
+    public void testToString() {
+        final ClassLoader source = this.getClass().getClassLoader();
+
+        this.checkEquals(
+            "package1=package2 " + source,
+            ShadingClassLoader.with(
+                source,
+                Maps.of(
+                    PackageName.with("package1"),
+                    PackageName.with("package2")
+                )
+            ).toString()
+        );
+    }
+
+    private ShadingClassLoader loader() {
+        return ShadingClassLoader.with(
+            this.getClass().getClassLoader(),
+            Maps.of(
+                PackageName.with(TestDependency.class.getPackage().getName()),
+                PackageName.with(SHADED_PACKAGE)
+            )
+        );
+    }
+
+    // ClassTesting.....................................................................................................
+
+    @Override
+    public Class<ShadingClassLoader> type() {
+        return ShadingClassLoader.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}